@@ -0,0 +1,103 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream;
+
+/**
+ * Callback to consume all the messages of a chunk at once.
+ *
+ * <p>This is an alternative to {@link MessageHandler} for applications that process messages in
+ * batches, e.g. to amortize writes to a sink.
+ *
+ * @see ConsumerBuilder#chunkHandler(ChunkHandler)
+ */
+public interface ChunkHandler {
+
+  /**
+   * Callback for the messages of a chunk.
+   *
+   * @param chunk the messages of the chunk, valid only during the call
+   */
+  void handle(Chunk chunk);
+
+  /**
+   * The messages of a chunk, in offset order.
+   *
+   * <p>The same instance is reused for the next chunks of the consumer, so it must not be used
+   * once {@link ChunkHandler#handle(Chunk)} returns. Messages themselves can be kept.
+   *
+   * <p>The first chunk of a consumer may not contain all the messages of the chunk on the broker
+   * side, as the messages before the requested offset are skipped.
+   */
+  interface Chunk {
+
+    /**
+     * The number of messages.
+     *
+     * @return the number of messages
+     */
+    int size();
+
+    /**
+     * The message at the given index.
+     *
+     * @param index index of the message, from 0 to {@link #size()} - 1
+     * @return the message
+     */
+    Message message(int index);
+
+    /**
+     * The offset of the message at the given index.
+     *
+     * @param index index of the message, from 0 to {@link #size()} - 1
+     * @return the offset
+     */
+    long offset(int index);
+
+    /**
+     * The offset of the first message.
+     *
+     * @return the offset of the first message
+     */
+    long firstOffset();
+
+    /**
+     * The offset of the last message.
+     *
+     * @return the offset of the last message
+     */
+    long lastOffset();
+
+    /**
+     * The timestamp of the chunk, set by the broker when it wrote the chunk.
+     *
+     * @return the chunk timestamp in milliseconds since the epoch
+     */
+    long timestamp();
+
+    /**
+     * Commit the offset of the last message.
+     *
+     * @see Consumer#commit(long)
+     */
+    void commit();
+
+    /**
+     * The consumer that receives the chunk.
+     *
+     * @return the consumer
+     */
+    Consumer consumer();
+  }
+}
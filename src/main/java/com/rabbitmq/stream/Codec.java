@@ -14,14 +14,52 @@
 
 package com.rabbitmq.stream;
 
+import io.netty.buffer.ByteBuf;
+
 public interface Codec {
 
+  /**
+   * Encode a message.
+   *
+   * <p>Implementations can keep a reference to the body array of the message and copy it only
+   * when the message is written to the outbound frame (see {@link EncodedMessage#write(ByteBuf)}),
+   * to save a copy. The body array then belongs to the encoded message, the application must not
+   * modify it once the message is sent.
+   *
+   * @param message the message to encode
+   * @return the encoded message
+   */
   EncodedMessage encode(Message message);
 
   Message decode(byte[] data);
 
+  /**
+   * Decode a message from the readable bytes of a buffer.
+   *
+   * <p>The buffer is usually a slice of the inbound chunk and is released once all the messages
+   * of the chunk have been handled, so the returned message must not keep a reference to it.
+   *
+   * <p>The default implementation copies the bytes and calls {@link #decode(byte[])}.
+   * Implementations that can decode directly from the buffer should override it to avoid the
+   * intermediate copy.
+   *
+   * @param data the buffer to decode the message from
+   * @return the decoded message
+   */
+  default Message decode(ByteBuf data) {
+    byte[] bytes = new byte[data.readableBytes()];
+    data.readBytes(bytes);
+    return decode(bytes);
+  }
+
   MessageBuilder messageBuilder();
 
+  /**
+   * An encoded message.
+   *
+   * <p>The size must be known when the message is encoded, it is used to assemble outbound frames.
+   * The bytes are written to the frame with {@link #write(ByteBuf)}.
+   */
   class EncodedMessage {
 
     private final int size;
@@ -32,6 +70,11 @@ public interface Codec {
       this.data = data;
     }
 
+    /**
+     * The encoded bytes, the array can be larger than the size of the message.
+     *
+     * @return the encoded bytes
+     */
     public byte[] getData() {
       return data;
     }
@@ -39,5 +82,18 @@ public interface Codec {
     public int getSize() {
       return size;
     }
+
+    /**
+     * Write the encoded message to an outbound frame buffer.
+     *
+     * <p>The default implementation copies the encoded bytes. Subclasses can override it to write
+     * parts of the message (e.g. the payload) directly from where they are, to avoid an
+     * intermediate copy.
+     *
+     * @param buffer the buffer to write the message to
+     */
+    public void write(ByteBuf buffer) {
+      buffer.writeBytes(this.data, 0, this.size);
+    }
   }
 }
@@ -24,8 +24,45 @@ public interface ConsumerBuilder {
 
   ConsumerBuilder messageHandler(MessageHandler messageHandler);
 
+  /**
+   * The callback for all the messages of a chunk at once.
+   *
+   * <p>This replaces the {@link MessageHandler}, only one of them can be set. Automatic offset
+   * tracking takes into account all the messages of a chunk once the handler returns.
+   *
+   * @param chunkHandler the chunk handler
+   * @return this builder instance
+   */
+  ConsumerBuilder chunkHandler(ChunkHandler chunkHandler);
+
   ConsumerBuilder name(String name);
 
+  /**
+   * The {@link CreditStrategy} to ask the broker for more chunks.
+   *
+   * <p>The default is {@link CreditStrategy#DEFAULT}, 10 initial credits and a new credit each
+   * time a chunk arrives.
+   *
+   * @param creditStrategy the credit strategy
+   * @return this builder instance
+   * @see CreditStrategy#perChunk(int)
+   * @see CreditStrategy#batch(int, int)
+   * @see CreditStrategy#afterProcessing(int)
+   * @see CreditStrategy#adaptive(int, int, java.time.Duration)
+   */
+  ConsumerBuilder creditStrategy(CreditStrategy creditStrategy);
+
+  /**
+   * The callback when the library closes the consumer on its own.
+   *
+   * <p>The consumer does not receive messages anymore once the callback is called.
+   *
+   * @param closedHandler the callback
+   * @return this builder instance
+   * @see ConsumerClosedHandler
+   */
+  ConsumerBuilder closedHandler(ConsumerClosedHandler closedHandler);
+
   ManualCommitStrategy manualCommitStrategy();
 
   AutoCommitStrategy autoCommitStrategy();
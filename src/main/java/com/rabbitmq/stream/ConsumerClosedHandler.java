@@ -0,0 +1,33 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+package com.rabbitmq.stream;
+
+/**
+ * Callback when the library closes a consumer on its own.
+ *
+ * <p>This happens when the environment is closed, when the stream of the consumer is deleted, or
+ * when the consumer cannot be recovered after a connection failure or a topology change. The
+ * callback is not called when the application closes the consumer with {@link Consumer#close()}.
+ *
+ * @see ConsumerBuilder#closedHandler(ConsumerClosedHandler)
+ */
+public interface ConsumerClosedHandler {
+
+  /**
+   * Callback for the closing of the consumer.
+   *
+   * @param cause the reason of the closing, <code>null</code> if the environment has been closed
+   */
+  void closed(Throwable cause);
+}
@@ -0,0 +1,272 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream;
+
+import java.time.Duration;
+
+/**
+ * Contract to decide when a consumer asks the broker for more chunks.
+ *
+ * <p>The broker sends a chunk of messages only if the consumer has a credit for it. A consumer
+ * gets initial credits when it subscribes and then grants new credits as it receives and processes
+ * chunks. More credits keep the network busy, fewer credits bound the number of chunks waiting in
+ * memory.
+ */
+public interface CreditStrategy {
+
+  /**
+   * The default strategy: 10 initial credits and a new credit as soon as a chunk arrives.
+   *
+   * @see #perChunk(int)
+   */
+  CreditStrategy DEFAULT = perChunk(10);
+
+  /**
+   * A new credit as soon as a chunk arrives, before its messages are processed.
+   *
+   * <p>The broker can always send up to <code>initialCredits</code> chunks ahead.
+   *
+   * @param initialCredits the credits granted on subscription
+   * @return the strategy
+   */
+  static CreditStrategy perChunk(int initialCredits) {
+    return new BatchCreditStrategy(initialCredits, 1);
+  }
+
+  /**
+   * Credits granted in batches, once every <code>chunksBeforeRefill</code> chunks arrive.
+   *
+   * <p>This sends fewer credit frames than {@link #perChunk(int)}.
+   *
+   * @param initialCredits the credits granted on subscription
+   * @param chunksBeforeRefill the number of chunks to receive before granting as many credits
+   * @return the strategy
+   */
+  static CreditStrategy batch(int initialCredits, int chunksBeforeRefill) {
+    return new BatchCreditStrategy(initialCredits, chunksBeforeRefill);
+  }
+
+  /**
+   * A new credit only once all the messages of a chunk have been processed.
+   *
+   * <p>There are at most <code>initialCredits</code> chunks in flight or waiting to be processed,
+   * which bounds memory if the {@link MessageHandler} is slow.
+   *
+   * @param initialCredits the credits granted on subscription
+   * @return the strategy
+   */
+  static CreditStrategy afterProcessing(int initialCredits) {
+    return new AfterProcessingCreditStrategy(initialCredits);
+  }
+
+  /**
+   * Credits granted after processing, in a number that depends on the processing time of chunks.
+   *
+   * <p>The number of chunks in flight starts at <code>minCredits</code>. It grows by 1 each time
+   * a chunk takes less than <code>maxProcessingTime</code> to process, up to <code>maxCredits
+   * </code>. It shrinks by 1 each time a chunk takes longer, down to <code>minCredits</code>.
+   *
+   * @param minCredits the minimum number of chunks in flight, also the initial credits
+   * @param maxCredits the maximum number of chunks in flight
+   * @param maxProcessingTime the processing time of a chunk above which fewer credits are granted
+   * @return the strategy
+   */
+  static CreditStrategy adaptive(int minCredits, int maxCredits, Duration maxProcessingTime) {
+    return new AdaptiveCreditStrategy(minCredits, maxCredits, maxProcessingTime);
+  }
+
+  /**
+   * The credits to grant when subscribing.
+   *
+   * @return the number of chunks the broker can send right after subscription
+   */
+  int initialCredits();
+
+  /**
+   * Create the controller of a subscription.
+   *
+   * <p>This is called on each subscription, including re-subscriptions after a connection failure
+   * or a topology change, so the state of a controller always starts from the initial credits.
+   *
+   * @param credits to grant credits to the broker
+   * @return the controller of the subscription
+   */
+  Controller controller(Credits credits);
+
+  /** Grants credits to the broker for a given subscription. */
+  interface Credits {
+
+    /**
+     * Let the broker send <code>credits</code> more chunks.
+     *
+     * @param credits the number of credits
+     */
+    void credit(int credits);
+  }
+
+  /**
+   * Reacts to the chunks of a subscription.
+   *
+   * <p>The callbacks of a subscription are called on the same thread, one at a time.
+   */
+  interface Controller {
+
+    /**
+     * A chunk has arrived, its messages are about to be dispatched.
+     *
+     * @param messageCount the number of messages in the chunk
+     */
+    default void chunkReceived(long messageCount) {}
+
+    /**
+     * All the messages of a chunk have been dispatched to the {@link MessageHandler}.
+     *
+     * @param messageCount the number of messages in the chunk
+     * @param processingTimeInNanos the time it took to process the chunk
+     */
+    default void chunkProcessed(long messageCount, long processingTimeInNanos) {}
+  }
+
+  class BatchCreditStrategy implements CreditStrategy {
+
+    private final int initialCredits;
+    private final int chunksBeforeRefill;
+
+    private BatchCreditStrategy(int initialCredits, int chunksBeforeRefill) {
+      checkCredits("initial credits", initialCredits);
+      if (chunksBeforeRefill <= 0 || chunksBeforeRefill > initialCredits) {
+        throw new IllegalArgumentException(
+            "The number of chunks before refill must be between 1 and the initial credits");
+      }
+      this.initialCredits = initialCredits;
+      this.chunksBeforeRefill = chunksBeforeRefill;
+    }
+
+    private static void checkCredits(String label, int credits) {
+      if (credits <= 0 || credits > Short.MAX_VALUE) {
+        throw new IllegalArgumentException(
+            "The " + label + " must be between 1 and " + Short.MAX_VALUE);
+      }
+    }
+
+    @Override
+    public int initialCredits() {
+      return this.initialCredits;
+    }
+
+    @Override
+    public Controller controller(Credits credits) {
+      if (this.chunksBeforeRefill == 1) {
+        return new Controller() {
+          @Override
+          public void chunkReceived(long messageCount) {
+            credits.credit(1);
+          }
+        };
+      } else {
+        return new Controller() {
+
+          private int receivedChunks = 0;
+
+          @Override
+          public void chunkReceived(long messageCount) {
+            if (++this.receivedChunks == chunksBeforeRefill) {
+              this.receivedChunks = 0;
+              credits.credit(chunksBeforeRefill);
+            }
+          }
+        };
+      }
+    }
+  }
+
+  class AfterProcessingCreditStrategy implements CreditStrategy {
+
+    private final int initialCredits;
+
+    private AfterProcessingCreditStrategy(int initialCredits) {
+      BatchCreditStrategy.checkCredits("initial credits", initialCredits);
+      this.initialCredits = initialCredits;
+    }
+
+    @Override
+    public int initialCredits() {
+      return this.initialCredits;
+    }
+
+    @Override
+    public Controller controller(Credits credits) {
+      return new Controller() {
+        @Override
+        public void chunkProcessed(long messageCount, long processingTimeInNanos) {
+          credits.credit(1);
+        }
+      };
+    }
+  }
+
+  class AdaptiveCreditStrategy implements CreditStrategy {
+
+    private final int minCredits;
+    private final int maxCredits;
+    private final long maxProcessingTimeInNanos;
+
+    private AdaptiveCreditStrategy(int minCredits, int maxCredits, Duration maxProcessingTime) {
+      BatchCreditStrategy.checkCredits("minimum credits", minCredits);
+      BatchCreditStrategy.checkCredits("maximum credits", maxCredits);
+      if (maxCredits < minCredits) {
+        throw new IllegalArgumentException("The maximum credits must be >= the minimum credits");
+      }
+      if (maxProcessingTime == null || maxProcessingTime.isNegative()) {
+        throw new IllegalArgumentException("The maximum processing time must be positive");
+      }
+      this.minCredits = minCredits;
+      this.maxCredits = maxCredits;
+      this.maxProcessingTimeInNanos = maxProcessingTime.toNanos();
+    }
+
+    @Override
+    public int initialCredits() {
+      return this.minCredits;
+    }
+
+    @Override
+    public Controller controller(Credits credits) {
+      return new Controller() {
+
+        private int chunksInFlight = minCredits;
+
+        @Override
+        public void chunkProcessed(long messageCount, long processingTimeInNanos) {
+          if (processingTimeInNanos <= maxProcessingTimeInNanos) {
+            if (this.chunksInFlight < maxCredits) {
+              this.chunksInFlight++;
+              credits.credit(2);
+            } else {
+              credits.credit(1);
+            }
+          } else {
+            if (this.chunksInFlight > minCredits) {
+              // not replacing the processed chunk
+              this.chunksInFlight--;
+            } else {
+              credits.credit(1);
+            }
+          }
+        }
+      };
+    }
+  }
+}
@@ -14,6 +14,7 @@
 
 package com.rabbitmq.stream;
 
+import com.rabbitmq.stream.compression.CompressionCodecFactory;
 import com.rabbitmq.stream.metrics.MetricsCollector;
 import com.rabbitmq.stream.sasl.CredentialsProvider;
 import com.rabbitmq.stream.sasl.SaslConfiguration;
@@ -55,12 +56,100 @@ public interface EnvironmentBuilder {
 
   EnvironmentBuilder chunkChecksum(ChunkChecksum chunkChecksum);
 
+  /**
+   * Set the factory of codecs to compress and decompress sub-entries.
+   *
+   * <p>The default factory supports gzip with the JDK and Snappy, LZ4, and zstd if the
+   * corresponding libraries are on the classpath.
+   *
+   * @param compressionCodecFactory the factory to use
+   * @return this builder instance
+   * @see ProducerBuilder#compression(com.rabbitmq.stream.compression.Compression)
+   */
+  EnvironmentBuilder compressionCodecFactory(CompressionCodecFactory compressionCodecFactory);
+
   EnvironmentBuilder clientProperties(Map<String, String> clientProperties);
 
   EnvironmentBuilder clientProperty(String key, String value);
 
   EnvironmentBuilder metricsCollector(MetricsCollector metricsCollector);
 
+  /**
+   * Set the number of threads each connection uses to dispatch messages to consumers.
+   *
+   * <p>Deliveries, publish confirms, and other responses from the broker are dispatched on
+   * separate threads, so a slow {@link MessageHandler} does not delay confirms. Consumers sharing
+   * a connection are spread across the delivery threads. Messages of a given consumer are always
+   * dispatched in order, but not in order with the other frames of the connection. Default is 1.
+   *
+   * @param deliveryDispatchLanes number of delivery dispatch threads per connection
+   * @return this builder instance
+   */
+  EnvironmentBuilder deliveryDispatchLanes(int deliveryDispatchLanes);
+
+  /**
+   * Handle publish confirms directly on the IO thread instead of a dedicated thread.
+   *
+   * <p>This lowers confirm latency but {@link ConfirmationHandler}s must then never block.
+   * Default is false.
+   *
+   * @param confirmsOnEventLoop true to handle confirms on the IO thread
+   * @return this builder instance
+   */
+  EnvironmentBuilder confirmsOnEventLoop(boolean confirmsOnEventLoop);
+
+  /**
+   * Set the maximum number of producers a connection can hold.
+   *
+   * <p>Producers of the same broker share connections, a new connection is opened when the
+   * existing ones are full. A lower value spreads publishing across more connections, and so more
+   * IO threads, at the cost of more connections. Default is 256, which is also the maximum.
+   *
+   * @param maxProducersByConnection the maximum number of producers by connection, from 1 to 256
+   * @return this builder instance
+   */
+  EnvironmentBuilder maxProducersByConnection(int maxProducersByConnection);
+
+  /**
+   * Set the maximum number of consumers a connection can hold.
+   *
+   * <p>Consumers of the same broker share connections, a new connection is opened when the
+   * existing ones are full. A lower value spreads consumption across more connections, and so
+   * more IO threads, at the cost of more connections. Default is 256, which is also the maximum.
+   *
+   * @param maxConsumersByConnection the maximum number of consumers by connection, from 1 to 256
+   * @return this builder instance
+   */
+  EnvironmentBuilder maxConsumersByConnection(int maxConsumersByConnection);
+
+  /**
+   * Set the low and high water marks of the outbound buffer of connections.
+   *
+   * <p>Producers stop sending accumulated messages when the outbound buffer of their connection
+   * goes over the high water mark and resume when it goes back under the low water mark. This
+   * bounds the memory used when the network or the broker is slower than the application. Default
+   * is Netty's (32 KB and 64 KB).
+   *
+   * @param low the low water mark in bytes
+   * @param high the high water mark in bytes, must be greater than or equal to the low one
+   * @return this builder instance
+   */
+  EnvironmentBuilder writeBufferWaterMark(int low, int high);
+
+  /**
+   * Set the limits of the queue of chunks waiting to be dispatched to consumers, by connection.
+   *
+   * <p>A connection stops reading from the socket when a limit is reached and resumes when the
+   * queue goes back under half of both limits. This bounds the memory used by slow consumers,
+   * whatever their credits. {@link MessageHandler}s should then not block on requests to the
+   * broker. Default is 256 chunks and 64 MB.
+   *
+   * @param maxChunks the maximum number of queued chunks
+   * @param maxBytes the maximum size of queued chunks in bytes
+   * @return this builder instance
+   */
+  EnvironmentBuilder deliveryQueueLimits(int maxChunks, long maxBytes);
+
   /**
    * Set the {@link ScheduledExecutorService} used to:
    *
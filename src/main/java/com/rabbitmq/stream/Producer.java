@@ -14,9 +14,52 @@
 
 package com.rabbitmq.stream;
 
+import java.util.concurrent.CompletionStage;
+
 public interface Producer extends AutoCloseable {
 
   MessageBuilder messageBuilder();
 
+  /**
+   * Send a message.
+   *
+   * <p>The call blocks if the producer has reached its limit of unconfirmed messages, until
+   * enough messages are confirmed, or fails the message after 10 seconds.
+   *
+   * <p>The body array of the message is copied to the outbound frame only when the message goes
+   * out, possibly after this method returns. The application must not modify the array once the
+   * message is sent, it must use a new array for each message.
+   *
+   * @param message the message
+   * @param confirmationHandler the handler called when the message is confirmed or failed
+   */
   void send(Message message, ConfirmationHandler confirmationHandler);
+
+  /**
+   * Send a message if the producer has capacity for it, without blocking.
+   *
+   * <p>The message is rejected if the producer has reached its limit of unconfirmed messages or
+   * bytes. The confirmation handler is then not called, the application can use {@link
+   * #capacityAvailable()} to know when to try again.
+   *
+   * <p>As with {@link #send(Message, ConfirmationHandler)}, the body array of an accepted message
+   * must not be modified.
+   *
+   * @param message the message
+   * @param confirmationHandler the handler called when the message is confirmed or failed
+   * @return true if the message was accepted, false if it was rejected
+   * @see ProducerBuilder#maxUnconfirmedMessages(int)
+   * @see ProducerBuilder#maxUnconfirmedBytes(long)
+   */
+  boolean trySend(Message message, ConfirmationHandler confirmationHandler);
+
+  /**
+   * A stage that completes when the producer has capacity for new messages.
+   *
+   * <p>The returned stage is already completed if there is capacity. It usually completes on the
+   * thread that handles publish confirms, dependent actions must not block.
+   *
+   * @return a stage completing when capacity is available
+   */
+  CompletionStage<Void> capacityAvailable();
 }
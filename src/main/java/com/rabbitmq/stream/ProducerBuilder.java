@@ -14,6 +14,8 @@
 
 package com.rabbitmq.stream;
 
+import com.rabbitmq.stream.compression.Compression;
+import com.rabbitmq.stream.impl.MessageBatch;
 import java.time.Duration;
 
 public interface ProducerBuilder {
@@ -22,11 +24,62 @@ public interface ProducerBuilder {
 
   ProducerBuilder subEntrySize(int subEntrySize);
 
+  /**
+   * Compression algorithm to use to compress sub-entries.
+   *
+   * <p>Requires sub-entry batching, see {@link #subEntrySize(int)}. Consumers decompress
+   * sub-entries transparently. Default is no compression.
+   *
+   * @param compression the compression algorithm
+   * @return this builder instance
+   * @see EnvironmentBuilder#compressionCodecFactory(
+   *     com.rabbitmq.stream.compression.CompressionCodecFactory)
+   */
+  ProducerBuilder compression(Compression compression);
+
+  /**
+   * Compression algorithm to use to compress sub-entries.
+   *
+   * @param compression the compression algorithm
+   * @return this builder instance
+   * @deprecated use {@link #compression(Compression)} instead
+   */
+  @Deprecated
+  default ProducerBuilder compression(MessageBatch.Compression compression) {
+    return compression(compression == null ? null : compression.toCompression());
+  }
+
   ProducerBuilder batchSize(int batchSize);
 
   ProducerBuilder batchPublishingDelay(Duration batchPublishingDelay);
 
+  /**
+   * Adapt the delay before publishing accumulated messages to the load.
+   *
+   * <p>Messages go out right away when nothing is waiting for confirmation. Otherwise the delay is
+   * the time to fill a batch at the observed publishing rate, bounded by the confirm latency and
+   * by {@link #batchPublishingDelay(Duration)}. Default is false, messages are published with a
+   * fixed delay.
+   *
+   * @param adaptiveBatchPublishingDelay true to adapt the delay to the load
+   * @return this builder instance
+   */
+  ProducerBuilder adaptiveBatchPublishingDelay(boolean adaptiveBatchPublishingDelay);
+
   ProducerBuilder maxUnconfirmedMessages(int maxUnconfirmedMessages);
 
+  /**
+   * Maximum size of the unconfirmed messages of the producer, in bytes.
+   *
+   * <p>This bounds the memory unconfirmed messages use, in addition to their number. The size of a
+   * message is its encoded size. A message larger than the limit is accepted only when there is
+   * nothing else waiting for confirmation. Default is 0, no limit.
+   *
+   * @param maxUnconfirmedBytes the maximum size in bytes, 0 for no limit
+   * @return this builder instance
+   * @see #maxUnconfirmedMessages(int)
+   */
+  ProducerBuilder maxUnconfirmedBytes(long maxUnconfirmedBytes);
+
   Producer build();
 }
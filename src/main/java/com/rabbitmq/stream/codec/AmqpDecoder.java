@@ -0,0 +1,394 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.codec;
+
+import com.rabbitmq.stream.amqp.UnsignedByte;
+import com.rabbitmq.stream.amqp.UnsignedInteger;
+import com.rabbitmq.stream.amqp.UnsignedLong;
+import com.rabbitmq.stream.amqp.UnsignedShort;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Reads AMQP 1.0 encoded values from a byte array.
+ *
+ * <p>Values are converted to the types the other codecs expose: Java primitive wrappers, {@link
+ * String} for strings and symbols, <code>byte[]</code> for binaries, {@link Long} for timestamps,
+ * and the unsigned types of <code>com.rabbitmq.stream.amqp</code>.
+ */
+final class AmqpDecoder {
+
+  static final int DESCRIPTOR_HEADER = 0x70;
+  static final int DESCRIPTOR_DELIVERY_ANNOTATIONS = 0x71;
+  static final int DESCRIPTOR_MESSAGE_ANNOTATIONS = 0x72;
+  static final int DESCRIPTOR_PROPERTIES = 0x73;
+  static final int DESCRIPTOR_APPLICATION_PROPERTIES = 0x74;
+  static final int DESCRIPTOR_DATA = 0x75;
+  static final int DESCRIPTOR_AMQP_SEQUENCE = 0x76;
+  static final int DESCRIPTOR_AMQP_VALUE = 0x77;
+  static final int DESCRIPTOR_FOOTER = 0x78;
+
+  private final byte[] data;
+  private int position;
+
+  AmqpDecoder(byte[] data, int position) {
+    this.data = data;
+    this.position = position;
+  }
+
+  int position() {
+    return this.position;
+  }
+
+  boolean hasRemaining() {
+    return this.position < this.data.length;
+  }
+
+  /**
+   * Read the descriptor of a message section.
+   *
+   * @return the code of the section
+   */
+  long readSectionDescriptor() {
+    int constructor = readUnsignedByte();
+    if (constructor != 0x00) {
+      throw new IllegalArgumentException(
+          "Expected a described type for a message section, got 0x"
+              + Integer.toHexString(constructor));
+    }
+    constructor = readUnsignedByte();
+    switch (constructor) {
+      case 0x53:
+        return readUnsignedByte();
+      case 0x80:
+        return readLong();
+      case 0x44:
+        return 0;
+      case 0xa3:
+        return sectionCode(readString(readUnsignedByte(), StandardCharsets.US_ASCII));
+      case 0xb3:
+        return sectionCode(readString(readInt(), StandardCharsets.US_ASCII));
+      default:
+        throw new IllegalArgumentException(
+            "Unexpected section descriptor type 0x" + Integer.toHexString(constructor));
+    }
+  }
+
+  private static long sectionCode(String name) {
+    switch (name) {
+      case "amqp:header:list":
+        return DESCRIPTOR_HEADER;
+      case "amqp:delivery-annotations:map":
+        return DESCRIPTOR_DELIVERY_ANNOTATIONS;
+      case "amqp:message-annotations:map":
+        return DESCRIPTOR_MESSAGE_ANNOTATIONS;
+      case "amqp:properties:list":
+        return DESCRIPTOR_PROPERTIES;
+      case "amqp:application-properties:map":
+        return DESCRIPTOR_APPLICATION_PROPERTIES;
+      case "amqp:data:binary":
+        return DESCRIPTOR_DATA;
+      case "amqp:amqp-sequence:list":
+        return DESCRIPTOR_AMQP_SEQUENCE;
+      case "amqp:amqp-value:*":
+        return DESCRIPTOR_AMQP_VALUE;
+      case "amqp:footer:map":
+        return DESCRIPTOR_FOOTER;
+      default:
+        throw new IllegalArgumentException("Unknown message section " + name);
+    }
+  }
+
+  /** Move past the next value, without decoding it. */
+  void skipValue() {
+    int constructor = readUnsignedByte();
+    if (constructor == 0x00) {
+      skipValue();
+      skipValue();
+    } else {
+      skip(constructor);
+    }
+  }
+
+  private void skip(int constructor) {
+    // the size of a value depends only on the subcategory of its constructor
+    switch (constructor >>> 4) {
+      case 0x4:
+        break;
+      case 0x5:
+        this.position += 1;
+        break;
+      case 0x6:
+        this.position += 2;
+        break;
+      case 0x7:
+        this.position += 4;
+        break;
+      case 0x8:
+        this.position += 8;
+        break;
+      case 0x9:
+        this.position += 16;
+        break;
+      case 0xa:
+      case 0xc:
+      case 0xe:
+        this.position += 1 + readUnsignedByte(this.position);
+        break;
+      case 0xb:
+      case 0xd:
+      case 0xf:
+        this.position += 4 + readInt(this.position);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown type 0x" + Integer.toHexString(constructor));
+    }
+  }
+
+  Object readValue() {
+    return readValue(readUnsignedByte());
+  }
+
+  /**
+   * Read a binary value.
+   *
+   * @return the offset of the bytes in the array and their length, or null for a null value
+   */
+  int[] readBinaryBounds() {
+    int constructor = readUnsignedByte();
+    int length;
+    if (constructor == 0xa0) {
+      length = readUnsignedByte();
+    } else if (constructor == 0xb0) {
+      length = readInt();
+    } else if (constructor == 0x40) {
+      return null;
+    } else {
+      throw new IllegalArgumentException(
+          "Expected a binary, got 0x" + Integer.toHexString(constructor));
+    }
+    int[] bounds = new int[] {this.position, length};
+    this.position += length;
+    return bounds;
+  }
+
+  /**
+   * Read a map with string or symbol keys.
+   *
+   * @return the map, or null for a null value
+   */
+  Map<String, Object> readMap() {
+    int constructor = readUnsignedByte();
+    int count;
+    if (constructor == 0xc1) {
+      this.position += 1;
+      count = readUnsignedByte();
+    } else if (constructor == 0xd1) {
+      this.position += 4;
+      count = readInt();
+    } else if (constructor == 0x40) {
+      return null;
+    } else {
+      throw new IllegalArgumentException(
+          "Expected a map, got 0x" + Integer.toHexString(constructor));
+    }
+    Map<String, Object> map = new LinkedHashMap<>(count);
+    for (int i = 0; i < count / 2; i++) {
+      Object key = readValue();
+      map.put(key == null ? null : key.toString(), readValue());
+    }
+    return map;
+  }
+
+  /**
+   * Read the header of a list.
+   *
+   * @return the number of elements of the list
+   */
+  int readListHeader() {
+    int constructor = readUnsignedByte();
+    switch (constructor) {
+      case 0x45:
+      case 0x40:
+        return 0;
+      case 0xc0:
+        this.position += 1;
+        return readUnsignedByte();
+      case 0xd0:
+        this.position += 4;
+        return readInt();
+      default:
+        throw new IllegalArgumentException(
+            "Expected a list, got 0x" + Integer.toHexString(constructor));
+    }
+  }
+
+  private Object readValue(int constructor) {
+    switch (constructor) {
+      case 0x00:
+        // the descriptor is dropped, only the value matters here
+        skipValue();
+        return readValue();
+      case 0x40:
+        return null;
+      case 0x41:
+        return Boolean.TRUE;
+      case 0x42:
+        return Boolean.FALSE;
+      case 0x56:
+        return readUnsignedByte() != 0;
+      case 0x50:
+        return UnsignedByte.valueOf(this.data[this.position++]);
+      case 0x51:
+        return this.data[this.position++];
+      case 0x60:
+        return UnsignedShort.valueOf(readShort());
+      case 0x61:
+        return readShort();
+      case 0x70:
+        return UnsignedInteger.valueOf(readInt());
+      case 0x52:
+        return UnsignedInteger.valueOf(readUnsignedByte());
+      case 0x43:
+        return UnsignedInteger.valueOf(0);
+      case 0x80:
+        return UnsignedLong.valueOf(readLong());
+      case 0x53:
+        return UnsignedLong.valueOf(readUnsignedByte());
+      case 0x44:
+        return UnsignedLong.valueOf(0);
+      case 0x71:
+        return readInt();
+      case 0x54:
+        return (int) this.data[this.position++];
+      case 0x81:
+        return readLong();
+      case 0x55:
+        return (long) this.data[this.position++];
+      case 0x72:
+        return Float.intBitsToFloat(readInt());
+      case 0x82:
+        return Double.longBitsToDouble(readLong());
+      case 0x73:
+        return (char) readInt();
+      case 0x83:
+        return readLong();
+      case 0x98:
+        return new UUID(readLong(), readLong());
+      case 0xa0:
+        return readBytes(readUnsignedByte());
+      case 0xb0:
+        return readBytes(readInt());
+      case 0xa1:
+        return readString(readUnsignedByte(), StandardCharsets.UTF_8);
+      case 0xb1:
+        return readString(readInt(), StandardCharsets.UTF_8);
+      case 0xa3:
+        return readString(readUnsignedByte(), StandardCharsets.US_ASCII);
+      case 0xb3:
+        return readString(readInt(), StandardCharsets.US_ASCII);
+      case 0x45:
+        return Collections.emptyList();
+      case 0xc0:
+        this.position += 1;
+        return readList(readUnsignedByte());
+      case 0xd0:
+        this.position += 4;
+        return readList(readInt());
+      case 0xc1:
+      case 0xd1:
+        this.position--;
+        return readMap();
+      case 0xe0:
+        this.position += 1;
+        return readArray(readUnsignedByte());
+      case 0xf0:
+        this.position += 4;
+        return readArray(readInt());
+      default:
+        throw new IllegalArgumentException(
+            "Type not supported: 0x" + Integer.toHexString(constructor));
+    }
+  }
+
+  private List<Object> readList(int count) {
+    List<Object> list = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      list.add(readValue());
+    }
+    return list;
+  }
+
+  private Object[] readArray(int count) {
+    int constructor = readUnsignedByte();
+    Object[] array = new Object[count];
+    for (int i = 0; i < count; i++) {
+      array[i] = readValue(constructor);
+    }
+    return array;
+  }
+
+  byte[] readBytes(int length) {
+    byte[] bytes = Arrays.copyOfRange(this.data, this.position, this.position + length);
+    this.position += length;
+    return bytes;
+  }
+
+  private String readString(int length, Charset charset) {
+    String value = new String(this.data, this.position, length, charset);
+    this.position += length;
+    return value;
+  }
+
+  private int readUnsignedByte() {
+    return this.data[this.position++] & 0xFF;
+  }
+
+  private int readUnsignedByte(int index) {
+    return this.data[index] & 0xFF;
+  }
+
+  private short readShort() {
+    short value =
+        (short) ((this.data[this.position] & 0xFF) << 8 | this.data[this.position + 1] & 0xFF);
+    this.position += 2;
+    return value;
+  }
+
+  private int readInt() {
+    int value = readInt(this.position);
+    this.position += 4;
+    return value;
+  }
+
+  private int readInt(int index) {
+    return (this.data[index] & 0xFF) << 24
+        | (this.data[index + 1] & 0xFF) << 16
+        | (this.data[index + 2] & 0xFF) << 8
+        | this.data[index + 3] & 0xFF;
+  }
+
+  private long readLong() {
+    long value = (long) readInt() << 32;
+    return value | readInt() & 0xFFFFFFFFL;
+  }
+}
@@ -0,0 +1,300 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.codec;
+
+import com.rabbitmq.stream.amqp.Symbol;
+import com.rabbitmq.stream.amqp.UnsignedByte;
+import com.rabbitmq.stream.amqp.UnsignedInteger;
+import com.rabbitmq.stream.amqp.UnsignedLong;
+import com.rabbitmq.stream.amqp.UnsignedShort;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Writes AMQP 1.0 values to a buffer.
+ *
+ * <p>Each value has a <code>sizeOf</code> method to compute its encoded size without encoding it,
+ * so messages can be sized first and then written straight to the outbound frame. Values use the
+ * most compact encoding available, like Proton-J does.
+ */
+final class AmqpEncoder {
+
+  private static final int SMALL_SIZE_MAX = 255;
+
+  private AmqpEncoder() {}
+
+  static int sizeOfDescriptor() {
+    // described type constructor, smallulong constructor, descriptor code
+    return 3;
+  }
+
+  static void writeDescriptor(ByteBuf buffer, int code) {
+    buffer.writeByte(0x00).writeByte(0x53).writeByte(code);
+  }
+
+  /**
+   * The size of a map.
+   *
+   * @param contentSize the size of the encoded elements
+   * @param count the number of keys and values
+   * @return the size of the encoded map
+   */
+  static int sizeOfMap(int contentSize, int count) {
+    if (isSmallCompound(contentSize, count)) {
+      // constructor, size, count
+      return 1 + 1 + 1 + contentSize;
+    } else {
+      return 1 + 4 + 4 + contentSize;
+    }
+  }
+
+  private static boolean isSmallCompound(int contentSize, int count) {
+    // the size includes the count
+    return contentSize + 1 <= SMALL_SIZE_MAX && count <= SMALL_SIZE_MAX;
+  }
+
+  static int sizeOfList32(int contentSize) {
+    return 1 + 4 + 4 + contentSize;
+  }
+
+  static void writeList32Header(ByteBuf buffer, int contentSize, int count) {
+    buffer.writeByte(0xd0).writeInt(contentSize + 4).writeInt(count);
+  }
+
+  static void writeMapHeader(ByteBuf buffer, int contentSize, int count) {
+    if (isSmallCompound(contentSize, count)) {
+      buffer.writeByte(0xc1).writeByte(contentSize + 1).writeByte(count);
+    } else {
+      buffer.writeByte(0xd1).writeInt(contentSize + 4).writeInt(count);
+    }
+  }
+
+  /**
+   * The size of the entries of a map.
+   *
+   * @param map the map
+   * @param symbolKeys whether the keys are encoded as symbols or as strings
+   * @return the size of the entries
+   */
+  static int sizeOfMapContent(Map<String, Object> map, boolean symbolKeys) {
+    int size = 0;
+    for (Map.Entry<String, Object> entry : map.entrySet()) {
+      size += symbolKeys ? sizeOfSymbol(entry.getKey()) : sizeOfString(entry.getKey());
+      size += sizeOf(entry.getValue());
+    }
+    return size;
+  }
+
+  static void writeMap(
+      ByteBuf buffer, Map<String, Object> map, int contentSize, boolean symbolKeys) {
+    writeMapHeader(buffer, contentSize, map.size() * 2);
+    for (Map.Entry<String, Object> entry : map.entrySet()) {
+      if (symbolKeys) {
+        writeSymbol(buffer, entry.getKey());
+      } else {
+        writeString(buffer, entry.getKey());
+      }
+      write(buffer, entry.getValue());
+    }
+  }
+
+  static int sizeOfString(String value) {
+    return sizeOfVariable(ByteBufUtil.utf8Bytes(value));
+  }
+
+  static void writeString(ByteBuf buffer, String value) {
+    int length = ByteBufUtil.utf8Bytes(value);
+    if (length <= SMALL_SIZE_MAX) {
+      buffer.writeByte(0xa1).writeByte(length);
+    } else {
+      buffer.writeByte(0xb1).writeInt(length);
+    }
+    ByteBufUtil.reserveAndWriteUtf8(buffer, value, length);
+  }
+
+  static int sizeOfSymbol(String value) {
+    return sizeOfVariable(value.length());
+  }
+
+  static void writeSymbol(ByteBuf buffer, String value) {
+    if (value.length() <= SMALL_SIZE_MAX) {
+      buffer.writeByte(0xa3).writeByte(value.length());
+    } else {
+      buffer.writeByte(0xb3).writeInt(value.length());
+    }
+    ByteBufUtil.writeAscii(buffer, value);
+  }
+
+  static int sizeOfBinary(byte[] value) {
+    return sizeOfVariable(value.length);
+  }
+
+  static void writeBinary(ByteBuf buffer, byte[] value) {
+    if (value.length <= SMALL_SIZE_MAX) {
+      buffer.writeByte(0xa0).writeByte(value.length);
+    } else {
+      buffer.writeByte(0xb0).writeInt(value.length);
+    }
+    buffer.writeBytes(value);
+  }
+
+  static int sizeOfUnsignedLong(long value) {
+    if (value == 0) {
+      return 1;
+    } else if (value > 0 && value <= SMALL_SIZE_MAX) {
+      return 2;
+    } else {
+      return 9;
+    }
+  }
+
+  static void writeUnsignedLong(ByteBuf buffer, long value) {
+    if (value == 0) {
+      buffer.writeByte(0x44);
+    } else if (value > 0 && value <= SMALL_SIZE_MAX) {
+      buffer.writeByte(0x53).writeByte((int) value);
+    } else {
+      buffer.writeByte(0x80).writeLong(value);
+    }
+  }
+
+  static int sizeOfUnsignedInteger(int value) {
+    if (value == 0) {
+      return 1;
+    } else if (value > 0 && value <= SMALL_SIZE_MAX) {
+      return 2;
+    } else {
+      return 5;
+    }
+  }
+
+  static void writeUnsignedInteger(ByteBuf buffer, int value) {
+    if (value == 0) {
+      buffer.writeByte(0x43);
+    } else if (value > 0 && value <= SMALL_SIZE_MAX) {
+      buffer.writeByte(0x52).writeByte(value);
+    } else {
+      buffer.writeByte(0x70).writeInt(value);
+    }
+  }
+
+  static void writeTimestamp(ByteBuf buffer, long value) {
+    buffer.writeByte(0x83).writeLong(value);
+  }
+
+  static void writeUuid(ByteBuf buffer, UUID value) {
+    buffer
+        .writeByte(0x98)
+        .writeLong(value.getMostSignificantBits())
+        .writeLong(value.getLeastSignificantBits());
+  }
+
+  private static int sizeOfVariable(int length) {
+    return length <= SMALL_SIZE_MAX ? 1 + 1 + length : 1 + 4 + length;
+  }
+
+  private static boolean isSmall(long value) {
+    return value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE;
+  }
+
+  static int sizeOf(Object value) {
+    if (value == null || value instanceof Boolean) {
+      return 1;
+    } else if (value instanceof String) {
+      return sizeOfString((String) value);
+    } else if (value instanceof Integer) {
+      return isSmall((Integer) value) ? 2 : 5;
+    } else if (value instanceof Long) {
+      return isSmall((Long) value) ? 2 : 9;
+    } else if (value instanceof byte[]) {
+      return sizeOfBinary((byte[]) value);
+    } else if (value instanceof Byte || value instanceof UnsignedByte) {
+      return 2;
+    } else if (value instanceof Short || value instanceof UnsignedShort) {
+      return 3;
+    } else if (value instanceof Float || value instanceof Character) {
+      return 5;
+    } else if (value instanceof Double || value instanceof Date) {
+      return 9;
+    } else if (value instanceof UUID) {
+      return 17;
+    } else if (value instanceof UnsignedInteger) {
+      return sizeOfUnsignedInteger(((UnsignedInteger) value).intValue());
+    } else if (value instanceof UnsignedLong) {
+      return sizeOfUnsignedLong(((UnsignedLong) value).longValue());
+    } else if (value instanceof Symbol) {
+      return sizeOfSymbol(value.toString());
+    } else {
+      throw new IllegalArgumentException(
+          "Type not supported for an AMQP value: " + value.getClass());
+    }
+  }
+
+  static void write(ByteBuf buffer, Object value) {
+    if (value == null) {
+      buffer.writeByte(0x40);
+    } else if (value instanceof Boolean) {
+      buffer.writeByte((Boolean) value ? 0x41 : 0x42);
+    } else if (value instanceof String) {
+      writeString(buffer, (String) value);
+    } else if (value instanceof Integer) {
+      int intValue = (Integer) value;
+      if (isSmall(intValue)) {
+        buffer.writeByte(0x54).writeByte(intValue);
+      } else {
+        buffer.writeByte(0x71).writeInt(intValue);
+      }
+    } else if (value instanceof Long) {
+      long longValue = (Long) value;
+      if (isSmall(longValue)) {
+        buffer.writeByte(0x55).writeByte((int) longValue);
+      } else {
+        buffer.writeByte(0x81).writeLong(longValue);
+      }
+    } else if (value instanceof byte[]) {
+      writeBinary(buffer, (byte[]) value);
+    } else if (value instanceof Byte) {
+      buffer.writeByte(0x51).writeByte((Byte) value);
+    } else if (value instanceof UnsignedByte) {
+      buffer.writeByte(0x50).writeByte(((UnsignedByte) value).byteValue());
+    } else if (value instanceof Short) {
+      buffer.writeByte(0x61).writeShort((Short) value);
+    } else if (value instanceof UnsignedShort) {
+      buffer.writeByte(0x60).writeShort(((UnsignedShort) value).shortValue());
+    } else if (value instanceof Float) {
+      buffer.writeByte(0x72).writeFloat((Float) value);
+    } else if (value instanceof Character) {
+      buffer.writeByte(0x73).writeInt((Character) value);
+    } else if (value instanceof Double) {
+      buffer.writeByte(0x82).writeDouble((Double) value);
+    } else if (value instanceof Date) {
+      writeTimestamp(buffer, ((Date) value).getTime());
+    } else if (value instanceof UUID) {
+      writeUuid(buffer, (UUID) value);
+    } else if (value instanceof UnsignedInteger) {
+      writeUnsignedInteger(buffer, ((UnsignedInteger) value).intValue());
+    } else if (value instanceof UnsignedLong) {
+      writeUnsignedLong(buffer, ((UnsignedLong) value).longValue());
+    } else if (value instanceof Symbol) {
+      writeSymbol(buffer, value.toString());
+    } else {
+      throw new IllegalArgumentException(
+          "Type not supported for an AMQP value: " + value.getClass());
+    }
+  }
+}
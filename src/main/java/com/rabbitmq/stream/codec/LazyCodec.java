@@ -0,0 +1,68 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.codec;
+
+import com.rabbitmq.stream.Codec;
+import com.rabbitmq.stream.Message;
+import com.rabbitmq.stream.MessageBuilder;
+
+/**
+ * Codec that decodes messages lazily.
+ *
+ * <p>Decoding only locates the sections of the message. The properties, the application
+ * properties, the message annotations, and the body are parsed from the message bytes the first
+ * time they are accessed, so an application that reads only the body does not pay for the other
+ * sections.
+ *
+ * <p>Encoding and message creation are delegated to another codec, {@link QpidProtonCodec} by
+ * default. A decoded message is encoded as-is, from its original bytes.
+ */
+public class LazyCodec implements Codec {
+
+  private final Codec delegate;
+
+  public LazyCodec() {
+    this(new QpidProtonCodec());
+  }
+
+  /**
+   * Create a lazy codec.
+   *
+   * @param delegate the codec to encode messages and create message builders
+   */
+  public LazyCodec(Codec delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public EncodedMessage encode(Message message) {
+    if (message instanceof LazyMessage) {
+      byte[] data = ((LazyMessage) message).data;
+      return new EncodedMessage(data.length, data);
+    } else {
+      return this.delegate.encode(message);
+    }
+  }
+
+  @Override
+  public Message decode(byte[] data) {
+    return LazyMessage.decode(data);
+  }
+
+  @Override
+  public MessageBuilder messageBuilder() {
+    return this.delegate.messageBuilder();
+  }
+}
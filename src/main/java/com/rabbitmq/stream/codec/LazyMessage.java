@@ -0,0 +1,281 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.codec;
+
+import com.rabbitmq.stream.Message;
+import com.rabbitmq.stream.Properties;
+import com.rabbitmq.stream.StreamException;
+import com.rabbitmq.stream.amqp.UnsignedInteger;
+import com.rabbitmq.stream.amqp.UnsignedLong;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Message that keeps its encoded bytes and the positions of its sections.
+ *
+ * <p>The properties, the application properties, the message annotations, and the body are parsed
+ * the first time they are accessed.
+ */
+final class LazyMessage implements Message {
+
+  final byte[] data;
+  private final int propertiesPosition;
+  private final int applicationPropertiesPosition;
+  private final int messageAnnotationsPosition;
+  private final int bodyPosition;
+  private final long bodyCode;
+  private Object body;
+  private Properties properties;
+  private Map<String, Object> applicationProperties;
+  private Map<String, Object> messageAnnotations;
+
+  private LazyMessage(
+      byte[] data,
+      int propertiesPosition,
+      int applicationPropertiesPosition,
+      int messageAnnotationsPosition,
+      int bodyPosition,
+      long bodyCode) {
+    this.data = data;
+    this.propertiesPosition = propertiesPosition;
+    this.applicationPropertiesPosition = applicationPropertiesPosition;
+    this.messageAnnotationsPosition = messageAnnotationsPosition;
+    this.bodyPosition = bodyPosition;
+    this.bodyCode = bodyCode;
+  }
+
+  /**
+   * Locate the sections of an encoded message.
+   *
+   * @param data the encoded message
+   * @return the message, its sections are parsed on access
+   */
+  static LazyMessage decode(byte[] data) {
+    int propertiesPosition = -1;
+    int applicationPropertiesPosition = -1;
+    int messageAnnotationsPosition = -1;
+    int bodyPosition = -1;
+    long bodyCode = -1;
+    try {
+      AmqpDecoder decoder = new AmqpDecoder(data, 0);
+      while (decoder.hasRemaining()) {
+        long code = decoder.readSectionDescriptor();
+        int position = decoder.position();
+        if (code == AmqpDecoder.DESCRIPTOR_PROPERTIES) {
+          propertiesPosition = position;
+        } else if (code == AmqpDecoder.DESCRIPTOR_APPLICATION_PROPERTIES) {
+          applicationPropertiesPosition = position;
+        } else if (code == AmqpDecoder.DESCRIPTOR_MESSAGE_ANNOTATIONS) {
+          messageAnnotationsPosition = position;
+        } else if ((code == AmqpDecoder.DESCRIPTOR_DATA
+                || code == AmqpDecoder.DESCRIPTOR_AMQP_VALUE
+                || code == AmqpDecoder.DESCRIPTOR_AMQP_SEQUENCE)
+            && bodyPosition == -1) {
+          // only the first body section, like the other codecs
+          bodyPosition = position;
+          bodyCode = code;
+        }
+        decoder.skipValue();
+      }
+    } catch (RuntimeException e) {
+      throw new StreamException("Error while decoding AMQP 1.0 message", e);
+    }
+    return new LazyMessage(
+        data,
+        propertiesPosition,
+        applicationPropertiesPosition,
+        messageAnnotationsPosition,
+        bodyPosition,
+        bodyCode);
+  }
+
+  @Override
+  public byte[] getBodyAsBinary() {
+    if (this.bodyPosition != -1 && this.bodyCode != AmqpDecoder.DESCRIPTOR_DATA) {
+      throw new IllegalStateException("The body of the message is not binary data");
+    }
+    return (byte[]) getBody();
+  }
+
+  @Override
+  public Object getBody() {
+    if (this.body == null && this.bodyPosition != -1) {
+      AmqpDecoder decoder = new AmqpDecoder(this.data, this.bodyPosition);
+      if (this.bodyCode == AmqpDecoder.DESCRIPTOR_DATA) {
+        int[] bounds = decoder.readBinaryBounds();
+        this.body =
+            bounds == null
+                ? null
+                : Arrays.copyOfRange(this.data, bounds[0], bounds[0] + bounds[1]);
+      } else {
+        this.body = decoder.readValue();
+      }
+    }
+    return this.body;
+  }
+
+  @Override
+  public Properties getProperties() {
+    if (this.properties == null && this.propertiesPosition != -1) {
+      this.properties = new LazyProperties(new AmqpDecoder(this.data, this.propertiesPosition));
+    }
+    return this.properties;
+  }
+
+  @Override
+  public Map<String, Object> getApplicationProperties() {
+    if (this.applicationProperties == null && this.applicationPropertiesPosition != -1) {
+      this.applicationProperties =
+          new AmqpDecoder(this.data, this.applicationPropertiesPosition).readMap();
+    }
+    return this.applicationProperties;
+  }
+
+  @Override
+  public Map<String, Object> getMessageAnnotations() {
+    if (this.messageAnnotations == null && this.messageAnnotationsPosition != -1) {
+      this.messageAnnotations =
+          new AmqpDecoder(this.data, this.messageAnnotationsPosition).readMap();
+    }
+    return this.messageAnnotations;
+  }
+
+  private static final class LazyProperties implements Properties {
+
+    private static final long NULL_GROUP_SEQUENCE = -1L;
+    private static final int FIELD_COUNT = 13;
+
+    private final Object[] fields = new Object[FIELD_COUNT];
+
+    private LazyProperties(AmqpDecoder decoder) {
+      int count = decoder.readListHeader();
+      for (int i = 0; i < count; i++) {
+        if (i < FIELD_COUNT) {
+          this.fields[i] = decoder.readValue();
+        } else {
+          decoder.skipValue();
+        }
+      }
+    }
+
+    @Override
+    public Object getMessageId() {
+      return this.fields[0];
+    }
+
+    @Override
+    public String getMessageIdAsString() {
+      return this.fields[0].toString();
+    }
+
+    @Override
+    public long getMessageIdAsLong() {
+      return ((UnsignedLong) this.fields[0]).longValue();
+    }
+
+    @Override
+    public byte[] getMessageIdAsBinary() {
+      return (byte[]) this.fields[0];
+    }
+
+    @Override
+    public UUID getMessageIdAsUuid() {
+      return (UUID) this.fields[0];
+    }
+
+    @Override
+    public byte[] getUserId() {
+      return (byte[]) this.fields[1];
+    }
+
+    @Override
+    public String getTo() {
+      return (String) this.fields[2];
+    }
+
+    @Override
+    public String getSubject() {
+      return (String) this.fields[3];
+    }
+
+    @Override
+    public String getReplyTo() {
+      return (String) this.fields[4];
+    }
+
+    @Override
+    public Object getCorrelationId() {
+      return this.fields[5];
+    }
+
+    @Override
+    public String getCorrelationIdAsString() {
+      return this.fields[5].toString();
+    }
+
+    @Override
+    public long getCorrelationIdAsLong() {
+      return ((UnsignedLong) this.fields[5]).longValue();
+    }
+
+    @Override
+    public byte[] getCorrelationIdAsBinary() {
+      return (byte[]) this.fields[5];
+    }
+
+    @Override
+    public UUID getCorrelationIdAsUuid() {
+      return (UUID) this.fields[5];
+    }
+
+    @Override
+    public String getContentType() {
+      return (String) this.fields[6];
+    }
+
+    @Override
+    public String getContentEncoding() {
+      return (String) this.fields[7];
+    }
+
+    @Override
+    public long getAbsoluteExpiryTime() {
+      return this.fields[8] == null ? 0 : (Long) this.fields[8];
+    }
+
+    @Override
+    public long getCreationTime() {
+      return this.fields[9] == null ? 0 : (Long) this.fields[9];
+    }
+
+    @Override
+    public String getGroupId() {
+      return (String) this.fields[10];
+    }
+
+    @Override
+    public long getGroupSequence() {
+      return this.fields[11] == null
+          ? NULL_GROUP_SEQUENCE
+          : ((UnsignedInteger) this.fields[11]).longValue();
+    }
+
+    @Override
+    public String getReplyToGroupId() {
+      return (String) this.fields[12];
+    }
+  }
+}
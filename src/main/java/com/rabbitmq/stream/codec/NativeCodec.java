@@ -0,0 +1,310 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.codec;
+
+import com.rabbitmq.stream.Codec;
+import com.rabbitmq.stream.Message;
+import com.rabbitmq.stream.MessageBuilder;
+import com.rabbitmq.stream.Properties;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+/**
+ * AMQP 1.0 codec with no dependency on an AMQP library.
+ *
+ * <p>It covers the sections stream messages use: properties, application properties, message
+ * annotations, and a binary body. Messages are created with a {@link WrapperMessageBuilder}.
+ *
+ * <p>Encoding writes the properties and annotations sections right away, the body is written
+ * straight to the outbound frame afterwards. Decoding is lazy, sections are parsed the first time
+ * they are accessed.
+ */
+public class NativeCodec implements Codec {
+
+  private static int lastPropertiesField(Properties properties) {
+    if (properties.getReplyToGroupId() != null) {
+      return 12;
+    } else if (properties.getGroupSequence() >= 0) {
+      return 11;
+    } else if (properties.getGroupId() != null) {
+      return 10;
+    } else if (properties.getCreationTime() > 0) {
+      return 9;
+    } else if (properties.getAbsoluteExpiryTime() > 0) {
+      return 8;
+    } else if (properties.getContentEncoding() != null) {
+      return 7;
+    } else if (properties.getContentType() != null) {
+      return 6;
+    } else if (properties.getCorrelationId() != null) {
+      return 5;
+    } else if (properties.getReplyTo() != null) {
+      return 4;
+    } else if (properties.getSubject() != null) {
+      return 3;
+    } else if (properties.getTo() != null) {
+      return 2;
+    } else if (properties.getUserId() != null) {
+      return 1;
+    } else if (properties.getMessageId() != null) {
+      return 0;
+    } else {
+      return -1;
+    }
+  }
+
+  private static int sizeOfPropertiesField(Properties properties, int index) {
+    switch (index) {
+      case 0:
+        return sizeOfId(properties.getMessageId(), properties::getMessageIdAsLong);
+      case 1:
+        return AmqpEncoder.sizeOf(properties.getUserId());
+      case 2:
+        return AmqpEncoder.sizeOf(properties.getTo());
+      case 3:
+        return AmqpEncoder.sizeOf(properties.getSubject());
+      case 4:
+        return AmqpEncoder.sizeOf(properties.getReplyTo());
+      case 5:
+        return sizeOfId(properties.getCorrelationId(), properties::getCorrelationIdAsLong);
+      case 6:
+        return sizeOfSymbol(properties.getContentType());
+      case 7:
+        return sizeOfSymbol(properties.getContentEncoding());
+      case 8:
+        return properties.getAbsoluteExpiryTime() > 0 ? 9 : 1;
+      case 9:
+        return properties.getCreationTime() > 0 ? 9 : 1;
+      case 10:
+        return AmqpEncoder.sizeOf(properties.getGroupId());
+      case 11:
+        return properties.getGroupSequence() >= 0
+            ? AmqpEncoder.sizeOfUnsignedInteger((int) properties.getGroupSequence())
+            : 1;
+      case 12:
+        return AmqpEncoder.sizeOf(properties.getReplyToGroupId());
+      default:
+        throw new IllegalArgumentException("Unknown properties field " + index);
+    }
+  }
+
+  private static void writePropertiesField(ByteBuf buffer, Properties properties, int index) {
+    switch (index) {
+      case 0:
+        writeId(buffer, properties.getMessageId(), properties::getMessageIdAsLong);
+        break;
+      case 1:
+        AmqpEncoder.write(buffer, properties.getUserId());
+        break;
+      case 2:
+        AmqpEncoder.write(buffer, properties.getTo());
+        break;
+      case 3:
+        AmqpEncoder.write(buffer, properties.getSubject());
+        break;
+      case 4:
+        AmqpEncoder.write(buffer, properties.getReplyTo());
+        break;
+      case 5:
+        writeId(buffer, properties.getCorrelationId(), properties::getCorrelationIdAsLong);
+        break;
+      case 6:
+        writeSymbol(buffer, properties.getContentType());
+        break;
+      case 7:
+        writeSymbol(buffer, properties.getContentEncoding());
+        break;
+      case 8:
+        writeTimestamp(buffer, properties.getAbsoluteExpiryTime());
+        break;
+      case 9:
+        writeTimestamp(buffer, properties.getCreationTime());
+        break;
+      case 10:
+        AmqpEncoder.write(buffer, properties.getGroupId());
+        break;
+      case 11:
+        if (properties.getGroupSequence() >= 0) {
+          AmqpEncoder.writeUnsignedInteger(buffer, (int) properties.getGroupSequence());
+        } else {
+          buffer.writeByte(0x40);
+        }
+        break;
+      case 12:
+        AmqpEncoder.write(buffer, properties.getReplyToGroupId());
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown properties field " + index);
+    }
+  }
+
+  private static int sizeOfId(Object id, LongSupplier idAsLong) {
+    if (id == null || id instanceof String || id instanceof byte[] || id instanceof UUID) {
+      return AmqpEncoder.sizeOf(id);
+    } else if (id instanceof Number) {
+      // a numeric ID is a ulong in AMQP, whatever the library that created the message
+      return AmqpEncoder.sizeOfUnsignedLong(idAsLong.getAsLong());
+    } else {
+      throw new IllegalStateException("Type not supported for an ID: " + id.getClass());
+    }
+  }
+
+  private static void writeId(ByteBuf buffer, Object id, LongSupplier idAsLong) {
+    if (id instanceof Number) {
+      AmqpEncoder.writeUnsignedLong(buffer, idAsLong.getAsLong());
+    } else {
+      AmqpEncoder.write(buffer, id);
+    }
+  }
+
+  private static int sizeOfSymbol(String value) {
+    return value == null ? 1 : AmqpEncoder.sizeOfSymbol(value);
+  }
+
+  private static void writeSymbol(ByteBuf buffer, String value) {
+    if (value == null) {
+      buffer.writeByte(0x40);
+    } else {
+      AmqpEncoder.writeSymbol(buffer, value);
+    }
+  }
+
+  private static void writeTimestamp(ByteBuf buffer, long value) {
+    if (value > 0) {
+      AmqpEncoder.writeTimestamp(buffer, value);
+    } else {
+      buffer.writeByte(0x40);
+    }
+  }
+
+  private static boolean isNotEmpty(Map<String, Object> map) {
+    return map != null && !map.isEmpty();
+  }
+
+  @Override
+  public EncodedMessage encode(Message message) {
+    if (message instanceof LazyMessage) {
+      byte[] data = ((LazyMessage) message).data;
+      return new EncodedMessage(data.length, data);
+    }
+    int size = 0;
+    Properties properties = message.getProperties();
+    int propertiesFieldCount = properties == null ? 0 : lastPropertiesField(properties) + 1;
+    int propertiesContentSize = 0;
+    if (propertiesFieldCount > 0) {
+      for (int i = 0; i < propertiesFieldCount; i++) {
+        propertiesContentSize += sizeOfPropertiesField(properties, i);
+      }
+      size += AmqpEncoder.sizeOfDescriptor() + AmqpEncoder.sizeOfList32(propertiesContentSize);
+    }
+    Map<String, Object> applicationProperties = message.getApplicationProperties();
+    int applicationPropertiesContentSize = 0;
+    if (isNotEmpty(applicationProperties)) {
+      applicationPropertiesContentSize =
+          AmqpEncoder.sizeOfMapContent(applicationProperties, false);
+      size +=
+          AmqpEncoder.sizeOfDescriptor()
+              + AmqpEncoder.sizeOfMap(
+                  applicationPropertiesContentSize, applicationProperties.size() * 2);
+    }
+    Map<String, Object> messageAnnotations = message.getMessageAnnotations();
+    int messageAnnotationsContentSize = 0;
+    if (isNotEmpty(messageAnnotations)) {
+      messageAnnotationsContentSize = AmqpEncoder.sizeOfMapContent(messageAnnotations, true);
+      size +=
+          AmqpEncoder.sizeOfDescriptor()
+              + AmqpEncoder.sizeOfMap(
+                  messageAnnotationsContentSize, messageAnnotations.size() * 2);
+    }
+    // the sections are encoded now, the application can change the message after sending it
+    // without making the size of the message wrong
+    byte[] sections = new byte[size];
+    ByteBuf buffer = Unpooled.wrappedBuffer(sections).writerIndex(0);
+    // same section order as the AMQP specification
+    if (isNotEmpty(messageAnnotations)) {
+      AmqpEncoder.writeDescriptor(buffer, AmqpDecoder.DESCRIPTOR_MESSAGE_ANNOTATIONS);
+      AmqpEncoder.writeMap(buffer, messageAnnotations, messageAnnotationsContentSize, true);
+    }
+    if (propertiesFieldCount > 0) {
+      AmqpEncoder.writeDescriptor(buffer, AmqpDecoder.DESCRIPTOR_PROPERTIES);
+      // always a list32, like Proton-J
+      AmqpEncoder.writeList32Header(buffer, propertiesContentSize, propertiesFieldCount);
+      for (int i = 0; i < propertiesFieldCount; i++) {
+        writePropertiesField(buffer, properties, i);
+      }
+    }
+    if (isNotEmpty(applicationProperties)) {
+      AmqpEncoder.writeDescriptor(buffer, AmqpDecoder.DESCRIPTOR_APPLICATION_PROPERTIES);
+      AmqpEncoder.writeMap(
+          buffer, applicationProperties, applicationPropertiesContentSize, false);
+    }
+    if (buffer.writerIndex() != size) {
+      throw new IllegalStateException(
+          "Encoded " + buffer.writerIndex() + " bytes of sections, expecting " + size);
+    }
+    byte[] body = message.getBodyAsBinary();
+    if (body == null) {
+      return new EncodedMessage(size, sections);
+    } else {
+      return new NativeEncodedMessage(sections, body);
+    }
+  }
+
+  @Override
+  public Message decode(byte[] data) {
+    return LazyMessage.decode(data);
+  }
+
+  @Override
+  public MessageBuilder messageBuilder() {
+    return new WrapperMessageBuilder();
+  }
+
+  /**
+   * Encoded message that writes its body to the frame buffer directly.
+   *
+   * <p>The other sections are encoded beforehand. The size of the body section depends only on the
+   * length of the body.
+   */
+  private static final class NativeEncodedMessage extends EncodedMessage {
+
+    private final byte[] sections;
+    private final byte[] body;
+
+    private NativeEncodedMessage(byte[] sections, byte[] body) {
+      super(
+          sections.length + AmqpEncoder.sizeOfDescriptor() + AmqpEncoder.sizeOfBinary(body), null);
+      this.sections = sections;
+      this.body = body;
+    }
+
+    @Override
+    public byte[] getData() {
+      byte[] data = new byte[getSize()];
+      write(Unpooled.wrappedBuffer(data).writerIndex(0));
+      return data;
+    }
+
+    @Override
+    public void write(ByteBuf buffer) {
+      buffer.writeBytes(this.sections);
+      AmqpEncoder.writeDescriptor(buffer, AmqpDecoder.DESCRIPTOR_DATA);
+      AmqpEncoder.writeBinary(buffer, this.body);
+    }
+  }
+}
@@ -18,6 +18,8 @@ import com.rabbitmq.stream.Codec;
 import com.rabbitmq.stream.Message;
 import com.rabbitmq.stream.MessageBuilder;
 import com.rabbitmq.stream.Properties;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import java.nio.ByteBuffer;
 import java.util.Date;
 import java.util.LinkedHashMap;
@@ -105,8 +107,25 @@ public class QpidProtonCodec implements Codec {
   @Override
   public EncodedMessage encode(Message message) {
     org.apache.qpid.proton.message.Message qpidMessage;
+    // the body is not part of the Qpid message, it is written directly to the outbound frame
+    byte[] body = null;
     if (message instanceof QpidProtonAmqpMessageWrapper) {
       qpidMessage = ((QpidProtonAmqpMessageWrapper) message).message;
+      if (qpidMessage.getBody() instanceof Data && qpidMessage.getFooter() == null) {
+        Binary binary = ((Data) qpidMessage.getBody()).getValue();
+        if (binary.getArrayOffset() == 0 && binary.getLength() == binary.getArray().length) {
+          body = binary.getArray();
+          // the application can still use the message, so the sections are encoded from a copy
+          org.apache.qpid.proton.message.Message sections =
+              org.apache.qpid.proton.message.Message.Factory.create();
+          sections.setHeader(qpidMessage.getHeader());
+          sections.setDeliveryAnnotations(qpidMessage.getDeliveryAnnotations());
+          sections.setMessageAnnotations(qpidMessage.getMessageAnnotations());
+          sections.setProperties(qpidMessage.getProperties());
+          sections.setApplicationProperties(qpidMessage.getApplicationProperties());
+          qpidMessage = sections;
+        }
+      }
     } else {
       qpidMessage = org.apache.qpid.proton.message.Message.Factory.create();
       if (message.getProperties() != null) {
@@ -229,9 +248,14 @@ public class QpidProtonCodec implements Codec {
         qpidMessage.setMessageAnnotations(new MessageAnnotations(messageAnnotations));
       }
 
-      if (message.getBodyAsBinary() != null) {
-        qpidMessage.setBody(new Data(new Binary(message.getBodyAsBinary())));
-      }
+      body = message.getBodyAsBinary();
+    }
+    if (body != null) {
+      // the body is the last section, so the other sections can be encoded before it
+      // the body array is referenced, not copied, see Codec#encode
+      ByteArrayWritableBuffer sections = new ByteArrayWritableBuffer(64);
+      qpidMessage.encode(sections);
+      return new DataBodyEncodedMessage(sections.getArray(), sections.getArrayLength(), body);
     }
     int bufferSize;
     if (qpidMessage.getBody() instanceof Data) {
@@ -256,6 +280,21 @@ public class QpidProtonCodec implements Codec {
         createMessageAnnotations(message));
   }
 
+  @Override
+  public Message decode(ByteBuf data) {
+    org.apache.qpid.proton.message.Message message =
+        org.apache.qpid.proton.message.Message.Factory.create();
+    // binary and string values are copied during decoding, the message does not reference the
+    // buffer afterwards
+    message.decode(ReadableBuffer.ByteBufferReader.wrap(data.nioBuffer()));
+    data.skipBytes(data.readableBytes());
+    return new QpidProtonMessage(
+        message,
+        createProperties(message),
+        createApplicationProperties(message),
+        createMessageAnnotations(message));
+  }
+
   protected Properties createProperties(org.apache.qpid.proton.message.Message message) {
     if (message.getProperties() != null) {
       return new QpidProtonProperties(message.getProperties());
@@ -519,6 +558,57 @@ public class QpidProtonCodec implements Codec {
     }
   }
 
+  /**
+   * Encoded message with a binary body.
+   *
+   * <p>The body is copied only once, when the message is written to the outbound frame. The other
+   * sections are encoded beforehand. The size of the body section does not depend on the content
+   * of the body, so it is computed without encoding the body.
+   *
+   * <p>The encoded message keeps a reference to the body array of the message, it does not copy
+   * it. Modifying the array after the message has been sent changes what is published.
+   */
+  private static final class DataBodyEncodedMessage extends EncodedMessage {
+
+    private static final int SMALL_BINARY_MAX_SIZE = 255;
+
+    private final byte[] sections;
+    private final int sectionsLength;
+    private final byte[] body;
+
+    private DataBodyEncodedMessage(byte[] sections, int sectionsLength, byte[] body) {
+      super(sectionsLength + dataSectionSize(body.length), null);
+      this.sections = sections;
+      this.sectionsLength = sectionsLength;
+      this.body = body;
+    }
+
+    private static int dataSectionSize(int bodyLength) {
+      // described type constructor (0x00, smallulong 0x53, descriptor code 0x75)
+      // then vbin8 (constructor and 1-byte size) or vbin32 (constructor and 4-byte size)
+      return 3 + (bodyLength <= SMALL_BINARY_MAX_SIZE ? 1 + 1 : 1 + 4) + bodyLength;
+    }
+
+    @Override
+    public byte[] getData() {
+      byte[] data = new byte[getSize()];
+      write(Unpooled.wrappedBuffer(data).writerIndex(0));
+      return data;
+    }
+
+    @Override
+    public void write(ByteBuf buffer) {
+      buffer.writeBytes(this.sections, 0, this.sectionsLength);
+      buffer.writeByte(0x00).writeByte(0x53).writeByte(0x75);
+      if (this.body.length <= SMALL_BINARY_MAX_SIZE) {
+        buffer.writeByte(0xa0).writeByte(this.body.length);
+      } else {
+        buffer.writeByte(0xb0).writeInt(this.body.length);
+      }
+      buffer.writeBytes(this.body);
+    }
+  }
+
   // from
   // https://github.com/apache/activemq/blob/master/activemq-amqp/src/main/java/org/apache/activemq/transport/amqp/message/AmqpWritableBuffer.java
   private class ByteArrayWritableBuffer implements WritableBuffer {
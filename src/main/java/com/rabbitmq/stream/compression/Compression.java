@@ -0,0 +1,52 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.compression;
+
+import com.rabbitmq.stream.StreamException;
+
+/** Compression algorithms for sub-entries, with their code in the protocol. */
+public enum Compression {
+  NONE((byte) 0),
+  GZIP((byte) 1),
+  SNAPPY((byte) 2),
+  LZ4((byte) 3),
+  ZSTD((byte) 4);
+
+  private static final Compression[] COMPRESSIONS =
+      new Compression[] {NONE, GZIP, SNAPPY, LZ4, ZSTD};
+  private final byte code;
+
+  Compression(byte code) {
+    this.code = code;
+  }
+
+  /**
+   * Get the compression of a protocol code.
+   *
+   * @param code the code
+   * @return the compression
+   * @throws StreamException if the compression code is not supported
+   */
+  public static Compression get(byte code) {
+    if (code < 0 || code >= COMPRESSIONS.length) {
+      throw new StreamException("Unsupported compression code: " + code);
+    }
+    return COMPRESSIONS[code];
+  }
+
+  public byte code() {
+    return this.code;
+  }
+}
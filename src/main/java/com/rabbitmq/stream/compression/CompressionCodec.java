@@ -0,0 +1,52 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.compression;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Codec to compress and decompress sub-entries.
+ *
+ * <p>Implementations must produce data other clients can decompress, i.e. use the standard format
+ * of the compression algorithm.
+ */
+public interface CompressionCodec {
+
+  /**
+   * Wrap an output stream to compress the data written to it.
+   *
+   * <p>Closing the returned stream must flush the compressed data to the underlying stream.
+   *
+   * @param outputStream the stream to write the compressed data to
+   * @return a stream that compresses the data written to it
+   */
+  OutputStream compress(OutputStream outputStream);
+
+  /**
+   * Wrap an input stream to decompress the data read from it.
+   *
+   * @param inputStream the stream with the compressed data
+   * @return a stream to read the decompressed data from
+   */
+  InputStream decompress(InputStream inputStream);
+
+  /**
+   * The compression algorithm of the codec.
+   *
+   * @return the compression algorithm
+   */
+  Compression compression();
+}
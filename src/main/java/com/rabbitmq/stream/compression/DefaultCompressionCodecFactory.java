@@ -0,0 +1,64 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.compression;
+
+import com.rabbitmq.stream.StreamException;
+
+/**
+ * {@link CompressionCodecFactory} that uses the compression libraries available on the classpath.
+ *
+ * <p>gzip is always available, it uses the JDK implementation. Snappy requires <a
+ * href="https://github.com/xerial/snappy-java">snappy-java</a>, LZ4 requires <a
+ * href="https://github.com/lz4/lz4-java">lz4-java</a>, and zstd requires <a
+ * href="https://github.com/luben/zstd-jni">zstd-jni</a>.
+ */
+public class DefaultCompressionCodecFactory implements CompressionCodecFactory {
+
+  private final CompressionCodec[] codecs = new CompressionCodec[5];
+
+  public DefaultCompressionCodecFactory() {
+    codecs[Compression.GZIP.code()] = new GzipCompressionCodec();
+    if (isOnClasspath("org.xerial.snappy.SnappyFramedOutputStream")) {
+      codecs[Compression.SNAPPY.code()] = new XerialSnappyCompressionCodec();
+    }
+    if (isOnClasspath("net.jpountz.lz4.LZ4FrameOutputStream")) {
+      codecs[Compression.LZ4.code()] = new Lz4JavaCompressionCodec();
+    }
+    if (isOnClasspath("com.github.luben.zstd.ZstdOutputStream")) {
+      codecs[Compression.ZSTD.code()] = new ZstdJniCompressionCodec();
+    }
+  }
+
+  private static boolean isOnClasspath(String className) {
+    try {
+      Class.forName(className, false, DefaultCompressionCodecFactory.class.getClassLoader());
+      return true;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  @Override
+  public CompressionCodec get(Compression compression) {
+    CompressionCodec codec = codecs[compression.code()];
+    if (codec == null) {
+      throw new StreamException(
+          "No codec available for compression "
+              + compression
+              + ", make sure the corresponding library is on the classpath");
+    }
+    return codec;
+  }
+}
@@ -0,0 +1,49 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.compression;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import com.rabbitmq.stream.StreamException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/** zstd {@link CompressionCodec} using zstd-jni. */
+public class ZstdJniCompressionCodec implements CompressionCodec {
+
+  @Override
+  public OutputStream compress(OutputStream outputStream) {
+    try {
+      return new ZstdOutputStream(outputStream);
+    } catch (IOException e) {
+      throw new StreamException("Error while creating zstd output stream", e);
+    }
+  }
+
+  @Override
+  public InputStream decompress(InputStream inputStream) {
+    try {
+      return new ZstdInputStream(inputStream);
+    } catch (IOException e) {
+      throw new StreamException("Error while creating zstd input stream", e);
+    }
+  }
+
+  @Override
+  public Compression compression() {
+    return Compression.ZSTD;
+  }
+}
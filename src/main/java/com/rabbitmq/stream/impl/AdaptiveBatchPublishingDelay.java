@@ -0,0 +1,93 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.impl;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computes the delay before a producer publishes its accumulated messages.
+ *
+ * <p>The delay is the time to fill a batch at the observed publishing rate, so bursts form full
+ * frames. It never exceeds the confirm latency, like Nagle's algorithm waits at most for an
+ * acknowledgment, nor the configured batch publishing delay. The rate and the latency are
+ * exponentially weighted moving averages.
+ */
+final class AdaptiveBatchPublishingDelay {
+
+  static final long MIN_DELAY_IN_NS = TimeUnit.MILLISECONDS.toNanos(1);
+  // weight of the last observation in the moving averages
+  private static final double SMOOTHING = 0.2;
+
+  private final int batchSize;
+  private final long minDelayInNs;
+  private final long maxDelayInNs;
+  private long lastPublishedUpdate = -1;
+  // entities per nanosecond
+  private double publishingRate = -1;
+  private double confirmLatencyInNs = -1;
+
+  AdaptiveBatchPublishingDelay(int batchSize, Duration maxDelay) {
+    if (maxDelay.isNegative() || maxDelay.isZero()) {
+      throw new IllegalArgumentException("The maximum delay must be positive");
+    }
+    this.batchSize = batchSize;
+    this.maxDelayInNs = maxDelay.toNanos();
+    this.minDelayInNs = Math.min(MIN_DELAY_IN_NS, this.maxDelayInNs);
+  }
+
+  private static double smooth(double average, double value) {
+    return average < 0 ? value : average + SMOOTHING * (value - average);
+  }
+
+  /**
+   * Record the entities published since the last call.
+   *
+   * @param now the current time in nanoseconds
+   * @param count the number of entities published since the last call
+   */
+  synchronized void published(long now, int count) {
+    if (this.lastPublishedUpdate >= 0 && now > this.lastPublishedUpdate) {
+      this.publishingRate =
+          smooth(this.publishingRate, (double) count / (now - this.lastPublishedUpdate));
+    }
+    this.lastPublishedUpdate = now;
+  }
+
+  /**
+   * Record the time between the publishing and the confirmation of an entity.
+   *
+   * @param latencyInNs the confirm latency in nanoseconds
+   */
+  synchronized void confirmed(long latencyInNs) {
+    this.confirmLatencyInNs = smooth(this.confirmLatencyInNs, latencyInNs);
+  }
+
+  /**
+   * The delay before the next publishing.
+   *
+   * @return the delay in nanoseconds
+   */
+  synchronized long delay() {
+    double delay = this.maxDelayInNs;
+    if (this.publishingRate > 0) {
+      delay = Math.min(delay, this.batchSize / this.publishingRate);
+    }
+    if (this.confirmLatencyInNs > 0) {
+      delay = Math.min(delay, this.confirmLatencyInNs);
+    }
+    return Math.max((long) delay, this.minDelayInNs);
+  }
+}
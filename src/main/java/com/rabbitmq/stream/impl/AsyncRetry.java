@@ -18,10 +18,12 @@ import com.rabbitmq.stream.BackOffDelayPolicy;
 import java.time.Duration;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,7 +35,7 @@ class AsyncRetry<V> {
   private final CompletableFuture<V> completableFuture;
 
   private AsyncRetry(
-      Callable<V> task,
+      Callable<CompletableFuture<V>> task,
       String description,
       ScheduledExecutorService scheduler,
       BackOffDelayPolicy delayPolicy,
@@ -41,33 +43,48 @@ class AsyncRetry<V> {
     this.completableFuture = new CompletableFuture<>();
     AtomicReference<Runnable> retryableTaskReference = new AtomicReference<>();
     AtomicInteger attempts = new AtomicInteger(0);
+    Consumer<Exception> failureHandler =
+        e -> {
+          int attemptCount = attempts.getAndIncrement();
+          if (retry.test(e)) {
+            if (delayPolicy.delay(attemptCount).equals(BackOffDelayPolicy.TIMEOUT)) {
+              LOGGER.debug(
+                  "Retryable attempts for task '{}' timed out, failing future", description);
+              this.completableFuture.completeExceptionally(new RetryTimeoutException());
+            } else {
+              LOGGER.debug(
+                  "Retryable exception ({}) for task '{}', scheduling another attempt",
+                  e.getClass().getSimpleName(),
+                  description);
+              scheduler.schedule(
+                  retryableTaskReference.get(),
+                  delayPolicy.delay(attemptCount).toMillis(),
+                  TimeUnit.MILLISECONDS);
+            }
+          } else {
+            LOGGER.debug("Non-retryable exception for task '{}', failing future", description);
+            this.completableFuture.completeExceptionally(e);
+          }
+        };
     Runnable retryableTask =
         () -> {
           try {
-            V result = task.call();
-            LOGGER.debug("Task '{}' succeeded, completing future", description);
-            completableFuture.complete(result);
+            task.call()
+                .whenComplete(
+                    (result, ex) -> {
+                      if (ex == null) {
+                        LOGGER.debug("Task '{}' succeeded, completing future", description);
+                        completableFuture.complete(result);
+                      } else {
+                        if (ex instanceof CompletionException && ex.getCause() != null) {
+                          ex = ex.getCause();
+                        }
+                        failureHandler.accept(
+                            ex instanceof Exception ? (Exception) ex : new RuntimeException(ex));
+                      }
+                    });
           } catch (Exception e) {
-            int attemptCount = attempts.getAndIncrement();
-            if (retry.test(e)) {
-              if (delayPolicy.delay(attemptCount).equals(BackOffDelayPolicy.TIMEOUT)) {
-                LOGGER.debug(
-                    "Retryable attempts for task '{}' timed out, failing future", description);
-                this.completableFuture.completeExceptionally(new RetryTimeoutException());
-              } else {
-                LOGGER.debug(
-                    "Retryable exception ({}) for task '{}', scheduling another attempt",
-                    e.getClass().getSimpleName(),
-                    description);
-                scheduler.schedule(
-                    retryableTaskReference.get(),
-                    delayPolicy.delay(attemptCount).toMillis(),
-                    TimeUnit.MILLISECONDS);
-              }
-            } else {
-              LOGGER.debug("Non-retryable exception for task '{}', failing future", description);
-              this.completableFuture.completeExceptionally(e);
-            }
+            failureHandler.accept(e);
           }
         };
     retryableTaskReference.set(retryableTask);
@@ -81,18 +98,28 @@ class AsyncRetry<V> {
   }
 
   static <V> AsyncRetryBuilder<V> asyncRetry(Callable<V> task) {
+    return new AsyncRetryBuilder<>(() -> CompletableFuture.completedFuture(task.call()));
+  }
+
+  /**
+   * Retry a task that completes asynchronously.
+   *
+   * <p>The attempt fails if the task throws an exception or if the returned future completes
+   * exceptionally.
+   */
+  static <V> AsyncRetryBuilder<V> asyncRetryFuture(Callable<CompletableFuture<V>> task) {
     return new AsyncRetryBuilder<>(task);
   }
 
   static class AsyncRetryBuilder<V> {
 
-    private final Callable<V> task;
+    private final Callable<CompletableFuture<V>> task;
     private String description = "";
     private ScheduledExecutorService scheduler;
     private BackOffDelayPolicy delayPolicy = BackOffDelayPolicy.fixed(Duration.ofSeconds(1));
     private Predicate<Exception> retry = e -> true;
 
-    AsyncRetryBuilder(Callable<V> task) {
+    AsyncRetryBuilder(Callable<CompletableFuture<V>> task) {
       this.task = task;
     }
 
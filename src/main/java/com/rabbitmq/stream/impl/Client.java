@@ -55,6 +55,10 @@ import com.rabbitmq.stream.OffsetSpecification;
 import com.rabbitmq.stream.Producer;
 import com.rabbitmq.stream.Properties;
 import com.rabbitmq.stream.StreamException;
+import com.rabbitmq.stream.compression.Compression;
+import com.rabbitmq.stream.compression.CompressionCodec;
+import com.rabbitmq.stream.compression.CompressionCodecFactory;
+import com.rabbitmq.stream.compression.DefaultCompressionCodecFactory;
 import com.rabbitmq.stream.metrics.MetricsCollector;
 import com.rabbitmq.stream.metrics.NoOpMetricsCollector;
 import com.rabbitmq.stream.sasl.CredentialsProvider;
@@ -66,6 +70,8 @@ import com.rabbitmq.stream.sasl.UsernamePasswordCredentialsProvider;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
@@ -74,38 +80,44 @@ import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.timeout.IdleState;
 import io.netty.handler.timeout.IdleStateEvent;
 import io.netty.handler.timeout.IdleStateHandler;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Field;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -124,11 +136,14 @@ import org.slf4j.LoggerFactory;
 public class Client implements AutoCloseable {
 
   public static final int DEFAULT_PORT = 5555;
+  static final int DEFAULT_MAX_QUEUED_CHUNKS = 256;
+  static final long DEFAULT_MAX_QUEUED_CHUNK_BYTES = 64 * 1024 * 1024;
   static final OutboundEntityWriteCallback OUTBOUND_MESSAGE_WRITE_CALLBACK =
       new OutboundMessageWriteCallback();
   static final OutboundEntityWriteCallback OUTBOUND_MESSAGE_BATCH_WRITE_CALLBACK =
       new OutboundMessageBatchWriteCallback();
-  private static final Duration RESPONSE_TIMEOUT = Duration.ofSeconds(10);
+  static final long NO_OFFSET_LIMIT = -1;
+  static final Duration DEFAULT_RPC_TIMEOUT = Duration.ofSeconds(10);
   private static final PublishConfirmListener NO_OP_PUBLISH_CONFIRM_LISTENER =
       (publisherId, publishingId) -> {};
 
@@ -139,18 +154,32 @@ public class Client implements AutoCloseable {
   private final PublishConfirmListener publishConfirmListener;
   private final PublishErrorListener publishErrorListener;
   private final ChunkListener chunkListener;
+  private final ChunkProcessedListener chunkProcessedListener;
   private final MessageListener messageListener;
   private final CreditNotification creditNotification;
   private final MetadataListener metadataListener;
+  private final WritabilityListener writabilityListener;
+  private final InboundFlowControl inboundFlowControl;
   private final Consumer<ShutdownContext.ShutdownReason> shutdownListenerCallback;
   private final Codec codec;
+  private final CompressionCodecFactory compressionCodecFactory;
   private final Channel channel;
   private final AtomicLong publishSequence = new AtomicLong(0);
   private final AtomicInteger correlationSequence = new AtomicInteger(0);
   private final ConcurrentMap<Integer, OutstandingRequest> outstandingRequests =
       new ConcurrentHashMap<>();
-  private final List<SubscriptionOffset> subscriptionOffsets = new CopyOnWriteArrayList<>();
+  // offset limits of subscriptions starting at a given offset, indexed by subscription ID,
+  // set and consumed on the event loop, so they apply to the first chunk of the subscription
+  private final AtomicLongArray subscriptionOffsets = subscriptionOffsets();
+  // generation of the last subscription request for a given subscription ID
+  private final AtomicIntegerArray subscriptionGenerations = new AtomicIntegerArray(256);
+  // generation of the subscription the inbound chunks belong to, only accessed on the event loop
+  private final int[] deliveryGenerations = new int[256];
+  // control responses (RPC responses, metadata updates, credit notifications, closing)
   private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+  // null if confirms are handled on the event loop
+  private final ExecutorService confirmExecutorService;
+  private final ExecutorService[] deliveryExecutorServices;
   private final Runnable executorServiceClosing;
   private final SaslConfiguration saslConfiguration;
   private final CredentialsProvider credentialsProvider;
@@ -159,6 +188,7 @@ public class Client implements AutoCloseable {
   private final Runnable nettyClosing;
   private final int maxFrameSize;
   private final int heartbeat;
+  private final Duration rpcTimeout;
   private final boolean frameSizeCopped;
   private final EventLoopGroup eventLoopGroup;
   private final ChunkChecksum chunkChecksum;
@@ -182,14 +212,18 @@ public class Client implements AutoCloseable {
     this.publishConfirmListener = parameters.publishConfirmListener;
     this.publishErrorListener = parameters.publishErrorListener;
     this.chunkListener = parameters.chunkListener;
+    this.chunkProcessedListener = parameters.chunkProcessedListener;
     this.messageListener = parameters.messageListener;
     this.creditNotification = parameters.creditNotification;
     this.codec = parameters.codec == null ? Codecs.DEFAULT : parameters.codec;
+    this.compressionCodecFactory = parameters.compressionCodecFactory;
     this.saslConfiguration = parameters.saslConfiguration;
     this.credentialsProvider = parameters.credentialsProvider;
     this.chunkChecksum = parameters.chunkChecksum;
     this.metricsCollector = parameters.metricsCollector;
     this.metadataListener = parameters.metadataListener;
+    this.writabilityListener = parameters.writabilityListener;
+    this.rpcTimeout = parameters.rpcTimeout;
     final ShutdownListener shutdownListener = parameters.shutdownListener;
     final AtomicBoolean started = new AtomicBoolean(false);
     this.shutdownListenerCallback =
@@ -204,17 +238,36 @@ public class Client implements AutoCloseable {
               }
             });
 
+    if (parameters.deliveryDispatchLanes <= 0) {
+      throw new IllegalArgumentException("The number of delivery dispatch lanes must be positive");
+    }
+    if (parameters.maxQueuedChunks <= 0 || parameters.maxQueuedChunkBytes <= 0) {
+      throw new IllegalArgumentException("The delivery queue limits must be positive");
+    }
+    this.confirmExecutorService =
+        parameters.confirmsOnEventLoop ? null : Executors.newSingleThreadExecutor();
+    this.deliveryExecutorServices = new ExecutorService[parameters.deliveryDispatchLanes];
+    for (int i = 0; i < this.deliveryExecutorServices.length; i++) {
+      this.deliveryExecutorServices[i] = Executors.newSingleThreadExecutor();
+    }
+
     this.executorServiceClosing =
         Utils.makeIdempotent(
             () -> {
               if (this.executorService != null) {
                 this.executorService.shutdownNow();
               }
+              if (this.confirmExecutorService != null) {
+                this.confirmExecutorService.shutdownNow();
+              }
+              for (ExecutorService deliveryExecutorService : this.deliveryExecutorServices) {
+                deliveryExecutorService.shutdownNow();
+              }
             });
 
     EventLoopGroup eventLoopGroup;
     if (parameters.eventLoopGroup == null) {
-      this.eventLoopGroup = new NioEventLoopGroup();
+      this.eventLoopGroup = Transports.eventLoopGroup();
       eventLoopGroup = this.eventLoopGroup;
     } else {
       this.eventLoopGroup = null;
@@ -223,10 +276,13 @@ public class Client implements AutoCloseable {
 
     Bootstrap b = new Bootstrap();
     b.group(eventLoopGroup);
-    b.channel(NioSocketChannel.class);
+    b.channel(Transports.socketChannelClass(eventLoopGroup));
     b.option(ChannelOption.SO_KEEPALIVE, true);
     // is that the default?
     b.option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
+    if (parameters.writeBufferWaterMark != null) {
+      b.option(ChannelOption.WRITE_BUFFER_WATER_MARK, parameters.writeBufferWaterMark);
+    }
     ChannelCustomizer channelCustomizer =
         parameters.channelCustomizer == null ? ch -> {} : parameters.channelCustomizer;
     b.handler(
@@ -257,6 +313,12 @@ public class Client implements AutoCloseable {
     }
 
     this.channel = f.channel();
+    this.inboundFlowControl =
+        new InboundFlowControl(
+            this.channel,
+            parameters.maxQueuedChunks,
+            parameters.maxQueuedChunkBytes,
+            this.metricsCollector);
     this.nettyClosing = Utils.makeIdempotent(() -> closeNetty());
     this.tuneState =
         new TuneState(
@@ -314,8 +376,7 @@ public class Client implements AutoCloseable {
       LOGGER.warn("Could not find outstanding request with correlation ID {}", correlationId);
     } else {
       Response response = new Response(responseCode);
-      outstandingRequest.response.set(response);
-      outstandingRequest.latch.countDown();
+      outstandingRequest.complete(response);
     }
 
     if (read != frameSize) {
@@ -356,8 +417,7 @@ public class Client implements AutoCloseable {
       LOGGER.warn("Could not find outstanding request with correlation ID {}", correlationId);
     } else {
       QueryOffsetResponse response = new QueryOffsetResponse(responseCode, offset);
-      outstandingRequest.response.set(response);
-      outstandingRequest.latch.countDown();
+      outstandingRequest.complete(response);
     }
 
     if (read != frameSize) {
@@ -402,8 +462,7 @@ public class Client implements AutoCloseable {
     if (outstandingRequest == null) {
       LOGGER.warn("Could not find outstanding request with correlation ID {}", correlationId);
     } else {
-      outstandingRequest.response.set(Collections.unmodifiableMap(serverProperties));
-      outstandingRequest.latch.countDown();
+      outstandingRequest.complete(Collections.unmodifiableMap(serverProperties));
     }
 
     if (read != frameSize) {
@@ -444,8 +503,7 @@ public class Client implements AutoCloseable {
     if (outstandingRequest == null) {
       LOGGER.warn("Could not find outstanding request with correlation ID {}", correlationId);
     } else {
-      outstandingRequest.response.set(mechanisms);
-      outstandingRequest.latch.countDown();
+      outstandingRequest.complete(mechanisms);
     }
 
     if (read != frameSize) {
@@ -480,8 +538,7 @@ public class Client implements AutoCloseable {
     if (outstandingRequest == null) {
       LOGGER.warn("Could not find outstanding request with correlation ID {}", correlationId);
     } else {
-      outstandingRequest.response.set(response);
-      outstandingRequest.latch.countDown();
+      outstandingRequest.complete(response);
     }
 
     if (read != frameSize) {
@@ -565,8 +622,7 @@ public class Client implements AutoCloseable {
     if (outstandingRequest == null) {
       LOGGER.warn("Could not find outstanding request with correlation ID {}", correlationId);
     } else {
-      outstandingRequest.response.set(results);
-      outstandingRequest.latch.countDown();
+      outstandingRequest.complete(results);
     }
 
     if (read != frameSize) {
@@ -574,6 +630,15 @@ public class Client implements AutoCloseable {
     }
   }
 
+  static AtomicLongArray subscriptionOffsets() {
+    // subscription IDs are unsigned bytes
+    AtomicLongArray subscriptionOffsets = new AtomicLongArray(256);
+    for (int i = 0; i < subscriptionOffsets.length(); i++) {
+      subscriptionOffsets.set(i, NO_OFFSET_LIMIT);
+    }
+    return subscriptionOffsets;
+  }
+
   private static String readString(ByteBuf bb) {
     short size = bb.readShort();
     byte[] bytes = new byte[size];
@@ -587,9 +652,11 @@ public class Client implements AutoCloseable {
       Client client,
       ChunkListener chunkListener,
       MessageListener messageListener,
+      ChunkProcessedListener chunkProcessedListener,
       int frameSize,
       Codec codec,
-      List<SubscriptionOffset> subscriptionOffsets,
+      CompressionCodecFactory compressionCodecFactory,
+      long offsetLimit,
       ChunkChecksum chunkChecksum,
       MetricsCollector metricsCollector) {
     int read = 2 + 2; // already read the command id and version
@@ -636,85 +703,137 @@ public class Client implements AutoCloseable {
     read += 4;
 
     chunkListener.handle(client, subscriptionId, offset, numRecords, dataLength);
+    long chunkOffset = offset;
+    long chunkMessageCount = numRecords;
 
-    long offsetLimit = -1;
-    if (!subscriptionOffsets.isEmpty()) {
-      Iterator<SubscriptionOffset> iterator = subscriptionOffsets.iterator();
-      while (iterator.hasNext()) {
-        SubscriptionOffset subscriptionOffset = iterator.next();
-        if (subscriptionOffset.subscriptionId == subscriptionId) {
-          subscriptionOffsets.remove(subscriptionOffset);
-          offsetLimit = subscriptionOffset.offset;
-          break;
-        }
-      }
-    }
-
-    final boolean filter = offsetLimit != -1;
+    final boolean filter = offsetLimit != NO_OFFSET_LIMIT;
 
+    // the listener usually grants credit, so it must run even if the chunk cannot be processed,
+    // otherwise the subscription would stall
     try {
-      // TODO handle exception in exception handler
-      chunkChecksum.checksum(bb, dataLength, crc);
-    } catch (ChunkChecksumValidationException e) {
-      LOGGER.warn(
-          "Checksum failure at offset {}, expecting {}, got {}",
-          offset,
-          e.getExpected(),
-          e.getComputed());
-      throw e;
-    }
+      try {
+        // TODO handle exception in exception handler
+        chunkChecksum.checksum(bb, dataLength, crc);
+      } catch (ChunkChecksumValidationException e) {
+        LOGGER.warn(
+            "Checksum failure at offset {}, expecting {}, got {}",
+            offset,
+            e.getExpected(),
+            e.getComputed());
+        throw e;
+      }
 
-    metricsCollector.chunk(numEntries);
-    metricsCollector.consume(numRecords);
-
-    while (numRecords != 0) {
-      byte entryType = bb.readByte();
-      if ((entryType & 0x80) == 0) {
-        /*
-        %%   <<0=SimpleEntryType:1,
-        %%     Size:31/unsigned,
-        %%     Data:Size/binary>>
-         */
-        bb.readerIndex(bb.readerIndex() - 1);
-        read =
-            handleMessage(
-                bb, read, filter, offset, offsetLimit, codec, messageListener, subscriptionId);
-        numRecords--;
-        offset++; // works even for unsigned long
-      } else {
-        /*
-        %%   <<1=SubBatchEntryType:1,
-        %%     CompressionType:3,
-        %%     Reserved:4,
-        %%     NumRecords:16/unsigned,
-        %%     Size:32/unsigned,
-        %%     Data:Size/binary>>
-         */
-        byte compression = (byte) ((entryType & 0x70) >> 4);
-        read++;
-        // compression not used yet, just making sure we get something
-        MessageBatch.Compression.get(compression);
-        int numRecordsInBatch = bb.readUnsignedShort();
-        read += 2;
-        bb.readInt(); // batch size, does not need it
-        read += 4;
-
-        numRecords -= numRecordsInBatch;
-
-        while (numRecordsInBatch != 0) {
+      metricsCollector.chunk(numEntries);
+      metricsCollector.consume(numRecords);
+
+      while (numRecords != 0) {
+        byte entryType = bb.readByte();
+        if ((entryType & 0x80) == 0) {
+          /*
+          %%   <<0=SimpleEntryType:1,
+          %%     Size:31/unsigned,
+          %%     Data:Size/binary>>
+           */
+          bb.readerIndex(bb.readerIndex() - 1);
           read =
               handleMessage(
                   bb, read, filter, offset, offsetLimit, codec, messageListener, subscriptionId);
-          numRecordsInBatch--;
+          numRecords--;
           offset++; // works even for unsigned long
+        } else {
+          /*
+          %%   <<1=SubBatchEntryType:1,
+          %%     CompressionType:3,
+          %%     Reserved:4,
+          %%     NumRecords:16/unsigned,
+          %%     Size:32/unsigned,
+          %%     Data:Size/binary>>
+           */
+          Compression compression = Compression.get((byte) ((entryType & 0x70) >> 4));
+          read++;
+          int numRecordsInBatch = bb.readUnsignedShort();
+          read += 2;
+          int dataSize = bb.readInt();
+          read += 4;
+
+          numRecords -= numRecordsInBatch;
+
+          if (filter && Long.compareUnsigned(offset + numRecordsInBatch, offsetLimit) <= 0) {
+            // the whole sub-entry is before the offset limit, no need to look into it
+            bb.skipBytes(dataSize);
+            read += dataSize;
+            offset += numRecordsInBatch; // works even for unsigned long
+          } else if (compression == Compression.NONE) {
+            while (numRecordsInBatch != 0) {
+              read =
+                  handleMessage(
+                      bb,
+                      read,
+                      filter,
+                      offset,
+                      offsetLimit,
+                      codec,
+                      messageListener,
+                      subscriptionId);
+              numRecordsInBatch--;
+              offset++; // works even for unsigned long
+            }
+          } else {
+            ByteBuf uncompressed =
+                decompress(
+                    bb.slice(bb.readerIndex(), dataSize),
+                    compressionCodecFactory.get(compression),
+                    bb.alloc());
+            bb.skipBytes(dataSize);
+            read += dataSize;
+            try {
+              while (numRecordsInBatch != 0) {
+                // the number of bytes read in the uncompressed buffer does not count
+                handleMessage(
+                    uncompressed,
+                    0,
+                    filter,
+                    offset,
+                    offsetLimit,
+                    codec,
+                    messageListener,
+                    subscriptionId);
+                numRecordsInBatch--;
+                offset++; // works even for unsigned long
+              }
+            } finally {
+              uncompressed.release();
+            }
+          }
         }
       }
+    } finally {
+      chunkProcessedListener.handle(
+          client, subscriptionId, chunkOffset, chunkMessageCount, timestamp);
     }
     if (read != frameSize) {
       throw new IllegalStateException("Read " + read + " bytes in frame, expecting " + frameSize);
     }
   }
 
+  private static ByteBuf decompress(
+      ByteBuf compressed, CompressionCodec compressionCodec, ByteBufAllocator allocator) {
+    ByteBuf uncompressed = allocator.buffer(compressed.readableBytes() * 2);
+    try (InputStream in = compressionCodec.decompress(new ByteBufInputStream(compressed));
+        ByteBufOutputStream out = new ByteBufOutputStream(uncompressed)) {
+      byte[] buffer = new byte[4096];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+    } catch (IOException | RuntimeException e) {
+      uncompressed.release();
+      throw new StreamException(
+          "Error while decompressing sub-entry with " + compressionCodec.compression(), e);
+    }
+    return uncompressed;
+  }
+
   static int handleMessage(
       ByteBuf bb,
       int read,
@@ -726,16 +845,18 @@ public class Client implements AutoCloseable {
       byte subscriptionId) {
     int entrySize = bb.readInt();
     read += 4;
-    byte[] data = new byte[entrySize];
-    bb.readBytes(data);
-    read += entrySize;
 
     if (filter && Long.compareUnsigned(offset, offsetLimit) < 0) {
       // filter
+      bb.skipBytes(entrySize);
     } else {
-      Message message = codec.decode(data);
+      // the codec decodes directly from a slice of the chunk buffer, no need to retain it,
+      // the chunk buffer is released once all its messages have been handled
+      Message message = codec.decode(bb.slice(bb.readerIndex(), entrySize));
+      bb.skipBytes(entrySize);
       messageListener.handle(subscriptionId, offset, message);
     }
+    read += entrySize;
     return read;
   }
 
@@ -801,10 +922,26 @@ public class Client implements AutoCloseable {
     return codec;
   }
 
+  CompressionCodecFactory compressionCodecFactory() {
+    return this.compressionCodecFactory;
+  }
+
   int maxFrameSize() {
     return this.maxFrameSize;
   }
 
+  /**
+   * Whether the outbound buffer of the connection is below its high water mark.
+   *
+   * <p>Publishers should stop writing when this returns false and wait for the {@link
+   * WritabilityListener} to resume.
+   *
+   * @return true if frames can be written without piling up in the outbound buffer
+   */
+  boolean isWritable() {
+    return this.channel.isWritable();
+  }
+
   private void handleHeartbeat(int frameSize) {
     LOGGER.debug("Received heartbeat frame");
     int read = 2 + 2; // already read the command id and version
@@ -908,11 +1045,10 @@ public class Client implements AutoCloseable {
             .writeShort(entry.getValue().length())
             .writeBytes(entry.getValue().getBytes(StandardCharsets.UTF_8));
       }
-      OutstandingRequest<Map<String, String>> request = new OutstandingRequest<>(RESPONSE_TIMEOUT);
+      OutstandingRequest<Map<String, String>> request = new OutstandingRequest<>(this.rpcTimeout);
       outstandingRequests.put(correlationId, request);
       channel.writeAndFlush(bb);
-      request.block();
-      return request.response.get();
+      return request.block();
     } catch (RuntimeException e) {
       outstandingRequests.remove(correlationId);
       throw new StreamException(e);
@@ -970,11 +1106,10 @@ public class Client implements AutoCloseable {
         bb.writeInt(challengeResponse.length).writeBytes(challengeResponse);
       }
       OutstandingRequest<SaslAuthenticateResponse> request =
-          new OutstandingRequest<>(RESPONSE_TIMEOUT);
+          new OutstandingRequest<>(this.rpcTimeout);
       outstandingRequests.put(correlationId, request);
       channel.writeAndFlush(bb);
-      request.block();
-      return request.response.get();
+      return request.block();
     } catch (RuntimeException e) {
       outstandingRequests.remove(correlationId);
       throw new StreamException(e);
@@ -992,14 +1127,14 @@ public class Client implements AutoCloseable {
       bb.writeInt(correlationId);
       bb.writeShort(virtualHost.length());
       bb.writeBytes(virtualHost.getBytes(StandardCharsets.UTF_8));
-      OutstandingRequest<Response> request = new OutstandingRequest<>(RESPONSE_TIMEOUT);
+      OutstandingRequest<Response> request = new OutstandingRequest<>(this.rpcTimeout);
       outstandingRequests.put(correlationId, request);
       channel.writeAndFlush(bb);
-      request.block();
-      if (!request.response.get().isOk()) {
+      Response response = request.block();
+      if (!response.isOk()) {
         throw new StreamException(
             "Unexpected response code when connecting to virtual host: "
-                + request.response.get().getResponseCode());
+                + response.getResponseCode());
       }
     } catch (StreamException e) {
       outstandingRequests.remove(correlationId);
@@ -1033,15 +1168,14 @@ public class Client implements AutoCloseable {
       bb.writeShort(code);
       bb.writeShort(reason.length());
       bb.writeBytes(reason.getBytes(StandardCharsets.UTF_8));
-      OutstandingRequest<Response> request = new OutstandingRequest<>(RESPONSE_TIMEOUT);
+      OutstandingRequest<Response> request = new OutstandingRequest<>(this.rpcTimeout);
       outstandingRequests.put(correlationId, request);
       channel.writeAndFlush(bb);
-      request.block();
-      if (!request.response.get().isOk()) {
-        LOGGER.warn(
-            "Unexpected response code when closing: {}", request.response.get().getResponseCode());
+      Response response = request.block();
+      if (!response.isOk()) {
+        LOGGER.warn("Unexpected response code when closing: {}", response.getResponseCode());
         throw new StreamException(
-            "Unexpected response code when closing: " + request.response.get().getResponseCode());
+            "Unexpected response code when closing: " + response.getResponseCode());
       }
     } catch (RuntimeException e) {
       outstandingRequests.remove(correlationId);
@@ -1058,11 +1192,10 @@ public class Client implements AutoCloseable {
       bb.writeShort(COMMAND_SASL_HANDSHAKE);
       bb.writeShort(VERSION_0);
       bb.writeInt(correlationId);
-      OutstandingRequest<List<String>> request = new OutstandingRequest<>(RESPONSE_TIMEOUT);
+      OutstandingRequest<List<String>> request = new OutstandingRequest<>(this.rpcTimeout);
       outstandingRequests.put(correlationId, request);
       channel.writeAndFlush(bb);
-      request.block();
-      return request.response.get();
+      return request.block();
     } catch (RuntimeException e) {
       outstandingRequests.remove(correlationId);
       throw new StreamException(e);
@@ -1074,6 +1207,18 @@ public class Client implements AutoCloseable {
   }
 
   public Response create(String stream, Map<String, String> arguments) {
+    return waitForResponse(createAsync(stream, arguments));
+  }
+
+  /**
+   * Asynchronous version of {@link #create(String, Map)}.
+   *
+   * <p>Several requests can be in flight at the same time on the connection. The future
+   * completes on a thread of the connection, so its callbacks must not block.
+   *
+   * @see #create(String, Map)
+   */
+  public CompletableFuture<Response> createAsync(String stream, Map<String, String> arguments) {
     int length = 2 + 2 + 4 + 2 + stream.length() + 4;
     for (Map.Entry<String, String> argument : arguments.entrySet()) {
       length = length + 2 + argument.getKey().length() + 2 + argument.getValue().length();
@@ -1094,11 +1239,7 @@ public class Client implements AutoCloseable {
         bb.writeShort(argument.getValue().length());
         bb.writeBytes(argument.getValue().getBytes(StandardCharsets.UTF_8));
       }
-      OutstandingRequest<Response> request = new OutstandingRequest<>(RESPONSE_TIMEOUT);
-      outstandingRequests.put(correlationId, request);
-      channel.writeAndFlush(bb);
-      request.block();
-      return request.response.get();
+      return sendRequest(correlationId, bb);
     } catch (RuntimeException e) {
       outstandingRequests.remove(correlationId);
       throw new StreamException(e);
@@ -1128,7 +1269,75 @@ public class Client implements AutoCloseable {
     return allocateNoCheck(channel.alloc(), capacity);
   }
 
+  private <T> CompletableFuture<T> sendRequest(int correlationId, ByteBuf bb) {
+    return sendRequest(correlationId, bb, null);
+  }
+
+  /**
+   * Send a request and register its outstanding response.
+   *
+   * @param responseRead called on the event loop when the response frame is read, before the next
+   *     frames, can be <code>null</code>
+   */
+  private <T> CompletableFuture<T> sendRequest(
+      int correlationId, ByteBuf bb, Runnable responseRead) {
+    OutstandingRequest<T> request = new OutstandingRequest<>(this.rpcTimeout, responseRead);
+    outstandingRequests.put(correlationId, request);
+    // the response may never come, the request is then removed and fails after the timeout
+    ScheduledFuture<?> timeoutTask =
+        channel
+            .eventLoop()
+            .schedule(
+                () -> {
+                  if (outstandingRequests.remove(correlationId, request)) {
+                    request.fail(
+                        new StreamException(
+                            "Could not get response in " + this.rpcTimeout.toMillis() + " ms"));
+                  }
+                },
+                this.rpcTimeout.toMillis(),
+                TimeUnit.MILLISECONDS);
+    request.response.whenComplete((response, ex) -> timeoutTask.cancel(false));
+    channel
+        .writeAndFlush(bb)
+        .addListener(
+            future -> {
+              if (!future.isSuccess() && outstandingRequests.remove(correlationId, request)) {
+                request.fail(new StreamException("Error while sending request", future.cause()));
+              }
+            });
+    return request.response;
+  }
+
+  private static <T> T waitForResponse(CompletableFuture<T> response) {
+    try {
+      // no need of a timeout, the request fails on its own if the response does not come
+      return response.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new StreamException("Interrupted while waiting for response");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof StreamException) {
+        throw (StreamException) e.getCause();
+      } else {
+        throw new StreamException(e.getCause());
+      }
+    }
+  }
+
   public Response delete(String stream) {
+    return waitForResponse(deleteAsync(stream));
+  }
+
+  /**
+   * Asynchronous version of {@link #delete(String)}.
+   *
+   * <p>Several requests can be in flight at the same time on the connection. The future
+   * completes on a thread of the connection, so its callbacks must not block.
+   *
+   * @see #delete(String)
+   */
+  public CompletableFuture<Response> deleteAsync(String stream) {
     int length = 2 + 2 + 4 + 2 + stream.length();
     int correlationId = correlationSequence.incrementAndGet();
     try {
@@ -1139,11 +1348,7 @@ public class Client implements AutoCloseable {
       bb.writeInt(correlationId);
       bb.writeShort(stream.length());
       bb.writeBytes(stream.getBytes(StandardCharsets.UTF_8));
-      OutstandingRequest<Response> request = new OutstandingRequest<>(RESPONSE_TIMEOUT);
-      outstandingRequests.put(correlationId, request);
-      channel.writeAndFlush(bb);
-      request.block();
-      return request.response.get();
+      return sendRequest(correlationId, bb);
     } catch (RuntimeException e) {
       outstandingRequests.remove(correlationId);
       throw new StreamException(e);
@@ -1151,6 +1356,18 @@ public class Client implements AutoCloseable {
   }
 
   public Map<String, StreamMetadata> metadata(String... streams) {
+    return waitForResponse(metadataAsync(streams));
+  }
+
+  /**
+   * Asynchronous version of {@link #metadata(String...)}.
+   *
+   * <p>Several requests can be in flight at the same time on the connection. The future
+   * completes on a thread of the connection, so its callbacks must not block.
+   *
+   * @see #metadata(String...)
+   */
+  public CompletableFuture<Map<String, StreamMetadata>> metadataAsync(String... streams) {
     if (streams == null || streams.length == 0) {
       throw new IllegalArgumentException("At least one stream must be specified");
     }
@@ -1171,12 +1388,7 @@ public class Client implements AutoCloseable {
         bb.writeShort(stream.length());
         bb.writeBytes(stream.getBytes(StandardCharsets.UTF_8));
       }
-      OutstandingRequest<Map<String, StreamMetadata>> request =
-          new OutstandingRequest<>(RESPONSE_TIMEOUT);
-      outstandingRequests.put(correlationId, request);
-      channel.writeAndFlush(bb);
-      request.block();
-      return request.response.get();
+      return sendRequest(correlationId, bb);
     } catch (RuntimeException e) {
       outstandingRequests.remove(correlationId);
       throw new StreamException(e);
@@ -1232,6 +1444,7 @@ public class Client implements AutoCloseable {
         checkMessageFitsInFrame(stream, encodedMessage);
         encodedMessageBatch.add(encodedMessage);
       }
+      compress(encodedMessageBatch);
       checkMessageBatchFitsInFrame(stream, encodedMessageBatch);
       encodedMessageBatches.add(encodedMessageBatch);
     }
@@ -1256,6 +1469,7 @@ public class Client implements AutoCloseable {
         checkMessageFitsInFrame(stream, encodedMessage);
         encodedMessageBatch.add(encodedMessage);
       }
+      compress(encodedMessageBatch);
       checkMessageBatchFitsInFrame(stream, encodedMessageBatch);
       OriginalAndEncodedOutboundEntity wrapper =
           new OriginalAndEncodedOutboundEntity(batch, encodedMessageBatch);
@@ -1270,6 +1484,13 @@ public class Client implements AutoCloseable {
             mappingCallback, OUTBOUND_MESSAGE_BATCH_WRITE_CALLBACK));
   }
 
+  private void compress(EncodedMessageBatch encodedMessageBatch) {
+    if (encodedMessageBatch.compression != Compression.NONE) {
+      encodedMessageBatch.compress(
+          this.compressionCodecFactory.get(encodedMessageBatch.compression));
+    }
+  }
+
   private void checkMessageFitsInFrame(String stream, Codec.EncodedMessage encodedMessage) {
     checkMessageFitsInFrame(this.maxFrameSize, stream, encodedMessage);
   }
@@ -1418,6 +1639,19 @@ public class Client implements AutoCloseable {
    */
   public Response subscribe(
       byte subscriptionId, String stream, OffsetSpecification offsetSpecification, int credit) {
+    return waitForResponse(subscribeAsync(subscriptionId, stream, offsetSpecification, credit));
+  }
+
+  /**
+   * Asynchronous version of {@link #subscribe(byte, String, OffsetSpecification, int)}.
+   *
+   * <p>Several requests can be in flight at the same time on the connection. The future
+   * completes on a thread of the connection, so its callbacks must not block.
+   *
+   * @see #subscribe(byte, String, OffsetSpecification, int)
+   */
+  public CompletableFuture<Response> subscribeAsync(
+      byte subscriptionId, String stream, OffsetSpecification offsetSpecification, int credit) {
     if (credit < 0 || credit > Short.MAX_VALUE) {
       throw new IllegalArgumentException("Credit value must be between 0 and " + Short.MAX_VALUE);
     }
@@ -1425,7 +1659,7 @@ public class Client implements AutoCloseable {
     if (offsetSpecification.isOffset() || offsetSpecification.isTimestamp()) {
       length += 8;
     }
-    int correlationId = correlationSequence.getAndIncrement();
+    int correlationId = correlationSequence.incrementAndGet();
     try {
       ByteBuf bb = allocate(length + 4);
       bb.writeInt(length);
@@ -1440,15 +1674,21 @@ public class Client implements AutoCloseable {
         bb.writeLong(offsetSpecification.getOffset());
       }
       bb.writeShort(credit);
-      OutstandingRequest<Response> request = new OutstandingRequest<>(RESPONSE_TIMEOUT);
-      outstandingRequests.put(correlationId, request);
-      if (offsetSpecification.isOffset()) {
-        subscriptionOffsets.add(
-            new SubscriptionOffset(subscriptionId, offsetSpecification.getOffset()));
-      }
-      channel.writeAndFlush(bb);
-      request.block();
-      return request.response.get();
+      int index = subscriptionId & 0xFF;
+      // chunks of a previous subscription with the same ID can still be waiting in a delivery
+      // lane, they are dropped once the generation changes
+      int generation = subscriptionGenerations.incrementAndGet(index);
+      long offsetLimit =
+          offsetSpecification.isOffset() ? offsetSpecification.getOffset() : NO_OFFSET_LIMIT;
+      // the broker sends the response before the chunks of the subscription
+      return sendRequest(
+          correlationId,
+          bb,
+          () -> {
+            deliveryGenerations[index] = generation;
+            // also resets the limit a previous subscription with the same ID may have left
+            subscriptionOffsets.set(index, offsetLimit);
+          });
     } catch (RuntimeException e) {
       outstandingRequests.remove(correlationId);
       throw new StreamException(e);
@@ -1456,6 +1696,67 @@ public class Client implements AutoCloseable {
   }
 
   public void commitOffset(String reference, String stream, long offset) {
+    checkCommitOffsetArguments(reference, stream);
+    int length = commitOffsetFrameLength(reference, stream);
+    ByteBuf bb = allocate(length + 4);
+    writeCommitOffset(bb, length, reference, stream, offset);
+    channel.writeAndFlush(bb);
+  }
+
+  /**
+   * Commit several offsets at once.
+   *
+   * <p>The commit frames are written in a single buffer and flushed once, which is cheaper than
+   * calling {@link #commitOffset(String, String, long)} for each offset.
+   *
+   * <p>The broker does not confirm offset commits, the returned future only tells whether the
+   * frames could be written to the connection.
+   *
+   * @param commits the offsets to commit
+   * @return a future that completes once the frames have been written, exceptionally if the write
+   *     fails (e.g. the connection is closed)
+   * @see #commitOffset(String, String, long)
+   */
+  public CompletableFuture<Void> commitOffsets(Collection<OffsetCommit> commits) {
+    CompletableFuture<Void> result = new CompletableFuture<>();
+    if (commits.isEmpty()) {
+      result.complete(null);
+      return result;
+    }
+    if (!channel.isActive()) {
+      // the event loop may be shut down as well, the write listener would never be called
+      result.completeExceptionally(new StreamException("Connection is closed"));
+      return result;
+    }
+    int bufferLength = 0;
+    for (OffsetCommit commit : commits) {
+      checkCommitOffsetArguments(commit.reference, commit.stream);
+      bufferLength += commitOffsetFrameLength(commit.reference, commit.stream) + 4;
+    }
+    ByteBuf bb = allocate(bufferLength);
+    for (OffsetCommit commit : commits) {
+      writeCommitOffset(
+          bb,
+          commitOffsetFrameLength(commit.reference, commit.stream),
+          commit.reference,
+          commit.stream,
+          commit.offset);
+    }
+    channel
+        .writeAndFlush(bb)
+        .addListener(
+            future -> {
+              if (future.isSuccess()) {
+                result.complete(null);
+              } else {
+                result.completeExceptionally(
+                    new StreamException("Error while committing offsets", future.cause()));
+              }
+            });
+    return result;
+  }
+
+  private static void checkCommitOffsetArguments(String reference, String stream) {
     if (reference == null || reference.isEmpty() || reference.length() > 256) {
       throw new IllegalArgumentException(
           "Reference must a non-empty string of less than 256 characters");
@@ -1463,8 +1764,14 @@ public class Client implements AutoCloseable {
     if (stream == null || stream.isEmpty()) {
       throw new IllegalArgumentException("Stream cannot be null or empty");
     }
-    int length = 2 + 2 + 4 + 2 + reference.length() + 2 + stream.length() + 8;
-    ByteBuf bb = allocate(length + 4);
+  }
+
+  private static int commitOffsetFrameLength(String reference, String stream) {
+    return 2 + 2 + 4 + 2 + reference.length() + 2 + stream.length() + 8;
+  }
+
+  private static void writeCommitOffset(
+      ByteBuf bb, int length, String reference, String stream, long offset) {
     bb.writeInt(length);
     bb.writeShort(COMMAND_COMMIT_OFFSET);
     bb.writeShort(VERSION_0);
@@ -1474,10 +1781,21 @@ public class Client implements AutoCloseable {
     bb.writeShort(stream.length());
     bb.writeBytes(stream.getBytes(StandardCharsets.UTF_8));
     bb.writeLong(offset);
-    channel.writeAndFlush(bb);
   }
 
   public long queryOffset(String reference, String stream) {
+    return waitForResponse(queryOffsetAsync(reference, stream));
+  }
+
+  /**
+   * Asynchronous version of {@link #queryOffset(String, String)}.
+   *
+   * <p>Several requests can be in flight at the same time on the connection. The future
+   * completes on a thread of the connection, so its callbacks must not block.
+   *
+   * @see #queryOffset(String, String)
+   */
+  public CompletableFuture<Long> queryOffsetAsync(String reference, String stream) {
     if (reference == null || reference.isEmpty() || reference.length() > 256) {
       throw new IllegalArgumentException(
           "Reference must a non-empty string of less than 256 characters");
@@ -1487,7 +1805,7 @@ public class Client implements AutoCloseable {
     }
 
     int length = 2 + 2 + 4 + 2 + reference.length() + 2 + stream.length();
-    int correlationId = correlationSequence.getAndIncrement();
+    int correlationId = correlationSequence.incrementAndGet();
     try {
       ByteBuf bb = allocate(length + 4);
       bb.writeInt(length);
@@ -1498,15 +1816,14 @@ public class Client implements AutoCloseable {
       bb.writeBytes(reference.getBytes(StandardCharsets.UTF_8));
       bb.writeShort(stream.length());
       bb.writeBytes(stream.getBytes(StandardCharsets.UTF_8));
-      OutstandingRequest<QueryOffsetResponse> request = new OutstandingRequest<>(RESPONSE_TIMEOUT);
-      outstandingRequests.put(correlationId, request);
-      channel.writeAndFlush(bb);
-      request.block();
-      QueryOffsetResponse response = request.response.get();
-      if (!response.isOk()) {
-        LOGGER.info("Query offset failed with code {}", response.getResponseCode());
-      }
-      return response.getOffset();
+      return this.<QueryOffsetResponse>sendRequest(correlationId, bb)
+          .thenApply(
+              response -> {
+                if (!response.isOk()) {
+                  LOGGER.info("Query offset failed with code {}", response.getResponseCode());
+                }
+                return response.getOffset();
+              });
     } catch (RuntimeException e) {
       outstandingRequests.remove(correlationId);
       throw new StreamException(e);
@@ -1514,8 +1831,20 @@ public class Client implements AutoCloseable {
   }
 
   public Response unsubscribe(byte subscriptionId) {
+    return waitForResponse(unsubscribeAsync(subscriptionId));
+  }
+
+  /**
+   * Asynchronous version of {@link #unsubscribe(byte)}.
+   *
+   * <p>Several requests can be in flight at the same time on the connection. The future
+   * completes on a thread of the connection, so its callbacks must not block.
+   *
+   * @see #unsubscribe(byte)
+   */
+  public CompletableFuture<Response> unsubscribeAsync(byte subscriptionId) {
     int length = 2 + 2 + 4 + 1;
-    int correlationId = correlationSequence.getAndIncrement();
+    int correlationId = correlationSequence.incrementAndGet();
     try {
       ByteBuf bb = allocate(length + 4);
       bb.writeInt(length);
@@ -1523,11 +1852,7 @@ public class Client implements AutoCloseable {
       bb.writeShort(VERSION_0);
       bb.writeInt(correlationId);
       bb.writeByte(subscriptionId);
-      OutstandingRequest<Response> request = new OutstandingRequest<>(RESPONSE_TIMEOUT);
-      outstandingRequests.put(correlationId, request);
-      channel.writeAndFlush(bb);
-      request.block();
-      return request.response.get();
+      return sendRequest(correlationId, bb);
     } catch (RuntimeException e) {
       outstandingRequests.remove(correlationId);
       throw new StreamException(e);
@@ -1548,6 +1873,13 @@ public class Client implements AutoCloseable {
 
   private void closingSequence(ShutdownContext.ShutdownReason reason) {
     this.nettyClosing.run();
+    // no response can come anymore, pending requests fail immediately
+    for (Integer correlationId : this.outstandingRequests.keySet()) {
+      OutstandingRequest<?> request = this.outstandingRequests.remove(correlationId);
+      if (request != null) {
+        request.fail(new StreamException("Connection closed"));
+      }
+    }
     this.shutdownListenerCallback.accept(reason);
     this.executorServiceClosing.run();
   }
@@ -1646,6 +1978,24 @@ public class Client implements AutoCloseable {
     void handle(byte subscriptionId, long offset, Message message);
   }
 
+  public interface ChunkProcessedListener {
+
+    /**
+     * Callback when all the messages of a chunk have been handed to the {@link MessageListener}.
+     *
+     * <p>Messages are dispatched synchronously, so the message listener is done with the chunk
+     * when this callback is called.
+     *
+     * @param client the client instance (e.g. to ask for more credit)
+     * @param subscriptionId the subscription ID to correlate with a callback
+     * @param offset the first offset in the chunk
+     * @param messageCount the total number of messages in the chunk
+     * @param timestamp the timestamp of the chunk
+     */
+    void handle(
+        Client client, byte subscriptionId, long offset, long messageCount, long timestamp);
+  }
+
   public interface CreditNotification {
 
     void handle(byte subscriptionId, short responseCode);
@@ -1656,6 +2006,19 @@ public class Client implements AutoCloseable {
     void handle(ShutdownContext shutdownContext);
   }
 
+  public interface WritabilityListener {
+
+    /**
+     * Callback when the writability of the connection changes.
+     *
+     * <p>This is called on the IO thread, implementations must not block.
+     *
+     * @param writable whether the outbound buffer went back under its low water mark or over its
+     *     high water mark
+     */
+    void handle(boolean writable);
+  }
+
   private static final class OriginalAndEncodedOutboundEntity {
 
     private final Object original, encoded;
@@ -1694,16 +2057,18 @@ public class Client implements AutoCloseable {
 
   static class EncodedMessageBatch {
 
-    private final MessageBatch.Compression compression;
+    private final Compression compression;
     private final List<Codec.EncodedMessage> messages;
     private int size;
+    // null if the sub-entry is not compressed
+    private byte[] compressedData;
 
-    EncodedMessageBatch(MessageBatch.Compression compression, List<Codec.EncodedMessage> messages) {
+    EncodedMessageBatch(Compression compression, List<Codec.EncodedMessage> messages) {
       this.compression = compression;
       this.messages = messages;
     }
 
-    EncodedMessageBatch(MessageBatch.Compression compression) {
+    EncodedMessageBatch(Compression compression) {
       this(compression, new ArrayList<>());
     }
 
@@ -1711,6 +2076,31 @@ public class Client implements AutoCloseable {
       this.messages.add(encodedMessage);
       size += (4 + encodedMessage.getSize());
     }
+
+    /**
+     * Compress the messages of the sub-entry, no message must be added afterwards.
+     *
+     * @param compressionCodec the codec to use
+     */
+    void compress(CompressionCodec compressionCodec) {
+      ByteBuf uncompressed = ByteBufAllocator.DEFAULT.heapBuffer(this.size);
+      ByteArrayOutputStream out = new ByteArrayOutputStream(this.size);
+      try {
+        for (Codec.EncodedMessage message : this.messages) {
+          uncompressed.writeInt(message.getSize());
+          message.write(uncompressed);
+        }
+        try (OutputStream compressed = compressionCodec.compress(out)) {
+          uncompressed.readBytes(compressed, uncompressed.readableBytes());
+        }
+      } catch (IOException e) {
+        throw new StreamException("Error while compressing sub-entry with " + compression, e);
+      } finally {
+        uncompressed.release();
+      }
+      this.compressedData = out.toByteArray();
+      this.size = this.compressedData.length;
+    }
   }
 
   private static class OutboundMessageWriteCallback implements OutboundEntityWriteCallback {
@@ -1719,7 +2109,7 @@ public class Client implements AutoCloseable {
     public int write(ByteBuf bb, Object entity, long publishingId) {
       Codec.EncodedMessage messageToPublish = (Codec.EncodedMessage) entity;
       bb.writeInt(messageToPublish.getSize());
-      bb.writeBytes(messageToPublish.getData(), 0, messageToPublish.getSize());
+      messageToPublish.write(bb);
       return 1;
     }
 
@@ -1736,12 +2126,17 @@ public class Client implements AutoCloseable {
       EncodedMessageBatch batchToPublish = (EncodedMessageBatch) entity;
       bb.writeByte(
           0x80
-              | batchToPublish.compression.code
+              | batchToPublish.compression.code()
                   << 4); // 1=SubBatchEntryType:1,CompressionType:3,Reserved:4,
       bb.writeShort(batchToPublish.messages.size());
       bb.writeInt(batchToPublish.size);
-      for (Codec.EncodedMessage message : batchToPublish.messages) {
-        bb.writeInt(message.getSize()).writeBytes(message.getData(), 0, message.getSize());
+      if (batchToPublish.compressedData == null) {
+        for (Codec.EncodedMessage message : batchToPublish.messages) {
+          bb.writeInt(message.getSize());
+          message.write(bb);
+        }
+      } else {
+        bb.writeBytes(batchToPublish.compressedData);
       }
       return batchToPublish.messages.size();
     }
@@ -1938,6 +2333,47 @@ public class Client implements AutoCloseable {
     }
   }
 
+  public static class OffsetCommit {
+
+    private final String reference;
+
+    private final String stream;
+
+    private final long offset;
+
+    public OffsetCommit(String reference, String stream, long offset) {
+      this.reference = reference;
+      this.stream = stream;
+      this.offset = offset;
+    }
+
+    public String getReference() {
+      return reference;
+    }
+
+    public String getStream() {
+      return stream;
+    }
+
+    public long getOffset() {
+      return offset;
+    }
+
+    @Override
+    public String toString() {
+      return "OffsetCommit{"
+          + "reference='"
+          + reference
+          + '\''
+          + ", stream='"
+          + stream
+          + '\''
+          + ", offset="
+          + offset
+          + '}';
+    }
+  }
+
   public static class Broker {
 
     private final String host;
@@ -1995,8 +2431,13 @@ public class Client implements AutoCloseable {
 
     private MessageListener messageListener = (correlationId, offset, message) -> {};
 
+    private ChunkProcessedListener chunkProcessedListener =
+        (client, subscriptionId, offset, messageCount, timestamp) -> {};
+
     private MetadataListener metadataListener = (stream, code) -> {};
 
+    private WritabilityListener writabilityListener = writable -> {};
+
     private CreditNotification creditNotification =
         (subscriptionId, responseCode) ->
             LOGGER.warn(
@@ -2008,7 +2449,14 @@ public class Client implements AutoCloseable {
         new DefaultUsernamePasswordCredentialsProvider("guest", "guest");
     private ChannelCustomizer channelCustomizer = ch -> {};
     private ChunkChecksum chunkChecksum = JdkChunkChecksum.CRC32_SINGLETON;
+    private CompressionCodecFactory compressionCodecFactory = new DefaultCompressionCodecFactory();
     private MetricsCollector metricsCollector = NoOpMetricsCollector.SINGLETON;
+    private int deliveryDispatchLanes = 1;
+    private boolean confirmsOnEventLoop = false;
+    private int maxQueuedChunks = DEFAULT_MAX_QUEUED_CHUNKS;
+    private long maxQueuedChunkBytes = DEFAULT_MAX_QUEUED_CHUNK_BYTES;
+    private WriteBufferWaterMark writeBufferWaterMark;
+    private Duration rpcTimeout = DEFAULT_RPC_TIMEOUT;
 
     public ClientParameters host(String host) {
       this.host = host;
@@ -2040,6 +2488,12 @@ public class Client implements AutoCloseable {
       return this;
     }
 
+    public ClientParameters chunkProcessedListener(
+        ChunkProcessedListener chunkProcessedListener) {
+      this.chunkProcessedListener = chunkProcessedListener;
+      return this;
+    }
+
     public ClientParameters creditNotification(CreditNotification creditNotification) {
       this.creditNotification = creditNotification;
       return this;
@@ -2114,6 +2568,12 @@ public class Client implements AutoCloseable {
       return this;
     }
 
+    public ClientParameters compressionCodecFactory(
+        CompressionCodecFactory compressionCodecFactory) {
+      this.compressionCodecFactory = compressionCodecFactory;
+      return this;
+    }
+
     public ClientParameters clientProperties(Map<String, String> clientProperties) {
       this.clientProperties.putAll(clientProperties);
       return this;
@@ -2139,6 +2599,96 @@ public class Client implements AutoCloseable {
       return this;
     }
 
+    /**
+     * The number of threads to dispatch deliveries on.
+     *
+     * <p>Subscriptions are assigned to a lane by their ID, so the messages of a given
+     * subscription are always dispatched in order. Default is 1.
+     *
+     * <p>Deliveries are not ordered with the other frames of the connection: a subscribe response,
+     * a credit notification, or a metadata update can be handled before chunks received earlier
+     * are dispatched. Chunks of a previous subscription with the same ID are not dispatched once
+     * the ID is used for a new subscription.
+     *
+     * @param deliveryDispatchLanes number of delivery dispatch threads
+     * @return this client parameters instance
+     */
+    public ClientParameters deliveryDispatchLanes(int deliveryDispatchLanes) {
+      this.deliveryDispatchLanes = deliveryDispatchLanes;
+      return this;
+    }
+
+    /**
+     * Whether to handle publish confirms and errors directly on the Netty event loop.
+     *
+     * <p>This saves a thread hop but the {@link PublishConfirmListener} and {@link
+     * PublishErrorListener} must then never block. Default is false (confirms are handled on a
+     * dedicated thread).
+     *
+     * @param confirmsOnEventLoop true to handle confirms on the event loop
+     * @return this client parameters instance
+     */
+    public ClientParameters confirmsOnEventLoop(boolean confirmsOnEventLoop) {
+      this.confirmsOnEventLoop = confirmsOnEventLoop;
+      return this;
+    }
+
+    /**
+     * The limits of the queue of chunks waiting to be dispatched to consumers.
+     *
+     * <p>The connection stops reading from the socket when a limit is reached and resumes when
+     * the queue goes back under half of both limits. Message listeners should then not block on
+     * requests to the broker on the same connection. Default is 256 chunks and 64 MB.
+     *
+     * @param maxChunks the maximum number of queued chunks
+     * @param maxBytes the maximum size of queued chunks in bytes
+     * @return this client parameters instance
+     */
+    public ClientParameters deliveryQueueLimits(int maxChunks, long maxBytes) {
+      this.maxQueuedChunks = maxChunks;
+      this.maxQueuedChunkBytes = maxBytes;
+      return this;
+    }
+
+    public ClientParameters writabilityListener(WritabilityListener writabilityListener) {
+      this.writabilityListener = writabilityListener;
+      return this;
+    }
+
+    /**
+     * The low and high water marks of the outbound buffer of the connection.
+     *
+     * <p>The connection becomes unwritable when the outbound buffer goes over the high water mark
+     * and writable again when it goes under the low water mark. Default is Netty's (32 KB and 64
+     * KB).
+     *
+     * @param low the low water mark in bytes
+     * @param high the high water mark in bytes
+     * @return this client parameters instance
+     * @see WritabilityListener
+     */
+    public ClientParameters writeBufferWaterMark(int low, int high) {
+      this.writeBufferWaterMark = new WriteBufferWaterMark(low, high);
+      return this;
+    }
+
+    /**
+     * How long to wait for the response of a request before failing it.
+     *
+     * <p>Default is 10 seconds.
+     *
+     * @param rpcTimeout the timeout
+     * @return this client parameters instance
+     */
+    public ClientParameters rpcTimeout(Duration rpcTimeout) {
+      this.rpcTimeout = rpcTimeout;
+      return this;
+    }
+
+    MetricsCollector metricsCollector() {
+      return this.metricsCollector;
+    }
+
     ClientParameters duplicate() {
       ClientParameters duplicate = new ClientParameters();
       for (Field field : ClientParameters.class.getDeclaredFields()) {
@@ -2189,41 +2739,53 @@ public class Client implements AutoCloseable {
 
   private static class OutstandingRequest<T> {
 
-    private final CountDownLatch latch = new CountDownLatch(1);
-
     private final Duration timeout;
 
-    private final AtomicReference<T> response = new AtomicReference<>();
+    private final CompletableFuture<T> response = new CompletableFuture<>();
+
+    private final Runnable responseRead;
 
     private OutstandingRequest(Duration timeout) {
+      this(timeout, null);
+    }
+
+    private OutstandingRequest(Duration timeout, Runnable responseRead) {
       this.timeout = timeout;
+      this.responseRead = responseRead;
     }
 
-    void block() {
-      boolean completed;
+    void responseRead() {
+      if (this.responseRead != null) {
+        this.responseRead.run();
+      }
+    }
+
+    void complete(T value) {
+      this.response.complete(value);
+    }
+
+    void fail(Throwable cause) {
+      this.response.completeExceptionally(cause);
+    }
+
+    T block() {
       try {
-        completed = latch.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        return response.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
       } catch (InterruptedException e) {
         Thread.currentThread().interrupt();
         throw new StreamException("Interrupted while waiting for response");
-      }
-      if (!completed) {
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof StreamException) {
+          throw (StreamException) e.getCause();
+        } else {
+          throw new StreamException(e.getCause());
+        }
+      } catch (TimeoutException e) {
         throw new StreamException("Could not get response in " + timeout.toMillis() + " ms");
       }
     }
   }
 
-  static final class SubscriptionOffset {
-
-    private final int subscriptionId;
-    private final long offset;
-
-    SubscriptionOffset(int subscriptionId, long offset) {
-      this.subscriptionId = subscriptionId;
-      this.offset = offset;
-    }
-  }
-
   public static class StreamParametersBuilder {
 
     private final Map<String, String> parameters = new HashMap<>();
@@ -2319,18 +2881,32 @@ public class Client implements AutoCloseable {
         if (commandId == COMMAND_PUBLISH_CONFIRM) {
           task = () -> handleConfirm(m, publishConfirmListener, frameSize, metricsCollector);
         } else if (commandId == COMMAND_DELIVER) {
+          // the subscription ID is the first byte after the command ID and the version
+          int subscriptionId = m.getByte(m.readerIndex()) & 0xFF;
+          int generation = deliveryGenerations[subscriptionId];
+          // the limit applies only to the first chunk of the subscription
+          long offsetLimit = subscriptionOffsets.getAndSet(subscriptionId, NO_OFFSET_LIMIT);
           task =
-              () ->
+              () -> {
+                if (subscriptionGenerations.get(subscriptionId) == generation) {
                   handleDeliver(
                       m,
                       Client.this,
                       chunkListener,
                       messageListener,
+                      chunkProcessedListener,
                       frameSize,
                       codec,
-                      subscriptionOffsets,
+                      compressionCodecFactory,
+                      offsetLimit,
                       chunkChecksum,
                       metricsCollector);
+                } else {
+                  // the ID has been re-used, the chunk must not reach the new subscription
+                  LOGGER.debug(
+                      "Dropping chunk of a previous subscription with ID {}", subscriptionId);
+                }
+              };
         } else if (commandId == COMMAND_PUBLISH_ERROR) {
           task = () -> handlePublishError(m, publishErrorListener, frameSize, metricsCollector);
         } else if (commandId == COMMAND_METADATA_UPDATE) {
@@ -2353,8 +2929,14 @@ public class Client implements AutoCloseable {
           task = () -> handleCreditNotification(m, frameSize, creditNotification);
         } else if (commandId == COMMAND_QUERY_OFFSET) {
           task = () -> handleQueryOffsetResponse(m, frameSize, outstandingRequests);
-        } else if (commandId == COMMAND_SUBSCRIBE
-            || commandId == COMMAND_UNSUBSCRIBE
+        } else if (commandId == COMMAND_SUBSCRIBE) {
+          // before reading the next frames, which can be chunks of the subscription
+          OutstandingRequest<?> request = outstandingRequests.get(m.getInt(m.readerIndex()));
+          if (request != null) {
+            request.responseRead();
+          }
+          task = () -> handleResponse(m, frameSize, outstandingRequests);
+        } else if (commandId == COMMAND_UNSUBSCRIBE
             || commandId == COMMAND_CREATE_STREAM
             || commandId == COMMAND_DELETE_STREAM
             || commandId == COMMAND_OPEN) {
@@ -2366,7 +2948,10 @@ public class Client implements AutoCloseable {
       }
 
       if (task != null) {
-        executorService.submit(
+        ExecutorService dispatchExecutorService = dispatchExecutorService(commandId, m);
+        // chunks are the only frames that can pile up, they count in the inbound flow control
+        boolean flowControlled = commandId == COMMAND_DELIVER && dispatchExecutorService != null;
+        Runnable taskWithRelease =
             () -> {
               try {
                 task.run();
@@ -2374,9 +2959,72 @@ public class Client implements AutoCloseable {
                 LOGGER.warn("Error while handling response from server", e);
               } finally {
                 m.release();
+                if (flowControlled) {
+                  inboundFlowControl.dequeued(frameSize);
+                }
               }
-            });
+            };
+        if (dispatchExecutorService == null) {
+          taskWithRelease.run();
+        } else {
+          // accounted before the submission, the task can complete before submit returns
+          if (flowControlled) {
+            inboundFlowControl.enqueued(frameSize);
+          }
+          try {
+            dispatchExecutorService.submit(taskWithRelease);
+          } catch (RejectedExecutionException e) {
+            // the lane has been shut down, the connection is closing
+            LOGGER.debug("Could not dispatch frame (command {}): {}", commandId, e.getMessage());
+            m.release();
+            if (flowControlled) {
+              inboundFlowControl.dequeued(frameSize);
+            }
+          }
+        }
+      }
+    }
+
+    /**
+     * Pick the dispatch lane of an inbound frame.
+     *
+     * <p>Confirms and publish errors have their own lane (or run on the event loop), deliveries are
+     * spread across the delivery lanes by subscription ID (so they stay ordered for a given
+     * subscription), and everything else goes to the control lane. A slow message listener then
+     * does not delay confirms and RPC responses on the same connection.
+     *
+     * <p>Frames of different lanes are not ordered: e.g. a metadata update for a stream can be
+     * handled while chunks of this stream are still waiting in a delivery lane. Listeners must not
+     * rely on chunks having been dispatched when they get a control frame. Chunks of a previous
+     * subscription still waiting when a subscription ID is re-used are dropped, they never reach
+     * the new subscription.
+     *
+     * @param commandId the command of the frame
+     * @param frame the frame, with the command ID and version already read
+     * @return the executor service to use, <code>null</code> to run on the event loop
+     */
+    private ExecutorService dispatchExecutorService(short commandId, ByteBuf frame) {
+      if (commandId == COMMAND_PUBLISH_CONFIRM || commandId == COMMAND_PUBLISH_ERROR) {
+        return confirmExecutorService;
+      } else if (commandId == COMMAND_DELIVER) {
+        // the subscription ID is the first byte after the command ID and the version
+        int subscriptionId = frame.getByte(frame.readerIndex()) & 0xFF;
+        return deliveryExecutorServices[subscriptionId % deliveryExecutorServices.length];
+      } else {
+        return executorService;
+      }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+      boolean writable = ctx.channel().isWritable();
+      LOGGER.debug("Netty channel writability changed to {}", writable);
+      try {
+        writabilityListener.handle(writable);
+      } catch (Exception e) {
+        LOGGER.warn("Error in writability listener", e);
       }
+      ctx.fireChannelWritabilityChanged();
     }
 
     @Override
@@ -16,6 +16,7 @@ package com.rabbitmq.stream.impl;
 
 import com.rabbitmq.stream.Codec;
 import com.rabbitmq.stream.StreamException;
+import com.rabbitmq.stream.codec.NativeCodec;
 
 final class Codecs {
 
@@ -31,6 +32,9 @@ final class Codecs {
     try {
       return (Codec)
           Class.forName("com.rabbitmq.stream.codec.QpidProtonCodec").getConstructor().newInstance();
+    } catch (ClassNotFoundException | NoClassDefFoundError e) {
+      // Proton-J is an optional dependency
+      return new NativeCodec();
     } catch (Exception e) {
       throw new StreamException(e);
     }
@@ -15,14 +15,18 @@
 package com.rabbitmq.stream.impl;
 
 import com.rabbitmq.stream.BackOffDelayPolicy;
+import com.rabbitmq.stream.ChunkHandler;
 import com.rabbitmq.stream.Constants;
 import com.rabbitmq.stream.Consumer;
+import com.rabbitmq.stream.CreditStrategy;
+import com.rabbitmq.stream.Message;
 import com.rabbitmq.stream.MessageHandler;
 import com.rabbitmq.stream.MessageHandler.Context;
 import com.rabbitmq.stream.OffsetSpecification;
 import com.rabbitmq.stream.StreamDoesNotExistException;
 import com.rabbitmq.stream.StreamException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
@@ -31,8 +35,11 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -48,15 +55,43 @@ class ConsumersCoordinator {
   private final StreamEnvironment environment;
   private final Map<String, ManagerPool> pools = new ConcurrentHashMap<>();
   private final Function<Client.ClientParameters, Client> clientFactory;
+  private final StreamMetadataLookup metadataLookup;
+  private final int maxConsumersByConnection;
 
   ConsumersCoordinator(
-      StreamEnvironment environment, Function<Client.ClientParameters, Client> clientFactory) {
+      StreamEnvironment environment,
+      Function<Client.ClientParameters, Client> clientFactory,
+      StreamMetadataLookup metadataLookup,
+      int maxConsumersByConnection) {
+    if (maxConsumersByConnection <= 0 || maxConsumersByConnection > MAX_SUBSCRIPTIONS_PER_CLIENT) {
+      throw new IllegalArgumentException(
+          "The maximum number of consumers by connection must be between 1 and "
+              + MAX_SUBSCRIPTIONS_PER_CLIENT);
+    }
     this.environment = environment;
     this.clientFactory = clientFactory;
+    this.metadataLookup = metadataLookup;
+    this.maxConsumersByConnection = maxConsumersByConnection;
+  }
+
+  ConsumersCoordinator(
+      StreamEnvironment environment,
+      Function<Client.ClientParameters, Client> clientFactory,
+      int maxConsumersByConnection) {
+    this(
+        environment,
+        clientFactory,
+        new StreamMetadataLookup(() -> environment.locator()),
+        maxConsumersByConnection);
+  }
+
+  ConsumersCoordinator(
+      StreamEnvironment environment, Function<Client.ClientParameters, Client> clientFactory) {
+    this(environment, clientFactory, MAX_SUBSCRIPTIONS_PER_CLIENT);
   }
 
-  ConsumersCoordinator(StreamEnvironment environment) {
-    this(environment, cp -> new Client(cp));
+  ConsumersCoordinator(StreamEnvironment environment, int maxConsumersByConnection) {
+    this(environment, cp -> new Client(cp), environment.metadataLookup(), maxConsumersByConnection);
   }
 
   private static String keyForClientSubscription(Client.Broker broker) {
@@ -74,6 +109,29 @@ class ConsumersCoordinator {
       OffsetSpecification offsetSpecification,
       String trackingReference,
       MessageHandler messageHandler) {
+    return subscribe(
+        consumer,
+        stream,
+        offsetSpecification,
+        trackingReference,
+        messageHandler,
+        null,
+        CreditStrategy.DEFAULT);
+  }
+
+  /**
+   * Subscribe a consumer to a stream.
+   *
+   * <p>Messages go either to the message handler or to the chunk handler, the other one is null.
+   */
+  Runnable subscribe(
+      StreamConsumer consumer,
+      String stream,
+      OffsetSpecification offsetSpecification,
+      String trackingReference,
+      MessageHandler messageHandler,
+      ChunkHandler chunkHandler,
+      CreditStrategy creditStrategy) {
     // FIXME fail immediately if there's no locator (can provide a supplier that does not retry)
     List<Client.Broker> candidates = findBrokersForStream(stream);
     Client.Broker newNode = pickBroker(candidates);
@@ -81,7 +139,8 @@ class ConsumersCoordinator {
     // create stream subscription to track final and changing state of this very subscription
     // we keep this instance when we move the subscription from a client to another one
     SubscriptionTracker subscriptionTracker =
-        new SubscriptionTracker(consumer, stream, trackingReference, messageHandler);
+        new SubscriptionTracker(
+            consumer, stream, trackingReference, messageHandler, chunkHandler, creditStrategy);
 
     String key = keyForClientSubscription(newNode);
 
@@ -96,25 +155,43 @@ class ConsumersCoordinator {
                         .host(newNode.getHost())
                         .port(newNode.getPort())));
 
-    managerPool.add(subscriptionTracker, offsetSpecification);
+    waitForSubscription(managerPool.add(subscriptionTracker, offsetSpecification));
 
     return () -> subscriptionTracker.cancel();
   }
 
-  private Client locator() {
-    return environment.locator();
+  private static void waitForSubscription(CompletableFuture<Void> subscription) {
+    try {
+      subscription.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new StreamException("Interrupted while subscribing", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof CompletionException && cause.getCause() != null) {
+        cause = cause.getCause();
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else {
+        throw new StreamException(cause);
+      }
+    }
   }
 
   // package protected for testing
   List<Client.Broker> findBrokersForStream(String stream) {
     // FIXME make sure locator is not null (retry)
-    Map<String, Client.StreamMetadata> metadata = locator().metadata(stream);
-    if (metadata.size() == 0 || metadata.get(stream) == null) {
+    return findBrokersForStream(stream, this.metadataLookup.metadata(stream));
+  }
+
+  private static List<Client.Broker> findBrokersForStream(
+      String stream, Client.StreamMetadata streamMetadata) {
+    if (streamMetadata == null) {
       // this is not supposed to happen
       throw new StreamDoesNotExistException(stream);
     }
 
-    Client.StreamMetadata streamMetadata = metadata.get(stream);
     if (!streamMetadata.isResponseOk()) {
       if (streamMetadata.getResponseCode() == Constants.RESPONSE_CODE_STREAM_DOES_NOT_EXIST) {
         throw new StreamDoesNotExistException(stream);
@@ -198,7 +275,14 @@ class ConsumersCoordinator {
     private final String stream;
     private final String offsetTrackingReference;
     private final MessageHandler messageHandler;
+    private final ChunkHandler chunkHandler;
+    // only accessed from the delivery thread of the subscription
+    private final ChunkMessages chunkMessages;
     private final StreamConsumer consumer;
+    private final CreditStrategy creditStrategy;
+    private volatile CreditStrategy.Controller creditController;
+    // only accessed from the delivery thread of the subscription
+    private long chunkReceivedAt;
     private volatile long offset;
     private volatile byte subscriptionIdInClient;
     private volatile ClientSubscriptionsManager manager;
@@ -207,11 +291,16 @@ class ConsumersCoordinator {
         StreamConsumer consumer,
         String stream,
         String offsetTrackingReference,
-        MessageHandler messageHandler) {
+        MessageHandler messageHandler,
+        ChunkHandler chunkHandler,
+        CreditStrategy creditStrategy) {
       this.consumer = consumer;
       this.stream = stream;
       this.offsetTrackingReference = offsetTrackingReference;
       this.messageHandler = messageHandler;
+      this.chunkHandler = chunkHandler;
+      this.chunkMessages = chunkHandler == null ? null : new ChunkMessages(consumer);
+      this.creditStrategy = creditStrategy;
     }
 
     synchronized void cancel() {
@@ -249,28 +338,23 @@ class ConsumersCoordinator {
       managers.add(new ClientSubscriptionsManager(this, clientParameters));
     }
 
-    private synchronized void add(
+    private synchronized CompletableFuture<Void> add(
         SubscriptionTracker subscriptionTracker, OffsetSpecification offsetSpecification) {
-      boolean added = false;
       // FIXME deal with manager unavailability (manager may be closing because of connection
       // closing)
       // try all of them until it succeeds, throw exception if failure
       for (ClientSubscriptionsManager manager : managers) {
         if (!manager.isFull()) {
-          manager.add(subscriptionTracker, offsetSpecification);
-          added = true;
-          break;
+          return manager.add(subscriptionTracker, offsetSpecification);
         }
       }
-      if (!added) {
-        LOGGER.debug(
-            "Creating subscription manager on {}, this is subscription manager #{}",
-            name,
-            managers.size() + 1);
-        ClientSubscriptionsManager manager = new ClientSubscriptionsManager(this, clientParameters);
-        managers.add(manager);
-        manager.add(subscriptionTracker, offsetSpecification);
-      }
+      LOGGER.debug(
+          "Creating subscription manager on {}, this is subscription manager #{}",
+          name,
+          managers.size() + 1);
+      ClientSubscriptionsManager manager = new ClientSubscriptionsManager(this, clientParameters);
+      managers.add(manager);
+      return manager.add(subscriptionTracker, offsetSpecification);
     }
 
     private synchronized void maybeDisposeManager(
@@ -326,8 +410,36 @@ class ConsumersCoordinator {
               clientParameters
                   .clientProperty("name", "rabbitmq-stream-consumer")
                   .chunkListener(
-                      (client, subscriptionId, offset, messageCount, dataSize) ->
-                          client.credit(subscriptionId, 1))
+                      (client, subscriptionId, offset, messageCount, dataSize) -> {
+                        SubscriptionTracker subscriptionTracker =
+                            subscriptionTrackers.get(subscriptionId & 0xFF);
+                        if (subscriptionTracker != null) {
+                          subscriptionTracker.chunkReceivedAt = System.nanoTime();
+                          subscriptionTracker.creditController.chunkReceived(messageCount);
+                        }
+                      })
+                  .chunkProcessedListener(
+                      (client, subscriptionId, offset, messageCount, timestamp) -> {
+                        SubscriptionTracker subscriptionTracker =
+                            subscriptionTrackers.get(subscriptionId & 0xFF);
+                        if (subscriptionTracker != null) {
+                          ChunkMessages chunkMessages = subscriptionTracker.chunkMessages;
+                          try {
+                            if (chunkMessages != null && chunkMessages.size() > 0) {
+                              chunkMessages.timestamp = timestamp;
+                              subscriptionTracker.chunkHandler.handle(chunkMessages);
+                            }
+                          } finally {
+                            if (chunkMessages != null) {
+                              chunkMessages.clear();
+                            }
+                            // a failing chunk handler must not leak the credit
+                            subscriptionTracker.creditController.chunkProcessed(
+                                messageCount,
+                                System.nanoTime() - subscriptionTracker.chunkReceivedAt);
+                          }
+                        }
+                      })
                   .creditNotification(
                       (subscriptionId, responseCode) ->
                           LOGGER.debug(
@@ -340,9 +452,14 @@ class ConsumersCoordinator {
                             subscriptionTrackers.get(subscriptionId & 0xFF);
                         if (subscriptionTracker != null) {
                           subscriptionTracker.offset = offset;
-                          subscriptionTracker.messageHandler.handle(
-                              new MessageHandlerContext(offset, subscriptionTracker.consumer),
-                              message);
+                          if (subscriptionTracker.chunkMessages == null) {
+                            subscriptionTracker.messageHandler.handle(
+                                new MessageHandlerContext(offset, subscriptionTracker.consumer),
+                                message);
+                          } else {
+                            // dispatched once the whole chunk is there
+                            subscriptionTracker.chunkMessages.add(offset, message);
+                          }
                           // FIXME set offset here as well, best effort to avoid duplicates
                         } else {
                           LOGGER.debug("Could not find stream subscription {}", subscriptionId);
@@ -364,6 +481,9 @@ class ConsumersCoordinator {
                                     subscriptionTrackers.stream()
                                         .filter(tracker -> tracker != null)
                                         .forEach(tracker -> tracker.detachFromManager());
+                                    streamToStreamSubscriptions
+                                        .keySet()
+                                        .forEach(metadataLookup::invalidate);
                                     for (Entry<String, Set<SubscriptionTracker>> entry :
                                         streamToStreamSubscriptions.entrySet()) {
                                       String stream = entry.getKey();
@@ -388,6 +508,7 @@ class ConsumersCoordinator {
                         LOGGER.debug(
                             "Received metadata notification for {}, stream is likely to have become unavailable",
                             stream);
+                        metadataLookup.invalidate(stream);
 
                         Set<SubscriptionTracker> affectedSubscriptions;
                         synchronized (ClientSubscriptionsManager.this) {
@@ -434,18 +555,23 @@ class ConsumersCoordinator {
         String stream,
         BackOffDelayPolicy delayPolicy,
         boolean closeClient) {
-      Runnable consumersClosingCallback =
-          () -> {
+      java.util.function.Consumer<Throwable> consumersClosingCallback =
+          cause -> {
             for (SubscriptionTracker affectedSubscription : subscriptions) {
               try {
-                affectedSubscription.consumer.closeAfterStreamDeletion();
+                affectedSubscription.consumer.closeAfterStreamDeletion(cause);
               } catch (Exception e) {
                 LOGGER.debug("Error while closing consumer", e.getMessage());
               }
             }
           };
 
-      AsyncRetry.asyncRetry(() -> findBrokersForStream(stream))
+      // not blocking, so the lookups of all the streams to recover can go in the same request
+      AsyncRetry.asyncRetryFuture(
+              () ->
+                  metadataLookup
+                      .lookup(stream)
+                      .thenApply(metadata -> findBrokersForStream(stream, metadata)))
           .description("Candidate lookup to consume from " + stream)
           .scheduler(environment.scheduledExecutorService())
           .retry(ex -> !(ex instanceof StreamDoesNotExistException))
@@ -454,7 +580,7 @@ class ConsumersCoordinator {
           .thenAccept(
               candidates -> {
                 if (candidates == null) {
-                  consumersClosingCallback.run();
+                  consumersClosingCallback.accept(new StreamDoesNotExistException(stream));
                 } else {
                   for (SubscriptionTracker affectedSubscription : subscriptions) {
                     try {
@@ -477,9 +603,19 @@ class ConsumersCoordinator {
                       if (affectedSubscription.consumer.isOpen()) {
                         synchronized (affectedSubscription.consumer) {
                           if (affectedSubscription.consumer.isOpen()) {
-                            subscriptionPool.add(
-                                affectedSubscription,
-                                OffsetSpecification.offset(affectedSubscription.offset));
+                            // no waiting, the subscriptions of the stream go out in parallel
+                            subscriptionPool
+                                .add(
+                                    affectedSubscription,
+                                    OffsetSpecification.offset(affectedSubscription.offset))
+                                .exceptionally(
+                                    ex -> {
+                                      LOGGER.warn(
+                                          "Error while re-assigning subscription from stream {}: {}",
+                                          stream,
+                                          ex.getMessage());
+                                      return null;
+                                    });
                           }
                         }
                       }
@@ -502,72 +638,122 @@ class ConsumersCoordinator {
                     subscriptions.size(),
                     stream,
                     ex);
-                consumersClosingCallback.run();
+                Throwable cause = ex;
+                if (cause instanceof CompletionException && cause.getCause() != null) {
+                  cause = cause.getCause();
+                }
+                consumersClosingCallback.accept(cause);
                 return null;
               });
     }
 
-    synchronized void add(
+    /**
+     * Reserve a slot for the subscription and send the subscription request(s).
+     *
+     * <p>The data structures are updated right away, the requests go out without waiting for their
+     * response. The returned future completes once the broker has accepted the subscription. On
+     * failure, the slot is released and the future completes exceptionally.
+     */
+    CompletableFuture<Void> add(
         SubscriptionTracker subscriptionTracker, OffsetSpecification offsetSpecification) {
-      // FIXME check manager is still open (not closed because of connection failure)
-      byte subscriptionId = 0;
-      for (int i = 0; i < MAX_SUBSCRIPTIONS_PER_CLIENT; i++) {
-        if (subscriptionTrackers.get(i) == null) {
-          subscriptionId = (byte) i;
-          break;
+      byte subscriptionId;
+      synchronized (this) {
+        // FIXME check manager is still open (not closed because of connection failure)
+        subscriptionId = 0;
+        for (int i = 0; i < MAX_SUBSCRIPTIONS_PER_CLIENT; i++) {
+          if (subscriptionTrackers.get(i) == null) {
+            subscriptionId = (byte) i;
+            break;
+          }
         }
-      }
-
-      List<SubscriptionTracker> previousSubscriptions = this.subscriptionTrackers;
-
-      LOGGER.debug("Subscribing to {}", subscriptionTracker.stream);
-      try {
         // updating data structures before subscribing
         // (to make sure they are up-to-date in case message would arrive super fast)
         subscriptionTracker.assign(subscriptionId, this);
+        byte creditSubscriptionId = subscriptionId;
+        subscriptionTracker.creditController =
+            subscriptionTracker.creditStrategy.controller(
+                credits -> client.credit(creditSubscriptionId, credits));
         streamToStreamSubscriptions
             .computeIfAbsent(subscriptionTracker.stream, s -> ConcurrentHashMap.newKeySet())
             .add(subscriptionTracker);
         this.subscriptionTrackers =
-            update(previousSubscriptions, subscriptionId, subscriptionTracker);
-        // FIXME consider using fewer initial credits
+            update(this.subscriptionTrackers, subscriptionId, subscriptionTracker);
+      }
 
+      LOGGER.debug("Subscribing to {}", subscriptionTracker.stream);
+      byte id = subscriptionId;
+      CompletableFuture<Void> result;
+      try {
+        CompletableFuture<OffsetSpecification> offsetSpecificationFuture;
         String offsetTrackingReference = subscriptionTracker.offsetTrackingReference;
-        if (subscriptionTracker.offsetTrackingReference != null) {
-          long trackedOffset =
-              client.queryOffset(offsetTrackingReference, subscriptionTracker.stream);
-          if (trackedOffset != 0) {
-            LOGGER.debug(
-                "Using offset {} to start consuming from {} with consumer {} " + "(instead of {})",
-                trackedOffset,
-                subscriptionTracker.stream,
-                offsetTrackingReference,
-                offsetSpecification);
-            offsetSpecification = OffsetSpecification.offset(trackedOffset + 1);
-          }
+        if (offsetTrackingReference != null) {
+          offsetSpecificationFuture =
+              client
+                  .queryOffsetAsync(offsetTrackingReference, subscriptionTracker.stream)
+                  .thenApply(
+                      trackedOffset -> {
+                        if (trackedOffset != 0) {
+                          LOGGER.debug(
+                              "Using offset {} to start consuming from {} with consumer {} "
+                                  + "(instead of {})",
+                              trackedOffset,
+                              subscriptionTracker.stream,
+                              offsetTrackingReference,
+                              offsetSpecification);
+                          return OffsetSpecification.offset(trackedOffset + 1);
+                        } else {
+                          return offsetSpecification;
+                        }
+                      });
+        } else {
+          offsetSpecificationFuture = CompletableFuture.completedFuture(offsetSpecification);
         }
 
-        Client.Response subscribeResponse =
-            client.subscribe(subscriptionId, subscriptionTracker.stream, offsetSpecification, 10);
-        if (!subscribeResponse.isOk()) {
-          String message =
-              "Subscription to stream "
-                  + subscriptionTracker.stream
-                  + " failed with code "
-                  + subscribeResponse.getResponseCode();
-          LOGGER.debug(message);
-          throw new StreamException(message);
-        }
+        result =
+            offsetSpecificationFuture
+                .thenCompose(
+                    specification ->
+                        client.subscribeAsync(
+                            id,
+                            subscriptionTracker.stream,
+                            specification,
+                            subscriptionTracker.creditStrategy.initialCredits()))
+                .thenAccept(
+                    subscribeResponse -> {
+                      if (!subscribeResponse.isOk()) {
+                        String message =
+                            "Subscription to stream "
+                                + subscriptionTracker.stream
+                                + " failed with code "
+                                + subscribeResponse.getResponseCode();
+                        LOGGER.debug(message);
+                        throw new StreamException(message);
+                      }
+                      LOGGER.debug("Subscribed to {}", subscriptionTracker.stream);
+                    });
       } catch (RuntimeException e) {
-        subscriptionTracker.assign((byte) -1, null);
-        this.subscriptionTrackers = previousSubscriptions;
-        streamToStreamSubscriptions
-            .computeIfAbsent(subscriptionTracker.stream, s -> ConcurrentHashMap.newKeySet())
-            .remove(subscriptionTracker);
-        throw e;
+        result = new CompletableFuture<>();
+        result.completeExceptionally(e);
       }
 
-      LOGGER.debug("Subscribed to {}", subscriptionTracker.stream);
+      return result.whenComplete(
+          (v, ex) -> {
+            if (ex != null) {
+              rollback(subscriptionTracker, id);
+            }
+          });
+    }
+
+    private synchronized void rollback(SubscriptionTracker subscriptionTracker, byte id) {
+      subscriptionTracker.assign((byte) -1, null);
+      if (this.subscriptionTrackers.get(id & 0xFF) == subscriptionTracker) {
+        this.subscriptionTrackers = update(this.subscriptionTrackers, id, null);
+      }
+      Set<SubscriptionTracker> subscriptions =
+          streamToStreamSubscriptions.get(subscriptionTracker.stream);
+      if (subscriptions != null) {
+        subscriptions.remove(subscriptionTracker);
+      }
     }
 
     synchronized void remove(SubscriptionTracker subscriptionTracker) {
@@ -607,7 +793,7 @@ class ConsumersCoordinator {
     }
 
     synchronized boolean isFull() {
-      return trackersCount() == MAX_SUBSCRIPTIONS_PER_CLIENT;
+      return trackersCount() >= maxConsumersByConnection;
     }
 
     synchronized boolean isEmpty() {
@@ -639,6 +825,86 @@ class ConsumersCoordinator {
     }
   }
 
+  /** The messages of a chunk, re-used from one chunk to the other. */
+  private static final class ChunkMessages implements ChunkHandler.Chunk {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Consumer consumer;
+    private Message[] messages = new Message[INITIAL_CAPACITY];
+    private long[] offsets = new long[INITIAL_CAPACITY];
+    private int size = 0;
+    private long timestamp;
+
+    private ChunkMessages(Consumer consumer) {
+      this.consumer = consumer;
+    }
+
+    private void add(long offset, Message message) {
+      if (this.size == this.messages.length) {
+        this.messages = Arrays.copyOf(this.messages, this.size * 2);
+        this.offsets = Arrays.copyOf(this.offsets, this.size * 2);
+      }
+      this.messages[this.size] = message;
+      this.offsets[this.size] = offset;
+      this.size++;
+    }
+
+    private void clear() {
+      // no reference to messages of the previous chunk
+      Arrays.fill(this.messages, 0, this.size, null);
+      this.size = 0;
+    }
+
+    @Override
+    public int size() {
+      return this.size;
+    }
+
+    @Override
+    public Message message(int index) {
+      checkIndex(index);
+      return this.messages[index];
+    }
+
+    @Override
+    public long offset(int index) {
+      checkIndex(index);
+      return this.offsets[index];
+    }
+
+    @Override
+    public long firstOffset() {
+      return offset(0);
+    }
+
+    @Override
+    public long lastOffset() {
+      return offset(this.size - 1);
+    }
+
+    @Override
+    public long timestamp() {
+      return this.timestamp;
+    }
+
+    @Override
+    public void commit() {
+      this.consumer.commit(lastOffset());
+    }
+
+    @Override
+    public Consumer consumer() {
+      return this.consumer;
+    }
+
+    private void checkIndex(int index) {
+      if (index < 0 || index >= this.size) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", size: " + this.size);
+      }
+    }
+  }
+
   private static final class MessageHandlerContext implements Context {
 
     private final long offset;
@@ -0,0 +1,115 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.impl;
+
+import com.rabbitmq.stream.metrics.MetricsCollector;
+import io.netty.channel.Channel;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds the number and the size of the chunks waiting to be dispatched to consumers.
+ *
+ * <p>Reading from the socket stops (auto-read is turned off) when a limit is reached and resumes
+ * when the queue goes back under half of both limits. The broker then stops sending chunks
+ * through TCP back-pressure, so consumer memory stays bounded whatever the credits are.
+ *
+ * <p>Chunks are enqueued on the event loop and dequeued on the dispatch threads. Auto-read is
+ * always changed on the event loop.
+ */
+final class InboundFlowControl {
+
+  private final Channel channel;
+  private final int maxFrames;
+  private final long maxBytes;
+  private final MetricsCollector metricsCollector;
+  private final AtomicInteger frames = new AtomicInteger(0);
+  private final AtomicLong bytes = new AtomicLong(0);
+  private final AtomicBoolean resumeScheduled = new AtomicBoolean(false);
+  private final Runnable resumeTask = this::maybeResume;
+  private volatile boolean paused = false;
+  // event loop only
+  private long pausedAt;
+
+  InboundFlowControl(
+      Channel channel, int maxFrames, long maxBytes, MetricsCollector metricsCollector) {
+    this.channel = channel;
+    this.maxFrames = maxFrames;
+    this.maxBytes = maxBytes;
+    this.metricsCollector = metricsCollector;
+  }
+
+  /**
+   * Account for a frame handed over to a dispatch thread.
+   *
+   * <p>Must be called on the event loop.
+   *
+   * @param size the size of the frame in bytes
+   */
+  void enqueued(int size) {
+    int queuedFrames = this.frames.incrementAndGet();
+    long queuedBytes = this.bytes.addAndGet(size);
+    this.metricsCollector.deliveryQueued(size);
+    if (!this.paused && (queuedFrames >= this.maxFrames || queuedBytes >= this.maxBytes)) {
+      this.channel.config().setAutoRead(false);
+      this.pausedAt = System.nanoTime();
+      this.paused = true;
+      // the dispatch threads may have drained the queue before seeing the flag
+      maybeResume();
+    }
+  }
+
+  /**
+   * Account for a frame that has been handled.
+   *
+   * @param size the size of the frame in bytes
+   */
+  void dequeued(int size) {
+    int queuedFrames = this.frames.decrementAndGet();
+    long queuedBytes = this.bytes.addAndGet(-size);
+    this.metricsCollector.deliveryDispatched(size);
+    if (this.paused
+        && canResume(queuedFrames, queuedBytes)
+        && this.resumeScheduled.compareAndSet(false, true)) {
+      this.channel.eventLoop().execute(this.resumeTask);
+    }
+  }
+
+  boolean isPaused() {
+    return this.paused;
+  }
+
+  int frames() {
+    return this.frames.get();
+  }
+
+  long bytes() {
+    return this.bytes.get();
+  }
+
+  private boolean canResume(int queuedFrames, long queuedBytes) {
+    return queuedFrames <= this.maxFrames / 2 && queuedBytes <= this.maxBytes / 2;
+  }
+
+  private void maybeResume() {
+    this.resumeScheduled.set(false);
+    if (this.paused && canResume(this.frames.get(), this.bytes.get())) {
+      this.paused = false;
+      this.metricsCollector.readPaused(System.nanoTime() - this.pausedAt);
+      this.channel.config().setAutoRead(true);
+    }
+  }
+}
@@ -18,7 +18,9 @@ import com.rabbitmq.stream.ChunkChecksum;
 import com.rabbitmq.stream.ChunkChecksumValidationException;
 import io.netty.buffer.ByteBuf;
 import io.netty.util.ByteProcessor;
+import java.nio.ByteBuffer;
 import java.util.function.Supplier;
+import java.util.zip.Adler32;
 import java.util.zip.CRC32;
 import java.util.zip.Checksum;
 
@@ -40,7 +42,17 @@ public class JdkChunkChecksum implements ChunkChecksum {
   public void checksum(ByteBuf byteBuf, long dataLength, long expected) {
     Checksum checksum = checksumSupplier.get();
     if (byteBuf.hasArray()) {
-      checksum.update(byteBuf.array(), byteBuf.readerIndex(), byteBuf.readableBytes());
+      checksum.update(
+          byteBuf.array(), byteBuf.arrayOffset() + byteBuf.readerIndex(), byteBuf.readableBytes());
+    } else if (checksum instanceof CRC32) {
+      // the ByteBuffer variant is an intrinsic, a direct buffer is not copied
+      for (ByteBuffer buffer : byteBuf.nioBuffers(byteBuf.readerIndex(), byteBuf.readableBytes())) {
+        ((CRC32) checksum).update(buffer);
+      }
+    } else if (checksum instanceof Adler32) {
+      for (ByteBuffer buffer : byteBuf.nioBuffers(byteBuf.readerIndex(), byteBuf.readableBytes())) {
+        ((Adler32) checksum).update(buffer);
+      }
     } else {
       byteBuf.forEachByte(
           byteBuf.readerIndex(), byteBuf.readableBytes(), new UpdateProcessor(checksum));
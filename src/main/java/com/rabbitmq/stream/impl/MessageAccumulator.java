@@ -14,17 +14,54 @@
 
 package com.rabbitmq.stream.impl;
 
+import com.rabbitmq.stream.Codec;
 import com.rabbitmq.stream.ConfirmationHandler;
 import com.rabbitmq.stream.Message;
 
+/**
+ * Accumulates outbound messages before they are sent in batches.
+ *
+ * <p>Several application threads can add messages concurrently, but there must be only one thread
+ * at a time getting accumulated entities.
+ */
 interface MessageAccumulator {
 
-  boolean add(Message message, ConfirmationHandler confirmationHandler);
+  /**
+   * Encode a message and make sure it fits in a frame.
+   *
+   * @param message the message
+   * @return the encoded message
+   */
+  Codec.EncodedMessage encode(Message message);
+
+  /**
+   * Add a message.
+   *
+   * @param message the message
+   * @param confirmationHandler the confirmation handler of the message
+   * @return true if there is a full batch to send
+   */
+  default boolean add(Message message, ConfirmationHandler confirmationHandler) {
+    return add(encode(message), message, confirmationHandler);
+  }
+
+  /**
+   * Add a message that is already encoded.
+   *
+   * @param encodedMessage the encoded message, from {@link #encode(Message)}
+   * @param message the message
+   * @param confirmationHandler the confirmation handler of the message
+   * @return true if there is a full batch to send
+   */
+  boolean add(
+      Codec.EncodedMessage encodedMessage, Message message, ConfirmationHandler confirmationHandler);
 
   AccumulatedEntity get();
 
   boolean isEmpty();
 
+  boolean hasFullBatch();
+
   interface AccumulatedEntity {
 
     Object encodedEntity();
@@ -20,26 +20,41 @@ import java.util.List;
 
 public final class MessageBatch {
 
-  final Compression compression;
+  final com.rabbitmq.stream.compression.Compression compression;
   final List<Message> messages;
 
   public MessageBatch() {
-    this(Compression.NONE, new ArrayList<>());
+    this(com.rabbitmq.stream.compression.Compression.NONE, new ArrayList<>());
   }
 
-  public MessageBatch(Compression compression) {
+  public MessageBatch(com.rabbitmq.stream.compression.Compression compression) {
     this(compression, new ArrayList<>());
   }
 
+  /** @deprecated use {@link #MessageBatch(com.rabbitmq.stream.compression.Compression)} */
+  @Deprecated
+  public MessageBatch(Compression compression) {
+    this(compression.toCompression(), new ArrayList<>());
+  }
+
   public MessageBatch(List<Message> messages) {
-    this(Compression.NONE, messages);
+    this(com.rabbitmq.stream.compression.Compression.NONE, messages);
   }
 
-  public MessageBatch(Compression compression, List<Message> messages) {
+  public MessageBatch(
+      com.rabbitmq.stream.compression.Compression compression, List<Message> messages) {
     this.compression = compression;
     this.messages = messages;
   }
 
+  /**
+   * @deprecated use {@link #MessageBatch(com.rabbitmq.stream.compression.Compression, List)}
+   */
+  @Deprecated
+  public MessageBatch(Compression compression, List<Message> messages) {
+    this(compression.toCompression(), messages);
+  }
+
   public MessageBatch add(Message message) {
     this.messages.add(message);
     return this;
@@ -49,18 +64,40 @@ public final class MessageBatch {
     return messages;
   }
 
+  /**
+   * Compression algorithms for sub-entries.
+   *
+   * @deprecated use {@link com.rabbitmq.stream.compression.Compression} instead
+   */
+  @Deprecated
   public enum Compression {
-    NONE((byte) 0);
+    NONE(com.rabbitmq.stream.compression.Compression.NONE),
+    GZIP(com.rabbitmq.stream.compression.Compression.GZIP),
+    SNAPPY(com.rabbitmq.stream.compression.Compression.SNAPPY),
+    LZ4(com.rabbitmq.stream.compression.Compression.LZ4),
+    ZSTD(com.rabbitmq.stream.compression.Compression.ZSTD);
 
-    private static final Compression[] COMPRESSIONS = new Compression[] {NONE};
-    byte code;
+    private final com.rabbitmq.stream.compression.Compression compression;
 
-    Compression(byte code) {
-      this.code = code;
+    Compression(com.rabbitmq.stream.compression.Compression compression) {
+      this.compression = compression;
     }
 
     public static Compression get(byte code) {
-      return COMPRESSIONS[code];
+      return valueOf(com.rabbitmq.stream.compression.Compression.get(code).name());
+    }
+
+    public byte code() {
+      return this.compression.code();
+    }
+
+    /**
+     * The equivalent {@link com.rabbitmq.stream.compression.Compression}.
+     *
+     * @return the compression
+     */
+    public com.rabbitmq.stream.compression.Compression toCompression() {
+      return this.compression;
     }
   }
 }
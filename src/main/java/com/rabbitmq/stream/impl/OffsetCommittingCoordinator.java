@@ -15,20 +15,37 @@
 package com.rabbitmq.stream.impl;
 
 import com.rabbitmq.stream.MessageHandler.Context;
+import com.rabbitmq.stream.impl.Client.OffsetCommit;
 import com.rabbitmq.stream.impl.StreamConsumerBuilder.CommitConfiguration;
+import com.rabbitmq.stream.metrics.MetricsCollector;
+import com.rabbitmq.stream.metrics.NoOpMetricsCollector;
+import io.netty.util.Timeout;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Future;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.LongConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 class OffsetCommittingCoordinator {
 
+  private static final Logger LOGGER = LoggerFactory.getLogger(OffsetCommittingCoordinator.class);
+
+  static final Duration DEFAULT_CHECK_INTERVAL = Duration.ofSeconds(1);
+
   private final StreamEnvironment streamEnvironment;
 
   private final AtomicBoolean started = new AtomicBoolean(false);
@@ -41,15 +58,30 @@ class OffsetCommittingCoordinator {
 
   private final Duration checkInterval;
 
-  private volatile Future<?> checkFuture;
+  // latest requested offset for each reference/stream, the connection is resolved on flush
+  private final ConcurrentMap<CommitKey, PendingCommit> pendingCommits = new ConcurrentHashMap<>();
+
+  private final MetricsCollector metricsCollector;
+
+  private final AtomicBoolean closed = new AtomicBoolean(false);
+
+  private volatile Timeout checkTimeout;
 
   OffsetCommittingCoordinator(StreamEnvironment streamEnvironment) {
-    this(streamEnvironment, Duration.ofSeconds(1));
+    this(streamEnvironment, DEFAULT_CHECK_INTERVAL);
   }
 
   OffsetCommittingCoordinator(StreamEnvironment streamEnvironment, Duration checkInterval) {
+    this(streamEnvironment, checkInterval, NoOpMetricsCollector.SINGLETON);
+  }
+
+  OffsetCommittingCoordinator(
+      StreamEnvironment streamEnvironment,
+      Duration checkInterval,
+      MetricsCollector metricsCollector) {
     this.streamEnvironment = streamEnvironment;
     this.checkInterval = checkInterval;
+    this.metricsCollector = metricsCollector;
   }
 
   Registration registerCommittingConsumer(
@@ -71,43 +103,151 @@ class OffsetCommittingCoordinator {
     }
     trackers.add(tracker);
 
+    start();
+
+    return new Registration(tracker.postProcessingCallback(), tracker.commitCallback());
+  }
+
+  /**
+   * Request an offset commit.
+   *
+   * <p>The commit is not sent right away: only the latest offset of a given reference and stream
+   * is sent on the next flush, with the other commits of the same connection. The connection is
+   * the one the consumer uses at flush time, so commits requested before a recovery go to the new
+   * connection.
+   *
+   * @param consumer the consumer that requests the commit
+   * @param reference the consumer reference
+   * @param stream the stream
+   * @param offset the offset to commit
+   */
+  void commit(StreamConsumer consumer, String reference, String stream, long offset) {
+    this.pendingCommits.put(
+        new CommitKey(reference, stream),
+        new PendingCommit(consumer, new OffsetCommit(reference, stream, offset)));
+    this.metricsCollector.offsetCommitRequest(1);
+    start();
+  }
+
+  /**
+   * Send the pending commits, one write for each connection.
+   *
+   * <p>Commits of a consumer without connection (e.g. during a recovery) and commits that fail to
+   * be sent stay pending for the next flush, unless a more recent commit has been requested in the
+   * meantime or the consumer has been closed.
+   */
+  void flushCommits() {
+    Map<Client, Map<CommitKey, PendingCommit>> commitsByClient = new LinkedHashMap<>();
+    for (Map.Entry<CommitKey, PendingCommit> entry : this.pendingCommits.entrySet()) {
+      PendingCommit pendingCommit = entry.getValue();
+      Client client = pendingCommit.consumer.commitClient();
+      if (client == null && pendingCommit.consumer.isOpen()) {
+        // the consumer is being recovered, the commit waits for the new connection
+        continue;
+      }
+      // removing only this commit, a more recent one may have been requested concurrently
+      if (this.pendingCommits.remove(entry.getKey(), pendingCommit) && client != null) {
+        commitsByClient
+            .computeIfAbsent(client, c -> new LinkedHashMap<>())
+            .put(entry.getKey(), pendingCommit);
+      }
+    }
+    commitsByClient.forEach(
+        (client, commits) -> {
+          List<OffsetCommit> offsetCommits = new ArrayList<>(commits.size());
+          commits.values().forEach(pendingCommit -> offsetCommits.add(pendingCommit.commit));
+          CompletableFuture<Void> write;
+          try {
+            write = client.commitOffsets(offsetCommits);
+          } catch (Exception e) {
+            write = new CompletableFuture<>();
+            write.completeExceptionally(e);
+          }
+          // the commits count as sent only once they have been written to the connection
+          write.whenComplete(
+              (v, ex) -> {
+                if (ex == null) {
+                  this.metricsCollector.offsetCommit(offsetCommits.size());
+                } else {
+                  LOGGER.debug("Error while trying to commit offsets: {}", ex.getMessage());
+                  requeue(commits);
+                }
+              });
+        });
+  }
+
+  private void requeue(Map<CommitKey, PendingCommit> commits) {
+    commits.forEach(
+        (key, pendingCommit) -> {
+          if (pendingCommit.consumer.isOpen()) {
+            // retried on the next flush, unless a more recent commit is pending
+            this.pendingCommits.putIfAbsent(key, pendingCommit);
+          }
+        });
+  }
+
+  private void start() {
     if (started.compareAndSet(false, true)) {
       this.clock.setTime(System.nanoTime());
-      this.checkFuture =
-          this.executor()
-              .scheduleAtFixedRate(
-                  () -> {
-                    if (flushingOnGoing.compareAndSet(false, true)) {
-                      try {
-                        this.clock.setTime(System.nanoTime());
-                        Iterator<Tracker> iterator = trackers.iterator();
-                        while (iterator.hasNext()) {
-                          if (Thread.currentThread().isInterrupted()) {
-                            Thread.currentThread().interrupt();
-                            break;
-                          }
-                          Tracker t = iterator.next();
-                          if (t.consumer().isOpen()) {
-                            t.flushIfNecessary();
-                          } else {
-                            iterator.remove();
-                          }
-                        }
-                      } finally {
-                        flushingOnGoing.set(false);
-                      }
-
-                      // TODO consider cancelling the task if there are no more consumers to track
-                      // it should then be restarted on demand.
-
-                    }
-                  },
-                  this.checkInterval.toMillis(),
-                  this.checkInterval.toMillis(),
-                  TimeUnit.MILLISECONDS);
+      scheduleCheck();
     }
+  }
 
-    return new Registration(tracker.postProcessingCallback(), tracker.commitCallback());
+  private void scheduleCheck() {
+    try {
+      // the timer thread only hands the check over to the executor, the check can block
+      this.checkTimeout =
+          this.streamEnvironment
+              .timer()
+              .newTimeout(
+                  timeout -> handOverCheck(), this.checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (IllegalStateException e) {
+      // the timer has been stopped, the environment is closing
+      LOGGER.debug("Could not schedule offset commit check: {}", e.getMessage());
+      return;
+    }
+    if (this.closed.get()) {
+      this.checkTimeout.cancel();
+    }
+  }
+
+  private void handOverCheck() {
+    try {
+      this.executor().execute(this::check);
+    } catch (RejectedExecutionException e) {
+      // the executor has been shut down, the environment is closing
+      LOGGER.debug("Could not run offset commit check: {}", e.getMessage());
+    }
+  }
+
+  private void check() {
+    if (flushingOnGoing.compareAndSet(false, true)) {
+      try {
+        this.clock.setTime(System.nanoTime());
+        Iterator<Tracker> iterator = trackers.iterator();
+        while (iterator.hasNext()) {
+          if (Thread.currentThread().isInterrupted()) {
+            Thread.currentThread().interrupt();
+            break;
+          }
+          Tracker t = iterator.next();
+          if (t.consumer().isOpen()) {
+            t.flushIfNecessary();
+          } else {
+            iterator.remove();
+          }
+        }
+        flushCommits();
+      } finally {
+        flushingOnGoing.set(false);
+      }
+
+      // TODO consider not rescheduling the check if there are no more consumers to track
+      // it should then be restarted on demand.
+    }
+    if (!this.closed.get()) {
+      scheduleCheck();
+    }
   }
 
   private ScheduledExecutorService executor() {
@@ -121,8 +261,10 @@ class OffsetCommittingCoordinator {
   }
 
   void close() {
-    if (this.checkFuture != null) {
-      checkFuture.cancel(true);
+    this.closed.set(true);
+    flushCommits();
+    if (this.checkTimeout != null) {
+      this.checkTimeout.cancel();
     }
   }
 
@@ -252,6 +394,41 @@ class OffsetCommittingCoordinator {
     }
   }
 
+  private static final class CommitKey {
+
+    private final String reference;
+    private final String stream;
+
+    private CommitKey(String reference, String stream) {
+      this.reference = reference;
+      this.stream = stream;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      CommitKey that = (CommitKey) o;
+      return reference.equals(that.reference) && stream.equals(that.stream);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(reference, stream);
+    }
+  }
+
+  private static final class PendingCommit {
+
+    private final StreamConsumer consumer;
+    private final OffsetCommit commit;
+
+    private PendingCommit(StreamConsumer consumer, OffsetCommit commit) {
+      this.consumer = consumer;
+      this.commit = commit;
+    }
+  }
+
   private static class Clock {
 
     volatile long time;
@@ -38,15 +38,43 @@ class ProducersCoordinator {
   private final StreamEnvironment environment;
   private final Function<Client.ClientParameters, Client> clientFactory;
   private final Map<String, ManagerPool> pools = new ConcurrentHashMap<>();
+  private final StreamMetadataLookup metadataLookup;
+  private final int maxProducersByConnection;
 
-  ProducersCoordinator(StreamEnvironment environment) {
-    this(environment, cp -> new Client(cp));
+  ProducersCoordinator(StreamEnvironment environment, int maxProducersByConnection) {
+    this(environment, cp -> new Client(cp), environment.metadataLookup(), maxProducersByConnection);
   }
 
   ProducersCoordinator(
       StreamEnvironment environment, Function<Client.ClientParameters, Client> clientFactory) {
+    this(environment, clientFactory, MAX_PRODUCERS_PER_CLIENT);
+  }
+
+  ProducersCoordinator(
+      StreamEnvironment environment,
+      Function<Client.ClientParameters, Client> clientFactory,
+      int maxProducersByConnection) {
+    this(
+        environment,
+        clientFactory,
+        new StreamMetadataLookup(() -> environment.locator()),
+        maxProducersByConnection);
+  }
+
+  ProducersCoordinator(
+      StreamEnvironment environment,
+      Function<Client.ClientParameters, Client> clientFactory,
+      StreamMetadataLookup metadataLookup,
+      int maxProducersByConnection) {
+    if (maxProducersByConnection <= 0 || maxProducersByConnection > MAX_PRODUCERS_PER_CLIENT) {
+      throw new IllegalArgumentException(
+          "The maximum number of producers by connection must be between 1 and "
+              + MAX_PRODUCERS_PER_CLIENT);
+    }
     this.environment = environment;
     this.clientFactory = clientFactory;
+    this.metadataLookup = metadataLookup;
+    this.maxProducersByConnection = maxProducersByConnection;
     this.environment.clientParametersCopy();
   }
 
@@ -85,12 +113,15 @@ class ProducersCoordinator {
   }
 
   private Client.Broker getBrokerForProducer(String stream) {
-    Map<String, Client.StreamMetadata> metadata = this.environment.locator().metadata(stream);
-    if (metadata.size() == 0 || metadata.get(stream) == null) {
+    return getBrokerForProducer(stream, this.metadataLookup.metadata(stream));
+  }
+
+  private static Client.Broker getBrokerForProducer(
+      String stream, Client.StreamMetadata streamMetadata) {
+    if (streamMetadata == null) {
       throw new StreamDoesNotExistException(stream);
     }
 
-    Client.StreamMetadata streamMetadata = metadata.get(stream);
     if (!streamMetadata.isResponseOk()) {
       if (streamMetadata.getResponseCode() == Constants.RESPONSE_CODE_STREAM_DOES_NOT_EXIST) {
         throw new StreamDoesNotExistException(stream);
@@ -372,6 +403,7 @@ class ProducersCoordinator {
                               "Recovering {} producers after unexpected connection termination",
                               producers.size());
                           producers.forEach((publishingId, tracker) -> tracker.unavailable());
+                          streamToTrackers.keySet().forEach(metadataLookup::invalidate);
                           committingConsumerTrackers.forEach(tracker -> tracker.unavailable());
                           // execute in thread pool to free the IO thread
                           environment
@@ -392,8 +424,15 @@ class ProducersCoordinator {
                                   });
                         }
                       })
+                  .writabilityListener(
+                      writable -> {
+                        if (writable) {
+                          producers.values().forEach(tracker -> tracker.producer.writable());
+                        }
+                      })
                   .metadataListener(
                       (stream, code) -> {
+                        metadataLookup.invalidate(stream);
                         synchronized (ClientProducersManager.this) {
                           Set<AgentTracker> affectedTrackers = streamToTrackers.remove(stream);
                           if (affectedTrackers != null && !affectedTrackers.isEmpty()) {
@@ -427,7 +466,12 @@ class ProducersCoordinator {
 
     private void assignProducersToNewManagers(
         Collection<AgentTracker> trackers, String stream, BackOffDelayPolicy delayPolicy) {
-      AsyncRetry.asyncRetry(() -> getBrokerForProducer(stream))
+      // not blocking, so the lookups of all the streams to recover can go in the same request
+      AsyncRetry.asyncRetryFuture(
+              () ->
+                  metadataLookup
+                      .lookup(stream)
+                      .thenApply(metadata -> getBrokerForProducer(stream, metadata)))
           .description("Candidate lookup to publish to " + stream)
           .scheduler(environment.scheduledExecutorService())
           .retry(ex -> !(ex instanceof StreamDoesNotExistException))
@@ -516,7 +560,7 @@ class ProducersCoordinator {
 
     synchronized boolean isFullFor(AgentTracker tracker) {
       if (tracker.identifiable()) {
-        return producers.size() == MAX_PRODUCERS_PER_CLIENT;
+        return producers.size() >= maxProducersByConnection;
       } else {
         return committingConsumerTrackers.size() == MAX_COMMITTING_CONSUMERS_PER_CLIENT;
       }
@@ -0,0 +1,187 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.impl;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounds the number and the size of the unconfirmed messages of a producer.
+ *
+ * <p>Acquiring is lock-free as long as there is capacity. Only threads that choose to wait take a
+ * lock. A message larger than the byte limit is admitted when nothing else is in flight, so it
+ * cannot be blocked forever.
+ *
+ * <p>The {@link #whenAvailable()} futures complete on the thread that releases capacity, usually
+ * the thread that handles publish confirms.
+ */
+final class PublishAdmission {
+
+  private final int maxMessages;
+  // 0 means no limit
+  private final long maxBytes;
+  private final AtomicInteger messages = new AtomicInteger(0);
+  private final AtomicLong bytes = new AtomicLong(0);
+  private final Lock lock = new ReentrantLock();
+  private final Condition released = lock.newCondition();
+  private final AtomicInteger waiters = new AtomicInteger(0);
+  private final AtomicReference<CompletableFuture<Void>> availability = new AtomicReference<>();
+
+  PublishAdmission(int maxMessages, long maxBytes) {
+    if (maxMessages <= 0) {
+      throw new IllegalArgumentException("The maximum number of messages must be greater than 0");
+    }
+    if (maxBytes < 0) {
+      throw new IllegalArgumentException("The maximum number of bytes must be positive");
+    }
+    this.maxMessages = maxMessages;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Admit a message if there is capacity for it.
+   *
+   * @param size the size of the encoded message
+   * @return true if the message is admitted, false otherwise
+   */
+  boolean tryAcquire(int size) {
+    int currentMessages;
+    do {
+      currentMessages = this.messages.get();
+      if (currentMessages >= this.maxMessages) {
+        return false;
+      }
+    } while (!this.messages.compareAndSet(currentMessages, currentMessages + 1));
+    if (this.maxBytes > 0) {
+      long currentBytes;
+      do {
+        currentBytes = this.bytes.get();
+        if (currentBytes > 0 && currentBytes + size > this.maxBytes) {
+          this.messages.decrementAndGet();
+          return false;
+        }
+      } while (!this.bytes.compareAndSet(currentBytes, currentBytes + size));
+    }
+    return true;
+  }
+
+  /**
+   * Admit a message, waiting for capacity if necessary.
+   *
+   * @param size the size of the encoded message
+   * @param timeout the maximum time to wait
+   * @param unit the unit of the timeout
+   * @return true if the message is admitted, false if the waiting time elapsed
+   * @throws InterruptedException if the current thread is interrupted
+   */
+  boolean acquire(int size, long timeout, TimeUnit unit) throws InterruptedException {
+    if (tryAcquire(size)) {
+      return true;
+    }
+    long remaining = unit.toNanos(timeout);
+    this.lock.lock();
+    this.waiters.incrementAndGet();
+    try {
+      // checking again after registering as a waiter, releasing threads signal only waiters
+      while (!tryAcquire(size)) {
+        if (remaining <= 0) {
+          return false;
+        }
+        remaining = this.released.awaitNanos(remaining);
+      }
+      return true;
+    } finally {
+      this.waiters.decrementAndGet();
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Release the capacity of confirmed or failed messages.
+   *
+   * @param count the number of messages
+   * @param size the total size of the encoded messages
+   */
+  void release(int count, long size) {
+    this.messages.addAndGet(-count);
+    if (this.maxBytes > 0) {
+      this.bytes.addAndGet(-size);
+    }
+    signal();
+  }
+
+  /** Release all the capacity, e.g. when the producer gets back to business after recovery. */
+  void reset() {
+    this.messages.set(0);
+    this.bytes.set(0);
+    signal();
+  }
+
+  boolean hasCapacity() {
+    return this.messages.get() < this.maxMessages
+        && (this.maxBytes == 0 || this.bytes.get() < this.maxBytes);
+  }
+
+  /**
+   * A future that completes once there is capacity for new messages.
+   *
+   * @return the future, already completed if there is capacity
+   */
+  CompletableFuture<Void> whenAvailable() {
+    if (hasCapacity()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    if (!this.availability.compareAndSet(null, future)) {
+      future = this.availability.get();
+      if (future == null) {
+        // completed in the meantime
+        return whenAvailable();
+      }
+    }
+    // capacity may have been released before the future was registered
+    if (hasCapacity()) {
+      completeAvailability();
+    }
+    return future;
+  }
+
+  private void signal() {
+    if (this.waiters.get() > 0) {
+      this.lock.lock();
+      try {
+        this.released.signalAll();
+      } finally {
+        this.lock.unlock();
+      }
+    }
+    if (this.availability.get() != null && hasCapacity()) {
+      completeAvailability();
+    }
+  }
+
+  private void completeAvailability() {
+    CompletableFuture<Void> future = this.availability.getAndSet(null);
+    if (future != null) {
+      future.complete(null);
+    }
+  }
+}
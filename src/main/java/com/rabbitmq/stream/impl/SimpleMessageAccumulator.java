@@ -15,44 +15,61 @@
 package com.rabbitmq.stream.impl;
 
 import com.rabbitmq.stream.*;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.TimeUnit;
+import io.netty.util.internal.PlatformDependent;
+import java.util.Queue;
 
 class SimpleMessageAccumulator implements MessageAccumulator {
 
-  private final int capacity;
-  private final BlockingQueue<AccumulatedEntity> messages;
+  private final int batchSize;
+  private final Queue<AccumulatedEntity> messages;
   private final Codec codec;
   private final int maxFrameSize;
   private final String stream;
 
-  SimpleMessageAccumulator(int capacity, Codec codec, int maxFrameSize, String stream) {
-    this.capacity = capacity;
-    this.messages = new LinkedBlockingQueue<>(capacity);
+  /**
+   * @param batchSize number of messages in a full batch
+   * @param capacity maximum number of accumulated messages, the producer makes sure it never
+   *     accumulates more than its maximum number of unconfirmed messages, so this is the value to
+   *     use
+   * @param codec codec to encode messages
+   * @param maxFrameSize maximum size of a frame
+   * @param stream the stream
+   */
+  SimpleMessageAccumulator(
+      int batchSize, int capacity, Codec codec, int maxFrameSize, String stream) {
+    this.batchSize = batchSize;
+    // lock-free, array-based multi-producer single-consumer queue, with padded indexes
+    this.messages = PlatformDependent.newFixedMpscQueue(Math.max(capacity, batchSize));
     this.codec = codec;
     this.maxFrameSize = maxFrameSize;
     this.stream = stream;
   }
 
-  public boolean add(Message message, ConfirmationHandler confirmationHandler) {
+  @Override
+  public Codec.EncodedMessage encode(Message message) {
     Codec.EncodedMessage encodedMessage = this.codec.encode(message);
     Client.checkMessageFitsInFrame(this.maxFrameSize, stream, encodedMessage);
+    return encodedMessage;
+  }
+
+  @Override
+  public boolean add(
+      Codec.EncodedMessage encodedMessage,
+      Message message,
+      ConfirmationHandler confirmationHandler) {
+    offer(
+        this.messages,
+        new SimpleAccumulatedEntity(
+            encodedMessage,
+            new SimpleConfirmationCallback(
+                message, confirmationHandler, encodedMessage.getSize())));
+    return hasFullBatch();
+  }
 
-    try {
-      boolean offered =
-          messages.offer(
-              new SimpleAccumulatedEntity(
-                  encodedMessage, new SimpleConfirmationCallback(message, confirmationHandler)),
-              60,
-              TimeUnit.SECONDS);
-      if (!offered) {
-        throw new StreamException("Could not accumulate outbound message");
-      }
-    } catch (InterruptedException e) {
-      throw new StreamException("Error while accumulating outbound message", e);
+  static void offer(Queue<AccumulatedEntity> queue, AccumulatedEntity entity) {
+    if (!queue.offer(entity)) {
+      throw new StreamException("Could not accumulate outbound message");
     }
-    return messages.size() == this.capacity;
   }
 
   @Override
@@ -65,12 +82,17 @@ class SimpleMessageAccumulator implements MessageAccumulator {
     return messages.isEmpty();
   }
 
-  private static final class SimpleAccumulatedEntity implements AccumulatedEntity {
+  @Override
+  public boolean hasFullBatch() {
+    return this.messages.size() >= this.batchSize;
+  }
+
+  static final class SimpleAccumulatedEntity implements AccumulatedEntity {
 
     private final Codec.EncodedMessage encodedMessage;
     private final StreamProducer.ConfirmationCallback confirmationCallback;
 
-    private SimpleAccumulatedEntity(
+    SimpleAccumulatedEntity(
         Codec.EncodedMessage encodedMessage,
         StreamProducer.ConfirmationCallback confirmationCallback) {
       this.encodedMessage = encodedMessage;
@@ -88,15 +110,17 @@ class SimpleMessageAccumulator implements MessageAccumulator {
     }
   }
 
-  private static final class SimpleConfirmationCallback
-      implements StreamProducer.ConfirmationCallback {
+  static final class SimpleConfirmationCallback implements StreamProducer.ConfirmationCallback {
 
     private final Message message;
     private final ConfirmationHandler confirmationHandler;
+    private final int encodedSize;
 
-    private SimpleConfirmationCallback(Message message, ConfirmationHandler confirmationHandler) {
+    SimpleConfirmationCallback(
+        Message message, ConfirmationHandler confirmationHandler, int encodedSize) {
       this.message = message;
       this.confirmationHandler = confirmationHandler;
+      this.encodedSize = encodedSize;
     }
 
     @Override
@@ -104,5 +128,10 @@ class SimpleMessageAccumulator implements MessageAccumulator {
       confirmationHandler.handle(new ConfirmationStatus(message, confirmed, code));
       return 1;
     }
+
+    @Override
+    public long encodedSize() {
+      return this.encodedSize;
+    }
   }
 }
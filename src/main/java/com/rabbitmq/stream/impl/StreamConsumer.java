@@ -14,7 +14,10 @@
 
 package com.rabbitmq.stream.impl;
 
+import com.rabbitmq.stream.ChunkHandler;
 import com.rabbitmq.stream.Consumer;
+import com.rabbitmq.stream.ConsumerClosedHandler;
+import com.rabbitmq.stream.CreditStrategy;
 import com.rabbitmq.stream.MessageHandler;
 import com.rabbitmq.stream.MessageHandler.Context;
 import com.rabbitmq.stream.OffsetSpecification;
@@ -33,6 +36,8 @@ class StreamConsumer implements Consumer {
 
   private final Runnable closingCommitCallback;
 
+  private final ConsumerClosedHandler closedHandler;
+
   private final AtomicBoolean closed = new AtomicBoolean(false);
 
   private final String name;
@@ -51,16 +56,21 @@ class StreamConsumer implements Consumer {
       String stream,
       OffsetSpecification offsetSpecification,
       MessageHandler messageHandler,
+      ChunkHandler chunkHandler,
       String name,
+      CreditStrategy creditStrategy,
+      ConsumerClosedHandler closedHandler,
       StreamEnvironment environment,
       CommitConfiguration commitConfiguration) {
 
     try {
+      this.closedHandler = closedHandler;
       this.name = name;
       this.stream = stream;
       this.environment = environment;
 
       MessageHandler messageHandlerWithOrWithoutCommit;
+      ChunkHandler chunkHandlerWithOrWithoutCommit;
       if (commitConfiguration.enabled()) {
         CommittingConsumerRegistration committingConsumerRegistration =
             environment.registerCommittingConsumer(this, commitConfiguration);
@@ -72,12 +82,25 @@ class StreamConsumer implements Consumer {
         if (postMessageProcessingCallback == null) {
           // no callback, no need to decorate
           messageHandlerWithOrWithoutCommit = messageHandler;
-        } else {
+          chunkHandlerWithOrWithoutCommit = chunkHandler;
+        } else if (chunkHandler == null) {
           messageHandlerWithOrWithoutCommit =
               (context, message) -> {
                 messageHandler.handle(context, message);
                 postMessageProcessingCallback.accept(context);
               };
+          chunkHandlerWithOrWithoutCommit = null;
+        } else {
+          messageHandlerWithOrWithoutCommit = null;
+          ChunkMessageContext context = new ChunkMessageContext(this);
+          chunkHandlerWithOrWithoutCommit =
+              chunk -> {
+                chunkHandler.handle(chunk);
+                for (int i = 0; i < chunk.size(); i++) {
+                  context.offset = chunk.offset(i);
+                  postMessageProcessingCallback.accept(context);
+                }
+              };
         }
 
         this.commitCallback = committingConsumerRegistration.commitCallback();
@@ -86,11 +109,18 @@ class StreamConsumer implements Consumer {
         this.closingCommitCallback = () -> {};
         this.commitCallback = Utils.NO_OP_LONG_CONSUMER;
         messageHandlerWithOrWithoutCommit = messageHandler;
+        chunkHandlerWithOrWithoutCommit = chunkHandler;
       }
 
       this.closingCallback =
           environment.registerConsumer(
-              this, stream, offsetSpecification, this.name, messageHandlerWithOrWithoutCommit);
+              this,
+              stream,
+              offsetSpecification,
+              this.name,
+              messageHandlerWithOrWithoutCommit,
+              chunkHandlerWithOrWithoutCommit,
+              creditStrategy);
 
       this.status = Status.RUNNING;
     } catch (RuntimeException e) {
@@ -104,7 +134,8 @@ class StreamConsumer implements Consumer {
     commitCallback.accept(offset);
     if (canCommit()) {
       try {
-        this.commitClient.commitOffset(this.name, this.stream, offset);
+        // coalesced with the other commits of the connection
+        this.environment.commitOffset(this, this.name, this.stream, offset);
       } catch (Exception e) {
         LOGGER.debug("Error while trying to commit offset: {}", e.getMessage());
       }
@@ -121,21 +152,38 @@ class StreamConsumer implements Consumer {
   public void close() {
     if (closed.compareAndSet(false, true)) {
       this.environment.removeConsumer(this);
-      closeFromEnvironment();
+      closeResources();
     }
   }
 
   void closeFromEnvironment() {
+    if (closed.compareAndSet(false, true)) {
+      closeResources();
+      notifyClosed(null);
+    }
+  }
+
+  private void closeResources() {
     this.closingCallback.run();
     this.closingCommitCallback.run();
-    closed.set(true);
     this.status = Status.CLOSED;
   }
 
-  void closeAfterStreamDeletion() {
+  void closeAfterStreamDeletion(Throwable cause) {
     if (closed.compareAndSet(false, true)) {
       this.environment.removeConsumer(this);
       this.status = Status.CLOSED;
+      notifyClosed(cause);
+    }
+  }
+
+  private void notifyClosed(Throwable cause) {
+    if (this.closedHandler != null) {
+      try {
+        this.closedHandler.closed(cause);
+      } catch (Exception e) {
+        LOGGER.warn("Error in consumer closed handler", e);
+      }
     }
   }
 
@@ -174,9 +222,39 @@ class StreamConsumer implements Consumer {
     return this.stream;
   }
 
+  Client commitClient() {
+    return this.commitClient;
+  }
+
   enum Status {
     RUNNING,
     NOT_AVAILABLE,
     CLOSED
   }
+
+  /** Context of the messages of a chunk for offset tracking, re-used for all the messages. */
+  private static final class ChunkMessageContext implements Context {
+
+    private final Consumer consumer;
+    private long offset;
+
+    private ChunkMessageContext(Consumer consumer) {
+      this.consumer = consumer;
+    }
+
+    @Override
+    public long offset() {
+      return this.offset;
+    }
+
+    @Override
+    public void commit() {
+      this.consumer.commit(this.offset);
+    }
+
+    @Override
+    public Consumer consumer() {
+      return this.consumer;
+    }
+  }
 }
@@ -14,8 +14,11 @@
 
 package com.rabbitmq.stream.impl;
 
+import com.rabbitmq.stream.ChunkHandler;
 import com.rabbitmq.stream.Consumer;
 import com.rabbitmq.stream.ConsumerBuilder;
+import com.rabbitmq.stream.ConsumerClosedHandler;
+import com.rabbitmq.stream.CreditStrategy;
 import com.rabbitmq.stream.MessageHandler;
 import com.rabbitmq.stream.OffsetSpecification;
 import java.time.Duration;
@@ -28,7 +31,10 @@ class StreamConsumerBuilder implements ConsumerBuilder {
   private String stream;
   private OffsetSpecification offsetSpecification = OffsetSpecification.first();
   private MessageHandler messageHandler;
+  private ChunkHandler chunkHandler;
   private String name;
+  private CreditStrategy creditStrategy = CreditStrategy.DEFAULT;
+  private ConsumerClosedHandler closedHandler;
   private DefaultAutoCommitStrategy autoCommitStrategy;
   private DefaultManualCommitStrategy manualCommitStrategy;
 
@@ -54,6 +60,12 @@ class StreamConsumerBuilder implements ConsumerBuilder {
     return this;
   }
 
+  @Override
+  public ConsumerBuilder chunkHandler(ChunkHandler chunkHandler) {
+    this.chunkHandler = chunkHandler;
+    return this;
+  }
+
   @Override
   public ConsumerBuilder name(String name) {
     if (name == null || name.length() > NAME_MAX_SIZE) {
@@ -64,6 +76,21 @@ class StreamConsumerBuilder implements ConsumerBuilder {
     return this;
   }
 
+  @Override
+  public ConsumerBuilder creditStrategy(CreditStrategy creditStrategy) {
+    if (creditStrategy == null) {
+      throw new IllegalArgumentException("The credit strategy cannot be null");
+    }
+    this.creditStrategy = creditStrategy;
+    return this;
+  }
+
+  @Override
+  public ConsumerBuilder closedHandler(ConsumerClosedHandler closedHandler) {
+    this.closedHandler = closedHandler;
+    return this;
+  }
+
   @Override
   public ManualCommitStrategy manualCommitStrategy() {
     this.manualCommitStrategy = new DefaultManualCommitStrategy(this);
@@ -83,6 +110,9 @@ class StreamConsumerBuilder implements ConsumerBuilder {
     if (this.stream == null) {
       throw new IllegalArgumentException("stream cannot be null");
     }
+    if (this.messageHandler != null && this.chunkHandler != null) {
+      throw new IllegalArgumentException("Either a message handler or a chunk handler can be set");
+    }
     if (this.name == null
         && (this.autoCommitStrategy != null || this.manualCommitStrategy != null)) {
       throw new IllegalArgumentException("A name must be set if a commit strategy is specified");
@@ -114,7 +144,10 @@ class StreamConsumerBuilder implements ConsumerBuilder {
             this.stream,
             this.offsetSpecification,
             this.messageHandler,
+            this.chunkHandler,
             this.name,
+            this.creditStrategy,
+            this.closedHandler,
             this.environment,
             commitConfiguration);
     environment.addConsumer(consumer);
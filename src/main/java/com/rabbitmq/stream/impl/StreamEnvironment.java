@@ -21,7 +21,9 @@ import com.rabbitmq.stream.MessageHandler.Context;
 import com.rabbitmq.stream.impl.OffsetCommittingCoordinator.Registration;
 import com.rabbitmq.stream.impl.StreamConsumerBuilder.CommitConfiguration;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URLDecoder;
@@ -42,11 +44,18 @@ class StreamEnvironment implements Environment {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(StreamEnvironment.class);
 
+  // a coarse tick keeps the timer thread asleep most of the time,
+  // delays are rounded up to the tick, which is fine for producer flushes and commit checks
+  static final long TIMER_TICK_IN_MS = 10;
+  static final int TIMER_TICKS_PER_WHEEL = 512;
+
   private final Random random = new Random();
 
   private final EventLoopGroup eventLoopGroup;
   private final ScheduledExecutorService scheduledExecutorService;
   private final boolean privateScheduleExecutorService;
+  // drives producer flushes and offset commit checks, the tasks run on the executor service
+  private final Timer timer;
   private final Client.ClientParameters clientParametersPrototype;
   private final List<Address> addresses;
   private final List<StreamProducer> producers = new CopyOnWriteArrayList<>();
@@ -57,6 +66,7 @@ class StreamEnvironment implements Environment {
   private final ConsumersCoordinator consumersCoordinator;
   private final ProducersCoordinator producersCoordinator;
   private final OffsetCommittingCoordinator offsetCommittingCoordinator;
+  private final StreamMetadataLookup metadataLookup;
   private volatile Client locator;
   private final AtomicBoolean closed = new AtomicBoolean(false);
 
@@ -65,13 +75,17 @@ class StreamEnvironment implements Environment {
       Client.ClientParameters clientParametersPrototype,
       List<URI> uris,
       BackOffDelayPolicy recoveryBackOffDelayPolicy,
-      BackOffDelayPolicy topologyBackOffDelayPolicy) {
+      BackOffDelayPolicy topologyBackOffDelayPolicy,
+      int maxProducersByConnection,
+      int maxConsumersByConnection) {
     this(
         scheduledExecutorService,
         clientParametersPrototype,
         uris,
         recoveryBackOffDelayPolicy,
         topologyBackOffDelayPolicy,
+        maxProducersByConnection,
+        maxConsumersByConnection,
         cp -> new Client(cp));
   }
 
@@ -81,6 +95,8 @@ class StreamEnvironment implements Environment {
       List<URI> uris,
       BackOffDelayPolicy recoveryBackOffDelayPolicy,
       BackOffDelayPolicy topologyBackOffDelayPolicy,
+      int maxProducersByConnection,
+      int maxConsumersByConnection,
       Function<Client.ClientParameters, Client> clientFactory) {
     this.recoveryBackOffDelayPolicy = recoveryBackOffDelayPolicy;
     this.topologyUpdateBackOffDelayPolicy = topologyBackOffDelayPolicy;
@@ -96,7 +112,7 @@ class StreamEnvironment implements Environment {
     }
 
     if (clientParametersPrototype.eventLoopGroup == null) {
-      this.eventLoopGroup = new NioEventLoopGroup();
+      this.eventLoopGroup = Transports.eventLoopGroup();
       this.clientParametersPrototype =
           clientParametersPrototype.duplicate().eventLoopGroup(this.eventLoopGroup);
     } else {
@@ -114,10 +130,26 @@ class StreamEnvironment implements Environment {
       this.scheduledExecutorService = scheduledExecutorService;
       this.privateScheduleExecutorService = false;
     }
-
-    this.producersCoordinator = new ProducersCoordinator(this);
-    this.consumersCoordinator = new ConsumersCoordinator(this);
-    this.offsetCommittingCoordinator = new OffsetCommittingCoordinator(this);
+    this.timer =
+        new HashedWheelTimer(
+            new DefaultThreadFactory("rabbitmq-stream-timer", true),
+            TIMER_TICK_IN_MS,
+            TimeUnit.MILLISECONDS,
+            TIMER_TICKS_PER_WHEEL);
+
+    this.metadataLookup =
+        new StreamMetadataLookup(
+            () -> this.locator(),
+            this.scheduledExecutorService,
+            StreamMetadataLookup.DEFAULT_TICK,
+            StreamMetadataLookup.DEFAULT_TIME_TO_LIVE);
+    this.producersCoordinator = new ProducersCoordinator(this, maxProducersByConnection);
+    this.consumersCoordinator = new ConsumersCoordinator(this, maxConsumersByConnection);
+    this.offsetCommittingCoordinator =
+        new OffsetCommittingCoordinator(
+            this,
+            OffsetCommittingCoordinator.DEFAULT_CHECK_INTERVAL,
+            this.clientParametersPrototype.metricsCollector());
 
     AtomicReference<Client.ShutdownListener> shutdownListenerReference = new AtomicReference<>();
     Client.ShutdownListener shutdownListener =
@@ -237,6 +269,7 @@ class StreamEnvironment implements Environment {
   @Override
   public void deleteStream(String stream) {
     Client.Response response = this.locator().delete(stream);
+    this.metadataLookup.invalidate(stream);
     if (!response.isOk()) {
       throw new StreamException(
           "Error while deleting stream " + stream, response.getResponseCode());
@@ -291,6 +324,7 @@ class StreamEnvironment implements Environment {
       this.producersCoordinator.close();
       this.consumersCoordinator.close();
       this.offsetCommittingCoordinator.close();
+      this.timer.stop();
 
       try {
         if (this.locator != null) {
@@ -327,6 +361,14 @@ class StreamEnvironment implements Environment {
     return this.scheduledExecutorService;
   }
 
+  Timer timer() {
+    return this.timer;
+  }
+
+  StreamMetadataLookup metadataLookup() {
+    return this.metadataLookup;
+  }
+
   BackOffDelayPolicy recoveryBackOffDelayPolicy() {
     return this.recoveryBackOffDelayPolicy;
   }
@@ -340,10 +382,18 @@ class StreamEnvironment implements Environment {
       String stream,
       OffsetSpecification offsetSpecification,
       String trackingReference,
-      MessageHandler messageHandler) {
+      MessageHandler messageHandler,
+      ChunkHandler chunkHandler,
+      CreditStrategy creditStrategy) {
     Runnable closingCallback =
         this.consumersCoordinator.subscribe(
-            consumer, stream, offsetSpecification, trackingReference, messageHandler);
+            consumer,
+            stream,
+            offsetSpecification,
+            trackingReference,
+            messageHandler,
+            chunkHandler,
+            creditStrategy);
     return closingCallback;
   }
 
@@ -398,7 +448,14 @@ class StreamEnvironment implements Environment {
 
   CommittingConsumerRegistration registerCommittingConsumer(
       StreamConsumer streamConsumer, CommitConfiguration configuration) {
-    Runnable closingCallable = this.producersCoordinator.registerCommittingConsumer(streamConsumer);
+    Runnable producerClosingCallable =
+        this.producersCoordinator.registerCommittingConsumer(streamConsumer);
+    Runnable closingCallable =
+        () -> {
+          // the connection may be closed with the consumer, so pending commits must be sent now
+          this.offsetCommittingCoordinator.flushCommits();
+          producerClosingCallable.run();
+        };
     Registration offsetCommittingRegistration = null;
     if (this.offsetCommittingCoordinator.needCommitRegistration(configuration)) {
       offsetCommittingRegistration =
@@ -416,6 +473,10 @@ class StreamEnvironment implements Environment {
             : offsetCommittingRegistration.commitCallback());
   }
 
+  void commitOffset(StreamConsumer consumer, String reference, String stream, long offset) {
+    this.offsetCommittingCoordinator.commit(consumer, reference, stream, offset);
+  }
+
   private static final class Address {
 
     private final String host;
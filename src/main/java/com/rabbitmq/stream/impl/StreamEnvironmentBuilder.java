@@ -15,6 +15,7 @@
 package com.rabbitmq.stream.impl;
 
 import com.rabbitmq.stream.*;
+import com.rabbitmq.stream.compression.CompressionCodecFactory;
 import com.rabbitmq.stream.metrics.MetricsCollector;
 import com.rabbitmq.stream.sasl.CredentialsProvider;
 import com.rabbitmq.stream.sasl.SaslConfiguration;
@@ -37,6 +38,8 @@ public class StreamEnvironmentBuilder implements EnvironmentBuilder {
       BackOffDelayPolicy.fixed(Duration.ofSeconds(5));
   private BackOffDelayPolicy topologyBackOffDelayPolicy =
       BackOffDelayPolicy.fixedWithInitialDelay(Duration.ofSeconds(5), Duration.ofSeconds(1));
+  private int maxProducersByConnection = ProducersCoordinator.MAX_PRODUCERS_PER_CLIENT;
+  private int maxConsumersByConnection = ConsumersCoordinator.MAX_SUBSCRIPTIONS_PER_CLIENT;
 
   public StreamEnvironmentBuilder() {}
 
@@ -134,6 +137,13 @@ public class StreamEnvironmentBuilder implements EnvironmentBuilder {
     return this;
   }
 
+  @Override
+  public StreamEnvironmentBuilder compressionCodecFactory(
+      CompressionCodecFactory compressionCodecFactory) {
+    this.clientParameters.compressionCodecFactory(compressionCodecFactory);
+    return this;
+  }
+
   public StreamEnvironmentBuilder clientProperties(Map<String, String> clientProperties) {
     this.clientParameters.clientProperties(clientProperties);
     return this;
@@ -149,6 +159,21 @@ public class StreamEnvironmentBuilder implements EnvironmentBuilder {
     return this;
   }
 
+  @Override
+  public StreamEnvironmentBuilder deliveryDispatchLanes(int deliveryDispatchLanes) {
+    if (deliveryDispatchLanes <= 0) {
+      throw new IllegalArgumentException("deliveryDispatchLanes must be greater than 0");
+    }
+    this.clientParameters.deliveryDispatchLanes(deliveryDispatchLanes);
+    return this;
+  }
+
+  @Override
+  public StreamEnvironmentBuilder confirmsOnEventLoop(boolean confirmsOnEventLoop) {
+    this.clientParameters.confirmsOnEventLoop(confirmsOnEventLoop);
+    return this;
+  }
+
   public EnvironmentBuilder scheduledExecutorService(
       ScheduledExecutorService scheduledExecutorService) {
     this.scheduledExecutorService = scheduledExecutorService;
@@ -169,6 +194,49 @@ public class StreamEnvironmentBuilder implements EnvironmentBuilder {
     return this;
   }
 
+  @Override
+  public StreamEnvironmentBuilder maxProducersByConnection(int maxProducersByConnection) {
+    if (maxProducersByConnection <= 0
+        || maxProducersByConnection > ProducersCoordinator.MAX_PRODUCERS_PER_CLIENT) {
+      throw new IllegalArgumentException(
+          "maxProducersByConnection must be between 1 and "
+              + ProducersCoordinator.MAX_PRODUCERS_PER_CLIENT);
+    }
+    this.maxProducersByConnection = maxProducersByConnection;
+    return this;
+  }
+
+  @Override
+  public StreamEnvironmentBuilder writeBufferWaterMark(int low, int high) {
+    if (low < 0 || high < low) {
+      throw new IllegalArgumentException(
+          "The write buffer water marks must be positive and the high one >= the low one");
+    }
+    this.clientParameters.writeBufferWaterMark(low, high);
+    return this;
+  }
+
+  @Override
+  public StreamEnvironmentBuilder deliveryQueueLimits(int maxChunks, long maxBytes) {
+    if (maxChunks <= 0 || maxBytes <= 0) {
+      throw new IllegalArgumentException("The delivery queue limits must be greater than 0");
+    }
+    this.clientParameters.deliveryQueueLimits(maxChunks, maxBytes);
+    return this;
+  }
+
+  @Override
+  public StreamEnvironmentBuilder maxConsumersByConnection(int maxConsumersByConnection) {
+    if (maxConsumersByConnection <= 0
+        || maxConsumersByConnection > ConsumersCoordinator.MAX_SUBSCRIPTIONS_PER_CLIENT) {
+      throw new IllegalArgumentException(
+          "maxConsumersByConnection must be between 1 and "
+              + ConsumersCoordinator.MAX_SUBSCRIPTIONS_PER_CLIENT);
+    }
+    this.maxConsumersByConnection = maxConsumersByConnection;
+    return this;
+  }
+
   @Override
   public Environment build() {
     return new StreamEnvironment(
@@ -176,6 +244,8 @@ public class StreamEnvironmentBuilder implements EnvironmentBuilder {
         clientParameters,
         uris,
         recoveryBackOffDelayPolicy,
-        topologyBackOffDelayPolicy);
+        topologyBackOffDelayPolicy,
+        maxProducersByConnection,
+        maxConsumersByConnection);
   }
 }
@@ -0,0 +1,204 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.impl;
+
+import com.rabbitmq.stream.StreamException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stream metadata lookups on the locator connection, shared by the producers and consumers
+ * coordinators.
+ *
+ * <p>Lookups requested during the same tick go to the broker in a single metadata request. A
+ * usable answer (stream with a leader) is then cached for a short time, so a burst of
+ * registrations on the same stream issues only one request. Callers must invalidate the entry of a
+ * stream when they know its topology changed.
+ *
+ * <p>With a zero tick, lookups are sent right away, one stream at a time, and with a zero
+ * time-to-live, nothing is cached.
+ */
+class StreamMetadataLookup {
+
+  static final Duration DEFAULT_TICK = Duration.ofMillis(10);
+  static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofSeconds(1);
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StreamMetadataLookup.class);
+  private static final Duration LOOKUP_TIMEOUT = Duration.ofSeconds(30);
+
+  private final Supplier<Client> locator;
+  private final ScheduledExecutorService scheduler;
+  private final long tickInMs;
+  private final long timeToLiveInNs;
+  private final Map<String, CachedMetadata> cache = new ConcurrentHashMap<>();
+  private Map<String, CompletableFuture<Client.StreamMetadata>> pending = new HashMap<>();
+
+  StreamMetadataLookup(
+      Supplier<Client> locator,
+      ScheduledExecutorService scheduler,
+      Duration tick,
+      Duration timeToLive) {
+    this.locator = locator;
+    this.scheduler = scheduler;
+    this.tickInMs = tick.toMillis();
+    this.timeToLiveInNs = timeToLive.toNanos();
+  }
+
+  /** Lookups with no batching and no caching. */
+  StreamMetadataLookup(Supplier<Client> locator) {
+    this(locator, null, Duration.ZERO, Duration.ZERO);
+  }
+
+  /**
+   * Metadata of a stream, waiting for the response.
+   *
+   * @return the metadata, or null if the broker did not return any for the stream
+   */
+  Client.StreamMetadata metadata(String stream) {
+    CompletableFuture<Client.StreamMetadata> lookup = lookup(stream);
+    try {
+      return lookup.get(LOOKUP_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new StreamException("Interrupted while looking up metadata of stream " + stream);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      } else {
+        throw new StreamException(e.getCause());
+      }
+    } catch (TimeoutException e) {
+      throw new StreamException("Could not get metadata of stream " + stream + " in time");
+    }
+  }
+
+  /**
+   * Metadata of a stream, without blocking.
+   *
+   * <p>The future completes with null if the broker did not return any metadata for the stream.
+   */
+  CompletableFuture<Client.StreamMetadata> lookup(String stream) {
+    CachedMetadata cachedMetadata = this.cache.get(stream);
+    if (cachedMetadata != null) {
+      if (System.nanoTime() - cachedMetadata.createdAt < this.timeToLiveInNs) {
+        return CompletableFuture.completedFuture(cachedMetadata.metadata);
+      } else {
+        this.cache.remove(stream, cachedMetadata);
+      }
+    }
+    if (this.tickInMs <= 0) {
+      CompletableFuture<Client.StreamMetadata> result = new CompletableFuture<>();
+      try {
+        Client.StreamMetadata metadata = this.locator.get().metadata(stream).get(stream);
+        maybeCache(stream, metadata);
+        result.complete(metadata);
+      } catch (RuntimeException e) {
+        result.completeExceptionally(e);
+      }
+      return result;
+    }
+    CompletableFuture<Client.StreamMetadata> result;
+    boolean scheduleFlush;
+    synchronized (this) {
+      scheduleFlush = this.pending.isEmpty();
+      result = this.pending.computeIfAbsent(stream, s -> new CompletableFuture<>());
+    }
+    if (scheduleFlush) {
+      this.scheduler.schedule(this::flush, this.tickInMs, TimeUnit.MILLISECONDS);
+    }
+    return result;
+  }
+
+  void invalidate(String stream) {
+    this.cache.remove(stream);
+  }
+
+  private void flush() {
+    Map<String, CompletableFuture<Client.StreamMetadata>> lookups;
+    synchronized (this) {
+      lookups = this.pending;
+      this.pending = new HashMap<>();
+    }
+    if (lookups.isEmpty()) {
+      return;
+    }
+    LOGGER.debug("Looking up metadata of {} stream(s)", lookups.size());
+    try {
+      this.locator
+          .get()
+          .metadataAsync(lookups.keySet().toArray(new String[0]))
+          .whenComplete(
+              (metadata, ex) -> {
+                // callers recover on completion, e.g. by opening connections, this must not
+                // happen on the locator connection thread, it would block its other responses
+                try {
+                  this.scheduler.execute(() -> complete(lookups, metadata, ex));
+                } catch (RejectedExecutionException e) {
+                  lookups.values().forEach(lookup -> lookup.completeExceptionally(e));
+                }
+              });
+    } catch (RuntimeException e) {
+      lookups.values().forEach(lookup -> lookup.completeExceptionally(e));
+    }
+  }
+
+  private void complete(
+      Map<String, CompletableFuture<Client.StreamMetadata>> lookups,
+      Map<String, Client.StreamMetadata> metadata,
+      Throwable ex) {
+    if (ex == null) {
+      lookups.forEach(
+          (stream, lookup) -> {
+            Client.StreamMetadata streamMetadata = metadata.get(stream);
+            maybeCache(stream, streamMetadata);
+            lookup.complete(streamMetadata);
+          });
+    } else {
+      lookups.values().forEach(lookup -> lookup.completeExceptionally(ex));
+    }
+  }
+
+  private void maybeCache(String stream, Client.StreamMetadata metadata) {
+    // only usable topologies are cached, callers retry on the others
+    if (this.timeToLiveInNs > 0
+        && metadata != null
+        && metadata.isResponseOk()
+        && metadata.getLeader() != null) {
+      this.cache.put(stream, new CachedMetadata(metadata, System.nanoTime()));
+    }
+  }
+
+  private static final class CachedMetadata {
+
+    private final Client.StreamMetadata metadata;
+    private final long createdAt;
+
+    private CachedMetadata(Client.StreamMetadata metadata, long createdAt) {
+      this.metadata = metadata;
+      this.createdAt = createdAt;
+    }
+  }
+}
@@ -17,30 +17,43 @@ package com.rabbitmq.stream.impl;
 import static com.rabbitmq.stream.Constants.*;
 
 import com.rabbitmq.stream.*;
+import com.rabbitmq.stream.compression.Compression;
 import io.netty.buffer.ByteBuf;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 class StreamProducer implements Producer {
 
   private final MessageAccumulator accumulator;
-  // FIXME investigate a more optimized data structure to handle pending messages
-  private final ConcurrentMap<Long, ConfirmationCallback> unconfirmedMessages;
+  private final UnconfirmedMessages unconfirmedMessages;
   private final int batchSize;
   private final String stream;
   private final Client.OutboundEntityWriteCallback writeCallback;
-  private final Semaphore unconfirmedMessagesSemaphore;
+  private final PublishAdmission admission;
   private final Runnable closingCallback;
   private final StreamEnvironment environment;
   private final AtomicBoolean closed = new AtomicBoolean(false);
   private final int maxUnconfirmedMessages;
+  // only one thread at a time drains the accumulator, publishing threads never wait for it
+  private final Lock publishingLock = new ReentrantLock();
+  // background publishing, the flush is not rescheduled while the producer is idle
+  private final long batchPublishingDelayInNs;
+  private final AdaptiveBatchPublishingDelay adaptiveDelay;
+  private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+  private final Runnable flushTask = this::flush;
+  private final Runnable drainTask = this::drain;
+  // guarded by the publishing lock
+  private int publishedSinceLastFlush = 0;
+  // confirm latency sampling, one publishing ID at a time
+  private volatile long latencySamplePublishingId = -1;
+  private volatile long latencySampleTime;
   private volatile Client client;
   private volatile byte publisherId;
   private volatile Status status;
@@ -48,29 +61,56 @@ class StreamProducer implements Producer {
   StreamProducer(
       String stream,
       int subEntrySize,
+      Compression compression,
       int batchSize,
       Duration batchPublishingDelay,
+      boolean adaptiveBatchPublishingDelay,
       int maxUnconfirmedMessages,
+      long maxUnconfirmedBytes,
       StreamEnvironment environment) {
     this.environment = environment;
     this.stream = stream;
     this.closingCallback = environment.registerProducer(this, this.stream);
     final Client.OutboundEntityWriteCallback delegateWriteCallback;
+    // the admission bounds the number of accumulated messages, so the accumulator cannot overflow
     if (subEntrySize <= 1) {
       this.accumulator =
           new SimpleMessageAccumulator(
-              batchSize, environment.codec(), client.maxFrameSize(), this.stream);
+              batchSize,
+              maxUnconfirmedMessages,
+              environment.codec(),
+              client.maxFrameSize(),
+              this.stream);
       delegateWriteCallback = Client.OUTBOUND_MESSAGE_WRITE_CALLBACK;
     } else {
       this.accumulator =
           new SubEntryMessageAccumulator(
-              subEntrySize, batchSize, environment.codec(), client.maxFrameSize(), this.stream);
+              subEntrySize,
+              batchSize,
+              maxUnconfirmedMessages,
+              compression == Compression.NONE
+                  ? null
+                  : client.compressionCodecFactory().get(compression),
+              environment.codec(),
+              client.maxFrameSize(),
+              this.stream);
       delegateWriteCallback = Client.OUTBOUND_MESSAGE_BATCH_WRITE_CALLBACK;
     }
 
     this.maxUnconfirmedMessages = maxUnconfirmedMessages;
-    this.unconfirmedMessagesSemaphore = new Semaphore(maxUnconfirmedMessages, true);
-    this.unconfirmedMessages = new ConcurrentHashMap<>(this.maxUnconfirmedMessages, 0.75f, 2);
+    this.admission = new PublishAdmission(maxUnconfirmedMessages, maxUnconfirmedBytes);
+    this.unconfirmedMessages = new UnconfirmedMessages(this.maxUnconfirmedMessages);
+
+    if (batchPublishingDelay.isNegative() || batchPublishingDelay.isZero()) {
+      this.batchPublishingDelayInNs = 0;
+      this.adaptiveDelay = null;
+    } else {
+      this.batchPublishingDelayInNs = batchPublishingDelay.toNanos();
+      this.adaptiveDelay =
+          adaptiveBatchPublishingDelay
+              ? new AdaptiveBatchPublishingDelay(batchSize, batchPublishingDelay)
+              : null;
+    }
 
     this.writeCallback =
         new Client.OutboundEntityWriteCallback() {
@@ -79,6 +119,10 @@ class StreamProducer implements Producer {
             MessageAccumulator.AccumulatedEntity accumulatedEntity =
                 (MessageAccumulator.AccumulatedEntity) entity;
             unconfirmedMessages.put(publishingId, accumulatedEntity.confirmationCallback());
+            if (adaptiveDelay != null && latencySamplePublishingId < 0) {
+              latencySampleTime = System.nanoTime();
+              latencySamplePublishingId = publishingId;
+            }
             return delegateWriteCallback.write(bb, accumulatedEntity.encodedEntity(), publishingId);
           }
 
@@ -88,48 +132,31 @@ class StreamProducer implements Producer {
                 ((MessageAccumulator.AccumulatedEntity) entity).encodedEntity());
           }
         };
-    if (!batchPublishingDelay.isNegative() && !batchPublishingDelay.isZero()) {
-      AtomicReference<Runnable> taskReference = new AtomicReference<>();
-      Runnable task =
-          () -> {
-            if (canSend()) {
-              synchronized (this) {
-                publishBatch();
-              }
-            }
-            if (status != Status.CLOSED) {
-              environment
-                  .scheduledExecutorService()
-                  .schedule(
-                      taskReference.get(), batchPublishingDelay.toMillis(), TimeUnit.MILLISECONDS);
-            }
-          };
-      taskReference.set(task);
-      environment
-          .scheduledExecutorService()
-          .schedule(task, batchPublishingDelay.toMillis(), TimeUnit.MILLISECONDS);
-    }
     this.batchSize = batchSize;
     this.status = Status.RUNNING;
   }
 
   void confirm(long publishingId) {
+    if (publishingId == this.latencySamplePublishingId) {
+      this.adaptiveDelay.confirmed(System.nanoTime() - this.latencySampleTime);
+      this.latencySamplePublishingId = -1;
+    }
     ConfirmationCallback confirmationCallback = this.unconfirmedMessages.remove(publishingId);
+    // no callback if the producer became unavailable, the capacity is reset when it recovers
     if (confirmationCallback != null) {
       int confirmedCount = confirmationCallback.handle(true, Constants.RESPONSE_CODE_OK);
-      this.unconfirmedMessagesSemaphore.release(confirmedCount);
-    } else {
-      this.unconfirmedMessagesSemaphore.release();
+      this.admission.release(confirmedCount, confirmationCallback.encodedSize());
     }
   }
 
   void error(long publishingId, short errorCode) {
-    ConfirmationCallback confirmationCallback = unconfirmedMessages.remove(publishingId);
+    if (publishingId == this.latencySamplePublishingId) {
+      this.latencySamplePublishingId = -1;
+    }
+    ConfirmationCallback confirmationCallback = this.unconfirmedMessages.remove(publishingId);
     if (confirmationCallback != null) {
       int nackedCount = confirmationCallback.handle(false, errorCode);
-      this.unconfirmedMessagesSemaphore.release(nackedCount);
-    } else {
-      unconfirmedMessagesSemaphore.release();
+      this.admission.release(nackedCount, confirmationCallback.encodedSize());
     }
   }
 
@@ -140,27 +167,61 @@ class StreamProducer implements Producer {
 
   @Override
   public void send(Message message, ConfirmationHandler confirmationHandler) {
-    try {
-      if (canSend()) {
-        if (unconfirmedMessagesSemaphore.tryAcquire(10, TimeUnit.SECONDS)) {
-          if (canSend()) {
-            if (accumulator.add(message, confirmationHandler)) {
-              synchronized (this) {
-                publishBatch();
-              }
-            }
-          } else {
-            failPublishing(message, confirmationHandler);
-          }
-        } else {
-          confirmationHandler.handle(
-              new ConfirmationStatus(message, false, CODE_MESSAGE_ENQUEUEING_FAILED));
-        }
+    if (canSend()) {
+      Codec.EncodedMessage encodedMessage = this.accumulator.encode(message);
+      boolean admitted;
+      try {
+        admitted = this.admission.acquire(encodedMessage.getSize(), 10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        throw new StreamException("Interrupted while waiting to accumulate outbound message", e);
+      }
+      if (admitted) {
+        accumulate(encodedMessage, message, confirmationHandler);
+      } else {
+        confirmationHandler.handle(
+            new ConfirmationStatus(message, false, CODE_MESSAGE_ENQUEUEING_FAILED));
+      }
+    } else {
+      failPublishing(message, confirmationHandler);
+    }
+  }
+
+  @Override
+  public boolean trySend(Message message, ConfirmationHandler confirmationHandler) {
+    if (canSend()) {
+      if (!this.admission.hasCapacity()) {
+        return false;
+      }
+      Codec.EncodedMessage encodedMessage = this.accumulator.encode(message);
+      if (this.admission.tryAcquire(encodedMessage.getSize())) {
+        accumulate(encodedMessage, message, confirmationHandler);
+        return true;
       } else {
-        failPublishing(message, confirmationHandler);
+        return false;
+      }
+    } else {
+      failPublishing(message, confirmationHandler);
+      return true;
+    }
+  }
+
+  @Override
+  public CompletionStage<Void> capacityAvailable() {
+    return this.admission.whenAvailable();
+  }
+
+  private void accumulate(
+      Codec.EncodedMessage encodedMessage,
+      Message message,
+      ConfirmationHandler confirmationHandler) {
+    if (canSend()) {
+      if (this.accumulator.add(encodedMessage, message, confirmationHandler)) {
+        publishFullBatches();
       }
-    } catch (InterruptedException e) {
-      throw new StreamException("Interrupted while waiting to accumulate outbound message", e);
+      scheduleFlush();
+    } else {
+      this.admission.release(1, encodedMessage.getSize());
+      failPublishing(message, confirmationHandler);
     }
   }
 
@@ -200,6 +261,118 @@ class StreamProducer implements Producer {
     }
   }
 
+  /**
+   * Publish the full batches of the accumulator, unless another thread is already doing it.
+   *
+   * <p>The accumulator is checked again after releasing the lock: a thread that accumulated a
+   * message while the lock was taken could have given up just before the lock holder stopped
+   * draining.
+   */
+  private void publishFullBatches() {
+    while (this.publishingLock.tryLock()) {
+      try {
+        while (this.accumulator.hasFullBatch() && canPublish()) {
+          publishBatch();
+        }
+      } finally {
+        this.publishingLock.unlock();
+      }
+      if (!this.accumulator.hasFullBatch() || !canPublish()) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * Schedule the publishing of the accumulated messages, unless it is already scheduled.
+   *
+   * <p>With the adaptive delay, the messages of a producer that has nothing in flight go out right
+   * away.
+   */
+  private void scheduleFlush() {
+    if (this.batchPublishingDelayInNs > 0
+        && !this.flushScheduled.get()
+        && this.status != Status.CLOSED
+        && this.flushScheduled.compareAndSet(false, true)) {
+      long delay;
+      if (this.adaptiveDelay == null) {
+        delay = this.batchPublishingDelayInNs;
+      } else if (this.unconfirmedMessages.size() == 0) {
+        delay = 0;
+      } else {
+        delay = this.adaptiveDelay.delay();
+      }
+      if (delay == 0) {
+        handOverFlush();
+      } else {
+        try {
+          // the timer thread only hands the flush over to the executor
+          this.environment
+              .timer()
+              .newTimeout(timeout -> handOverFlush(), delay, TimeUnit.NANOSECONDS);
+        } catch (IllegalStateException e) {
+          // the timer has been stopped, the environment is closing
+          this.flushScheduled.set(false);
+        }
+      }
+    }
+  }
+
+  private void handOverFlush() {
+    try {
+      this.environment.scheduledExecutorService().execute(this.flushTask);
+    } catch (RejectedExecutionException e) {
+      // the executor has been shut down, the environment is closing
+      this.flushScheduled.set(false);
+    }
+  }
+
+  private void flush() {
+    if (canPublish()) {
+      this.publishingLock.lock();
+      try {
+        publishBatch();
+        if (this.adaptiveDelay != null) {
+          this.adaptiveDelay.published(System.nanoTime(), this.publishedSinceLastFlush);
+          this.publishedSinceLastFlush = 0;
+        }
+      } finally {
+        this.publishingLock.unlock();
+      }
+    }
+    this.flushScheduled.set(false);
+    // a message accumulated before the flag reset would not have scheduled a flush,
+    // an unwritable connection reschedules the flush when it becomes writable again
+    if (!this.accumulator.isEmpty() && this.client.isWritable()) {
+      scheduleFlush();
+    }
+  }
+
+  /**
+   * Whether the producer can send accumulated messages now.
+   *
+   * <p>Messages stay in the accumulator while the outbound buffer of the connection is over its
+   * high water mark, publishing resumes with {@link #writable()}. The admission bounds the number
+   * of accumulated messages, so memory stays bounded if the network is slow.
+   */
+  private boolean canPublish() {
+    return canSend() && this.client.isWritable();
+  }
+
+  /** Called on the IO thread when the connection becomes writable again. */
+  void writable() {
+    if (canSend() && !this.accumulator.isEmpty()) {
+      this.environment.scheduledExecutorService().execute(this.drainTask);
+    }
+  }
+
+  private void drain() {
+    publishFullBatches();
+    if (!this.accumulator.isEmpty()) {
+      scheduleFlush();
+    }
+  }
+
   private void publishBatch() {
     if (canSend() && !accumulator.isEmpty()) {
       List<Object> messages = new ArrayList<>(this.batchSize);
@@ -213,6 +386,7 @@ class StreamProducer implements Producer {
         batchCount++;
       }
       client.publishInternal(this.stream, this.publisherId, messages, this.writeCallback);
+      this.publishedSinceLastFlush += batchCount;
     }
   }
 
@@ -222,25 +396,31 @@ class StreamProducer implements Producer {
 
   void unavailable() {
     this.status = Status.NOT_AVAILABLE;
-    synchronized (this) {
-      this.unconfirmedMessages
-          .keySet()
-          .forEach(publishingId -> error(publishingId, CODE_PRODUCER_NOT_AVAILABLE));
+    this.latencySamplePublishingId = -1;
+    this.publishingLock.lock();
+    try {
+      // the callbacks call application code, so they are not called under the structure lock
+      for (ConfirmationCallback callback : this.unconfirmedMessages.clear()) {
+        int nackedCount = callback.handle(false, CODE_PRODUCER_NOT_AVAILABLE);
+        this.admission.release(nackedCount, callback.encodedSize());
+      }
       if (!accumulator.isEmpty()) {
         MessageAccumulator.AccumulatedEntity accumulatedEntity;
         while ((accumulatedEntity = accumulator.get()) != null) {
           accumulatedEntity.confirmationCallback().handle(false, CODE_PRODUCER_NOT_AVAILABLE);
         }
       }
+    } finally {
+      this.publishingLock.unlock();
     }
   }
 
   void running() {
-    synchronized (this) {
-      if (unconfirmedMessagesSemaphore.availablePermits() != maxUnconfirmedMessages) {
-        unconfirmedMessagesSemaphore.release(
-            maxUnconfirmedMessages - unconfirmedMessagesSemaphore.availablePermits());
-      }
+    this.publishingLock.lock();
+    try {
+      this.admission.reset();
+    } finally {
+      this.publishingLock.unlock();
     }
     this.status = Status.RUNNING;
   }
@@ -266,5 +446,14 @@ class StreamProducer implements Producer {
   interface ConfirmationCallback {
 
     int handle(boolean confirmed, short code);
+
+    /**
+     * The size of the encoded messages of the callback, to release their capacity.
+     *
+     * @return the size in bytes
+     */
+    default long encodedSize() {
+      return 0;
+    }
   }
 }
@@ -16,6 +16,7 @@ package com.rabbitmq.stream.impl;
 
 import com.rabbitmq.stream.Producer;
 import com.rabbitmq.stream.ProducerBuilder;
+import com.rabbitmq.stream.compression.Compression;
 import java.time.Duration;
 
 class StreamProducerBuilder implements ProducerBuilder {
@@ -26,12 +27,18 @@ class StreamProducerBuilder implements ProducerBuilder {
 
   private int subEntrySize = 1;
 
+  private Compression compression = Compression.NONE;
+
   private int batchSize = 100;
 
   private Duration batchPublishingDelay = Duration.ofMillis(100);
 
+  private boolean adaptiveBatchPublishingDelay = false;
+
   private int maxUnconfirmedMessages = 10_000;
 
+  private long maxUnconfirmedBytes = 0;
+
   StreamProducerBuilder(StreamEnvironment environment) {
     this.environment = environment;
   }
@@ -55,11 +62,23 @@ class StreamProducerBuilder implements ProducerBuilder {
     return this;
   }
 
+  @Override
+  public ProducerBuilder compression(Compression compression) {
+    this.compression = compression;
+    return this;
+  }
+
   public StreamProducerBuilder batchPublishingDelay(Duration batchPublishingDelay) {
     this.batchPublishingDelay = batchPublishingDelay;
     return this;
   }
 
+  @Override
+  public StreamProducerBuilder adaptiveBatchPublishingDelay(boolean adaptiveBatchPublishingDelay) {
+    this.adaptiveBatchPublishingDelay = adaptiveBatchPublishingDelay;
+    return this;
+  }
+
   @Override
   public ProducerBuilder maxUnconfirmedMessages(int maxUnconfirmedMessages) {
     if (maxUnconfirmedMessages <= 0) {
@@ -69,14 +88,29 @@ class StreamProducerBuilder implements ProducerBuilder {
     return this;
   }
 
+  @Override
+  public ProducerBuilder maxUnconfirmedBytes(long maxUnconfirmedBytes) {
+    if (maxUnconfirmedBytes < 0) {
+      throw new IllegalArgumentException("maxUnconfirmedBytes must be greater than or equal to 0");
+    }
+    this.maxUnconfirmedBytes = maxUnconfirmedBytes;
+    return this;
+  }
+
   public Producer build() {
+    if (subEntrySize <= 1 && compression != Compression.NONE) {
+      throw new IllegalArgumentException("Compression requires sub-entry batching");
+    }
     StreamProducer producer =
         new StreamProducer(
             stream,
             subEntrySize,
+            compression,
             batchSize,
             batchPublishingDelay,
+            adaptiveBatchPublishingDelay,
             maxUnconfirmedMessages,
+            maxUnconfirmedBytes,
             environment);
     this.environment.addProducer(producer);
     return producer;
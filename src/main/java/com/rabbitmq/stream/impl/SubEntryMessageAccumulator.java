@@ -2,84 +2,109 @@ package com.rabbitmq.stream.impl;
 
 import com.rabbitmq.stream.Codec;
 import com.rabbitmq.stream.ConfirmationHandler;
-import com.rabbitmq.stream.ConfirmationStatus;
 import com.rabbitmq.stream.Message;
+import com.rabbitmq.stream.compression.Compression;
+import com.rabbitmq.stream.compression.CompressionCodec;
+import io.netty.util.internal.PlatformDependent;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Queue;
 
 class SubEntryMessageAccumulator implements MessageAccumulator {
 
   private final int subEntrySize, batchSize;
 
-  private final BlockingQueue<Batch> batches;
+  // messages are accumulated one by one, sub-entries are created only when getting them
+  private final Queue<AccumulatedEntity> messages;
 
   private final Codec codec;
 
+  // null if sub-entries are not compressed
+  private final CompressionCodec compressionCodec;
+
   private final int maxFrameSize;
   private final String stream;
-  private volatile Batch currentBatch;
 
   public SubEntryMessageAccumulator(
-      int subEntrySize, int batchSize, Codec codec, int maxFrameSize, String stream) {
+      int subEntrySize,
+      int batchSize,
+      int capacity,
+      CompressionCodec compressionCodec,
+      Codec codec,
+      int maxFrameSize,
+      String stream) {
     this.batchSize = batchSize;
-    this.batches = new LinkedBlockingQueue<>(batchSize);
+    this.messages =
+        PlatformDependent.newFixedMpscQueue(Math.max(capacity, subEntrySize * batchSize));
     this.subEntrySize = subEntrySize;
+    this.compressionCodec = compressionCodec;
     this.codec = codec;
     this.maxFrameSize = maxFrameSize;
-    this.currentBatch = createBatch();
     this.stream = stream;
   }
 
   private Batch createBatch() {
     return new Batch(
         new Client.EncodedMessageBatch(
-            MessageBatch.Compression.NONE, new ArrayList<>(subEntrySize)),
+            compressionCodec == null ? Compression.NONE : compressionCodec.compression(),
+            new ArrayList<>(subEntrySize)),
         new CompositeConfirmationCallback(new ArrayList<>(subEntrySize)));
   }
 
   @Override
-  public synchronized boolean add(Message message, ConfirmationHandler confirmationHandler) {
+  public Codec.EncodedMessage encode(Message message) {
     Codec.EncodedMessage encodedMessage = this.codec.encode(message);
     Client.checkMessageFitsInFrame(this.maxFrameSize, stream, encodedMessage);
-    this.currentBatch.add(
-        encodedMessage, new SimpleConfirmationCallback(message, confirmationHandler));
-    if (this.currentBatch.count.get() == this.subEntrySize) {
-      // FIXME make sure batch fits in frame
-      this.batches.add(this.currentBatch);
-      this.currentBatch = createBatch();
-    }
-    return this.batches.size() == this.batchSize;
+    return encodedMessage;
+  }
+
+  @Override
+  public boolean add(
+      Codec.EncodedMessage encodedMessage,
+      Message message,
+      ConfirmationHandler confirmationHandler) {
+    SimpleMessageAccumulator.offer(
+        this.messages,
+        new SimpleMessageAccumulator.SimpleAccumulatedEntity(
+            encodedMessage,
+            new SimpleMessageAccumulator.SimpleConfirmationCallback(
+                message, confirmationHandler, encodedMessage.getSize())));
+    return hasFullBatch();
   }
 
   @Override
   public AccumulatedEntity get() {
-    Batch batch = batches.poll();
-    if (batch == null) {
-      if (this.currentBatch.isEmpty()) {
-        return null;
-      } else {
-        Batch toReturn = this.currentBatch;
-        this.currentBatch = createBatch();
-        return toReturn;
-      }
-    } else {
-      return batch;
+    AccumulatedEntity message = this.messages.poll();
+    if (message == null) {
+      return null;
     }
+    // FIXME make sure batch fits in frame
+    Batch batch = createBatch();
+    batch.add(message);
+    while (batch.count != this.subEntrySize && (message = this.messages.poll()) != null) {
+      batch.add(message);
+    }
+    if (this.compressionCodec != null) {
+      batch.encodedMessageBatch.compress(this.compressionCodec);
+    }
+    return batch;
   }
 
   @Override
   public boolean isEmpty() {
-    return batches.isEmpty() && this.currentBatch.isEmpty();
+    return this.messages.isEmpty();
+  }
+
+  @Override
+  public boolean hasFullBatch() {
+    return this.messages.size() >= this.subEntrySize * this.batchSize;
   }
 
   private static class Batch implements AccumulatedEntity {
 
     private final Client.EncodedMessageBatch encodedMessageBatch;
     private final CompositeConfirmationCallback confirmationCallback;
-    private final AtomicInteger count = new AtomicInteger(0);
+    private int count = 0;
 
     private Batch(
         Client.EncodedMessageBatch encodedMessageBatch,
@@ -88,16 +113,10 @@ class SubEntryMessageAccumulator implements MessageAccumulator {
       this.confirmationCallback = confirmationCallback;
     }
 
-    void add(
-        Codec.EncodedMessage encodedMessage,
-        StreamProducer.ConfirmationCallback confirmationCallback) {
-      this.encodedMessageBatch.add(encodedMessage);
-      this.confirmationCallback.add(confirmationCallback);
-      count.incrementAndGet();
-    }
-
-    private boolean isEmpty() {
-      return this.confirmationCallback.callbacks.isEmpty();
+    void add(AccumulatedEntity message) {
+      this.encodedMessageBatch.add((Codec.EncodedMessage) message.encodedEntity());
+      this.confirmationCallback.add(message.confirmationCallback());
+      count++;
     }
 
     @Override
@@ -131,23 +150,14 @@ class SubEntryMessageAccumulator implements MessageAccumulator {
       }
       return callbacks.size();
     }
-  }
-
-  private static final class SimpleConfirmationCallback
-      implements StreamProducer.ConfirmationCallback {
-
-    private final Message message;
-    private final ConfirmationHandler confirmationHandler;
-
-    private SimpleConfirmationCallback(Message message, ConfirmationHandler confirmationHandler) {
-      this.message = message;
-      this.confirmationHandler = confirmationHandler;
-    }
 
     @Override
-    public int handle(boolean confirmed, short code) {
-      confirmationHandler.handle(new ConfirmationStatus(message, confirmed, code));
-      return 1;
+    public long encodedSize() {
+      long size = 0;
+      for (StreamProducer.ConfirmationCallback callback : callbacks) {
+        size += callback.encodedSize();
+      }
+      return size;
     }
   }
 }
@@ -0,0 +1,113 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.impl;
+
+import com.rabbitmq.stream.StreamException;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+/**
+ * Netty transport selection.
+ *
+ * <p>The native epoll transport is used when netty-transport-native-epoll and its native library
+ * are available, NIO is used otherwise. The channel class always matches the event loop group, so
+ * an application can provide an epoll or an io_uring event loop group.
+ */
+final class Transports {
+
+  private static final boolean EPOLL_ON_CLASSPATH = isOnClasspath("io.netty.channel.epoll.Epoll");
+
+  // io_uring is still in the Netty incubator, it is used only if the application provides it
+  private static final String IO_URING_EVENT_LOOP_GROUP =
+      "io.netty.incubator.channel.uring.IOUringEventLoopGroup";
+  private static final String IO_URING_SOCKET_CHANNEL =
+      "io.netty.incubator.channel.uring.IOUringSocketChannel";
+
+  private Transports() {}
+
+  static EventLoopGroup eventLoopGroup() {
+    if (EPOLL_ON_CLASSPATH && EpollTransport.isAvailable()) {
+      return EpollTransport.eventLoopGroup();
+    } else {
+      return new NioEventLoopGroup();
+    }
+  }
+
+  static Class<? extends SocketChannel> socketChannelClass(EventLoopGroup eventLoopGroup) {
+    if (eventLoopGroup instanceof NioEventLoopGroup) {
+      return NioSocketChannel.class;
+    } else if (EPOLL_ON_CLASSPATH && EpollTransport.isEpoll(eventLoopGroup)) {
+      return EpollTransport.socketChannelClass();
+    } else if (isInstance(IO_URING_EVENT_LOOP_GROUP, eventLoopGroup)) {
+      return loadSocketChannelClass(
+          IO_URING_SOCKET_CHANNEL, eventLoopGroup.getClass().getClassLoader());
+    } else {
+      // unknown event loop group, e.g. a wrapper, keep the previous behavior
+      return NioSocketChannel.class;
+    }
+  }
+
+  private static boolean isOnClasspath(String className) {
+    try {
+      Class.forName(className, false, Transports.class.getClassLoader());
+      return true;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+  private static boolean isInstance(String className, Object object) {
+    try {
+      return Class.forName(className, false, object.getClass().getClassLoader()).isInstance(object);
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Class<? extends SocketChannel> loadSocketChannelClass(
+      String className, ClassLoader classLoader) {
+    try {
+      return (Class<? extends SocketChannel>) Class.forName(className, true, classLoader);
+    } catch (ClassNotFoundException e) {
+      throw new StreamException("Could not load socket channel class " + className, e);
+    }
+  }
+
+  /** Isolates the references to the epoll classes, which are optional. */
+  private static final class EpollTransport {
+
+    private static boolean isAvailable() {
+      return Epoll.isAvailable();
+    }
+
+    private static EventLoopGroup eventLoopGroup() {
+      return new EpollEventLoopGroup();
+    }
+
+    private static boolean isEpoll(EventLoopGroup eventLoopGroup) {
+      return eventLoopGroup instanceof EpollEventLoopGroup;
+    }
+
+    private static Class<? extends SocketChannel> socketChannelClass() {
+      return EpollSocketChannel.class;
+    }
+  }
+}
@@ -0,0 +1,114 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Confirmation callbacks of the outbound messages of a producer, by publishing ID.
+ *
+ * <p>Publishing IDs grow monotonically, so the slot of a publishing ID in the ring is its value
+ * modulo the capacity and insertion and removal are O(1), with no boxing nor allocation. A
+ * publishing ID can land on a slot still taken by an older, unconfirmed publishing ID (e.g. if
+ * other producers use the same connection and create gaps in the sequence). It then goes to an
+ * overflow map.
+ *
+ * <p>The ring is sized from the maximum number of unconfirmed messages, so overflowing should be
+ * rare.
+ */
+final class UnconfirmedMessages {
+
+  private final long[] publishingIds;
+  private final StreamProducer.ConfirmationCallback[] callbacks;
+  private final int mask;
+  private final Map<Long, StreamProducer.ConfirmationCallback> overflow = new HashMap<>();
+  private int size = 0;
+
+  UnconfirmedMessages(int maxUnconfirmedMessages) {
+    if (maxUnconfirmedMessages <= 0) {
+      throw new IllegalArgumentException("The maximum number of unconfirmed messages must be > 0");
+    }
+    int capacity = Integer.highestOneBit(maxUnconfirmedMessages);
+    if (capacity < maxUnconfirmedMessages && capacity < (1 << 30)) {
+      capacity = capacity << 1;
+    }
+    this.publishingIds = new long[capacity];
+    this.callbacks = new StreamProducer.ConfirmationCallback[capacity];
+    this.mask = capacity - 1;
+  }
+
+  synchronized void put(long publishingId, StreamProducer.ConfirmationCallback callback) {
+    int index = index(publishingId);
+    if (this.callbacks[index] == null) {
+      this.publishingIds[index] = publishingId;
+      this.callbacks[index] = callback;
+      this.size++;
+    } else if (this.publishingIds[index] == publishingId) {
+      this.callbacks[index] = callback;
+    } else if (this.overflow.put(publishingId, callback) == null) {
+      this.size++;
+    }
+  }
+
+  synchronized StreamProducer.ConfirmationCallback remove(long publishingId) {
+    int index = index(publishingId);
+    StreamProducer.ConfirmationCallback callback = this.callbacks[index];
+    if (callback != null && this.publishingIds[index] == publishingId) {
+      this.callbacks[index] = null;
+      this.size--;
+      return callback;
+    } else if (this.overflow.isEmpty()) {
+      return null;
+    } else {
+      callback = this.overflow.remove(publishingId);
+      if (callback != null) {
+        this.size--;
+      }
+      return callback;
+    }
+  }
+
+  /**
+   * Remove all the callbacks.
+   *
+   * @return the callbacks that were in the structure
+   */
+  synchronized List<StreamProducer.ConfirmationCallback> clear() {
+    List<StreamProducer.ConfirmationCallback> result = new ArrayList<>(this.size);
+    if (this.size > 0) {
+      for (int i = 0; i < this.callbacks.length; i++) {
+        if (this.callbacks[i] != null) {
+          result.add(this.callbacks[i]);
+          this.callbacks[i] = null;
+        }
+      }
+      result.addAll(this.overflow.values());
+      this.overflow.clear();
+      this.size = 0;
+    }
+    return result;
+  }
+
+  synchronized int size() {
+    return this.size;
+  }
+
+  private int index(long publishingId) {
+    return (int) publishingId & this.mask;
+  }
+}
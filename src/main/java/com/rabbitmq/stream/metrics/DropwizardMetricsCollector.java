@@ -18,6 +18,8 @@ import com.codahale.metrics.Counter;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import java.util.concurrent.TimeUnit;
 
 public class DropwizardMetricsCollector implements MetricsCollector {
 
@@ -26,8 +28,13 @@ public class DropwizardMetricsCollector implements MetricsCollector {
   private final com.codahale.metrics.Meter publishError;
   private final com.codahale.metrics.Meter chunk;
   private final Meter consume;
+  private final Meter offsetCommitRequest;
+  private final Meter offsetCommit;
 
   private final Counter outstandingPublishConfirm;
+  private final Counter queuedChunks;
+  private final Counter queuedChunkBytes;
+  private final Timer readPaused;
   private final Histogram chunkSize;
 
   public DropwizardMetricsCollector(MetricRegistry registry, String metricsPrefix) {
@@ -37,8 +44,13 @@ public class DropwizardMetricsCollector implements MetricsCollector {
     this.chunk = registry.meter(metricsPrefix + ".chunk");
     this.chunkSize = registry.histogram(metricsPrefix + ".chunk_size");
     this.consume = registry.meter(metricsPrefix + ".consumed");
+    this.offsetCommitRequest = registry.meter(metricsPrefix + ".offset_commit_requested");
+    this.offsetCommit = registry.meter(metricsPrefix + ".offset_committed");
     this.outstandingPublishConfirm =
         registry.counter(metricsPrefix + ".outstanding_publish_confirm");
+    this.queuedChunks = registry.counter(metricsPrefix + ".delivery_queue_chunks");
+    this.queuedChunkBytes = registry.counter(metricsPrefix + ".delivery_queue_bytes");
+    this.readPaused = registry.timer(metricsPrefix + ".read_paused");
   }
 
   public DropwizardMetricsCollector() {
@@ -77,4 +89,31 @@ public class DropwizardMetricsCollector implements MetricsCollector {
   public void consume(long count) {
     consume.mark(count);
   }
+
+  @Override
+  public void offsetCommitRequest(int count) {
+    offsetCommitRequest.mark(count);
+  }
+
+  @Override
+  public void offsetCommit(int count) {
+    offsetCommit.mark(count);
+  }
+
+  @Override
+  public void deliveryQueued(int size) {
+    queuedChunks.inc();
+    queuedChunkBytes.inc(size);
+  }
+
+  @Override
+  public void deliveryDispatched(int size) {
+    queuedChunks.dec();
+    queuedChunkBytes.dec(size);
+  }
+
+  @Override
+  public void readPaused(long durationInNanos) {
+    readPaused.update(durationInNanos, TimeUnit.NANOSECONDS);
+  }
 }
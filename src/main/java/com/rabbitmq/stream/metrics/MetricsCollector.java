@@ -27,4 +27,49 @@ public interface MetricsCollector {
   void chunk(int entriesCount);
 
   void consume(long count);
+
+  /**
+   * Offset commits have been requested by consumers.
+   *
+   * <p>Does nothing by default.
+   *
+   * @param count the number of requested commits
+   */
+  default void offsetCommitRequest(int count) {}
+
+  /**
+   * Offset commits have been sent to the broker, after coalescing.
+   *
+   * <p>Does nothing by default.
+   *
+   * @param count the number of commits sent
+   */
+  default void offsetCommit(int count) {}
+
+  /**
+   * A chunk has been queued to be dispatched to consumers.
+   *
+   * <p>Does nothing by default.
+   *
+   * @param size the size of the chunk frame in bytes
+   */
+  default void deliveryQueued(int size) {}
+
+  /**
+   * A queued chunk has been dispatched to consumers.
+   *
+   * <p>Does nothing by default.
+   *
+   * @param size the size of the chunk frame in bytes
+   */
+  default void deliveryDispatched(int size) {}
+
+  /**
+   * Reading from a connection resumed after the delivery queue was full.
+   *
+   * <p>Does nothing by default.
+   *
+   * @param durationInNanos how long reading was paused
+   */
+  default void readPaused(long durationInNanos) {}
 }
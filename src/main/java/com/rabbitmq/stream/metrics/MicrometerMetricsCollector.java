@@ -16,6 +16,7 @@ package com.rabbitmq.stream.metrics;
 
 import io.micrometer.core.instrument.*;
 import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class MicrometerMetricsCollector implements MetricsCollector {
@@ -25,8 +26,13 @@ public class MicrometerMetricsCollector implements MetricsCollector {
   private final Counter publishError;
   private final Counter chunk;
   private final Counter consume;
+  private final Counter offsetCommitRequest;
+  private final Counter offsetCommit;
 
   private final AtomicLong outstandingPublishConfirm;
+  private final AtomicLong queuedChunks;
+  private final AtomicLong queuedChunkBytes;
+  private final Timer readPaused;
   private final DistributionSummary chunkSize;
 
   public MicrometerMetricsCollector(MeterRegistry registry) {
@@ -50,8 +56,14 @@ public class MicrometerMetricsCollector implements MetricsCollector {
     this.chunk = registry.counter(prefix + ".chunk", tags);
     this.chunkSize = registry.summary(prefix + ".chunk_size", tags);
     this.consume = registry.counter(prefix + ".consumed", tags);
+    this.offsetCommitRequest = registry.counter(prefix + ".offset_commit_requested", tags);
+    this.offsetCommit = registry.counter(prefix + ".offset_committed", tags);
     this.outstandingPublishConfirm =
         registry.gauge(prefix + ".outstanding_publish_confirm", tags, new AtomicLong(0));
+    this.queuedChunks = registry.gauge(prefix + ".delivery_queue_chunks", tags, new AtomicLong(0));
+    this.queuedChunkBytes =
+        registry.gauge(prefix + ".delivery_queue_bytes", tags, new AtomicLong(0));
+    this.readPaused = registry.timer(prefix + ".read_paused", tags);
   }
 
   @Override
@@ -82,4 +94,31 @@ public class MicrometerMetricsCollector implements MetricsCollector {
   public void consume(long count) {
     consume.increment(count);
   }
+
+  @Override
+  public void offsetCommitRequest(int count) {
+    offsetCommitRequest.increment(count);
+  }
+
+  @Override
+  public void offsetCommit(int count) {
+    offsetCommit.increment(count);
+  }
+
+  @Override
+  public void deliveryQueued(int size) {
+    queuedChunks.incrementAndGet();
+    queuedChunkBytes.addAndGet(size);
+  }
+
+  @Override
+  public void deliveryDispatched(int size) {
+    queuedChunks.decrementAndGet();
+    queuedChunkBytes.addAndGet(-size);
+  }
+
+  @Override
+  public void readPaused(long durationInNanos) {
+    readPaused.record(durationInNanos, TimeUnit.NANOSECONDS);
+  }
 }
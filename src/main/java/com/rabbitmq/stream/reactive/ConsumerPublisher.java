@@ -0,0 +1,260 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.reactive;
+
+import com.rabbitmq.stream.Consumer;
+import com.rabbitmq.stream.ConsumerBuilder;
+import com.rabbitmq.stream.CreditStrategy;
+import com.rabbitmq.stream.Message;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reactive Streams {@link Publisher} of the messages of a stream.
+ *
+ * <p>Each subscription creates a consumer from the provided {@link ConsumerBuilder}, which must be
+ * configured with at least the stream. The publisher sets the message handler and the credit
+ * strategy of the builder: the broker gets a new credit only when the subscriber has requested
+ * more messages than the ones already received. At most one chunk of messages is buffered beyond
+ * the demand of the subscriber.
+ *
+ * <p>Cancelling the subscription closes the consumer. If the library closes the consumer, the
+ * subscriber gets {@link Subscriber#onComplete()} once the buffered messages are emitted when the
+ * environment is closed, and {@link Subscriber#onError(Throwable)} right away when the stream is
+ * deleted or the consumer cannot be recovered.
+ */
+public class ConsumerPublisher implements Publisher<Message> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ConsumerPublisher.class);
+
+  private final ConsumerBuilder consumerBuilder;
+
+  /**
+   * Create a publisher.
+   *
+   * @param consumerBuilder the builder to create the consumer of each subscription
+   */
+  public ConsumerPublisher(ConsumerBuilder consumerBuilder) {
+    this.consumerBuilder = consumerBuilder;
+  }
+
+  @Override
+  public void subscribe(Subscriber<? super Message> subscriber) {
+    if (subscriber == null) {
+      throw new NullPointerException("Subscriber cannot be null");
+    }
+    ConsumerSubscription subscription = new ConsumerSubscription(subscriber);
+    subscriber.onSubscribe(subscription);
+    Consumer consumer;
+    try {
+      // the builder is shared between subscriptions
+      synchronized (this.consumerBuilder) {
+        consumer =
+            this.consumerBuilder
+                .messageHandler((context, message) -> subscription.received(message))
+                .creditStrategy(subscription)
+                .closedHandler(subscription::closed)
+                .build();
+      }
+    } catch (RuntimeException e) {
+      subscription.fail(e);
+      return;
+    }
+    subscription.consumer(consumer);
+  }
+
+  private static final class ConsumerSubscription implements Subscription, CreditStrategy {
+
+    private final Subscriber<? super Message> subscriber;
+    private final Queue<Message> buffer = new ConcurrentLinkedQueue<>();
+    private final AtomicLong requested = new AtomicLong(0);
+    private final AtomicInteger wip = new AtomicInteger(0);
+    // a credit has been granted and its chunk has not been processed yet
+    private final AtomicBoolean creditOutstanding = new AtomicBoolean(false);
+    // cancelled by the subscriber or terminated by the publisher
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    // terminal signals are emitted from the drain loop, to serialize them with onNext
+    private volatile Throwable error;
+    private volatile boolean completed;
+    private volatile CreditStrategy.Credits credits;
+    private volatile Consumer consumer;
+
+    private ConsumerSubscription(Subscriber<? super Message> subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    @Override
+    public int initialCredits() {
+      return 1;
+    }
+
+    @Override
+    public Controller controller(Credits credits) {
+      // called on each (re-)subscription, which grants the initial credit
+      this.creditOutstanding.set(true);
+      this.credits = credits;
+      return new Controller() {
+        @Override
+        public void chunkProcessed(long messageCount, long processingTimeInNanos) {
+          creditOutstanding.set(false);
+          drain();
+        }
+      };
+    }
+
+    private void consumer(Consumer consumer) {
+      this.consumer = consumer;
+      if (this.cancelled.get()) {
+        close(consumer);
+      }
+    }
+
+    private void received(Message message) {
+      if (!this.cancelled.get()) {
+        this.buffer.offer(message);
+        drain();
+      }
+    }
+
+    private void fail(Throwable throwable) {
+      if (this.error == null) {
+        this.error = throwable;
+      }
+      drain();
+    }
+
+    private void closed(Throwable cause) {
+      if (cause == null) {
+        this.completed = true;
+        drain();
+      } else {
+        fail(cause);
+      }
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        fail(new IllegalArgumentException("Requested number of messages must be positive: " + n));
+        return;
+      }
+      long current;
+      do {
+        current = this.requested.get();
+        if (current == Long.MAX_VALUE) {
+          break;
+        }
+      } while (!this.requested.compareAndSet(current, addCap(current, n)));
+      drain();
+    }
+
+    private static long addCap(long a, long b) {
+      long sum = a + b;
+      return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    @Override
+    public void cancel() {
+      if (this.cancelled.compareAndSet(false, true)) {
+        this.buffer.clear();
+        Consumer c = this.consumer;
+        if (c != null) {
+          close(c);
+        }
+      }
+    }
+
+    private static void close(Consumer consumer) {
+      try {
+        consumer.close();
+      } catch (Exception e) {
+        LOGGER.debug("Error while closing consumer: {}", e.getMessage());
+      }
+    }
+
+    /** Emit buffered messages as long as there is demand, then ask for a chunk if needed. */
+    private void drain() {
+      if (this.wip.getAndIncrement() != 0) {
+        return;
+      }
+      int missed = 1;
+      do {
+        if (terminated()) {
+          return;
+        }
+        while (!this.cancelled.get() && this.requested.get() > 0) {
+          Message message = this.buffer.poll();
+          if (message == null) {
+            break;
+          }
+          if (this.requested.get() != Long.MAX_VALUE) {
+            this.requested.decrementAndGet();
+          }
+          this.subscriber.onNext(message);
+        }
+        if (terminated()) {
+          return;
+        }
+        CreditStrategy.Credits c = this.credits;
+        if (!this.cancelled.get()
+            && !this.completed
+            && c != null
+            && this.buffer.isEmpty()
+            && this.requested.get() > 0
+            && this.creditOutstanding.compareAndSet(false, true)) {
+          c.credit(1);
+        }
+        missed = this.wip.addAndGet(-missed);
+      } while (missed != 0);
+    }
+
+    /**
+     * Emit the terminal signal if any, from the drain loop only.
+     *
+     * <p>The drain loop is left for good once the subscription is terminated or cancelled.
+     */
+    private boolean terminated() {
+      if (this.cancelled.get()) {
+        return true;
+      }
+      Throwable e = this.error;
+      if (e != null) {
+        if (this.cancelled.compareAndSet(false, true)) {
+          this.buffer.clear();
+          Consumer c = this.consumer;
+          if (c != null) {
+            close(c);
+          }
+          this.subscriber.onError(e);
+        }
+        return true;
+      } else if (this.completed && this.buffer.isEmpty()) {
+        if (this.cancelled.compareAndSet(false, true)) {
+          this.subscriber.onComplete();
+        }
+        return true;
+      }
+      return false;
+    }
+  }
+}
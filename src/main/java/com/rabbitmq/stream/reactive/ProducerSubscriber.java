@@ -0,0 +1,166 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.reactive;
+
+import com.rabbitmq.stream.ConfirmationHandler;
+import com.rabbitmq.stream.Message;
+import com.rabbitmq.stream.Producer;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Reactive Streams {@link Subscriber} that sends messages with a {@link Producer}.
+ *
+ * <p>The subscriber requests at most <code>maxInFlight</code> messages, then one more message each
+ * time a message is confirmed or failed. Messages are sent with {@link Producer#trySend(Message,
+ * ConfirmationHandler)}, so the subscriber never blocks: if the producer has no capacity, the
+ * message waits until {@link Producer#capacityAvailable()} completes.
+ *
+ * <p>The subscriber does not close the producer. {@link #completion()} completes once the upstream
+ * publisher has completed and all the messages have been confirmed or failed.
+ */
+public class ProducerSubscriber implements Subscriber<Message> {
+
+  private final Producer producer;
+  private final int maxInFlight;
+  private final ConfirmationHandler confirmationHandler;
+  private final AtomicReference<Subscription> subscription = new AtomicReference<>();
+  private final Queue<Message> pending = new ConcurrentLinkedQueue<>();
+  // messages received and not confirmed or failed yet
+  private final AtomicInteger inFlight = new AtomicInteger(0);
+  private final AtomicBoolean upstreamCompleted = new AtomicBoolean(false);
+  private final CompletableFuture<Void> completion = new CompletableFuture<>();
+  private final ConfirmationHandler internalConfirmationHandler;
+  // guarded by this
+  private boolean sending = false;
+
+  /**
+   * Create a subscriber.
+   *
+   * @param producer the producer to send messages with
+   * @param maxInFlight the maximum number of messages requested and not confirmed yet
+   * @param confirmationHandler the handler called for each confirmed or failed message
+   */
+  public ProducerSubscriber(
+      Producer producer, int maxInFlight, ConfirmationHandler confirmationHandler) {
+    if (maxInFlight <= 0) {
+      throw new IllegalArgumentException("The maximum number of messages in flight must be > 0");
+    }
+    this.producer = producer;
+    this.maxInFlight = maxInFlight;
+    this.confirmationHandler = confirmationHandler;
+    this.internalConfirmationHandler =
+        confirmationStatus -> {
+          try {
+            this.confirmationHandler.handle(confirmationStatus);
+          } finally {
+            this.inFlight.decrementAndGet();
+            if (!this.upstreamCompleted.get()) {
+              this.subscription.get().request(1);
+            }
+            maybeComplete();
+          }
+        };
+  }
+
+  @Override
+  public void onSubscribe(Subscription subscription) {
+    if (subscription == null) {
+      throw new NullPointerException("Subscription cannot be null");
+    }
+    if (this.subscription.compareAndSet(null, subscription)) {
+      subscription.request(this.maxInFlight);
+    } else {
+      // only one subscription at a time
+      subscription.cancel();
+    }
+  }
+
+  @Override
+  public void onNext(Message message) {
+    if (message == null) {
+      throw new NullPointerException("Message cannot be null");
+    }
+    this.inFlight.incrementAndGet();
+    this.pending.offer(message);
+    sendPending();
+  }
+
+  private synchronized void sendPending() {
+    // a confirmation handler can be called inline and lead to a nested call, the outer loop sends
+    if (this.sending) {
+      return;
+    }
+    this.sending = true;
+    try {
+      Message message;
+      while ((message = this.pending.peek()) != null) {
+        if (this.producer.trySend(message, this.internalConfirmationHandler)) {
+          this.pending.poll();
+        } else {
+          CompletableFuture<Void> capacity =
+              this.producer.capacityAvailable().toCompletableFuture();
+          if (!capacity.isDone()) {
+            capacity.thenRun(this::sendPending);
+            if (!capacity.isDone()) {
+              break;
+            }
+          }
+          // capacity available in the meantime, the callback may have been ignored
+        }
+      }
+    } finally {
+      this.sending = false;
+    }
+  }
+
+  @Override
+  public void onError(Throwable throwable) {
+    if (throwable == null) {
+      throw new NullPointerException("Throwable cannot be null");
+    }
+    this.upstreamCompleted.set(true);
+    this.completion.completeExceptionally(throwable);
+  }
+
+  @Override
+  public void onComplete() {
+    this.upstreamCompleted.set(true);
+    maybeComplete();
+  }
+
+  private void maybeComplete() {
+    if (this.upstreamCompleted.get() && this.inFlight.get() == 0) {
+      this.completion.complete(null);
+    }
+  }
+
+  /**
+   * A stage that completes once all the messages of the upstream publisher have been confirmed or
+   * failed.
+   *
+   * @return the completion stage
+   */
+  public CompletionStage<Void> completion() {
+    return this.completion;
+  }
+}
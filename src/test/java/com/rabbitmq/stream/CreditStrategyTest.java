@@ -0,0 +1,108 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream;
+
+import static java.time.Duration.ofMillis;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+public class CreditStrategyTest {
+
+  static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+  static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+  List<Integer> credits = new ArrayList<>();
+
+  @Test
+  void perChunkShouldGrantOneCreditOnEachChunk() {
+    CreditStrategy strategy = CreditStrategy.perChunk(5);
+    assertThat(strategy.initialCredits()).isEqualTo(5);
+    CreditStrategy.Controller controller = strategy.controller(credits::add);
+    IntStream.range(0, 3)
+        .forEach(
+            i -> {
+              controller.chunkReceived(10);
+              controller.chunkProcessed(10, FAST);
+            });
+    assertThat(credits).containsExactly(1, 1, 1);
+  }
+
+  @Test
+  void batchShouldRefillAfterNChunks() {
+    CreditStrategy strategy = CreditStrategy.batch(10, 4);
+    assertThat(strategy.initialCredits()).isEqualTo(10);
+    CreditStrategy.Controller controller = strategy.controller(credits::add);
+    IntStream.range(0, 9).forEach(i -> controller.chunkReceived(10));
+    assertThat(credits).containsExactly(4, 4);
+  }
+
+  @Test
+  void afterProcessingShouldGrantCreditOnlyOnceChunkIsProcessed() {
+    CreditStrategy.Controller controller =
+        CreditStrategy.afterProcessing(2).controller(credits::add);
+    controller.chunkReceived(10);
+    assertThat(credits).isEmpty();
+    controller.chunkProcessed(10, SLOW);
+    assertThat(credits).containsExactly(1);
+  }
+
+  @Test
+  void adaptiveShouldGrowWhenFastAndShrinkWhenSlow() {
+    CreditStrategy strategy = CreditStrategy.adaptive(2, 4, ofMillis(10));
+    assertThat(strategy.initialCredits()).isEqualTo(2);
+    CreditStrategy.Controller controller = strategy.controller(credits::add);
+    // 2 -> 3 -> 4 chunks in flight, then stays at 4
+    IntStream.range(0, 3).forEach(i -> controller.chunkProcessed(10, FAST));
+    assertThat(credits).containsExactly(2, 2, 1);
+    credits.clear();
+    // 4 -> 3 -> 2 chunks in flight, then stays at 2
+    IntStream.range(0, 3).forEach(i -> controller.chunkProcessed(10, SLOW));
+    assertThat(credits).containsExactly(1);
+  }
+
+  @Test
+  void controllersShouldNotShareState() {
+    CreditStrategy strategy = CreditStrategy.batch(4, 2);
+    CreditStrategy.Controller controller1 = strategy.controller(credits::add);
+    CreditStrategy.Controller controller2 = strategy.controller(credits::add);
+    controller1.chunkReceived(10);
+    controller2.chunkReceived(10);
+    assertThat(credits).isEmpty();
+  }
+
+  @Test
+  void invalidSettingsShouldBeRejected() {
+    assertThatThrownBy(() -> CreditStrategy.perChunk(0))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> CreditStrategy.perChunk(Short.MAX_VALUE + 1))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> CreditStrategy.batch(5, 6))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> CreditStrategy.batch(5, 0))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> CreditStrategy.afterProcessing(0))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> CreditStrategy.adaptive(5, 4, ofMillis(10)))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> CreditStrategy.adaptive(1, 4, ofMillis(-1)))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,95 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.benchmark;
+
+import com.rabbitmq.stream.Codec;
+import com.rabbitmq.stream.Message;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** Compares decoding from a copied array with decoding straight from the chunk buffer. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(1)
+public class ByteBufDecodingBenchmark {
+
+  @Param({"com.rabbitmq.stream.codec.QpidProtonCodec", "com.rabbitmq.stream.codec.SwiftMqCodec"})
+  String codecClass;
+
+  @Param({"20", "1000"})
+  int payloadSize;
+
+  Codec codec;
+
+  ByteBuf chunk;
+
+  int messageSize;
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt =
+        new OptionsBuilder()
+            .include(ByteBufDecodingBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+    new Runner(opt).run();
+  }
+
+  @Setup
+  public void setUp() throws Exception {
+    codec = (Codec) Class.forName(codecClass).getConstructor().newInstance();
+    byte[] payload = new byte[payloadSize];
+    Codec.EncodedMessage encoded =
+        codec.encode(
+            codec
+                .messageBuilder()
+                .properties()
+                .messageId(1L)
+                .messageBuilder()
+                .addData(payload)
+                .build());
+    messageSize = encoded.getSize();
+    // direct pooled buffer, like the ones Netty hands over for inbound frames
+    chunk = PooledByteBufAllocator.DEFAULT.directBuffer(messageSize);
+    chunk.writeBytes(encoded.getData(), 0, messageSize);
+  }
+
+  @TearDown
+  public void tearDown() {
+    chunk.release();
+  }
+
+  @Benchmark
+  public Message decodeFromCopy() {
+    byte[] data = new byte[messageSize];
+    chunk.getBytes(0, data);
+    return codec.decode(data);
+  }
+
+  @Benchmark
+  public Message decodeFromByteBuf() {
+    return codec.decode(chunk.slice(0, messageSize));
+  }
+}
@@ -14,8 +14,15 @@
 
 package com.rabbitmq.stream.benchmark;
 
+import com.rabbitmq.stream.ChunkChecksum;
+import com.rabbitmq.stream.impl.JdkChunkChecksum;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.Random;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
@@ -75,4 +82,73 @@ public class ChecksumAlgorithmBenchmark {
     checksum.update(content, 0, content.length);
     checksum.getValue();
   }
+
+  @Benchmark
+  public void chunkChecksum(ChunkState state) {
+    state.chunkChecksum.checksum(state.chunk, state.chunkSize, state.expected);
+  }
+
+  @Benchmark
+  public long chunkChecksumByteByByte(ChunkState state) {
+    // what the direct and composite buffers used to go through
+    Checksum checksum = state.supplier.get();
+    state.chunk.forEachByte(
+        state.chunk.readerIndex(),
+        state.chunk.readableBytes(),
+        value -> {
+          checksum.update(value);
+          return true;
+        });
+    return checksum.getValue();
+  }
+
+  @State(Scope.Benchmark)
+  public static class ChunkState {
+
+    @Param({"heap", "direct", "composite"})
+    String bufferType;
+
+    @Param({"1024", "1048576"})
+    int chunkSize;
+
+    Supplier<Checksum> supplier;
+
+    ChunkChecksum chunkChecksum;
+
+    ByteBuf chunk;
+
+    long expected;
+
+    @Setup
+    public void setUp(ChecksumAlgorithmBenchmark benchmark) {
+      supplier = benchmark.supplier;
+      chunkChecksum = new JdkChunkChecksum(supplier);
+      byte[] data = new byte[chunkSize];
+      new Random().nextBytes(data);
+      ByteBufAllocator allocator = PooledByteBufAllocator.DEFAULT;
+      if ("heap".equals(bufferType)) {
+        chunk = allocator.heapBuffer(chunkSize).writeBytes(data);
+      } else if ("direct".equals(bufferType)) {
+        chunk = allocator.directBuffer(chunkSize).writeBytes(data);
+      } else {
+        // e.g. a frame spread over several network reads
+        CompositeByteBuf composite = allocator.compositeDirectBuffer();
+        int componentSize = Math.max(chunkSize / 4, 1);
+        for (int offset = 0; offset < chunkSize; offset += componentSize) {
+          int length = Math.min(componentSize, chunkSize - offset);
+          composite.addComponent(
+              true, allocator.directBuffer(length).writeBytes(data, offset, length));
+        }
+        chunk = composite;
+      }
+      Checksum checksum = supplier.get();
+      checksum.update(data, 0, data.length);
+      expected = checksum.getValue();
+    }
+
+    @TearDown
+    public void tearDown() {
+      chunk.release();
+    }
+  }
 }
@@ -15,6 +15,8 @@
 package com.rabbitmq.stream.benchmark;
 
 import com.rabbitmq.stream.Codec;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
 import org.openjdk.jmh.annotations.*;
@@ -32,10 +34,14 @@ import org.openjdk.jmh.runner.options.OptionsBuilder;
 @Threads(1)
 public class EncodingDecodingBenchmark {
 
-  @Param({"com.rabbitmq.stream.codec.QpidProtonCodec", "com.rabbitmq.stream.codec.SwiftMqCodec"})
+  @Param({
+    "com.rabbitmq.stream.codec.QpidProtonCodec",
+    "com.rabbitmq.stream.codec.SwiftMqCodec",
+    "com.rabbitmq.stream.codec.NativeCodec"
+  })
   String codecClass;
 
-  @Param({"20"})
+  @Param({"20", "1000"})
   int payloadSize;
 
   Codec codec;
@@ -43,6 +49,8 @@ public class EncodingDecodingBenchmark {
 
   byte[] messageToDecode;
 
+  ByteBuf frame;
+
   @Setup
   public void setUp() throws Exception {
     codec = (Codec) Class.forName(codecClass).getConstructor().newInstance();
@@ -61,6 +69,13 @@ public class EncodingDecodingBenchmark {
 
     messageToDecode = new byte[encoded.getSize()];
     System.arraycopy(encoded.getData(), 0, messageToDecode, 0, encoded.getSize());
+
+    frame = PooledByteBufAllocator.DEFAULT.directBuffer(encoded.getSize() * 2);
+  }
+
+  @TearDown
+  public void tearDown() {
+    frame.release();
   }
 
   @Benchmark
@@ -75,6 +90,22 @@ public class EncodingDecodingBenchmark {
             .build());
   }
 
+  @Benchmark
+  public void encodeAndWriteToFrame() {
+    Codec.EncodedMessage encoded =
+        codec.encode(
+            codec
+                .messageBuilder()
+                .properties()
+                .messageId(1L)
+                .messageBuilder()
+                .addData(payload)
+                .build());
+    frame.clear();
+    frame.writeInt(encoded.getSize());
+    encoded.write(frame);
+  }
+
   @Benchmark
   public void decode() {
     codec.decode(messageToDecode);
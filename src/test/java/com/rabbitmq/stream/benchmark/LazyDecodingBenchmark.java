@@ -0,0 +1,102 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.benchmark;
+
+import com.rabbitmq.stream.Codec;
+import com.rabbitmq.stream.Message;
+import com.rabbitmq.stream.codec.QpidProtonCodec;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Decoding cost when the application reads only the body or all the sections of a message with
+ * properties, application properties, and message annotations.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(1)
+public class LazyDecodingBenchmark {
+
+  @Param({
+    "com.rabbitmq.stream.codec.QpidProtonCodec",
+    "com.rabbitmq.stream.codec.SwiftMqCodec",
+    "com.rabbitmq.stream.codec.LazyCodec"
+  })
+  String codecClass;
+
+  @Param({"20", "1000"})
+  int payloadSize;
+
+  Codec codec;
+
+  byte[] messageToDecode;
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt =
+        new OptionsBuilder().include(LazyDecodingBenchmark.class.getSimpleName()).forks(1).build();
+
+    new Runner(opt).run();
+  }
+
+  @Setup
+  public void setUp() throws Exception {
+    codec = (Codec) Class.forName(codecClass).getConstructor().newInstance();
+    Codec encoder = new QpidProtonCodec();
+    Codec.EncodedMessage encoded =
+        encoder.encode(
+            encoder
+                .messageBuilder()
+                .addData(new byte[payloadSize])
+                .properties()
+                .messageId(1L)
+                .correlationId("correlation")
+                .contentType("application/octet-stream")
+                .creationTime(System.currentTimeMillis())
+                .messageBuilder()
+                .applicationProperties()
+                .entry("property1", "value1")
+                .entry("property2", 42)
+                .entry("property3", true)
+                .messageBuilder()
+                .messageAnnotations()
+                .entry("annotation1", "value1")
+                .messageBuilder()
+                .build());
+    messageToDecode = new byte[encoded.getSize()];
+    System.arraycopy(encoded.getData(), 0, messageToDecode, 0, encoded.getSize());
+  }
+
+  @Benchmark
+  public byte[] decodeBodyOnly() {
+    return codec.decode(messageToDecode).getBodyAsBinary();
+  }
+
+  @Benchmark
+  public Object decodeAllSections() {
+    Message message = codec.decode(messageToDecode);
+    message.getBodyAsBinary();
+    message.getProperties().getMessageIdAsLong();
+    message.getMessageAnnotations();
+    return message.getApplicationProperties().get("property2");
+  }
+}
@@ -22,15 +22,19 @@ import static org.mockito.Mockito.when;
 import com.rabbitmq.stream.Codec;
 import com.rabbitmq.stream.Message;
 import com.rabbitmq.stream.MessageBuilder;
+import com.rabbitmq.stream.Properties;
 import com.rabbitmq.stream.amqp.UnsignedByte;
 import com.rabbitmq.stream.amqp.UnsignedInteger;
 import com.rabbitmq.stream.amqp.UnsignedLong;
 import com.rabbitmq.stream.amqp.UnsignedShort;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -39,6 +43,7 @@ import org.assertj.core.api.InstanceOfAssertFactories;
 import org.assertj.core.api.ThrowableAssert;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
 
 public class CodecsTest {
 
@@ -47,7 +52,9 @@ public class CodecsTest {
   static UUID TEST_UUID = UUID.randomUUID();
 
   static Iterable<CodecCouple> codecsCouples() {
-    List<Codec> codecs = Arrays.asList(new QpidProtonCodec(), new SwiftMqCodec());
+    List<Codec> codecs =
+        Arrays.asList(
+            new QpidProtonCodec(), new SwiftMqCodec(), new LazyCodec(), new NativeCodec());
     List<CodecCouple> couples = new ArrayList<>();
     for (Codec serializer : codecs) {
       for (Codec deserializer : codecs) {
@@ -69,7 +76,9 @@ public class CodecsTest {
     return Arrays.asList(
         when(mock(Codec.class).messageBuilder()).thenReturn(new WrapperMessageBuilder()).getMock(),
         new QpidProtonCodec(),
-        new SwiftMqCodec());
+        new SwiftMqCodec(),
+        new LazyCodec(),
+        new NativeCodec());
   }
 
   @ParameterizedTest
@@ -470,6 +479,251 @@ public class CodecsTest {
         .containsValue("value1");
   }
 
+  @ParameterizedTest
+  @MethodSource("codecsCouples")
+  void decodeFromDirectByteBuf(CodecCouple codecCouple) {
+    Codec serializer = codecCouple.serializer;
+    Codec deserializer = codecCouple.deserializer;
+    Message outboundMessage =
+        codecCouple
+            .messageBuilderSupplier
+            .get()
+            .addData("hello".getBytes(CHARSET))
+            .properties()
+            .messageId(42)
+            .messageBuilder()
+            .applicationProperties()
+            .entry("property1", "value1")
+            .messageBuilder()
+            .build();
+    Codec.EncodedMessage encoded = serializer.encode(outboundMessage);
+    // some garbage around the message, like in a chunk
+    ByteBuf chunk = PooledByteBufAllocator.DEFAULT.directBuffer(encoded.getSize() + 20);
+    chunk.writeLong(1L).writeBytes(encoded.getData(), 0, encoded.getSize()).writeLong(2L);
+    ByteBuf slice = chunk.slice(8, encoded.getSize());
+    Message inboundMessage = deserializer.decode(slice);
+    assertThat(slice.isReadable()).isFalse();
+    // overwriting the buffer to make sure the message does not reference it
+    chunk.setZero(0, chunk.capacity());
+    chunk.release();
+
+    assertThat(inboundMessage.getBodyAsBinary()).isEqualTo("hello".getBytes(CHARSET));
+    assertThat(inboundMessage.getProperties().getMessageIdAsLong()).isEqualTo(42);
+    assertThat(inboundMessage.getApplicationProperties())
+        .hasSize(1)
+        .containsEntry("property1", "value1");
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {0, 1, 255, 256, 10_000})
+  void lazyCodecShouldReEncodeDecodedMessageAsIs(int bodySize) {
+    byte[] body = new byte[bodySize];
+    new Random().nextBytes(body);
+    Codec codec = new LazyCodec();
+    Codec.EncodedMessage encoded =
+        codec.encode(
+            codec
+                .messageBuilder()
+                .addData(body)
+                .properties()
+                .messageId("id")
+                .messageBuilder()
+                .applicationProperties()
+                .entry("property1", "value1")
+                .messageBuilder()
+                .build());
+    byte[] data = Arrays.copyOf(encoded.getData(), encoded.getSize());
+    Message message = codec.decode(data);
+    assertThat(message.getBodyAsBinary()).isEqualTo(body);
+    Codec.EncodedMessage reEncoded = codec.encode(message);
+    assertThat(Arrays.copyOf(reEncoded.getData(), reEncoded.getSize())).isEqualTo(data);
+    assertThat(message.getProperties().getMessageIdAsString()).isEqualTo("id");
+    assertThat(message.getApplicationProperties()).containsEntry("property1", "value1");
+    assertThat(message.getMessageAnnotations()).isNull();
+  }
+
+  @ParameterizedTest
+  @MethodSource("amqpValueBodies")
+  void lazyCodecShouldDecodeAmqpValueBody(Object value) {
+    org.apache.qpid.proton.message.Message reference =
+        org.apache.qpid.proton.message.Message.Factory.create();
+    reference.setBody(new org.apache.qpid.proton.amqp.messaging.AmqpValue(value));
+    byte[] data = new byte[1024];
+    int size = reference.encode(data, 0, data.length);
+    Message message = new LazyCodec().decode(Arrays.copyOf(data, size));
+    assertThat(message.getBody()).isEqualTo(value);
+    assertThat(message.getProperties()).isNull();
+    assertThatThrownBy(message::getBodyAsBinary).isInstanceOf(IllegalStateException.class);
+  }
+
+  static Stream<Object> amqpValueBodies() {
+    return Stream.of(
+        "hello",
+        42,
+        Long.MAX_VALUE,
+        true,
+        Arrays.asList("a", 1L),
+        Collections.singletonMap("k", 1));
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {0, 1, 255, 256, 10_000})
+  void nativeEncodingShouldMatchQpidProtonEncoding(int size) {
+    byte[] body = new byte[size];
+    new Random().nextBytes(body);
+    char[] chars = new char[size];
+    Arrays.fill(chars, 'é');
+    String string = new String(chars);
+    long now = System.currentTimeMillis();
+    Function<MessageBuilder, Message> messageCreator =
+        builder ->
+            builder
+                .addData(body)
+                .properties()
+                .messageId(size)
+                .userId("yoda".getBytes(CHARSET))
+                .subject(string)
+                .correlationId(TEST_UUID)
+                .contentType("text/plain")
+                .creationTime(now)
+                .groupSequence(size)
+                .messageBuilder()
+                .applicationProperties()
+                .entry("string", string)
+                .entry("int", size)
+                .entry("negative.int", -size)
+                .entry("long", (long) size)
+                .entry("boolean", true)
+                .entry("binary", body)
+                .entryUnsigned("uint", size)
+                .entryUnsigned("ulong", (long) size)
+                .entryTimestamp("timestamp", now)
+                .entry("uuid", TEST_UUID)
+                .entry("double", 6.28)
+                .entry("char", 'c')
+                .messageBuilder()
+                .messageAnnotations()
+                .entry("annotation", string)
+                .entrySymbol("symbol", "a symbol")
+                .entry("short", (short) size)
+                .messageBuilder()
+                .build();
+    Message message = messageCreator.apply(new WrapperMessageBuilder());
+    Codec.EncodedMessage reference = new QpidProtonCodec().encode(message);
+    Codec.EncodedMessage encoded = new NativeCodec().encode(message);
+    assertThat(encoded.getSize()).isEqualTo(reference.getSize());
+    ByteBuf frame = PooledByteBufAllocator.DEFAULT.directBuffer(encoded.getSize());
+    encoded.write(frame);
+    assertThat(frame.readableBytes()).isEqualTo(encoded.getSize());
+    byte[] written = new byte[encoded.getSize()];
+    frame.readBytes(written);
+    frame.release();
+    assertThat(written).isEqualTo(Arrays.copyOf(reference.getData(), reference.getSize()));
+    assertThat(Arrays.copyOf(encoded.getData(), encoded.getSize())).isEqualTo(written);
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {0, 1, 255, 256, 10_000})
+  void nativeEncodingShouldNotChangeWhenMessageIsModifiedAfterEncoding(int size) {
+    byte[] body = new byte[size];
+    Map<String, Object> applicationProperties = new LinkedHashMap<>();
+    applicationProperties.put("key", "value");
+    Map<String, Object> messageAnnotations = new LinkedHashMap<>();
+    messageAnnotations.put("annotation", "value");
+    AtomicReference<String> subject = new AtomicReference<>("subject");
+    Properties properties = mock(Properties.class);
+    when(properties.getSubject()).thenAnswer(invocation -> subject.get());
+    when(properties.getGroupSequence()).thenReturn(-1L);
+    Message message = mock(Message.class);
+    when(message.getBodyAsBinary()).thenReturn(body);
+    when(message.getProperties()).thenReturn(properties);
+    when(message.getApplicationProperties()).thenReturn(applicationProperties);
+    when(message.getMessageAnnotations()).thenReturn(messageAnnotations);
+
+    Codec codec = new NativeCodec();
+    Codec.EncodedMessage encoded = codec.encode(message);
+    int encodedSize = encoded.getSize();
+    // the application changes the message after sending it
+    subject.set("a much longer subject than the first one");
+    applicationProperties.put("other-key", "other value");
+    messageAnnotations.clear();
+
+    ByteBuf frame = PooledByteBufAllocator.DEFAULT.directBuffer(encodedSize);
+    encoded.write(frame);
+    assertThat(frame.readableBytes()).isEqualTo(encodedSize);
+    byte[] written = new byte[encodedSize];
+    frame.readBytes(written);
+    frame.release();
+    Message decoded = codec.decode(written);
+    assertThat(decoded.getProperties().getSubject()).isEqualTo("subject");
+    assertThat(decoded.getApplicationProperties()).hasSize(1).containsEntry("key", "value");
+    assertThat(decoded.getMessageAnnotations()).hasSize(1).containsEntry("annotation", "value");
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, 255, 256, 10_000})
+  void bodyShouldBeCopiedWhenEncodedMessageIsWritten(int bodySize) {
+    for (Codec codec : Arrays.asList(new QpidProtonCodec(), new NativeCodec())) {
+      byte[] body = new byte[bodySize];
+      Codec.EncodedMessage encoded =
+          codec.encode(new WrapperMessageBuilder().addData(body).build());
+      int encodedSize = encoded.getSize();
+      // the body belongs to the encoded message until it is written, changes show in the frame
+      Arrays.fill(body, (byte) 1);
+      ByteBuf frame = PooledByteBufAllocator.DEFAULT.directBuffer(encodedSize);
+      encoded.write(frame);
+      assertThat(frame.readableBytes()).isEqualTo(encodedSize);
+      byte[] written = new byte[encodedSize];
+      frame.readBytes(written);
+      frame.release();
+      assertThat(codec.decode(written).getBodyAsBinary()).isEqualTo(body);
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {0, 1, 255, 256, 10_000})
+  void qpidProtonEncodedMessageWriteShouldMatchFullEncoding(int bodySize) {
+    byte[] body = new byte[bodySize];
+    new Random().nextBytes(body);
+    Codec codec = new QpidProtonCodec();
+    List<Supplier<MessageBuilder>> messageBuilderSuppliers =
+        Arrays.asList(codec::messageBuilder, WrapperMessageBuilder::new);
+    for (Supplier<MessageBuilder> messageBuilderSupplier : messageBuilderSuppliers) {
+      for (boolean withProperties : new boolean[] {false, true}) {
+        MessageBuilder messageBuilder = messageBuilderSupplier.get().addData(body);
+        org.apache.qpid.proton.message.Message reference =
+            org.apache.qpid.proton.message.Message.Factory.create();
+        if (withProperties) {
+          messageBuilder.properties().messageId("id").messageBuilder();
+          messageBuilder.applicationProperties().entry("property1", "value1").messageBuilder();
+          org.apache.qpid.proton.amqp.messaging.Properties properties =
+              new org.apache.qpid.proton.amqp.messaging.Properties();
+          properties.setMessageId("id");
+          reference.setProperties(properties);
+          reference.setApplicationProperties(
+              new org.apache.qpid.proton.amqp.messaging.ApplicationProperties(
+                  Collections.singletonMap("property1", "value1")));
+        }
+        reference.setBody(
+            new org.apache.qpid.proton.amqp.messaging.Data(
+                new org.apache.qpid.proton.amqp.Binary(body)));
+        byte[] expected = new byte[bodySize + 1024];
+        int expectedSize = reference.encode(expected, 0, expected.length);
+
+        Codec.EncodedMessage encoded = codec.encode(messageBuilder.build());
+        assertThat(encoded.getSize()).isEqualTo(expectedSize);
+        ByteBuf frame = PooledByteBufAllocator.DEFAULT.directBuffer(encoded.getSize());
+        encoded.write(frame);
+        assertThat(frame.readableBytes()).isEqualTo(expectedSize);
+        byte[] written = new byte[expectedSize];
+        frame.readBytes(written);
+        frame.release();
+        assertThat(written).isEqualTo(Arrays.copyOf(expected, expectedSize));
+        assertThat(Arrays.copyOf(encoded.getData(), encoded.getSize())).isEqualTo(written);
+      }
+    }
+  }
+
   @ParameterizedTest
   @MethodSource("messageBuilderSuppliers")
   void notSupportedTypes(Supplier<MessageBuilder> messageBuilderSupplier) {
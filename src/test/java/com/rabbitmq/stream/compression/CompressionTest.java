@@ -0,0 +1,53 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.compression;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.rabbitmq.stream.StreamException;
+import com.rabbitmq.stream.impl.MessageBatch;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class CompressionTest {
+
+  @ParameterizedTest
+  @EnumSource(Compression.class)
+  void getShouldReturnCompressionOfCode(Compression compression) {
+    assertThat(Compression.get(compression.code())).isEqualTo(compression);
+  }
+
+  @ParameterizedTest
+  @ValueSource(bytes = {5, 6, 7, -1})
+  void getShouldThrowExceptionForUnsupportedCode(byte code) {
+    assertThatThrownBy(() -> Compression.get(code))
+        .isInstanceOf(StreamException.class)
+        .hasMessage("Unsupported compression code: " + code);
+  }
+
+  @Test
+  @SuppressWarnings("deprecation")
+  void deprecatedCompressionShouldDelegateToCompression() {
+    for (MessageBatch.Compression deprecated : MessageBatch.Compression.values()) {
+      Compression compression = deprecated.toCompression();
+      assertThat(compression.name()).isEqualTo(deprecated.name());
+      assertThat(deprecated.code()).isEqualTo(compression.code());
+      assertThat(MessageBatch.Compression.get(compression.code())).isEqualTo(deprecated);
+    }
+  }
+}
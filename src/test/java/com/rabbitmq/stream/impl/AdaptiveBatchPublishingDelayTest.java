@@ -0,0 +1,91 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class AdaptiveBatchPublishingDelayTest {
+
+  static long ms(long ms) {
+    return TimeUnit.MILLISECONDS.toNanos(ms);
+  }
+
+  @Test
+  void delayShouldBeMaximumWithoutObservation() {
+    AdaptiveBatchPublishingDelay delay =
+        new AdaptiveBatchPublishingDelay(100, Duration.ofMillis(100));
+    assertThat(delay.delay()).isEqualTo(ms(100));
+  }
+
+  @Test
+  void delayShouldBeTimeToFillBatchAtObservedRate() {
+    AdaptiveBatchPublishingDelay delay =
+        new AdaptiveBatchPublishingDelay(100, Duration.ofMillis(100));
+    delay.published(0, 0);
+    // 10 entities per millisecond, 10 ms to fill a batch
+    delay.published(ms(10), 100);
+    assertThat(delay.delay()).isCloseTo(ms(10), within(1000L));
+  }
+
+  @Test
+  void delayShouldNotExceedMaximumUnderLightLoad() {
+    AdaptiveBatchPublishingDelay delay =
+        new AdaptiveBatchPublishingDelay(100, Duration.ofMillis(100));
+    delay.published(0, 0);
+    delay.published(ms(1000), 1);
+    assertThat(delay.delay()).isEqualTo(ms(100));
+  }
+
+  @Test
+  void delayShouldNotExceedConfirmLatency() {
+    AdaptiveBatchPublishingDelay delay =
+        new AdaptiveBatchPublishingDelay(100, Duration.ofMillis(100));
+    delay.published(0, 0);
+    delay.published(ms(1000), 1);
+    delay.confirmed(ms(5));
+    assertThat(delay.delay()).isEqualTo(ms(5));
+  }
+
+  @Test
+  void delayShouldNotGoBelowMinimum() {
+    AdaptiveBatchPublishingDelay delay =
+        new AdaptiveBatchPublishingDelay(100, Duration.ofMillis(100));
+    delay.published(0, 0);
+    delay.published(ms(1), 100_000);
+    assertThat(delay.delay()).isEqualTo(AdaptiveBatchPublishingDelay.MIN_DELAY_IN_NS);
+  }
+
+  @Test
+  void observationsShouldBeSmoothed() {
+    AdaptiveBatchPublishingDelay delay =
+        new AdaptiveBatchPublishingDelay(100, Duration.ofMillis(100));
+    delay.confirmed(ms(10));
+    delay.confirmed(ms(60));
+    // 10 + 0.2 * (60 - 10)
+    assertThat(delay.delay()).isCloseTo(ms(20), within(1000L));
+  }
+
+  @Test
+  void maximumDelayShouldBePositive() {
+    assertThatThrownBy(() -> new AdaptiveBatchPublishingDelay(100, Duration.ZERO))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
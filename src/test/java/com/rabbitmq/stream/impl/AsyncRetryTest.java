@@ -166,4 +166,26 @@ public class AsyncRetryTest {
     assertThat(exceptionallyCalled.get()).isTrue();
     verify(task, times(3)).call();
   }
+
+  @Test
+  void shouldRetryWhenFutureCompletesExceptionally() throws Exception {
+    AtomicInteger attempts = new AtomicInteger(0);
+    CompletableFuture<Integer> completableFuture =
+        AsyncRetry.asyncRetryFuture(
+                () -> {
+                  CompletableFuture<Integer> attempt = new CompletableFuture<>();
+                  if (attempts.incrementAndGet() < 3) {
+                    attempt.completeExceptionally(new IllegalStateException());
+                  } else {
+                    attempt.complete(42);
+                  }
+                  return attempt;
+                })
+            .scheduler(scheduler)
+            .retry(e -> e instanceof IllegalStateException)
+            .delay(Duration.ofMillis(50))
+            .build();
+    assertThat(completableFuture.get(1, TimeUnit.SECONDS)).isEqualTo(42);
+    assertThat(attempts.get()).isEqualTo(3);
+  }
 }
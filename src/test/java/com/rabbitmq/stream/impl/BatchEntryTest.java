@@ -17,6 +17,7 @@ package com.rabbitmq.stream.impl;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import com.rabbitmq.stream.OffsetSpecification;
+import com.rabbitmq.stream.compression.Compression;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
@@ -49,7 +50,7 @@ public class BatchEntryTest {
     IntStream.range(0, batchCount)
         .forEach(
             batchIndex -> {
-              MessageBatch messageBatch = new MessageBatch(MessageBatch.Compression.NONE);
+              MessageBatch messageBatch = new MessageBatch(Compression.NONE);
               IntStream.range(0, messagesInBatch)
                   .forEach(
                       messageIndex -> {
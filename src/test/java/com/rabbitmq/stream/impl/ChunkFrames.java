@@ -0,0 +1,206 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.impl;
+
+import static com.rabbitmq.stream.Constants.COMMAND_DELIVER;
+import static com.rabbitmq.stream.Constants.VERSION_0;
+
+import com.rabbitmq.stream.Codec;
+import com.rabbitmq.stream.StreamException;
+import com.rabbitmq.stream.compression.Compression;
+import com.rabbitmq.stream.compression.CompressionCodecFactory;
+import com.rabbitmq.stream.compression.DefaultCompressionCodecFactory;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+/**
+ * Builds valid deliver frames, to test and benchmark the consuming path without a broker.
+ *
+ * <p>The frames do not have the length prefix, they start with the command ID, like the frames
+ * {@link Client} handles after the frame decoder. Message bodies are random bytes.
+ */
+final class ChunkFrames {
+
+  private ChunkFrames() {}
+
+  static Builder builder() {
+    return new Builder();
+  }
+
+  static final class Builder {
+
+    private byte subscriptionId = 1;
+    private long firstOffset = 0;
+    private long timestamp = System.currentTimeMillis();
+    private int entryCount = 100;
+    // 0 for simple entries
+    private int messagesPerSubEntry = 0;
+    private Compression compression = Compression.NONE;
+    private CompressionCodecFactory compressionCodecFactory = new DefaultCompressionCodecFactory();
+    private int messageSize = 100;
+    private Codec codec = Codecs.DEFAULT;
+    private Random random = new Random();
+
+    private Builder() {}
+
+    Builder subscriptionId(byte subscriptionId) {
+      this.subscriptionId = subscriptionId;
+      return this;
+    }
+
+    Builder firstOffset(long firstOffset) {
+      this.firstOffset = firstOffset;
+      return this;
+    }
+
+    Builder timestamp(long timestamp) {
+      this.timestamp = timestamp;
+      return this;
+    }
+
+    /**
+     * Use simple entries, one message by entry.
+     *
+     * @param entryCount the number of entries (messages)
+     * @return this builder instance
+     */
+    Builder simpleEntries(int entryCount) {
+      this.entryCount = entryCount;
+      this.messagesPerSubEntry = 0;
+      this.compression = Compression.NONE;
+      return this;
+    }
+
+    /**
+     * Use sub-entries, several messages by entry.
+     *
+     * @param entryCount the number of entries
+     * @param messagesPerSubEntry the number of messages in each entry
+     * @param compression the compression of the entries
+     * @return this builder instance
+     */
+    Builder subEntries(int entryCount, int messagesPerSubEntry, Compression compression) {
+      if (messagesPerSubEntry <= 0) {
+        throw new IllegalArgumentException("The number of messages by sub-entry must be > 0");
+      }
+      this.entryCount = entryCount;
+      this.messagesPerSubEntry = messagesPerSubEntry;
+      this.compression = compression;
+      return this;
+    }
+
+    Builder compressionCodecFactory(CompressionCodecFactory compressionCodecFactory) {
+      this.compressionCodecFactory = compressionCodecFactory;
+      return this;
+    }
+
+    Builder messageSize(int messageSize) {
+      this.messageSize = messageSize;
+      return this;
+    }
+
+    Builder codec(Codec codec) {
+      this.codec = codec;
+      return this;
+    }
+
+    Builder random(Random random) {
+      this.random = random;
+      return this;
+    }
+
+    int messageCount() {
+      return this.messagesPerSubEntry == 0
+          ? this.entryCount
+          : this.entryCount * this.messagesPerSubEntry;
+    }
+
+    /**
+     * Build the frame.
+     *
+     * @param allocator the allocator of the frame buffer
+     * @return the frame, the caller must release it
+     */
+    ByteBuf build(ByteBufAllocator allocator) {
+      ByteBuf data = Unpooled.buffer();
+      for (int i = 0; i < this.entryCount; i++) {
+        if (this.messagesPerSubEntry == 0) {
+          writeMessage(data);
+        } else {
+          ByteBuf records = Unpooled.buffer();
+          for (int j = 0; j < this.messagesPerSubEntry; j++) {
+            writeMessage(records);
+          }
+          if (this.compression != Compression.NONE) {
+            records = compress(records);
+          }
+          data.writeByte(0x80 | this.compression.code() << 4)
+              .writeShort(this.messagesPerSubEntry)
+              .writeInt(records.readableBytes())
+              .writeBytes(records);
+        }
+      }
+      CRC32 crc = new CRC32();
+      crc.update(data.nioBuffer());
+
+      ByteBuf frame =
+          allocator.buffer(2 + 2 + 1 + 1 + 1 + 2 + 4 + 8 + 8 + 8 + 4 + 4 + data.readableBytes());
+      frame
+          .writeShort(COMMAND_DELIVER)
+          .writeShort(VERSION_0)
+          .writeByte(this.subscriptionId)
+          .writeByte(0x50) // magic 5, version 0
+          .writeByte(0) // user chunk
+          .writeShort(this.entryCount)
+          .writeInt(messageCount())
+          .writeLong(this.timestamp)
+          .writeLong(0) // epoch
+          .writeLong(this.firstOffset)
+          .writeInt((int) crc.getValue())
+          .writeInt(data.readableBytes())
+          .writeBytes(data);
+      return frame;
+    }
+
+    private void writeMessage(ByteBuf bb) {
+      byte[] body = new byte[this.messageSize];
+      this.random.nextBytes(body);
+      Codec.EncodedMessage encoded =
+          this.codec.encode(this.codec.messageBuilder().addData(body).build());
+      bb.writeInt(encoded.getSize());
+      encoded.write(bb);
+    }
+
+    private ByteBuf compress(ByteBuf records) {
+      ByteBuf compressed = Unpooled.buffer();
+      try (OutputStream out =
+          this.compressionCodecFactory
+              .get(this.compression)
+              .compress(new ByteBufOutputStream(compressed))) {
+        out.write(ByteBufUtil.getBytes(records));
+      } catch (IOException e) {
+        throw new StreamException("Error while compressing sub-entry", e);
+      }
+      return compressed;
+    }
+  }
+}
@@ -0,0 +1,109 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.rabbitmq.stream.Message;
+import com.rabbitmq.stream.compression.Compression;
+import com.rabbitmq.stream.compression.DefaultCompressionCodecFactory;
+import com.rabbitmq.stream.metrics.NoOpMetricsCollector;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+public class ChunkFramesTest {
+
+  static final long SEED = 42;
+
+  static void deliver(ByteBuf frame, List<Long> offsets, List<Message> messages) {
+    frame.readerIndex(4); // command ID and version
+    Client.handleDeliver(
+        frame,
+        null,
+        (client, subscriptionId, offset, messageCount, dataSize) -> {},
+        (subscriptionId, offset, message) -> {
+          offsets.add(offset);
+          messages.add(message);
+        },
+        (client, subscriptionId, offset, messageCount, timestamp) -> {},
+        frame.writerIndex(),
+        Codecs.DEFAULT,
+        new DefaultCompressionCodecFactory(),
+        Client.NO_OFFSET_LIMIT,
+        JdkChunkChecksum.CRC32_SINGLETON,
+        NoOpMetricsCollector.SINGLETON);
+  }
+
+  static List<byte[]> expectedBodies(int count, int size) {
+    Random random = new Random(SEED);
+    List<byte[]> bodies = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      byte[] body = new byte[size];
+      random.nextBytes(body);
+      bodies.add(body);
+    }
+    return bodies;
+  }
+
+  void checkChunk(ChunkFrames.Builder builder, int messageSize) {
+    ByteBuf frame = builder.build(ByteBufAllocator.DEFAULT);
+    try {
+      List<Long> offsets = new ArrayList<>();
+      List<Message> messages = new ArrayList<>();
+      deliver(frame, offsets, messages);
+      int count = builder.messageCount();
+      assertThat(offsets)
+          .containsExactlyElementsOf(
+              LongStream.range(1000, 1000 + count).boxed().collect(Collectors.toList()));
+      List<byte[]> bodies = expectedBodies(count, messageSize);
+      IntStream.range(0, count)
+          .forEach(i -> assertThat(messages.get(i).getBodyAsBinary()).isEqualTo(bodies.get(i)));
+    } finally {
+      frame.release();
+    }
+  }
+
+  @ParameterizedTest
+  @EnumSource(Compression.class)
+  void subEntriesShouldBeDecodedByClient(Compression compression) {
+    checkChunk(
+        ChunkFrames.builder()
+            .firstOffset(1000)
+            .messageSize(50)
+            .random(new Random(SEED))
+            .subEntries(5, 20, compression),
+        50);
+  }
+
+  @Test
+  void simpleEntriesShouldBeDecodedByClient() {
+    checkChunk(
+        ChunkFrames.builder()
+            .firstOffset(1000)
+            .messageSize(200)
+            .random(new Random(SEED))
+            .simpleEntries(100),
+        200);
+  }
+}
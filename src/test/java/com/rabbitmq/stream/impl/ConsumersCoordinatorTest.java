@@ -17,6 +17,7 @@ package com.rabbitmq.stream.impl;
 import static com.rabbitmq.stream.BackOffDelayPolicy.fixedWithInitialDelay;
 import static com.rabbitmq.stream.impl.TestUtils.metadata;
 import static com.rabbitmq.stream.impl.TestUtils.namedConsumer;
+import static java.util.concurrent.CompletableFuture.completedFuture;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.*;
@@ -24,12 +25,15 @@ import static org.mockito.Mockito.*;
 
 import com.rabbitmq.stream.BackOffDelayPolicy;
 import com.rabbitmq.stream.Constants;
+import com.rabbitmq.stream.CreditStrategy;
 import com.rabbitmq.stream.OffsetSpecification;
 import com.rabbitmq.stream.StreamDoesNotExistException;
+import com.rabbitmq.stream.StreamException;
 import com.rabbitmq.stream.codec.WrapperMessageBuilder;
 import com.rabbitmq.stream.impl.MonitoringTestUtils.ConsumersPoolInfo;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
@@ -39,6 +43,7 @@ import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -64,6 +69,8 @@ public class ConsumersCoordinatorTest {
   ScheduledExecutorService scheduledExecutorService;
   volatile Client.MetadataListener metadataListener;
   volatile Client.MessageListener messageListener;
+  volatile Client.ChunkListener chunkListener;
+  volatile Client.ChunkProcessedListener chunkProcessedListener;
   volatile Client.ShutdownListener shutdownListener;
   List<Client.ShutdownListener> shutdownListeners =
       new CopyOnWriteArrayList<>(); // when we need several of them in the test
@@ -92,6 +99,19 @@ public class ConsumersCoordinatorTest {
             return super.messageListener(messageListener);
           }
 
+          @Override
+          public Client.ClientParameters chunkListener(Client.ChunkListener chunkListener) {
+            ConsumersCoordinatorTest.this.chunkListener = chunkListener;
+            return super.chunkListener(chunkListener);
+          }
+
+          @Override
+          public Client.ClientParameters chunkProcessedListener(
+              Client.ChunkProcessedListener chunkProcessedListener) {
+            ConsumersCoordinatorTest.this.chunkProcessedListener = chunkProcessedListener;
+            return super.chunkProcessedListener(chunkProcessedListener);
+          }
+
           @Override
           public Client.ClientParameters shutdownListener(
               Client.ShutdownListener shutdownListener) {
@@ -175,9 +195,9 @@ public class ConsumersCoordinatorTest {
     when(locator.metadata("stream")).thenReturn(metadata(null, replicas()));
 
     when(clientFactory.apply(any(Client.ClientParameters.class))).thenReturn(client);
-    when(client.subscribe(
+    when(client.subscribeAsync(
             subscriptionIdCaptor.capture(), anyString(), any(OffsetSpecification.class), anyInt()))
-        .thenReturn(new Client.Response(Constants.RESPONSE_CODE_OK));
+        .thenReturn(completedFuture(new Client.Response(Constants.RESPONSE_CODE_OK)));
 
     AtomicInteger messageHandlerCalls = new AtomicInteger();
     Runnable closingRunnable =
@@ -189,7 +209,7 @@ public class ConsumersCoordinatorTest {
             (offset, message) -> messageHandlerCalls.incrementAndGet());
     verify(clientFactory, times(1)).apply(any(Client.ClientParameters.class));
     verify(client, times(1))
-        .subscribe(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
+        .subscribeAsync(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
 
     assertThat(messageHandlerCalls.get()).isEqualTo(0);
     messageListener.handle(subscriptionIdCaptor.getValue(), 0, new WrapperMessageBuilder().build());
@@ -205,14 +225,164 @@ public class ConsumersCoordinatorTest {
     assertThat(messageHandlerCalls.get()).isEqualTo(1);
   }
 
+  @Test
+  void failedSubscriptionShouldReleaseSubscriptionSlot() {
+    when(locator.metadata("stream")).thenReturn(metadata(leader(), null));
+    when(clientFactory.apply(any(Client.ClientParameters.class))).thenReturn(client);
+    CompletableFuture<Client.Response> failedSubscription = new CompletableFuture<>();
+    failedSubscription.completeExceptionally(new StreamException("Connection closed"));
+    when(client.subscribeAsync(
+            subscriptionIdCaptor.capture(), anyString(), any(OffsetSpecification.class), anyInt()))
+        .thenReturn(failedSubscription)
+        .thenReturn(completedFuture(new Client.Response(Constants.RESPONSE_CODE_OK)));
+    coordinator = new ConsumersCoordinator(environment, clientFactory, 1);
+
+    assertThatThrownBy(
+            () ->
+                coordinator.subscribe(
+                    consumer, "stream", OffsetSpecification.first(), null, (offset, message) -> {}))
+        .isInstanceOf(StreamException.class)
+        .hasMessage("Connection closed");
+
+    AtomicInteger messageHandlerCalls = new AtomicInteger();
+    coordinator.subscribe(
+        consumer,
+        "stream",
+        OffsetSpecification.first(),
+        null,
+        (offset, message) -> messageHandlerCalls.incrementAndGet());
+
+    // the slot of the failed subscription is re-used, on the same connection
+    verify(clientFactory, times(1)).apply(any(Client.ClientParameters.class));
+    assertThat(subscriptionIdCaptor.getAllValues()).containsExactly((byte) 0, (byte) 0);
+    messageListener.handle((byte) 0, 0, new WrapperMessageBuilder().build());
+    assertThat(messageHandlerCalls.get()).isEqualTo(1);
+  }
+
+  @Test
+  void subscribeShouldUseCreditStrategy() {
+    when(locator.metadata("stream")).thenReturn(metadata(null, replicas()));
+
+    when(clientFactory.apply(any(Client.ClientParameters.class))).thenReturn(client);
+    when(client.subscribeAsync(
+            subscriptionIdCaptor.capture(), anyString(), any(OffsetSpecification.class), anyInt()))
+        .thenReturn(completedFuture(new Client.Response(Constants.RESPONSE_CODE_OK)));
+
+    coordinator.subscribe(
+        consumer,
+        "stream",
+        OffsetSpecification.first(),
+        null,
+        (offset, message) -> {},
+        null,
+        CreditStrategy.afterProcessing(3));
+    verify(client, times(1))
+        .subscribeAsync(anyByte(), anyString(), any(OffsetSpecification.class), eq(3));
+
+    byte subscriptionId = subscriptionIdCaptor.getValue();
+    chunkListener.handle(client, subscriptionId, 0, 10, 100);
+    verify(client, never()).credit(anyByte(), anyInt());
+    chunkProcessedListener.handle(client, subscriptionId, 0, 10, 0);
+    verify(client, times(1)).credit(subscriptionId, 1);
+  }
+
+  @Test
+  void failingChunkHandlerShouldNotLeakCredit() {
+    when(locator.metadata("stream")).thenReturn(metadata(null, replicas()));
+
+    when(clientFactory.apply(any(Client.ClientParameters.class))).thenReturn(client);
+    when(client.subscribeAsync(
+            subscriptionIdCaptor.capture(), anyString(), any(OffsetSpecification.class), anyInt()))
+        .thenReturn(completedFuture(new Client.Response(Constants.RESPONSE_CODE_OK)));
+
+    List<Integer> chunkSizes = new ArrayList<>();
+    coordinator.subscribe(
+        consumer,
+        "stream",
+        OffsetSpecification.first(),
+        null,
+        null,
+        chunk -> {
+          chunkSizes.add(chunk.size());
+          throw new IllegalStateException("chunk handler failure");
+        },
+        CreditStrategy.afterProcessing(1));
+
+    byte subscriptionId = subscriptionIdCaptor.getValue();
+    for (int i = 0; i < 2; i++) {
+      chunkListener.handle(client, subscriptionId, i, 1, 100);
+      messageListener.handle(subscriptionId, i, new WrapperMessageBuilder().build());
+      int chunkOffset = i;
+      assertThatThrownBy(
+              () -> chunkProcessedListener.handle(client, subscriptionId, chunkOffset, 1, 0))
+          .isInstanceOf(IllegalStateException.class);
+      // the credit is granted even though the handler failed
+      verify(client, times(i + 1)).credit(subscriptionId, 1);
+    }
+    // the messages of the failed chunk are not handed over with the next chunk
+    assertThat(chunkSizes).containsExactly(1, 1);
+  }
+
+  @Test
+  void chunkHandlerShouldReceiveAllTheMessagesOfAChunkAtOnce() {
+    when(locator.metadata("stream")).thenReturn(metadata(null, replicas()));
+
+    when(clientFactory.apply(any(Client.ClientParameters.class))).thenReturn(client);
+    when(client.subscribeAsync(
+            subscriptionIdCaptor.capture(), anyString(), any(OffsetSpecification.class), anyInt()))
+        .thenReturn(completedFuture(new Client.Response(Constants.RESPONSE_CODE_OK)));
+
+    List<List<Long>> chunkOffsets = new ArrayList<>();
+    List<Long> chunkTimestamps = new ArrayList<>();
+    coordinator.subscribe(
+        consumer,
+        "stream",
+        OffsetSpecification.first(),
+        null,
+        null,
+        chunk -> {
+          List<Long> offsets = new ArrayList<>();
+          for (int i = 0; i < chunk.size(); i++) {
+            assertThat(chunk.message(i)).isNotNull();
+            offsets.add(chunk.offset(i));
+          }
+          assertThat(chunk.firstOffset()).isEqualTo(offsets.get(0));
+          assertThat(chunk.lastOffset()).isEqualTo(offsets.get(offsets.size() - 1));
+          chunkOffsets.add(offsets);
+          chunkTimestamps.add(chunk.timestamp());
+        },
+        CreditStrategy.DEFAULT);
+
+    byte subscriptionId = subscriptionIdCaptor.getValue();
+    chunkListener.handle(client, subscriptionId, 10, 20, 100);
+    // more messages than the initial capacity of the chunk
+    for (int i = 10; i < 30; i++) {
+      messageListener.handle(subscriptionId, i, new WrapperMessageBuilder().build());
+    }
+    assertThat(chunkOffsets).isEmpty();
+    chunkProcessedListener.handle(client, subscriptionId, 10, 20, 42);
+    assertThat(chunkOffsets).hasSize(1);
+    assertThat(chunkOffsets.get(0))
+        .containsExactlyElementsOf(
+            LongStream.range(10, 30).boxed().collect(Collectors.toList()));
+
+    chunkListener.handle(client, subscriptionId, 30, 2, 100);
+    messageListener.handle(subscriptionId, 30, new WrapperMessageBuilder().build());
+    messageListener.handle(subscriptionId, 31, new WrapperMessageBuilder().build());
+    chunkProcessedListener.handle(client, subscriptionId, 30, 2, 43);
+    assertThat(chunkOffsets).hasSize(2);
+    assertThat(chunkOffsets.get(1)).containsExactly(30L, 31L);
+    assertThat(chunkTimestamps).containsExactly(42L, 43L);
+  }
+
   @Test
   void subscribeShouldSubscribeToStreamAndDispatchesMessageWithManySubscriptions() {
     when(locator.metadata("stream")).thenReturn(metadata(leader(), null));
 
     when(clientFactory.apply(any(Client.ClientParameters.class))).thenReturn(client);
-    when(client.subscribe(
+    when(client.subscribeAsync(
             subscriptionIdCaptor.capture(), anyString(), any(OffsetSpecification.class), anyInt()))
-        .thenReturn(new Client.Response(Constants.RESPONSE_CODE_OK));
+        .thenReturn(completedFuture(new Client.Response(Constants.RESPONSE_CODE_OK)));
 
     Map<Byte, Integer> messageHandlerCalls = new ConcurrentHashMap<>();
     List<Runnable> closingRunnables = new ArrayList<>();
@@ -231,7 +401,7 @@ public class ConsumersCoordinatorTest {
 
     verify(clientFactory, times(1)).apply(any(Client.ClientParameters.class));
     verify(client, times(ConsumersCoordinator.MAX_SUBSCRIPTIONS_PER_CLIENT))
-        .subscribe(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
+        .subscribeAsync(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
 
     Runnable messageToEachSubscription =
         () ->
@@ -258,6 +428,30 @@ public class ConsumersCoordinatorTest {
     messageHandlerCalls.values().forEach(messageCount -> assertThat(messageCount).isEqualTo(1));
   }
 
+  @Test
+  void subscriptionsShouldSpreadAcrossConnectionsWhenMaxConsumersByConnectionIsSet() {
+    when(locator.metadata("stream")).thenReturn(metadata(leader(), null));
+    when(clientFactory.apply(any(Client.ClientParameters.class))).thenReturn(client);
+    when(client.subscribeAsync(anyByte(), anyString(), any(OffsetSpecification.class), anyInt()))
+        .thenReturn(completedFuture(new Client.Response(Constants.RESPONSE_CODE_OK)));
+    coordinator = new ConsumersCoordinator(environment, clientFactory, 10);
+
+    IntStream.range(0, 25)
+        .forEach(
+            i ->
+                coordinator.subscribe(
+                    consumer,
+                    "stream",
+                    OffsetSpecification.first(),
+                    null,
+                    (offset, message) -> {}));
+
+    assertThat(coordinator.poolSize()).isEqualTo(1);
+    verify(clientFactory, times(3)).apply(any(Client.ClientParameters.class));
+    verify(client, times(25))
+        .subscribeAsync(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
+  }
+
   @Test
   void shouldRedistributeConsumerIfConnectionIsLost() throws Exception {
     scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
@@ -272,9 +466,9 @@ public class ConsumersCoordinatorTest {
         .thenReturn(metadata(null, replicas()));
 
     when(clientFactory.apply(any(Client.ClientParameters.class))).thenReturn(client);
-    when(client.subscribe(
+    when(client.subscribeAsync(
             subscriptionIdCaptor.capture(), anyString(), any(OffsetSpecification.class), anyInt()))
-        .thenReturn(new Client.Response(Constants.RESPONSE_CODE_OK));
+        .thenReturn(completedFuture(new Client.Response(Constants.RESPONSE_CODE_OK)));
 
     AtomicInteger messageHandlerCalls = new AtomicInteger();
     Runnable closingRunnable =
@@ -286,7 +480,7 @@ public class ConsumersCoordinatorTest {
             (offset, message) -> messageHandlerCalls.incrementAndGet());
     verify(clientFactory, times(1)).apply(any(Client.ClientParameters.class));
     verify(client, times(1))
-        .subscribe(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
+        .subscribeAsync(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
 
     assertThat(messageHandlerCalls.get()).isEqualTo(0);
     messageListener.handle(subscriptionIdCaptor.getValue(), 1, new WrapperMessageBuilder().build());
@@ -298,7 +492,7 @@ public class ConsumersCoordinatorTest {
     Thread.sleep(retryDelay.toMillis() * 5);
 
     verify(client, times(2))
-        .subscribe(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
+        .subscribeAsync(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
 
     assertThat(messageHandlerCalls.get()).isEqualTo(1);
     messageListener.handle(subscriptionIdCaptor.getValue(), 0, new WrapperMessageBuilder().build());
@@ -324,9 +518,9 @@ public class ConsumersCoordinatorTest {
     when(locator.metadata("stream")).thenReturn(metadata(null, replicas()));
 
     when(clientFactory.apply(any(Client.ClientParameters.class))).thenReturn(client);
-    when(client.subscribe(
+    when(client.subscribeAsync(
             subscriptionIdCaptor.capture(), anyString(), any(OffsetSpecification.class), anyInt()))
-        .thenReturn(new Client.Response(Constants.RESPONSE_CODE_OK));
+        .thenReturn(completedFuture(new Client.Response(Constants.RESPONSE_CODE_OK)));
 
     AtomicInteger messageHandlerCalls = new AtomicInteger();
     Runnable closingRunnable =
@@ -338,7 +532,7 @@ public class ConsumersCoordinatorTest {
             (offset, message) -> messageHandlerCalls.incrementAndGet());
     verify(clientFactory, times(1)).apply(any(Client.ClientParameters.class));
     verify(client, times(1))
-        .subscribe(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
+        .subscribeAsync(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
 
     assertThat(messageHandlerCalls.get()).isEqualTo(0);
     messageListener.handle(subscriptionIdCaptor.getValue(), 1, new WrapperMessageBuilder().build());
@@ -349,7 +543,7 @@ public class ConsumersCoordinatorTest {
     Thread.sleep(delayPolicy.delay(0).toMillis() * 5);
 
     verify(client, times(2))
-        .subscribe(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
+        .subscribeAsync(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
 
     assertThat(messageHandlerCalls.get()).isEqualTo(1);
     messageListener.handle(subscriptionIdCaptor.getValue(), 0, new WrapperMessageBuilder().build());
@@ -381,9 +575,9 @@ public class ConsumersCoordinatorTest {
         .thenReturn(metadata(null, replicas()));
 
     when(clientFactory.apply(any(Client.ClientParameters.class))).thenReturn(client);
-    when(client.subscribe(
+    when(client.subscribeAsync(
             subscriptionIdCaptor.capture(), anyString(), any(OffsetSpecification.class), anyInt()))
-        .thenReturn(new Client.Response(Constants.RESPONSE_CODE_OK));
+        .thenReturn(completedFuture(new Client.Response(Constants.RESPONSE_CODE_OK)));
 
     AtomicInteger messageHandlerCalls = new AtomicInteger();
     Runnable closingRunnable =
@@ -395,7 +589,7 @@ public class ConsumersCoordinatorTest {
             (offset, message) -> messageHandlerCalls.incrementAndGet());
     verify(clientFactory, times(1)).apply(any(Client.ClientParameters.class));
     verify(client, times(1))
-        .subscribe(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
+        .subscribeAsync(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
 
     assertThat(messageHandlerCalls.get()).isEqualTo(0);
     messageListener.handle(subscriptionIdCaptor.getValue(), 1, new WrapperMessageBuilder().build());
@@ -406,7 +600,7 @@ public class ConsumersCoordinatorTest {
     Thread.sleep(delayPolicy.delay(0).toMillis() + delayPolicy.delay(1).toMillis() * 5);
 
     verify(client, times(2))
-        .subscribe(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
+        .subscribeAsync(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
 
     assertThat(messageHandlerCalls.get()).isEqualTo(1);
     messageListener.handle(subscriptionIdCaptor.getValue(), 0, new WrapperMessageBuilder().build());
@@ -436,9 +630,9 @@ public class ConsumersCoordinatorTest {
         .thenReturn(metadata("stream", null, null, Constants.RESPONSE_CODE_STREAM_DOES_NOT_EXIST));
 
     when(clientFactory.apply(any(Client.ClientParameters.class))).thenReturn(client);
-    when(client.subscribe(
+    when(client.subscribeAsync(
             subscriptionIdCaptor.capture(), anyString(), any(OffsetSpecification.class), anyInt()))
-        .thenReturn(new Client.Response(Constants.RESPONSE_CODE_OK));
+        .thenReturn(completedFuture(new Client.Response(Constants.RESPONSE_CODE_OK)));
 
     AtomicInteger messageHandlerCalls = new AtomicInteger();
     coordinator.subscribe(
@@ -449,7 +643,7 @@ public class ConsumersCoordinatorTest {
         (offset, message) -> messageHandlerCalls.incrementAndGet());
     verify(clientFactory, times(1)).apply(any(Client.ClientParameters.class));
     verify(client, times(1))
-        .subscribe(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
+        .subscribeAsync(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
 
     assertThat(messageHandlerCalls.get()).isEqualTo(0);
     messageListener.handle(subscriptionIdCaptor.getValue(), 1, new WrapperMessageBuilder().build());
@@ -459,9 +653,10 @@ public class ConsumersCoordinatorTest {
 
     Thread.sleep(delayPolicy.delay(0).toMillis() * 5);
 
-    verify(consumer, times(1)).closeAfterStreamDeletion();
+    verify(consumer, times(1))
+        .closeAfterStreamDeletion(any(StreamDoesNotExistException.class));
     verify(client, times(1))
-        .subscribe(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
+        .subscribeAsync(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
     verify(client, times(0)).unsubscribe(anyByte());
 
     assertThat(coordinator.poolSize()).isZero();
@@ -480,9 +675,9 @@ public class ConsumersCoordinatorTest {
         .thenThrow(new IllegalStateException());
 
     when(clientFactory.apply(any(Client.ClientParameters.class))).thenReturn(client);
-    when(client.subscribe(
+    when(client.subscribeAsync(
             subscriptionIdCaptor.capture(), anyString(), any(OffsetSpecification.class), anyInt()))
-        .thenReturn(new Client.Response(Constants.RESPONSE_CODE_OK));
+        .thenReturn(completedFuture(new Client.Response(Constants.RESPONSE_CODE_OK)));
 
     AtomicInteger messageHandlerCalls = new AtomicInteger();
     coordinator.subscribe(
@@ -493,7 +688,7 @@ public class ConsumersCoordinatorTest {
         (offset, message) -> messageHandlerCalls.incrementAndGet());
     verify(clientFactory, times(1)).apply(any(Client.ClientParameters.class));
     verify(client, times(1))
-        .subscribe(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
+        .subscribeAsync(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
 
     assertThat(messageHandlerCalls.get()).isEqualTo(0);
     messageListener.handle(subscriptionIdCaptor.getValue(), 1, new WrapperMessageBuilder().build());
@@ -503,9 +698,10 @@ public class ConsumersCoordinatorTest {
 
     Thread.sleep(delayPolicy.delay(0).toMillis() + retryTimeout.toMillis() * 2);
 
-    verify(consumer, times(1)).closeAfterStreamDeletion();
+    verify(consumer, times(1))
+        .closeAfterStreamDeletion(any(AsyncRetry.RetryTimeoutException.class));
     verify(client, times(1))
-        .subscribe(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
+        .subscribeAsync(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
     verify(client, times(0)).unsubscribe(anyByte());
 
     assertThat(coordinator.poolSize()).isZero();
@@ -517,9 +713,9 @@ public class ConsumersCoordinatorTest {
 
     when(clientFactory.apply(any(Client.ClientParameters.class))).thenReturn(client);
 
-    when(client.subscribe(
+    when(client.subscribeAsync(
             subscriptionIdCaptor.capture(), anyString(), any(OffsetSpecification.class), anyInt()))
-        .thenReturn(new Client.Response(Constants.RESPONSE_CODE_OK));
+        .thenReturn(completedFuture(new Client.Response(Constants.RESPONSE_CODE_OK)));
     when(client.isOpen()).thenReturn(true);
 
     int extraSubscriptionCount = ConsumersCoordinator.MAX_SUBSCRIPTIONS_PER_CLIENT / 5;
@@ -540,7 +736,7 @@ public class ConsumersCoordinatorTest {
 
     verify(clientFactory, times(2)).apply(any(Client.ClientParameters.class));
     verify(client, times(subscriptionCount))
-        .subscribe(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
+        .subscribeAsync(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
 
     when(client.unsubscribe(anyByte())).thenReturn(new Client.Response(Constants.RESPONSE_CODE_OK));
 
@@ -573,9 +769,9 @@ public class ConsumersCoordinatorTest {
     when(locator.metadata("stream")).thenReturn(metadata(null, replicas().subList(0, 1)));
 
     when(clientFactory.apply(any(Client.ClientParameters.class))).thenReturn(client);
-    when(client.subscribe(
+    when(client.subscribeAsync(
             subscriptionIdCaptor.capture(), anyString(), any(OffsetSpecification.class), anyInt()))
-        .thenReturn(new Client.Response(Constants.RESPONSE_CODE_OK));
+        .thenReturn(completedFuture(new Client.Response(Constants.RESPONSE_CODE_OK)));
 
     int extraSubscriptionCount = ConsumersCoordinator.MAX_SUBSCRIPTIONS_PER_CLIENT / 5;
     int subscriptionCount =
@@ -589,7 +785,7 @@ public class ConsumersCoordinatorTest {
     // the extra is allocated on another client from the same pool
     verify(clientFactory, times(2)).apply(any(Client.ClientParameters.class));
     verify(client, times(subscriptionCount))
-        .subscribe(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
+        .subscribeAsync(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
 
     // let's kill the first client connection
     shutdownListeners
@@ -605,7 +801,7 @@ public class ConsumersCoordinatorTest {
 
     verify(clientFactory, times(2 + 1)).apply(any(Client.ClientParameters.class));
     verify(client, times(subscriptionCount + ConsumersCoordinator.MAX_SUBSCRIPTIONS_PER_CLIENT + 1))
-        .subscribe(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
+        .subscribeAsync(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
   }
 
   @Test
@@ -618,9 +814,9 @@ public class ConsumersCoordinatorTest {
     when(locator.metadata("stream")).thenReturn(metadata(null, replicas().subList(0, 1)));
 
     when(clientFactory.apply(any(Client.ClientParameters.class))).thenReturn(client);
-    when(client.subscribe(
+    when(client.subscribeAsync(
             subscriptionIdCaptor.capture(), anyString(), any(OffsetSpecification.class), anyInt()))
-        .thenReturn(new Client.Response(Constants.RESPONSE_CODE_OK));
+        .thenReturn(completedFuture(new Client.Response(Constants.RESPONSE_CODE_OK)));
 
     int extraSubscriptionCount = ConsumersCoordinator.MAX_SUBSCRIPTIONS_PER_CLIENT / 5;
     int subscriptionCount =
@@ -634,7 +830,7 @@ public class ConsumersCoordinatorTest {
     // the extra is allocated on another client from the same pool
     verify(clientFactory, times(2)).apply(any(Client.ClientParameters.class));
     verify(client, times(subscriptionCount))
-        .subscribe(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
+        .subscribeAsync(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
 
     List<ConsumersPoolInfo> info = MonitoringTestUtils.extract(coordinator);
     assertThat(info)
@@ -662,7 +858,7 @@ public class ConsumersCoordinatorTest {
 
     verify(clientFactory, times(2 + 1)).apply(any(Client.ClientParameters.class));
     verify(client, times(subscriptionCount + ConsumersCoordinator.MAX_SUBSCRIPTIONS_PER_CLIENT + 1))
-        .subscribe(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
+        .subscribeAsync(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
 
     info = MonitoringTestUtils.extract(coordinator);
     assertThat(info)
@@ -706,19 +902,19 @@ public class ConsumersCoordinatorTest {
         ArgumentCaptor.forClass(OffsetSpecification.class);
 
     when(clientFactory.apply(any(Client.ClientParameters.class))).thenReturn(client);
-    when(client.subscribe(
+    when(client.subscribeAsync(
             subscriptionIdCaptor.capture(),
             anyString(),
             offsetSpecificationArgumentCaptor.capture(),
             anyInt()))
-        .thenReturn(new Client.Response(Constants.RESPONSE_CODE_OK));
+        .thenReturn(completedFuture(new Client.Response(Constants.RESPONSE_CODE_OK)));
 
     Runnable closingRunnable =
         coordinator.subscribe(
             consumer, "stream", OffsetSpecification.first(), null, (offset, message) -> {});
     verify(clientFactory, times(1)).apply(any(Client.ClientParameters.class));
     verify(client, times(1))
-        .subscribe(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
+        .subscribeAsync(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
     assertThat(offsetSpecificationArgumentCaptor.getAllValues())
         .element(0)
         .isEqualTo(OffsetSpecification.first());
@@ -732,7 +928,7 @@ public class ConsumersCoordinatorTest {
     Thread.sleep(retryDelay.toMillis() * 5);
 
     verify(client, times(2))
-        .subscribe(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
+        .subscribeAsync(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
 
     assertThat(offsetSpecificationArgumentCaptor.getAllValues())
         .element(1)
@@ -766,25 +962,25 @@ public class ConsumersCoordinatorTest {
     String consumerName = "consumer-name";
     long lastCommittedOffset = 5;
     long lastReceivedOffset = 10;
-    when(client.queryOffset(consumerName, "stream"))
-        .thenReturn((long) 0)
-        .thenReturn(lastCommittedOffset);
+    when(client.queryOffsetAsync(consumerName, "stream"))
+        .thenReturn(completedFuture((long) 0))
+        .thenReturn(completedFuture(lastCommittedOffset));
 
     ArgumentCaptor<OffsetSpecification> offsetSpecificationArgumentCaptor =
         ArgumentCaptor.forClass(OffsetSpecification.class);
-    when(client.subscribe(
+    when(client.subscribeAsync(
             subscriptionIdCaptor.capture(),
             anyString(),
             offsetSpecificationArgumentCaptor.capture(),
             anyInt()))
-        .thenReturn(new Client.Response(Constants.RESPONSE_CODE_OK));
+        .thenReturn(completedFuture(new Client.Response(Constants.RESPONSE_CODE_OK)));
 
     Runnable closingRunnable =
         coordinator.subscribe(
             consumer, "stream", OffsetSpecification.first(), consumerName, (offset, message) -> {});
     verify(clientFactory, times(1)).apply(any(Client.ClientParameters.class));
     verify(client, times(1))
-        .subscribe(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
+        .subscribeAsync(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
     assertThat(offsetSpecificationArgumentCaptor.getAllValues())
         .element(0)
         .isEqualTo(OffsetSpecification.first());
@@ -797,7 +993,7 @@ public class ConsumersCoordinatorTest {
     Thread.sleep(retryDelay.toMillis() * 5);
 
     verify(client, times(2))
-        .subscribe(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
+        .subscribeAsync(anyByte(), anyString(), any(OffsetSpecification.class), anyInt());
 
     assertThat(offsetSpecificationArgumentCaptor.getAllValues())
         .element(1)
@@ -0,0 +1,136 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.impl;
+
+import com.rabbitmq.stream.ChunkChecksum;
+import com.rabbitmq.stream.Codec;
+import com.rabbitmq.stream.compression.Compression;
+import com.rabbitmq.stream.compression.CompressionCodecFactory;
+import com.rabbitmq.stream.compression.DefaultCompressionCodecFactory;
+import com.rabbitmq.stream.metrics.MetricsCollector;
+import com.rabbitmq.stream.metrics.NoOpMetricsCollector;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Consuming path: each operation decodes a message from a synthetic deliver frame with {@link
+ * Client#handleDeliver}. Run with the GC profiler (as in {@link #main(String[])}) to get the bytes
+ * allocated by message ({@code gc.alloc.rate.norm}).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(1)
+public class DeliverBenchmark {
+
+  static final int MESSAGES_BY_CHUNK = 100;
+  static final int MESSAGES_BY_SUB_ENTRY = 10;
+
+  @Param({
+    "com.rabbitmq.stream.codec.QpidProtonCodec",
+    "com.rabbitmq.stream.codec.SwiftMqCodec",
+    "com.rabbitmq.stream.codec.NativeCodec"
+  })
+  String codecClass;
+
+  @Param({"crc32", "none"})
+  String checksum;
+
+  @Param({"simple", "sub-entries"})
+  String entries;
+
+  @Param({"20", "1000"})
+  int messageSize;
+
+  @Param({"false", "true"})
+  boolean filter;
+
+  Codec codec;
+  ChunkChecksum chunkChecksum;
+  CompressionCodecFactory compressionCodecFactory = new DefaultCompressionCodecFactory();
+  MetricsCollector metricsCollector = NoOpMetricsCollector.SINGLETON;
+  Client.ChunkListener chunkListener = (client, subscriptionId, offset, count, dataSize) -> {};
+  Client.ChunkProcessedListener chunkProcessedListener =
+      (client, subscriptionId, offset, count, timestamp) -> {};
+  Client.MessageListener messageListener;
+
+  ByteBuf frame;
+  int frameSize;
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt =
+        new OptionsBuilder()
+            .include(DeliverBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .forks(1)
+            .build();
+
+    new Runner(opt).run();
+  }
+
+  @Setup
+  public void setUp(Blackhole blackhole) throws Exception {
+    codec = (Codec) Class.forName(codecClass).getConstructor().newInstance();
+    chunkChecksum =
+        "crc32".equals(checksum) ? JdkChunkChecksum.CRC32_SINGLETON : ChunkChecksum.NO_OP;
+    messageListener = (subscriptionId, offset, message) -> blackhole.consume(message);
+    ChunkFrames.Builder builder =
+        ChunkFrames.builder().codec(codec).messageSize(messageSize).firstOffset(0);
+    if ("simple".equals(entries)) {
+      builder.simpleEntries(MESSAGES_BY_CHUNK);
+    } else {
+      builder.subEntries(
+          MESSAGES_BY_CHUNK / MESSAGES_BY_SUB_ENTRY, MESSAGES_BY_SUB_ENTRY, Compression.NONE);
+    }
+    frame = builder.build(PooledByteBufAllocator.DEFAULT);
+    frameSize = frame.readableBytes();
+  }
+
+  @TearDown
+  public void tearDown() {
+    frame.release();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(MESSAGES_BY_CHUNK)
+  public void deliver() {
+    // as when subscribing in the middle of the chunk, half of the messages are skipped
+    long offsetLimit = filter ? MESSAGES_BY_CHUNK / 2 : Client.NO_OFFSET_LIMIT;
+    frame.readerIndex(4); // command ID and version
+    Client.handleDeliver(
+        frame,
+        null,
+        chunkListener,
+        messageListener,
+        chunkProcessedListener,
+        frameSize,
+        codec,
+        compressionCodecFactory,
+        offsetLimit,
+        chunkChecksum,
+        metricsCollector);
+  }
+}
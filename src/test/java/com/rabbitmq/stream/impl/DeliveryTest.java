@@ -15,11 +15,17 @@
 package com.rabbitmq.stream.impl;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import com.rabbitmq.stream.*;
+import com.rabbitmq.stream.codec.SimpleCodec;
+import com.rabbitmq.stream.compression.Compression;
+import com.rabbitmq.stream.compression.CompressionCodecFactory;
+import com.rabbitmq.stream.compression.DefaultCompressionCodecFactory;
 import com.rabbitmq.stream.metrics.NoOpMetricsCollector;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -27,6 +33,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 
 public class DeliveryTest {
 
@@ -124,11 +132,10 @@ public class DeliveryTest {
 
               AtomicInteger chunkCountInCallback = new AtomicInteger();
               AtomicLong messageCountInCallback = new AtomicLong();
+              AtomicInteger chunkProcessedCountInCallback = new AtomicInteger();
 
-              List<Client.SubscriptionOffset> subscriptionOffsets = new ArrayList<>();
-              if (chunkOffset != subscriptionOffset) {
-                subscriptionOffsets.add(new Client.SubscriptionOffset(1, subscriptionOffset));
-              }
+              long offsetLimit =
+                  chunkOffset != subscriptionOffset ? subscriptionOffset : Client.NO_OFFSET_LIMIT;
 
               Client.handleDeliver(
                   bb,
@@ -138,16 +145,200 @@ public class DeliveryTest {
                     chunkCountInCallback.incrementAndGet();
                   },
                   (subscriptionId, offset, message) -> messageCountInCallback.incrementAndGet(),
+                  (client, subscriptionId, offset, messageCount, timestamp) -> {
+                    assertThat(messageCountInCallback)
+                        .hasValue(nbMessages - (subscriptionOffset - chunkOffset));
+                    chunkProcessedCountInCallback.incrementAndGet();
+                  },
                   frameSize,
                   NO_OP_CODEC,
-                  subscriptionOffsets,
+                  new DefaultCompressionCodecFactory(),
+                  offsetLimit,
                   ChunkChecksum.NO_OP,
                   NoOpMetricsCollector.SINGLETON);
 
               assertThat(chunkCountInCallback).hasValue(1);
+              assertThat(chunkProcessedCountInCallback).hasValue(1);
               assertThat(messageCountInCallback)
                   .hasValue(nbMessages - (subscriptionOffset - chunkOffset));
               bb.release();
             });
   }
+
+  @ParameterizedTest
+  @EnumSource(Compression.class)
+  void handleDeliverShouldDecompressSubEntries(Compression compression) {
+    int subEntryCount = 10;
+    int messagesInSubEntry = 20;
+    int nbMessages = subEntryCount * messagesInSubEntry;
+    Codec codec = new SimpleCodec();
+    ByteBuf data = ByteBufAllocator.DEFAULT.buffer();
+    int messageIndex = 0;
+    for (int i = 0; i < subEntryCount; i++) {
+      Client.EncodedMessageBatch subEntry = new Client.EncodedMessageBatch(compression);
+      for (int j = 0; j < messagesInSubEntry; j++) {
+        subEntry.add(
+            codec.encode(
+                codec
+                    .messageBuilder()
+                    .addData(String.valueOf(messageIndex++).getBytes(StandardCharsets.UTF_8))
+                    .build()));
+      }
+      if (compression != Compression.NONE) {
+        subEntry.compress(new DefaultCompressionCodecFactory().get(compression));
+      }
+      Client.OUTBOUND_MESSAGE_BATCH_WRITE_CALLBACK.write(data, subEntry, i);
+    }
+
+    ByteBuf bb = ByteBufAllocator.DEFAULT.buffer(1024);
+    bb.writeShort(Constants.COMMAND_DELIVER)
+        .writeShort(Constants.VERSION_0)
+        .writeByte(1) // subscription id
+        .writeByte(1) // magic and version
+        .writeByte(0) // chunk type, always 0 in our case
+        .writeShort(subEntryCount) // num entries
+        .writeInt(nbMessages) // num messages
+        .writeLong(System.currentTimeMillis())
+        .writeLong(0) // epoch
+        .writeLong(0) // offset
+        .writeInt(0) // CRC
+        .writeInt(data.readableBytes()) // data size
+        .writeBytes(data);
+    data.release();
+
+    int frameSize = bb.readableBytes();
+    bb.readShort(); // read command key
+    bb.readShort(); // read command version
+
+    List<String> bodies = new ArrayList<>();
+    List<Long> offsets = new ArrayList<>();
+    Client.handleDeliver(
+        bb,
+        null,
+        (client, subscriptionId, offset, messageCount, sizeOfData) -> {},
+        (subscriptionId, offset, message) -> {
+          offsets.add(offset);
+          bodies.add(new String(message.getBodyAsBinary(), StandardCharsets.UTF_8));
+        },
+        (client, subscriptionId, offset, messageCount, timestamp) -> {},
+        frameSize,
+        codec,
+        new DefaultCompressionCodecFactory(),
+        Client.NO_OFFSET_LIMIT,
+        ChunkChecksum.NO_OP,
+        NoOpMetricsCollector.SINGLETON);
+
+    assertThat(bodies).hasSize(nbMessages);
+    for (int i = 0; i < nbMessages; i++) {
+      assertThat(bodies.get(i)).isEqualTo(String.valueOf(i));
+      assertThat(offsets.get(i)).isEqualTo(i);
+    }
+    bb.release();
+  }
+
+  @ParameterizedTest
+  @EnumSource(Compression.class)
+  void handleDeliverShouldSkipSubEntriesBeforeSubscriptionOffset(Compression compression) {
+    int subEntryCount = 10;
+    int messagesInSubEntry = 20;
+    int nbMessages = subEntryCount * messagesInSubEntry;
+    // in the middle of the 5th sub-entry
+    long subscriptionOffset = 4 * messagesInSubEntry + 5;
+    ByteBuf bb =
+        ChunkFrames.builder()
+            .subEntries(subEntryCount, messagesInSubEntry, compression)
+            .build(ByteBufAllocator.DEFAULT);
+    int frameSize = bb.readableBytes();
+    bb.readShort(); // read command key
+    bb.readShort(); // read command version
+
+    CompressionCodecFactory compressionCodecFactory = new DefaultCompressionCodecFactory();
+    AtomicInteger decompressedSubEntries = new AtomicInteger();
+    List<Long> offsets = new ArrayList<>();
+    Client.handleDeliver(
+        bb,
+        null,
+        (client, subscriptionId, offset, messageCount, sizeOfData) -> {},
+        (subscriptionId, offset, message) -> offsets.add(offset),
+        (client, subscriptionId, offset, messageCount, timestamp) -> {},
+        frameSize,
+        Codecs.DEFAULT,
+        c -> {
+          decompressedSubEntries.incrementAndGet();
+          return compressionCodecFactory.get(c);
+        },
+        subscriptionOffset,
+        ChunkChecksum.NO_OP,
+        NoOpMetricsCollector.SINGLETON);
+
+    assertThat(offsets).hasSize(nbMessages - (int) subscriptionOffset);
+    assertThat(offsets.get(0)).isEqualTo(subscriptionOffset);
+    assertThat(offsets.get(offsets.size() - 1)).isEqualTo(nbMessages - 1);
+    if (compression != Compression.NONE) {
+      // the first 4 sub-entries are skipped without decompression
+      assertThat(decompressedSubEntries).hasValue(subEntryCount - 4);
+    }
+    bb.release();
+  }
+
+  @Test
+  void chunkProcessedListenerShouldBeCalledWhenMessageListenerThrows() {
+    ByteBuf bb = ChunkFrames.builder().simpleEntries(10).build(ByteBufAllocator.DEFAULT);
+    int frameSize = bb.readableBytes();
+    bb.readShort(); // read command key
+    bb.readShort(); // read command version
+    AtomicInteger chunkProcessedCount = new AtomicInteger();
+    assertThatThrownBy(
+            () ->
+                Client.handleDeliver(
+                    bb,
+                    null,
+                    (client, subscriptionId, offset, messageCount, sizeOfData) -> {},
+                    (subscriptionId, offset, message) -> {
+                      throw new IllegalStateException("message handler failure");
+                    },
+                    (client, subscriptionId, offset, messageCount, timestamp) ->
+                        chunkProcessedCount.incrementAndGet(),
+                    frameSize,
+                    Codecs.DEFAULT,
+                    new DefaultCompressionCodecFactory(),
+                    Client.NO_OFFSET_LIMIT,
+                    ChunkChecksum.NO_OP,
+                    NoOpMetricsCollector.SINGLETON))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessage("message handler failure");
+    assertThat(chunkProcessedCount).hasValue(1);
+    bb.release();
+  }
+
+  @Test
+  void chunkProcessedListenerShouldBeCalledWhenChecksumFails() {
+    ByteBuf bb = ChunkFrames.builder().simpleEntries(10).build(ByteBufAllocator.DEFAULT);
+    int frameSize = bb.readableBytes();
+    bb.readShort(); // read command key
+    bb.readShort(); // read command version
+    AtomicInteger messageCount = new AtomicInteger();
+    AtomicInteger chunkProcessedCount = new AtomicInteger();
+    assertThatThrownBy(
+            () ->
+                Client.handleDeliver(
+                    bb,
+                    null,
+                    (client, subscriptionId, offset, count, sizeOfData) -> {},
+                    (subscriptionId, offset, message) -> messageCount.incrementAndGet(),
+                    (client, subscriptionId, offset, count, timestamp) ->
+                        chunkProcessedCount.incrementAndGet(),
+                    frameSize,
+                    Codecs.DEFAULT,
+                    new DefaultCompressionCodecFactory(),
+                    Client.NO_OFFSET_LIMIT,
+                    (byteBuf, dataLength, expected) -> {
+                      throw new ChunkChecksumValidationException(expected, expected + 1);
+                    },
+                    NoOpMetricsCollector.SINGLETON))
+        .isInstanceOf(ChunkChecksumValidationException.class);
+    assertThat(messageCount).hasValue(0);
+    assertThat(chunkProcessedCount).hasValue(1);
+    bb.release();
+  }
 }
@@ -0,0 +1,112 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.rabbitmq.stream.metrics.MetricsCollector;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class InboundFlowControlTest {
+
+  EmbeddedChannel channel;
+  MetricsCollector metricsCollector;
+
+  @BeforeEach
+  void init() {
+    channel = new EmbeddedChannel();
+    metricsCollector = mock(MetricsCollector.class);
+  }
+
+  @AfterEach
+  void tearDown() {
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  void shouldPauseReadingWhenChunkLimitIsReachedAndResumeUnderHalf() {
+    InboundFlowControl flowControl =
+        new InboundFlowControl(channel, 10, 1_000_000, metricsCollector);
+    IntStream.range(0, 9).forEach(i -> flowControl.enqueued(100));
+    assertThat(channel.config().isAutoRead()).isTrue();
+    flowControl.enqueued(100);
+    assertThat(flowControl.isPaused()).isTrue();
+    assertThat(channel.config().isAutoRead()).isFalse();
+
+    IntStream.range(0, 4).forEach(i -> flowControl.dequeued(100));
+    channel.runPendingTasks();
+    assertThat(channel.config().isAutoRead()).isFalse();
+    flowControl.dequeued(100);
+    channel.runPendingTasks();
+    assertThat(flowControl.isPaused()).isFalse();
+    assertThat(channel.config().isAutoRead()).isTrue();
+    assertThat(flowControl.frames()).isEqualTo(5);
+    assertThat(flowControl.bytes()).isEqualTo(500);
+    verify(metricsCollector, times(10)).deliveryQueued(100);
+    verify(metricsCollector, times(5)).deliveryDispatched(100);
+    verify(metricsCollector, times(1)).readPaused(anyLong());
+  }
+
+  @Test
+  void shouldPauseReadingWhenByteLimitIsReachedAndResumeUnderHalf() {
+    InboundFlowControl flowControl = new InboundFlowControl(channel, 1000, 1000, metricsCollector);
+    flowControl.enqueued(600);
+    assertThat(channel.config().isAutoRead()).isTrue();
+    flowControl.enqueued(600);
+    assertThat(channel.config().isAutoRead()).isFalse();
+    flowControl.dequeued(600);
+    channel.runPendingTasks();
+    // 600 bytes still queued, more than half of the limit
+    assertThat(channel.config().isAutoRead()).isFalse();
+    flowControl.enqueued(100);
+    flowControl.dequeued(600);
+    channel.runPendingTasks();
+    assertThat(channel.config().isAutoRead()).isTrue();
+    verify(metricsCollector, times(1)).readPaused(anyLong());
+  }
+
+  @Test
+  void shouldResumeOnlyWhenQueueIsEmptyWithSingleChunkLimit() {
+    InboundFlowControl flowControl = new InboundFlowControl(channel, 1, 1000, metricsCollector);
+    flowControl.enqueued(10);
+    assertThat(channel.config().isAutoRead()).isFalse();
+    flowControl.dequeued(10);
+    channel.runPendingTasks();
+    assertThat(channel.config().isAutoRead()).isTrue();
+    verify(metricsCollector, times(1)).readPaused(anyLong());
+  }
+
+  @Test
+  void shouldNotPauseUnderLimits() {
+    InboundFlowControl flowControl = new InboundFlowControl(channel, 10, 1000, metricsCollector);
+    IntStream.range(0, 100)
+        .forEach(
+            i -> {
+              flowControl.enqueued(100);
+              flowControl.dequeued(100);
+            });
+    assertThat(channel.config().isAutoRead()).isTrue();
+    verify(metricsCollector, never()).readPaused(anyLong());
+  }
+}
@@ -18,6 +18,8 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import com.rabbitmq.stream.ChunkChecksum;
 import com.rabbitmq.stream.ChunkChecksumValidationException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.UnpooledByteBufAllocator;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
@@ -80,4 +82,69 @@ public class JdkChunkChecksumTest {
               bb.release();
             });
   }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"crc32", "adler32", "other"})
+  void checksumsOkWithCompositeAndSlicedBuffers(String algorithm) {
+    Supplier<Checksum> checksumSupplier =
+        CHECKSUMS.getOrDefault(
+            algorithm,
+            () ->
+                new Checksum() {
+                  // not a JDK implementation, goes through the byte-per-byte path
+                  final Checksum delegate = new CRC32();
+
+                  @Override
+                  public void update(int b) {
+                    delegate.update(b);
+                  }
+
+                  @Override
+                  public void update(byte[] b, int off, int len) {
+                    delegate.update(b, off, len);
+                  }
+
+                  @Override
+                  public long getValue() {
+                    return delegate.getValue();
+                  }
+
+                  @Override
+                  public void reset() {
+                    delegate.reset();
+                  }
+                });
+    ChunkChecksum chunkChecksum = new JdkChunkChecksum(checksumSupplier);
+    byte[] content = "hello world".getBytes(UTF8);
+    Checksum expectedChecksum = checksumSupplier.get();
+    expectedChecksum.update(content, 0, content.length);
+    long expected = expectedChecksum.getValue();
+    UnpooledByteBufAllocator allocator = UnpooledByteBufAllocator.DEFAULT;
+    Stream.<Supplier<ByteBuf>>of(
+            () -> allocator.directBuffer(),
+            () -> allocator.heapBuffer(),
+            () -> allocator.compositeDirectBuffer(),
+            () -> allocator.compositeHeapBuffer())
+        .forEach(
+            bbSupplier -> {
+              ByteBuf bb = bbSupplier.get();
+              if (bb instanceof CompositeByteBuf) {
+                ((CompositeByteBuf) bb)
+                    .addComponent(true, allocator.directBuffer().writeBytes(content, 0, 5))
+                    .addComponent(true, allocator.heapBuffer().writeBytes(content, 5, 6));
+              } else {
+                bb.writeBytes(content);
+              }
+              chunkChecksum.checksum(bb, content.length, expected);
+              // sliced buffer starting after some bytes
+              ByteBuf prefixed = bbSupplier.get().writeBytes("abc".getBytes(UTF8));
+              prefixed.writeBytes(content);
+              ByteBuf slice = prefixed.slice(3, content.length);
+              chunkChecksum.checksum(slice, content.length, expected);
+              prefixed.readerIndex(3);
+              chunkChecksum.checksum(prefixed, content.length, expected);
+              bb.release();
+              prefixed.release();
+            });
+  }
 }
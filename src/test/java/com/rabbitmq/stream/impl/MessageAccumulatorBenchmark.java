@@ -0,0 +1,143 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.impl;
+
+import com.rabbitmq.stream.Codec;
+import com.rabbitmq.stream.ConfirmationHandler;
+import com.rabbitmq.stream.Message;
+import com.rabbitmq.stream.codec.SimpleCodec;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Several publishing threads accumulate messages and drain full batches, like {@link
+ * StreamProducer#send(Message, ConfirmationHandler)} does.
+ *
+ * <p>The "blocking" benchmark reproduces the previous design: a {@link LinkedBlockingQueue} and a
+ * monitor around the draining. The "lockFree" benchmark uses {@link SimpleMessageAccumulator} and
+ * a drainer that publishing threads skip if it is already taken. Run with e.g. <code>-t 1</code>,
+ * <code>-t 4</code>, <code>-t 8</code> to see how the designs scale.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+public class MessageAccumulatorBenchmark {
+
+  static final int MAX_UNCONFIRMED_MESSAGES = 10_000;
+  static final ConfirmationHandler CONFIRMATION_HANDLER = confirmationStatus -> {};
+
+  @Param({"100"})
+  int batchSize;
+
+  Codec codec = new SimpleCodec();
+  Message message = codec.messageBuilder().addData(new byte[20]).build();
+
+  // releasing permits on draining stands for the confirms
+  Semaphore semaphore;
+
+  SimpleMessageAccumulator lockFreeAccumulator;
+  Lock lock;
+
+  BlockingQueue<MessageAccumulator.AccumulatedEntity> blockingQueue;
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt =
+        new OptionsBuilder()
+            .include(MessageAccumulatorBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+    new Runner(opt).run();
+  }
+
+  @Setup
+  public void setUp() {
+    semaphore = new Semaphore(MAX_UNCONFIRMED_MESSAGES);
+    lockFreeAccumulator =
+        new SimpleMessageAccumulator(
+            batchSize, MAX_UNCONFIRMED_MESSAGES, codec, Integer.MAX_VALUE, "stream");
+    lock = new ReentrantLock();
+    blockingQueue = new LinkedBlockingQueue<>(batchSize);
+  }
+
+  @Benchmark
+  public void lockFree(Blackhole bh) {
+    semaphore.acquireUninterruptibly();
+    if (lockFreeAccumulator.add(message, CONFIRMATION_HANDLER)) {
+      while (lock.tryLock()) {
+        try {
+          while (lockFreeAccumulator.hasFullBatch()) {
+            drain(bh);
+          }
+        } finally {
+          lock.unlock();
+        }
+        if (!lockFreeAccumulator.hasFullBatch()) {
+          break;
+        }
+      }
+    }
+  }
+
+  private void drain(Blackhole bh) {
+    for (int i = 0; i < batchSize; i++) {
+      MessageAccumulator.AccumulatedEntity entity = lockFreeAccumulator.get();
+      if (entity == null) {
+        break;
+      }
+      bh.consume(entity);
+      semaphore.release();
+    }
+  }
+
+  @Benchmark
+  public void blocking(Blackhole bh) throws InterruptedException {
+    semaphore.acquireUninterruptibly();
+    Codec.EncodedMessage encodedMessage = codec.encode(message);
+    blockingQueue.offer(
+        new SimpleMessageAccumulator.SimpleAccumulatedEntity(
+            encodedMessage,
+            new SimpleMessageAccumulator.SimpleConfirmationCallback(
+                message, CONFIRMATION_HANDLER, encodedMessage.getSize())),
+        60,
+        TimeUnit.SECONDS);
+    if (blockingQueue.size() == batchSize) {
+      synchronized (this) {
+        for (int i = 0; i < batchSize; i++) {
+          MessageAccumulator.AccumulatedEntity entity = blockingQueue.poll();
+          if (entity == null) {
+            break;
+          }
+          bh.consume(entity);
+          semaphore.release();
+        }
+      }
+    }
+  }
+}
@@ -17,6 +17,7 @@ package com.rabbitmq.stream.impl;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import com.rabbitmq.stream.OffsetSpecification;
+import com.rabbitmq.stream.compression.Compression;
 import com.rabbitmq.stream.metrics.MetricsCollector;
 import java.util.Collections;
 import java.util.UUID;
@@ -126,7 +127,7 @@ public class MetricsCollectionTest {
     IntStream.range(0, batchCount)
         .forEach(
             batchIndex -> {
-              MessageBatch messageBatch = new MessageBatch(MessageBatch.Compression.NONE);
+              MessageBatch messageBatch = new MessageBatch(Compression.NONE);
               IntStream.range(0, messagesInBatch)
                   .forEach(
                       messageIndex -> {
@@ -0,0 +1,101 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.impl;
+
+import com.rabbitmq.stream.ConfirmationHandler;
+import com.rabbitmq.stream.Environment;
+import com.rabbitmq.stream.Message;
+import com.rabbitmq.stream.Producer;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * End-to-end publishing with an environment against {@link MockStreamBroker}: each operation sends
+ * a batch of messages and waits for their confirms.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(1)
+public class MockBrokerPublishBenchmark {
+
+  static final int MESSAGES_PER_OPERATION = 1000;
+
+  @Param({"0", "1"})
+  int confirmLatencyInMs;
+
+  @Param({"100"})
+  int maxChunkEntries;
+
+  MockStreamBroker broker;
+
+  Environment environment;
+
+  Producer producer;
+
+  Message message;
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt =
+        new OptionsBuilder()
+            .include(MockBrokerPublishBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+    new Runner(opt).run();
+  }
+
+  @Setup
+  public void setUp() {
+    broker =
+        new MockStreamBroker()
+            .maxChunkEntries(maxChunkEntries)
+            .confirmLatency(Duration.ofMillis(confirmLatencyInMs))
+            .start();
+    environment = Environment.builder().uri(broker.uri()).build();
+    environment.streamCreator().stream("benchmark").create();
+    producer = environment.producerBuilder().stream("benchmark").build();
+    message = producer.messageBuilder().addData(new byte[100]).build();
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    producer.close();
+    environment.close();
+    broker.close();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(MESSAGES_PER_OPERATION)
+  public void publishAndWaitForConfirms() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(MESSAGES_PER_OPERATION);
+    ConfirmationHandler confirmationHandler = confirmationStatus -> latch.countDown();
+    for (int i = 0; i < MESSAGES_PER_OPERATION; i++) {
+      producer.send(message, confirmationHandler);
+    }
+    if (!latch.await(10, TimeUnit.SECONDS)) {
+      throw new IllegalStateException("Messages not confirmed in 10 seconds");
+    }
+  }
+}
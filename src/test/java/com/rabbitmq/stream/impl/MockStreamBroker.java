@@ -0,0 +1,717 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.impl;
+
+import static com.rabbitmq.stream.Constants.*;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory stand-in of a stream broker, for tests and benchmarks that cannot use a RabbitMQ node.
+ *
+ * <p>The broker speaks the frames {@link Client} uses: peer properties, SASL (any credentials
+ * are accepted), tune, open, stream creation and deletion, metadata, publish and confirm,
+ * subscription, delivery and credit, offset commit and query, and close. Published entries are
+ * stored as-is in chunks of at most {@link #maxChunkEntries(int)} entries, the entries of a publish
+ * frame never span several chunks. Confirms can be delayed with {@link #confirmLatency(Duration)}.
+ *
+ * <p>The broker is a single node, it is the leader of all the streams and there are no replicas.
+ * Offset commits do not create entries in the stream, unlike in RabbitMQ, so offsets are
+ * contiguous.
+ */
+final class MockStreamBroker implements AutoCloseable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(MockStreamBroker.class);
+
+  private static final String HOST = "localhost";
+  private static final int MAX_FRAME_SIZE = 1048576;
+  private static final int HEARTBEAT = 60;
+  // magic 5, version 0
+  private static final byte CHUNK_MAGIC_AND_VERSION = 0x50;
+  private static final byte CHUNK_TYPE_USER = 0;
+
+  private final ConcurrentMap<String, Stream> streams = new ConcurrentHashMap<>();
+  private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+  private final Set<Short> unansweredCommands = ConcurrentHashMap.newKeySet();
+  private int maxChunkEntries = 100;
+  private long confirmLatencyInNs = 0;
+  private EventLoopGroup bossGroup;
+  private EventLoopGroup workerGroup;
+  private Channel serverChannel;
+
+  /**
+   * The maximum number of entries in a chunk.
+   *
+   * @param maxChunkEntries the maximum number of entries, between 1 and 65535
+   * @return this broker instance
+   */
+  MockStreamBroker maxChunkEntries(int maxChunkEntries) {
+    if (maxChunkEntries <= 0 || maxChunkEntries > 0xFFFF) {
+      throw new IllegalArgumentException(
+          "The maximum number of entries must be between 1 and 65535");
+    }
+    this.maxChunkEntries = maxChunkEntries;
+    return this;
+  }
+
+  /**
+   * Delay before confirming published messages.
+   *
+   * @param confirmLatency the delay, {@link Duration#ZERO} to confirm right away
+   * @return this broker instance
+   */
+  MockStreamBroker confirmLatency(Duration confirmLatency) {
+    this.confirmLatencyInNs = confirmLatency.toNanos();
+    return this;
+  }
+
+  /**
+   * Commands to never respond to, e.g. to test request timeouts.
+   *
+   * @param commandIds the IDs of the commands
+   * @return this broker instance
+   */
+  MockStreamBroker unansweredCommands(short... commandIds) {
+    for (short commandId : commandIds) {
+      this.unansweredCommands.add(commandId);
+    }
+    return this;
+  }
+
+  MockStreamBroker start() {
+    this.bossGroup = new NioEventLoopGroup(1);
+    this.workerGroup = new NioEventLoopGroup();
+    ServerBootstrap b = new ServerBootstrap();
+    b.group(this.bossGroup, this.workerGroup)
+        .channel(NioServerSocketChannel.class)
+        .childHandler(
+            new ChannelInitializer<SocketChannel>() {
+              @Override
+              protected void initChannel(SocketChannel ch) {
+                ch.pipeline()
+                    .addLast(new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, 4, 0, 4))
+                    .addLast(new Connection());
+              }
+            });
+    try {
+      this.serverChannel = b.bind(HOST, 0).sync().channel();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while starting mock broker", e);
+    }
+    return this;
+  }
+
+  int port() {
+    return ((InetSocketAddress) this.serverChannel.localAddress()).getPort();
+  }
+
+  String uri() {
+    return "rabbitmq-stream://guest:guest@" + HOST + ":" + port() + "/%2f";
+  }
+
+  Client.ClientParameters clientParameters() {
+    return new Client.ClientParameters().host(HOST).port(port());
+  }
+
+  /**
+   * The number of records (messages) stored in a stream.
+   *
+   * @param stream the stream
+   * @return the number of records, -1 if the stream does not exist
+   */
+  long recordCount(String stream) {
+    Stream s = this.streams.get(stream);
+    return s == null ? -1 : s.nextOffset();
+  }
+
+  @Override
+  public void close() {
+    if (this.serverChannel != null) {
+      this.serverChannel.close().syncUninterruptibly();
+    }
+    for (Connection connection : this.connections) {
+      connection.channel.close();
+    }
+    if (this.workerGroup != null) {
+      this.workerGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+    if (this.bossGroup != null) {
+      this.bossGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+  }
+
+  private static String readString(ByteBuf bb) {
+    int length = bb.readShort();
+    if (length < 0) {
+      return null;
+    }
+    String string = bb.toString(bb.readerIndex(), length, StandardCharsets.UTF_8);
+    bb.skipBytes(length);
+    return string;
+  }
+
+  private static int stringSize(String string) {
+    return 2 + string.getBytes(StandardCharsets.UTF_8).length;
+  }
+
+  private static void writeString(ByteBuf bb, String string) {
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    bb.writeShort(bytes.length).writeBytes(bytes);
+  }
+
+  private static final class Chunk {
+
+    private final long firstOffset;
+    private final int entryCount;
+    private final int recordCount;
+    private final long timestamp;
+    private final byte[] data;
+    private final long crc;
+
+    private Chunk(long firstOffset, int entryCount, int recordCount, byte[] data) {
+      this.firstOffset = firstOffset;
+      this.entryCount = entryCount;
+      this.recordCount = recordCount;
+      this.timestamp = System.currentTimeMillis();
+      this.data = data;
+      CRC32 crc32 = new CRC32();
+      crc32.update(data);
+      this.crc = crc32.getValue();
+    }
+  }
+
+  private static final class Stream {
+
+    private final String name;
+    // guarded by this
+    private final List<Chunk> chunks = new ArrayList<>();
+    // guarded by this
+    private long nextOffset = 0;
+    private final Map<String, Long> offsets = new ConcurrentHashMap<>();
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+
+    private Stream(String name) {
+      this.name = name;
+    }
+
+    private void append(int entryCount, int recordCount, byte[] data) {
+      synchronized (this) {
+        this.chunks.add(new Chunk(this.nextOffset, entryCount, recordCount, data));
+        this.nextOffset += recordCount;
+      }
+      for (Subscription subscription : this.subscriptions) {
+        subscription.connection.channel.eventLoop().execute(subscription::deliver);
+      }
+    }
+
+    private synchronized Chunk chunk(int index) {
+      return index < this.chunks.size() ? this.chunks.get(index) : null;
+    }
+
+    private synchronized long nextOffset() {
+      return this.nextOffset;
+    }
+
+    private synchronized int startChunkIndex(short offsetType, long offset) {
+      if (offsetType == 0) { // first
+        return 0;
+      } else if (offsetType == 1) { // last
+        return Math.max(0, this.chunks.size() - 1);
+      } else if (offsetType == 2) { // next
+        return this.chunks.size();
+      } else if (offsetType == 3) { // offset, the client filters the messages before the offset
+        for (int i = 0; i < this.chunks.size(); i++) {
+          Chunk chunk = this.chunks.get(i);
+          if (offset < chunk.firstOffset + chunk.recordCount) {
+            return i;
+          }
+        }
+        return this.chunks.size();
+      } else if (offsetType == 4) { // timestamp
+        for (int i = 0; i < this.chunks.size(); i++) {
+          if (this.chunks.get(i).timestamp >= offset) {
+            return i;
+          }
+        }
+        return this.chunks.size();
+      } else {
+        throw new IllegalArgumentException("Unknown offset type: " + offsetType);
+      }
+    }
+  }
+
+  private static final class Subscription {
+
+    private final Connection connection;
+    private final byte subscriptionId;
+    private final Stream stream;
+    // the following fields are accessed only on the event loop of the connection
+    private int nextChunkIndex;
+    private int credits;
+    private boolean active = true;
+
+    private Subscription(
+        Connection connection, byte subscriptionId, Stream stream, int chunkIndex, int credits) {
+      this.connection = connection;
+      this.subscriptionId = subscriptionId;
+      this.stream = stream;
+      this.nextChunkIndex = chunkIndex;
+      this.credits = credits;
+    }
+
+    private void deliver() {
+      boolean written = false;
+      while (this.active && this.credits > 0) {
+        Chunk chunk = this.stream.chunk(this.nextChunkIndex);
+        if (chunk == null) {
+          break;
+        }
+        int length = 2 + 2 + 1 + 1 + 1 + 2 + 4 + 8 + 8 + 8 + 4 + 4 + chunk.data.length;
+        ByteBuf bb = this.connection.channel.alloc().buffer(length + 4);
+        bb.writeInt(length)
+            .writeShort(COMMAND_DELIVER)
+            .writeShort(VERSION_0)
+            .writeByte(this.subscriptionId)
+            .writeByte(CHUNK_MAGIC_AND_VERSION)
+            .writeByte(CHUNK_TYPE_USER)
+            .writeShort(chunk.entryCount)
+            .writeInt(chunk.recordCount)
+            .writeLong(chunk.timestamp)
+            .writeLong(0) // epoch
+            .writeLong(chunk.firstOffset)
+            .writeInt((int) chunk.crc)
+            .writeInt(chunk.data.length)
+            .writeBytes(chunk.data);
+        this.connection.channel.write(bb);
+        written = true;
+        this.credits--;
+        this.nextChunkIndex++;
+      }
+      if (written) {
+        this.connection.channel.flush();
+      }
+    }
+  }
+
+  private final class Connection extends ChannelInboundHandlerAdapter {
+
+    // the following fields are accessed only on the event loop of the connection
+    private final Map<Byte, Subscription> subscriptions = new HashMap<>();
+    private final Set<String> publishedStreams = new HashSet<>();
+    private volatile Channel channel;
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) {
+      this.channel = ctx.channel();
+      connections.add(this);
+      ctx.fireChannelActive();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+      connections.remove(this);
+      for (Subscription subscription : this.subscriptions.values()) {
+        subscription.active = false;
+        subscription.stream.subscriptions.remove(subscription);
+      }
+      this.subscriptions.clear();
+      ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+      ByteBuf bb = (ByteBuf) msg;
+      try {
+        short commandId = bb.readShort();
+        bb.readShort(); // version
+        if (commandId == COMMAND_PUBLISH) {
+          handlePublish(bb);
+        } else if (commandId == COMMAND_CREDIT) {
+          handleCredit(bb);
+        } else if (commandId == COMMAND_COMMIT_OFFSET) {
+          handleCommitOffset(bb);
+        } else if (commandId == COMMAND_HEARTBEAT) {
+          ByteBuf heartbeat = this.channel.alloc().buffer(8);
+          heartbeat.writeInt(4).writeShort(COMMAND_HEARTBEAT).writeShort(VERSION_0);
+          this.channel.writeAndFlush(heartbeat);
+        } else if (commandId == COMMAND_TUNE) {
+          // the client accepts the tune values, nothing to do
+          bb.skipBytes(bb.readableBytes());
+        } else {
+          int correlationId = bb.readInt();
+          if (unansweredCommands.contains(commandId)) {
+            LOGGER.debug("Not answering command {} (correlation ID {})", commandId, correlationId);
+          } else if (commandId == COMMAND_PEER_PROPERTIES) {
+            handlePeerProperties(correlationId);
+          } else if (commandId == COMMAND_SASL_HANDSHAKE) {
+            handleSaslHandshake(correlationId);
+          } else if (commandId == COMMAND_SASL_AUTHENTICATE) {
+            handleSaslAuthenticate(correlationId);
+          } else if (commandId == COMMAND_OPEN) {
+            response(commandId, correlationId, RESPONSE_CODE_OK);
+          } else if (commandId == COMMAND_CLOSE) {
+            response(commandId, correlationId, RESPONSE_CODE_OK);
+          } else if (commandId == COMMAND_CREATE_STREAM) {
+            handleCreate(correlationId, bb);
+          } else if (commandId == COMMAND_DELETE_STREAM) {
+            handleDelete(correlationId, bb);
+          } else if (commandId == COMMAND_METADATA) {
+            handleMetadata(correlationId, bb);
+          } else if (commandId == COMMAND_SUBSCRIBE) {
+            handleSubscribe(correlationId, bb);
+          } else if (commandId == COMMAND_UNSUBSCRIBE) {
+            handleUnsubscribe(correlationId, bb);
+          } else if (commandId == COMMAND_QUERY_OFFSET) {
+            handleQueryOffset(correlationId, bb);
+          } else {
+            LOGGER.warn("Unsupported command {}", commandId);
+            response(commandId, correlationId, RESPONSE_CODE_UNKNOWN_FRAME);
+          }
+        }
+      } finally {
+        bb.release();
+      }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+      LOGGER.warn("Error in mock broker connection", cause);
+      ctx.close();
+    }
+
+    private ByteBuf responseBuffer(short commandId, int correlationId, short code, int extra) {
+      int length = 2 + 2 + 4 + 2 + extra;
+      ByteBuf bb = this.channel.alloc().buffer(length + 4);
+      return bb.writeInt(length)
+          .writeShort(commandId)
+          .writeShort(VERSION_0)
+          .writeInt(correlationId)
+          .writeShort(code);
+    }
+
+    private void response(short commandId, int correlationId, short code) {
+      this.channel.writeAndFlush(responseBuffer(commandId, correlationId, code, 0));
+    }
+
+    private void handlePeerProperties(int correlationId) {
+      Map<String, String> properties = Collections.singletonMap("product", "mock-stream-broker");
+      int extra = 4;
+      for (Map.Entry<String, String> property : properties.entrySet()) {
+        extra += stringSize(property.getKey()) + stringSize(property.getValue());
+      }
+      ByteBuf bb =
+          responseBuffer(COMMAND_PEER_PROPERTIES, correlationId, RESPONSE_CODE_OK, extra);
+      bb.writeInt(properties.size());
+      for (Map.Entry<String, String> property : properties.entrySet()) {
+        writeString(bb, property.getKey());
+        writeString(bb, property.getValue());
+      }
+      this.channel.writeAndFlush(bb);
+    }
+
+    private void handleSaslHandshake(int correlationId) {
+      String mechanism = "PLAIN";
+      ByteBuf bb =
+          responseBuffer(
+              COMMAND_SASL_HANDSHAKE, correlationId, RESPONSE_CODE_OK, 4 + stringSize(mechanism));
+      bb.writeInt(1);
+      writeString(bb, mechanism);
+      this.channel.writeAndFlush(bb);
+    }
+
+    private void handleSaslAuthenticate(int correlationId) {
+      // any credentials are accepted
+      response(COMMAND_SASL_AUTHENTICATE, correlationId, RESPONSE_CODE_OK);
+      ByteBuf tune = this.channel.alloc().buffer(16);
+      tune.writeInt(12)
+          .writeShort(COMMAND_TUNE)
+          .writeShort(VERSION_0)
+          .writeInt(MAX_FRAME_SIZE)
+          .writeInt(HEARTBEAT);
+      this.channel.writeAndFlush(tune);
+    }
+
+    private void handleCreate(int correlationId, ByteBuf bb) {
+      String stream = readString(bb);
+      // the arguments (retention, etc) are ignored
+      bb.skipBytes(bb.readableBytes());
+      short code =
+          streams.putIfAbsent(stream, new Stream(stream)) == null
+              ? RESPONSE_CODE_OK
+              : RESPONSE_CODE_STREAM_ALREADY_EXISTS;
+      response(COMMAND_CREATE_STREAM, correlationId, code);
+    }
+
+    private void handleDelete(int correlationId, ByteBuf bb) {
+      String stream = readString(bb);
+      Stream deleted = streams.remove(stream);
+      if (deleted == null) {
+        response(COMMAND_DELETE_STREAM, correlationId, RESPONSE_CODE_STREAM_DOES_NOT_EXIST);
+      } else {
+        response(COMMAND_DELETE_STREAM, correlationId, RESPONSE_CODE_OK);
+        for (Connection connection : connections) {
+          connection.channel.eventLoop().execute(() -> connection.streamDeleted(deleted));
+        }
+      }
+    }
+
+    private void streamDeleted(Stream stream) {
+      boolean notify = this.publishedStreams.remove(stream.name);
+      for (Subscription subscription : new ArrayList<>(this.subscriptions.values())) {
+        if (subscription.stream == stream) {
+          notify = true;
+          subscription.active = false;
+          this.subscriptions.remove(subscription.subscriptionId);
+        }
+      }
+      if (notify) {
+        int length = 2 + 2 + 2 + stringSize(stream.name);
+        ByteBuf bb = this.channel.alloc().buffer(length + 4);
+        bb.writeInt(length)
+            .writeShort(COMMAND_METADATA_UPDATE)
+            .writeShort(VERSION_0)
+            .writeShort(RESPONSE_CODE_STREAM_NOT_AVAILABLE);
+        writeString(bb, stream.name);
+        this.channel.writeAndFlush(bb);
+      }
+    }
+
+    private void handleMetadata(int correlationId, ByteBuf bb) {
+      int streamCount = bb.readInt();
+      List<String> requestedStreams = new ArrayList<>(streamCount);
+      int length = 2 + 2 + 4 + 4 + 2 + stringSize(HOST) + 4 + 4;
+      for (int i = 0; i < streamCount; i++) {
+        String stream = readString(bb);
+        requestedStreams.add(stream);
+        length += stringSize(stream) + 2 + 2 + 4;
+      }
+      ByteBuf response = this.channel.alloc().buffer(length + 4);
+      response
+          .writeInt(length)
+          .writeShort(COMMAND_METADATA)
+          .writeShort(VERSION_0)
+          .writeInt(correlationId)
+          .writeInt(1) // one broker
+          .writeShort(0); // broker reference
+      writeString(response, HOST);
+      response.writeInt(port()).writeInt(streamCount);
+      for (String stream : requestedStreams) {
+        writeString(response, stream);
+        if (streams.containsKey(stream)) {
+          response.writeShort(RESPONSE_CODE_OK).writeShort(0);
+        } else {
+          response.writeShort(RESPONSE_CODE_STREAM_DOES_NOT_EXIST).writeShort(-1);
+        }
+        response.writeInt(0); // no replicas
+      }
+      this.channel.writeAndFlush(response);
+    }
+
+    private void handlePublish(ByteBuf bb) {
+      String streamName = readString(bb);
+      byte publisherId = bb.readByte();
+      int count = bb.readInt();
+      Stream stream = streams.get(streamName);
+      long[] publishingIds = new long[count];
+      ByteBuf chunkData = Unpooled.buffer();
+      int entryCount = 0;
+      int recordCount = 0;
+      for (int i = 0; i < count; i++) {
+        publishingIds[i] = bb.readLong();
+        int entryStart = bb.readerIndex();
+        byte entryType = bb.getByte(entryStart);
+        if ((entryType & 0x80) == 0) {
+          // simple entry
+          bb.skipBytes(bb.readInt());
+          recordCount++;
+        } else {
+          // sub-entry: type and compression, record count, size, data
+          bb.skipBytes(1);
+          recordCount += bb.readUnsignedShort();
+          bb.skipBytes(bb.readInt());
+        }
+        if (stream != null) {
+          chunkData.writeBytes(bb, entryStart, bb.readerIndex() - entryStart);
+          entryCount++;
+          if (entryCount == maxChunkEntries) {
+            stream.append(entryCount, recordCount, ByteBufUtil.getBytes(chunkData));
+            chunkData.clear();
+            entryCount = 0;
+            recordCount = 0;
+          }
+        }
+      }
+      if (stream == null) {
+        publishError(publisherId, publishingIds, RESPONSE_CODE_STREAM_DOES_NOT_EXIST);
+      } else {
+        if (entryCount > 0) {
+          stream.append(entryCount, recordCount, ByteBufUtil.getBytes(chunkData));
+        }
+        this.publishedStreams.add(streamName);
+        confirm(publisherId, publishingIds);
+      }
+    }
+
+    private void confirm(byte publisherId, long[] publishingIds) {
+      int length = 2 + 2 + 1 + 4 + 8 * publishingIds.length;
+      ByteBuf bb = this.channel.alloc().buffer(length + 4);
+      bb.writeInt(length)
+          .writeShort(COMMAND_PUBLISH_CONFIRM)
+          .writeShort(VERSION_0)
+          .writeByte(publisherId)
+          .writeInt(publishingIds.length);
+      for (long publishingId : publishingIds) {
+        bb.writeLong(publishingId);
+      }
+      if (confirmLatencyInNs > 0) {
+        this.channel
+            .eventLoop()
+            .schedule(
+                () -> this.channel.writeAndFlush(bb), confirmLatencyInNs, TimeUnit.NANOSECONDS);
+      } else {
+        this.channel.writeAndFlush(bb);
+      }
+    }
+
+    private void publishError(byte publisherId, long[] publishingIds, short code) {
+      int length = 2 + 2 + 1 + 4 + (8 + 2) * publishingIds.length;
+      ByteBuf bb = this.channel.alloc().buffer(length + 4);
+      bb.writeInt(length)
+          .writeShort(COMMAND_PUBLISH_ERROR)
+          .writeShort(VERSION_0)
+          .writeByte(publisherId)
+          .writeInt(publishingIds.length);
+      for (long publishingId : publishingIds) {
+        bb.writeLong(publishingId).writeShort(code);
+      }
+      this.channel.writeAndFlush(bb);
+    }
+
+    private void handleSubscribe(int correlationId, ByteBuf bb) {
+      byte subscriptionId = bb.readByte();
+      String streamName = readString(bb);
+      short offsetType = bb.readShort();
+      long offset = offsetType == 3 || offsetType == 4 ? bb.readLong() : 0;
+      int credits = bb.readShort();
+      Stream stream = streams.get(streamName);
+      if (stream == null) {
+        response(COMMAND_SUBSCRIBE, correlationId, RESPONSE_CODE_STREAM_DOES_NOT_EXIST);
+      } else if (this.subscriptions.containsKey(subscriptionId)) {
+        response(COMMAND_SUBSCRIBE, correlationId, RESPONSE_CODE_SUBSCRIPTION_ID_ALREADY_EXISTS);
+      } else {
+        Subscription subscription =
+            new Subscription(
+                this,
+                subscriptionId,
+                stream,
+                stream.startChunkIndex(offsetType, offset),
+                credits);
+        this.subscriptions.put(subscriptionId, subscription);
+        stream.subscriptions.add(subscription);
+        // the response goes out before the first chunk
+        response(COMMAND_SUBSCRIBE, correlationId, RESPONSE_CODE_OK);
+        subscription.deliver();
+      }
+    }
+
+    private void handleCredit(ByteBuf bb) {
+      byte subscriptionId = bb.readByte();
+      int credits = bb.readShort();
+      Subscription subscription = this.subscriptions.get(subscriptionId);
+      if (subscription == null) {
+        ByteBuf response = this.channel.alloc().buffer(9);
+        response
+            .writeInt(5)
+            .writeShort(COMMAND_CREDIT)
+            .writeShort(VERSION_0)
+            .writeShort(RESPONSE_CODE_SUBSCRIPTION_ID_DOES_NOT_EXIST)
+            .writeByte(subscriptionId);
+        this.channel.writeAndFlush(response);
+      } else {
+        subscription.credits += credits;
+        subscription.deliver();
+      }
+    }
+
+    private void handleUnsubscribe(int correlationId, ByteBuf bb) {
+      byte subscriptionId = bb.readByte();
+      Subscription subscription = this.subscriptions.remove(subscriptionId);
+      if (subscription == null) {
+        response(COMMAND_UNSUBSCRIBE, correlationId, RESPONSE_CODE_SUBSCRIPTION_ID_DOES_NOT_EXIST);
+      } else {
+        subscription.active = false;
+        subscription.stream.subscriptions.remove(subscription);
+        response(COMMAND_UNSUBSCRIBE, correlationId, RESPONSE_CODE_OK);
+      }
+    }
+
+    private void handleCommitOffset(ByteBuf bb) {
+      bb.readInt(); // correlation ID, not used
+      String reference = readString(bb);
+      String streamName = readString(bb);
+      long offset = bb.readLong();
+      Stream stream = streams.get(streamName);
+      if (stream != null) {
+        stream.offsets.put(reference, offset);
+      }
+    }
+
+    private void handleQueryOffset(int correlationId, ByteBuf bb) {
+      String reference = readString(bb);
+      String streamName = readString(bb);
+      Stream stream = streams.get(streamName);
+      ByteBuf response;
+      if (stream == null) {
+        response =
+            responseBuffer(
+                COMMAND_QUERY_OFFSET, correlationId, RESPONSE_CODE_STREAM_DOES_NOT_EXIST, 8);
+        response.writeLong(0);
+      } else {
+        response = responseBuffer(COMMAND_QUERY_OFFSET, correlationId, RESPONSE_CODE_OK, 8);
+        response.writeLong(stream.offsets.getOrDefault(reference, 0L));
+      }
+      this.channel.writeAndFlush(response);
+    }
+  }
+}
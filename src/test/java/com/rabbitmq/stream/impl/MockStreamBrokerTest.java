@@ -0,0 +1,413 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.impl;
+
+import static com.rabbitmq.stream.impl.TestUtils.latchAssert;
+import static com.rabbitmq.stream.impl.TestUtils.waitAtMost;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.rabbitmq.stream.Constants;
+import com.rabbitmq.stream.Consumer;
+import com.rabbitmq.stream.Environment;
+import com.rabbitmq.stream.OffsetSpecification;
+import com.rabbitmq.stream.Producer;
+import com.rabbitmq.stream.StreamException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class MockStreamBrokerTest {
+
+  MockStreamBroker broker;
+
+  @BeforeEach
+  void init() {
+    broker = new MockStreamBroker().maxChunkEntries(10).start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    broker.close();
+  }
+
+  @Test
+  void publishConsume() throws Exception {
+    String stream = "stream";
+    int messageCount = 95;
+    CountDownLatch confirmLatch = new CountDownLatch(messageCount);
+    Client publisher =
+        new Client(
+            broker
+                .clientParameters()
+                .publishConfirmListener((publisherId, publishingId) -> confirmLatch.countDown()));
+    assertThat(publisher.create(stream).isOk()).isTrue();
+    assertThat(publisher.create(stream).getResponseCode())
+        .isEqualTo(Constants.RESPONSE_CODE_STREAM_ALREADY_EXISTS);
+
+    List<Long> publishingIds =
+        publisher.publish(
+            stream,
+            (byte) 1,
+            IntStream.range(0, messageCount)
+                .mapToObj(
+                    i ->
+                        publisher
+                            .messageBuilder()
+                            .addData(String.valueOf(i).getBytes(StandardCharsets.UTF_8))
+                            .build())
+                .collect(Collectors.toList()));
+    assertThat(publishingIds).hasSize(messageCount);
+    assertThat(latchAssert(confirmLatch)).completes();
+    assertThat(broker.recordCount(stream)).isEqualTo(messageCount);
+
+    CountDownLatch consumeLatch = new CountDownLatch(messageCount);
+    List<Long> chunkOffsets = new CopyOnWriteArrayList<>();
+    List<String> bodies = new CopyOnWriteArrayList<>();
+    Client consumer =
+        new Client(
+            broker
+                .clientParameters()
+                .chunkListener(
+                    (client, subscriptionId, offset, count, dataSize) -> {
+                      chunkOffsets.add(offset);
+                      client.credit(subscriptionId, 1);
+                    })
+                .messageListener(
+                    (subscriptionId, offset, message) -> {
+                      bodies.add(new String(message.getBodyAsBinary(), StandardCharsets.UTF_8));
+                      consumeLatch.countDown();
+                    }));
+    assertThat(consumer.subscribe((byte) 1, stream, OffsetSpecification.first(), 1).isOk())
+        .isTrue();
+    assertThat(latchAssert(consumeLatch)).completes();
+    assertThat(chunkOffsets).containsExactly(0L, 10L, 20L, 30L, 40L, 50L, 60L, 70L, 80L, 90L);
+    assertThat(bodies)
+        .containsExactlyElementsOf(
+            IntStream.range(0, messageCount)
+                .mapToObj(String::valueOf)
+                .collect(Collectors.toList()));
+
+    publisher.close();
+    consumer.close();
+  }
+
+  @Test
+  void subscribeFromOffsetShouldFilterMessagesBeforeOffset() throws Exception {
+    String stream = "stream";
+    Client client =
+        new Client(
+            broker
+                .clientParameters()
+                .chunkListener(
+                    (c, subscriptionId, offset, count, dataSize) -> c.credit(subscriptionId, 1)));
+    client.create(stream);
+    CountDownLatch confirmLatch = new CountDownLatch(1);
+    Client publisher =
+        new Client(
+            broker
+                .clientParameters()
+                .publishConfirmListener((publisherId, publishingId) -> confirmLatch.countDown()));
+    publisher.publish(
+        stream,
+        (byte) 1,
+        IntStream.range(0, 25)
+            .mapToObj(i -> publisher.messageBuilder().addData(new byte[] {(byte) i}).build())
+            .collect(Collectors.toList()));
+    assertThat(latchAssert(confirmLatch)).completes();
+
+    List<Long> offsets = new CopyOnWriteArrayList<>();
+    CountDownLatch consumeLatch = new CountDownLatch(25 - 15);
+    Client consumer =
+        new Client(
+            broker
+                .clientParameters()
+                .chunkListener(
+                    (c, subscriptionId, offset, count, dataSize) -> c.credit(subscriptionId, 1))
+                .messageListener(
+                    (subscriptionId, offset, message) -> {
+                      offsets.add(offset);
+                      consumeLatch.countDown();
+                    }));
+    consumer.subscribe((byte) 1, stream, OffsetSpecification.offset(15), 1);
+    assertThat(latchAssert(consumeLatch)).completes();
+    assertThat(offsets.get(0)).isEqualTo(15);
+    assertThat(offsets).hasSize(10);
+
+    client.close();
+    publisher.close();
+    consumer.close();
+  }
+
+  @Test
+  void blockedDeliveryShouldNotBlockConfirmsAndResponses() throws Exception {
+    String stream = "stream";
+    CountDownLatch blockedLatch = new CountDownLatch(1);
+    CountDownLatch releaseLatch = new CountDownLatch(1);
+    AtomicLong confirmed = new AtomicLong(0);
+    Client client =
+        new Client(
+            broker
+                .clientParameters()
+                .publishConfirmListener((publisherId, publishingId) -> confirmed.incrementAndGet())
+                .chunkListener(
+                    (c, subscriptionId, offset, count, dataSize) -> c.credit(subscriptionId, 1))
+                .messageListener(
+                    (subscriptionId, offset, message) -> {
+                      blockedLatch.countDown();
+                      try {
+                        releaseLatch.await();
+                      } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                      }
+                    }));
+    try {
+      client.create(stream);
+      client.publish(stream, (byte) 1, Collections.singletonList(client.messageBuilder().build()));
+      waitAtMost(5, () -> confirmed.get() == 1);
+      assertThat(client.subscribe((byte) 1, stream, OffsetSpecification.first(), 1).isOk())
+          .isTrue();
+      assertThat(latchAssert(blockedLatch)).completes();
+
+      // the delivery lane is blocked in the message listener
+      client.publish(stream, (byte) 1, Collections.singletonList(client.messageBuilder().build()));
+      waitAtMost(5, () -> confirmed.get() == 2);
+      assertThat(client.metadata(stream).get(stream).isResponseOk()).isTrue();
+      assertThat(client.create("other-stream").isOk()).isTrue();
+    } finally {
+      releaseLatch.countDown();
+      client.close();
+    }
+  }
+
+  @Test
+  void chunksOfPreviousSubscriptionShouldNotReachSubscriptionWithSameId() throws Exception {
+    String stream = "stream";
+    AtomicLong confirmed = new AtomicLong(0);
+    CountDownLatch blockedLatch = new CountDownLatch(1);
+    CountDownLatch releaseLatch = new CountDownLatch(1);
+    List<Long> offsets = new CopyOnWriteArrayList<>();
+    Client client =
+        new Client(
+            broker
+                .clientParameters()
+                .publishConfirmListener((publisherId, publishingId) -> confirmed.incrementAndGet())
+                .chunkListener(
+                    (c, subscriptionId, offset, count, dataSize) -> c.credit(subscriptionId, 1))
+                .messageListener(
+                    (subscriptionId, offset, message) -> {
+                      offsets.add(offset);
+                      blockedLatch.countDown();
+                      try {
+                        releaseLatch.await();
+                      } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                      }
+                    }));
+    try {
+      client.create(stream);
+      client.publish(
+          stream,
+          (byte) 1,
+          IntStream.range(0, 30)
+              .mapToObj(i -> client.messageBuilder().build())
+              .collect(Collectors.toList()));
+      waitAtMost(5, () -> confirmed.get() == 30);
+
+      // the delivery lane is blocked in the first chunk, the 2 other chunks wait behind it
+      assertThat(client.subscribe((byte) 1, stream, OffsetSpecification.first(), 3).isOk())
+          .isTrue();
+      assertThat(latchAssert(blockedLatch)).completes();
+      assertThat(client.unsubscribe((byte) 1).isOk()).isTrue();
+      // starts in the last chunk, the messages before offset 25 must be filtered out
+      assertThat(client.subscribe((byte) 1, stream, OffsetSpecification.offset(25), 1).isOk())
+          .isTrue();
+      client.publish(stream, (byte) 1, Collections.singletonList(client.messageBuilder().build()));
+      releaseLatch.countDown();
+
+      waitAtMost(5, () -> offsets.contains(30L));
+      assertThat(offsets)
+          .as("only the chunk being dispatched when unsubscribing is not dropped")
+          .containsExactly(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 25L, 26L, 27L, 28L, 29L, 30L);
+    } finally {
+      releaseLatch.countDown();
+      client.close();
+    }
+  }
+
+  @Test
+  void requestShouldFailIfResponseDoesNotComeBeforeTimeout() throws Exception {
+    broker.unansweredCommands(Constants.COMMAND_METADATA);
+    Client client = new Client(broker.clientParameters().rpcTimeout(Duration.ofMillis(200)));
+    try {
+      CompletableFuture<Map<String, Client.StreamMetadata>> response =
+          client.metadataAsync("stream");
+      assertThatThrownBy(() -> response.get(5, TimeUnit.SECONDS))
+          .isInstanceOf(ExecutionException.class)
+          .hasCauseInstanceOf(StreamException.class)
+          .hasMessageContaining("Could not get response in 200 ms");
+      assertThatThrownBy(() -> client.metadata("stream"))
+          .isInstanceOf(StreamException.class)
+          .hasMessageContaining("Could not get response in 200 ms");
+      // the connection is still usable
+      assertThat(client.create("stream").isOk()).isTrue();
+    } finally {
+      client.close();
+    }
+  }
+
+  @Test
+  void pendingRequestsShouldFailWhenConnectionIsClosed() throws Exception {
+    broker.unansweredCommands(Constants.COMMAND_METADATA, Constants.COMMAND_QUERY_OFFSET);
+    Client client = new Client(broker.clientParameters());
+    CompletableFuture<Map<String, Client.StreamMetadata>> metadataResponse =
+        client.metadataAsync("stream");
+    CompletableFuture<Long> queryOffsetResponse = client.queryOffsetAsync("app", "stream");
+    assertThat(metadataResponse).isNotDone();
+    assertThat(queryOffsetResponse).isNotDone();
+
+    client.close();
+
+    // failing right away, not after the request timeout
+    assertThatThrownBy(() -> metadataResponse.get(1, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .hasCauseInstanceOf(StreamException.class)
+        .hasMessageContaining("Connection closed");
+    assertThatThrownBy(() -> queryOffsetResponse.get(1, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .hasCauseInstanceOf(StreamException.class)
+        .hasMessageContaining("Connection closed");
+  }
+
+  @Test
+  void commitOffsetsShouldFailIfConnectionIsClosed() throws Exception {
+    Client client = new Client(broker.clientParameters());
+    client.create("stream");
+    client
+        .commitOffsets(Collections.singletonList(new Client.OffsetCommit("app", "stream", 10)))
+        .get(5, TimeUnit.SECONDS);
+    client.close();
+
+    CompletableFuture<Void> write =
+        client.commitOffsets(
+            Collections.singletonList(new Client.OffsetCommit("app", "stream", 20)));
+    assertThatThrownBy(() -> write.get(5, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .hasCauseInstanceOf(StreamException.class);
+  }
+
+  @Test
+  void offsetTrackingAndMetadata() throws Exception {
+    String stream = "stream";
+    Map<String, Short> metadataUpdates = new ConcurrentHashMap<>();
+    Client client =
+        new Client(
+            broker.clientParameters().metadataListener((s, code) -> metadataUpdates.put(s, code)));
+    client.create(stream);
+
+    Map<String, Client.StreamMetadata> metadata = client.metadata(stream, "does-not-exist");
+    assertThat(metadata.get(stream).isResponseOk()).isTrue();
+    assertThat(metadata.get(stream).getLeader().getPort()).isEqualTo(broker.port());
+    assertThat(metadata.get("does-not-exist").getResponseCode())
+        .isEqualTo(Constants.RESPONSE_CODE_STREAM_DOES_NOT_EXIST);
+
+    client.commitOffset("app", stream, 42);
+    client.commitOffsets(
+        Collections.singletonList(new Client.OffsetCommit("other-app", stream, 10)));
+    waitAtMost(5, () -> client.queryOffset("app", stream) == 42);
+    waitAtMost(5, () -> client.queryOffset("other-app", stream) == 10);
+
+    assertThat(client.subscribe((byte) 1, stream, OffsetSpecification.next(), 1).isOk()).isTrue();
+    assertThat(client.delete(stream).isOk()).isTrue();
+    waitAtMost(5, () -> metadataUpdates.containsKey(stream));
+    assertThat(metadataUpdates.get(stream))
+        .isEqualTo(Constants.RESPONSE_CODE_STREAM_NOT_AVAILABLE);
+    assertThat(client.delete(stream).getResponseCode())
+        .isEqualTo(Constants.RESPONSE_CODE_STREAM_DOES_NOT_EXIST);
+    client.close();
+  }
+
+  @Test
+  void environmentShouldPublishAndConsume() throws Exception {
+    broker.confirmLatency(Duration.ofMillis(1));
+    String stream = "stream";
+    int messageCount = 10_000;
+    try (Environment environment = Environment.builder().uri(broker.uri()).build()) {
+      environment.streamCreator().stream(stream).create();
+      Producer producer = environment.producerBuilder().stream(stream).build();
+      CountDownLatch confirmLatch = new CountDownLatch(messageCount);
+      IntStream.range(0, messageCount)
+          .forEach(
+              i ->
+                  producer.send(
+                      producer.messageBuilder().addData(new byte[10]).build(),
+                      confirmationStatus -> confirmLatch.countDown()));
+      assertThat(latchAssert(confirmLatch)).completes();
+
+      AtomicLong received = new AtomicLong(0);
+      Consumer consumer =
+          environment.consumerBuilder().stream(stream)
+              .offset(OffsetSpecification.first())
+              .messageHandler((context, message) -> received.incrementAndGet())
+              .build();
+      waitAtMost(10, () -> received.get() == messageCount);
+      consumer.close();
+      producer.close();
+    }
+  }
+
+  @Test
+  void producerShouldResumeWhenConnectionBecomesWritableAgain() throws Exception {
+    String stream = "stream";
+    int messageCount = 10_000;
+    // tiny water marks, the connection becomes unwritable after almost each frame
+    try (Environment environment =
+        Environment.builder().uri(broker.uri()).writeBufferWaterMark(1, 2).build()) {
+      environment.streamCreator().stream(stream).create();
+      Producer producer = environment.producerBuilder().stream(stream).build();
+      CountDownLatch confirmLatch = new CountDownLatch(messageCount);
+      AtomicLong confirmed = new AtomicLong(0);
+      IntStream.range(0, messageCount)
+          .forEach(
+              i ->
+                  producer.send(
+                      producer.messageBuilder().addData(new byte[100]).build(),
+                      confirmationStatus -> {
+                        if (confirmationStatus.isConfirmed()) {
+                          confirmed.incrementAndGet();
+                        }
+                        confirmLatch.countDown();
+                      }));
+      assertThat(latchAssert(confirmLatch)).completes();
+      assertThat(confirmed).hasValue(messageCount);
+      assertThat(broker.recordCount(stream)).isEqualTo(messageCount);
+      producer.close();
+    }
+  }
+}
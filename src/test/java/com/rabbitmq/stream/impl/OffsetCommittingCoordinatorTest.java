@@ -16,15 +16,25 @@ package com.rabbitmq.stream.impl;
 
 import static com.rabbitmq.stream.impl.TestUtils.answer;
 import static com.rabbitmq.stream.impl.TestUtils.latchAssert;
+import static com.rabbitmq.stream.impl.TestUtils.waitAtMost;
+import static java.util.concurrent.CompletableFuture.completedFuture;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.Mockito.*;
 
 import com.rabbitmq.stream.MessageHandler.Context;
+import com.rabbitmq.stream.StreamException;
+import com.rabbitmq.stream.impl.Client.OffsetCommit;
 import com.rabbitmq.stream.impl.StreamConsumerBuilder.CommitConfiguration;
+import com.rabbitmq.stream.metrics.MetricsCollector;
+import io.netty.util.HashedWheelTimer;
 import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.LongConsumer;
@@ -44,6 +54,8 @@ public class OffsetCommittingCoordinatorTest {
 
   ScheduledExecutorService executorService;
 
+  HashedWheelTimer timer;
+
   AutoCloseable mocks;
 
   OffsetCommittingCoordinator coordinator;
@@ -53,7 +65,10 @@ public class OffsetCommittingCoordinatorTest {
     mocks = MockitoAnnotations.openMocks(this);
     executorService = Executors.newScheduledThreadPool(2);
     when(env.scheduledExecutorService()).thenReturn(executorService);
+    timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS);
+    when(env.timer()).thenReturn(timer);
     when(consumer.isOpen()).thenReturn(true);
+    when(client.commitOffsets(anyCollection())).thenReturn(completedFuture(null));
   }
 
   @AfterEach
@@ -64,6 +79,9 @@ public class OffsetCommittingCoordinatorTest {
     if (executorService != null) {
       executorService.shutdownNow();
     }
+    if (timer != null) {
+      timer.stop();
+    }
     mocks.close();
   }
 
@@ -293,6 +311,179 @@ public class OffsetCommittingCoordinatorTest {
     verify(consumer, times(1)).commit(anyLong());
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  void commitsShouldBeCoalescedByConnection() {
+    MetricsCollector metricsCollector = mock(MetricsCollector.class);
+    coordinator = new OffsetCommittingCoordinator(env, Duration.ofHours(1), metricsCollector);
+    Client otherClient = mock(Client.class);
+    StreamConsumer otherConsumer = mock(StreamConsumer.class);
+    when(consumer.commitClient()).thenReturn(client);
+    when(otherConsumer.commitClient()).thenReturn(otherClient);
+    when(otherClient.commitOffsets(anyCollection())).thenReturn(completedFuture(null));
+
+    coordinator.commit(consumer, "app", "s1", 10);
+    coordinator.commit(consumer, "app", "s1", 20);
+    coordinator.commit(consumer, "app", "s2", 5);
+    coordinator.commit(consumer, "other-app", "s1", 15);
+    coordinator.commit(otherConsumer, "app", "s3", 30);
+
+    verify(client, never()).commitOffsets(anyCollection());
+    coordinator.flushCommits();
+
+    ArgumentCaptor<Collection<OffsetCommit>> commitsCaptor =
+        ArgumentCaptor.forClass(Collection.class);
+    verify(client, times(1)).commitOffsets(commitsCaptor.capture());
+    assertThat(commitsCaptor.getValue())
+        .extracting(OffsetCommit::getReference, OffsetCommit::getStream, OffsetCommit::getOffset)
+        .containsExactlyInAnyOrder(
+            tuple("app", "s1", 20L), tuple("app", "s2", 5L), tuple("other-app", "s1", 15L));
+    verify(otherClient, times(1)).commitOffsets(commitsCaptor.capture());
+    assertThat(commitsCaptor.getValue()).hasSize(1);
+
+    verify(metricsCollector, times(5)).offsetCommitRequest(1);
+    verify(metricsCollector, times(1)).offsetCommit(3);
+    verify(metricsCollector, times(1)).offsetCommit(1);
+
+    coordinator.flushCommits();
+    verify(client, times(1)).commitOffsets(anyCollection());
+  }
+
+  @Test
+  void commitsShouldBeFlushedPeriodically() throws Exception {
+    coordinator = new OffsetCommittingCoordinator(env, Duration.ofMillis(50));
+    CountDownLatch commitLatch = new CountDownLatch(2);
+    when(client.commitOffsets(anyCollection()))
+        .thenAnswer(
+            inv -> {
+              commitLatch.countDown();
+              return completedFuture(null);
+            });
+    when(consumer.commitClient()).thenReturn(client);
+
+    coordinator.commit(consumer, "app", "s1", 10);
+    waitAtMost(5, () -> commitLatch.getCount() == 1);
+    coordinator.commit(consumer, "app", "s1", 20);
+
+    assertThat(latchAssert(commitLatch)).completes(5);
+  }
+
+  @Test
+  void failedFlushShouldNotPreventNextOnes() {
+    coordinator = new OffsetCommittingCoordinator(env, Duration.ofHours(1));
+    when(client.commitOffsets(anyCollection()))
+        .thenThrow(new IllegalStateException())
+        .thenReturn(completedFuture(null));
+    when(consumer.commitClient()).thenReturn(client);
+
+    coordinator.commit(consumer, "app", "s1", 10);
+    coordinator.flushCommits();
+    coordinator.commit(consumer, "app", "s1", 20);
+    coordinator.flushCommits();
+
+    verify(client, times(2)).commitOffsets(anyCollection());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void failedCommitsShouldBeRetriedOnNextFlush() {
+    MetricsCollector metricsCollector = mock(MetricsCollector.class);
+    coordinator = new OffsetCommittingCoordinator(env, Duration.ofHours(1), metricsCollector);
+    // the write fails asynchronously, e.g. because the connection is closed
+    when(client.commitOffsets(anyCollection()))
+        .thenReturn(failedWrite())
+        .thenReturn(completedFuture(null));
+    when(consumer.commitClient()).thenReturn(client);
+
+    coordinator.commit(consumer, "app", "s1", 10);
+    coordinator.flushCommits();
+    verify(metricsCollector, never()).offsetCommit(anyInt());
+    coordinator.flushCommits();
+    verify(metricsCollector, times(1)).offsetCommit(1);
+
+    ArgumentCaptor<Collection<OffsetCommit>> commitsCaptor =
+        ArgumentCaptor.forClass(Collection.class);
+    verify(client, times(2)).commitOffsets(commitsCaptor.capture());
+    assertThat(commitsCaptor.getValue())
+        .extracting(OffsetCommit::getReference, OffsetCommit::getStream, OffsetCommit::getOffset)
+        .containsExactly(tuple("app", "s1", 10L));
+
+    coordinator.flushCommits();
+    verify(client, times(2)).commitOffsets(anyCollection());
+  }
+
+  @Test
+  void failedCommitsOfClosedConsumerShouldNotBeRetried() {
+    coordinator = new OffsetCommittingCoordinator(env, Duration.ofHours(1));
+    when(client.commitOffsets(anyCollection())).thenReturn(failedWrite());
+    when(consumer.commitClient()).thenReturn(client);
+    when(consumer.isOpen()).thenReturn(false);
+
+    coordinator.commit(consumer, "app", "s1", 10);
+    coordinator.flushCommits();
+    coordinator.flushCommits();
+
+    verify(client, times(1)).commitOffsets(anyCollection());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void commitsShouldGoToTheCurrentClientOfTheConsumer() {
+    coordinator = new OffsetCommittingCoordinator(env, Duration.ofHours(1));
+    Client newClient = mock(Client.class);
+    when(newClient.commitOffsets(anyCollection())).thenReturn(completedFuture(null));
+    when(consumer.commitClient()).thenReturn(client);
+
+    coordinator.commit(consumer, "app", "s1", 10);
+    // connection lost, the consumer is being recovered
+    when(consumer.commitClient()).thenReturn(null);
+    coordinator.flushCommits();
+    verify(client, never()).commitOffsets(anyCollection());
+
+    when(consumer.commitClient()).thenReturn(newClient);
+    coordinator.flushCommits();
+
+    verify(client, never()).commitOffsets(anyCollection());
+    ArgumentCaptor<Collection<OffsetCommit>> commitsCaptor =
+        ArgumentCaptor.forClass(Collection.class);
+    verify(newClient, times(1)).commitOffsets(commitsCaptor.capture());
+    assertThat(commitsCaptor.getValue())
+        .extracting(OffsetCommit::getReference, OffsetCommit::getStream, OffsetCommit::getOffset)
+        .containsExactly(tuple("app", "s1", 10L));
+  }
+
+  @Test
+  void commitShouldNotFailWhenTimerIsStopped() {
+    coordinator = new OffsetCommittingCoordinator(env, Duration.ofMillis(50));
+    when(consumer.commitClient()).thenReturn(client);
+    timer.stop();
+
+    coordinator.commit(consumer, "app", "s1", 10);
+    coordinator.flushCommits();
+
+    verify(client, times(1)).commitOffsets(anyCollection());
+  }
+
+  @Test
+  void checkShouldBeSkippedWhenExecutorIsShutDown() throws Exception {
+    coordinator = new OffsetCommittingCoordinator(env, Duration.ofMillis(10));
+    when(consumer.commitClient()).thenReturn(client);
+    executorService.shutdownNow();
+
+    coordinator.commit(consumer, "app", "s1", 10);
+    Thread.sleep(100);
+
+    verify(client, never()).commitOffsets(anyCollection());
+    coordinator.flushCommits();
+    verify(client, times(1)).commitOffsets(anyCollection());
+  }
+
+  static CompletableFuture<Void> failedWrite() {
+    CompletableFuture<Void> write = new CompletableFuture<>();
+    write.completeExceptionally(new StreamException("Error while committing offsets"));
+    return write;
+  }
+
   Context context(long offset, Runnable action) {
     return new Context() {
       @Override
@@ -17,6 +17,7 @@ package com.rabbitmq.stream.impl;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import com.rabbitmq.stream.Message;
+import com.rabbitmq.stream.compression.Compression;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -95,7 +96,7 @@ public class OutboundMappingCallbackTest {
                                 .map(body -> client.messageBuilder().addData(body).build())
                                 .collect(Collectors.toList());
                         MessageBatch batch =
-                            new MessageBatch(MessageBatch.Compression.NONE, messages);
+                            new MessageBatch(Compression.NONE, messages);
                         batches.add(batch);
                       });
 
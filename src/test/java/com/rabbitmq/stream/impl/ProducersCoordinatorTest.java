@@ -218,7 +218,7 @@ public class ProducersCoordinatorTest {
     verify(committingConsumer, times(1)).unavailable();
     verify(committingConsumer, times(1)).setClient(client);
     verify(committingConsumer, never()).running();
-    verify(committingConsumer, never()).closeAfterStreamDeletion();
+    verify(committingConsumer, never()).closeAfterStreamDeletion(any());
     assertThat(coordinator.poolSize()).isEqualTo(0);
     assertThat(coordinator.clientCount()).isEqualTo(0);
   }
@@ -354,11 +354,25 @@ public class ProducersCoordinatorTest {
     verify(committingConsumer, times(1)).unavailable();
     verify(committingConsumer, times(1)).setClient(client);
     verify(committingConsumer, never()).running();
-    verify(committingConsumer, never()).closeAfterStreamDeletion();
+    verify(committingConsumer, never()).closeAfterStreamDeletion(any());
     assertThat(coordinator.poolSize()).isEqualTo(0);
     assertThat(coordinator.clientCount()).isEqualTo(0);
   }
 
+  @Test
+  void producersShouldSpreadAcrossConnectionsWhenMaxProducersByConnectionIsSet() {
+    when(locator.metadata("stream")).thenReturn(metadata(leader(), replicas()));
+    when(clientFactory.apply(any(Client.ClientParameters.class))).thenReturn(client);
+    coordinator = new ProducersCoordinator(environment, clientFactory, 10);
+
+    IntStream.range(0, 25)
+        .forEach(i -> coordinator.registerProducer(mock(StreamProducer.class), "stream"));
+
+    assertThat(coordinator.poolSize()).isEqualTo(1);
+    assertThat(coordinator.clientCount()).isEqualTo(3);
+    verify(clientFactory, times(3)).apply(any(Client.ClientParameters.class));
+  }
+
   @Test
   void growShrinkResourcesBasedOnProducersAndCommittingConsumersCount() {
     scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
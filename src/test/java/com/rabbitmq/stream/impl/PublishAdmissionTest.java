@@ -0,0 +1,122 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+public class PublishAdmissionTest {
+
+  @Test
+  void tryAcquireShouldRejectWhenMessageLimitIsReached() {
+    PublishAdmission admission = new PublishAdmission(2, 0);
+    assertThat(admission.tryAcquire(10)).isTrue();
+    assertThat(admission.tryAcquire(10)).isTrue();
+    assertThat(admission.tryAcquire(10)).isFalse();
+    assertThat(admission.hasCapacity()).isFalse();
+    admission.release(1, 10);
+    assertThat(admission.hasCapacity()).isTrue();
+    assertThat(admission.tryAcquire(10)).isTrue();
+  }
+
+  @Test
+  void tryAcquireShouldRejectWhenByteLimitIsReached() {
+    PublishAdmission admission = new PublishAdmission(100, 100);
+    assertThat(admission.tryAcquire(60)).isTrue();
+    assertThat(admission.tryAcquire(60)).isFalse();
+    assertThat(admission.tryAcquire(40)).isTrue();
+    assertThat(admission.hasCapacity()).isFalse();
+    admission.release(1, 60);
+    assertThat(admission.tryAcquire(50)).isTrue();
+  }
+
+  @Test
+  void messageLargerThanByteLimitShouldBeAdmittedWhenNothingIsInFlight() {
+    PublishAdmission admission = new PublishAdmission(100, 100);
+    assertThat(admission.tryAcquire(1000)).isTrue();
+    assertThat(admission.tryAcquire(1)).isFalse();
+    admission.release(1, 1000);
+    assertThat(admission.tryAcquire(1)).isTrue();
+    assertThat(admission.tryAcquire(1000)).isFalse();
+  }
+
+  @Test
+  void acquireShouldWaitForRelease() throws Exception {
+    PublishAdmission admission = new PublishAdmission(1, 0);
+    assertThat(admission.tryAcquire(1)).isTrue();
+    CountDownLatch waitingLatch = new CountDownLatch(1);
+    AtomicBoolean acquired = new AtomicBoolean(false);
+    Thread thread =
+        new Thread(
+            () -> {
+              waitingLatch.countDown();
+              try {
+                acquired.set(admission.acquire(1, 10, TimeUnit.SECONDS));
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            });
+    thread.start();
+    assertThat(waitingLatch.await(5, TimeUnit.SECONDS)).isTrue();
+    Thread.sleep(50);
+    assertThat(acquired).isFalse();
+    admission.release(1, 1);
+    thread.join(5_000);
+    assertThat(acquired).isTrue();
+  }
+
+  @Test
+  void acquireShouldTimeOut() throws Exception {
+    PublishAdmission admission = new PublishAdmission(1, 0);
+    assertThat(admission.tryAcquire(1)).isTrue();
+    assertThat(admission.acquire(1, 50, TimeUnit.MILLISECONDS)).isFalse();
+  }
+
+  @Test
+  void whenAvailableShouldCompleteOnRelease() {
+    PublishAdmission admission = new PublishAdmission(1, 0);
+    assertThat(admission.whenAvailable()).isCompleted();
+    assertThat(admission.tryAcquire(1)).isTrue();
+    CompletableFuture<Void> availability = admission.whenAvailable();
+    assertThat(availability).isNotDone();
+    assertThat(admission.whenAvailable()).isSameAs(availability);
+    admission.release(1, 1);
+    assertThat(availability).isCompleted();
+  }
+
+  @Test
+  void resetShouldReleaseEverything() {
+    PublishAdmission admission = new PublishAdmission(1, 10);
+    assertThat(admission.tryAcquire(10)).isTrue();
+    CompletableFuture<Void> availability = admission.whenAvailable();
+    admission.reset();
+    assertThat(availability).isCompleted();
+    assertThat(admission.tryAcquire(10)).isTrue();
+  }
+
+  @Test
+  void limitsShouldBeValid() {
+    assertThatThrownBy(() -> new PublishAdmission(0, 0))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new PublishAdmission(1, -1))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -75,6 +75,8 @@ public class StreamEnvironmentUnitTest {
             Collections.emptyList(),
             recoveryBackOffDelayPolicy,
             topologyUpdateBackOffDelayPolicy,
+            ProducersCoordinator.MAX_PRODUCERS_PER_CLIENT,
+            ConsumersCoordinator.MAX_SUBSCRIPTIONS_PER_CLIENT,
             cf);
   }
 
@@ -128,6 +130,8 @@ public class StreamEnvironmentUnitTest {
             Arrays.asList(uri, uri, uri),
             recoveryBackOffDelayPolicy,
             topologyUpdateBackOffDelayPolicy,
+            ProducersCoordinator.MAX_PRODUCERS_PER_CLIENT,
+            ConsumersCoordinator.MAX_SUBSCRIPTIONS_PER_CLIENT,
             cf);
     verify(cf, times(3)).apply(any(Client.ClientParameters.class));
   }
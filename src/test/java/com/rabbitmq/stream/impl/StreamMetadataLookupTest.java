@@ -0,0 +1,175 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.rabbitmq.stream.Constants;
+import com.rabbitmq.stream.StreamException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class StreamMetadataLookupTest {
+
+  @Mock Client locator;
+  ScheduledExecutorService scheduler;
+  AutoCloseable mocks;
+
+  static Client.StreamMetadata metadata(String stream, short code, Client.Broker leader) {
+    return new Client.StreamMetadata(stream, code, leader, Collections.emptyList());
+  }
+
+  static Map<String, Client.StreamMetadata> metadata(String... streams) {
+    Map<String, Client.StreamMetadata> metadata = new HashMap<>();
+    for (String stream : streams) {
+      metadata.put(
+          stream, metadata(stream, Constants.RESPONSE_CODE_OK, new Client.Broker("leader", 5555)));
+    }
+    return metadata;
+  }
+
+  @BeforeEach
+  void init() {
+    mocks = MockitoAnnotations.openMocks(this);
+    scheduler = Executors.newSingleThreadScheduledExecutor();
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    scheduler.shutdownNow();
+    mocks.close();
+  }
+
+  StreamMetadataLookup lookup() {
+    return new StreamMetadataLookup(
+        () -> locator, scheduler, Duration.ofMillis(50), Duration.ofSeconds(10));
+  }
+
+  @Test
+  void lookupsInTheSameTickShouldGoInTheSameRequest() throws Exception {
+    List<String> streams =
+        IntStream.range(0, 100).mapToObj(i -> "stream" + i).collect(Collectors.toList());
+    ArgumentCaptor<String> streamsCaptor = ArgumentCaptor.forClass(String.class);
+    when(locator.metadataAsync(streamsCaptor.capture()))
+        .thenReturn(CompletableFuture.completedFuture(metadata(streams.toArray(new String[0]))));
+    StreamMetadataLookup metadataLookup = lookup();
+    List<CompletableFuture<Client.StreamMetadata>> lookups =
+        streams.stream().map(metadataLookup::lookup).collect(Collectors.toList());
+    for (int i = 0; i < streams.size(); i++) {
+      assertThat(lookups.get(i).get(1, TimeUnit.SECONDS).getStream()).isEqualTo(streams.get(i));
+    }
+    verify(locator, times(1)).metadataAsync(any());
+    assertThat(streamsCaptor.getAllValues()).hasSameElementsAs(streams);
+  }
+
+  @Test
+  void usableMetadataShouldBeCachedUntilInvalidated() {
+    when(locator.metadataAsync(any()))
+        .thenReturn(CompletableFuture.completedFuture(metadata("stream")));
+    StreamMetadataLookup metadataLookup = lookup();
+    assertThat(metadataLookup.metadata("stream").getLeader().getHost()).isEqualTo("leader");
+    assertThat(metadataLookup.metadata("stream").getLeader().getHost()).isEqualTo("leader");
+    verify(locator, times(1)).metadataAsync(any());
+    metadataLookup.invalidate("stream");
+    metadataLookup.metadata("stream");
+    verify(locator, times(2)).metadataAsync(any());
+  }
+
+  @Test
+  void metadataWithNoLeaderShouldNotBeCached() {
+    when(locator.metadataAsync(any()))
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                Collections.singletonMap(
+                    "stream", metadata("stream", Constants.RESPONSE_CODE_OK, null))));
+    StreamMetadataLookup metadataLookup = lookup();
+    assertThat(metadataLookup.metadata("stream").getLeader()).isNull();
+    assertThat(metadataLookup.metadata("stream").getLeader()).isNull();
+    verify(locator, times(2)).metadataAsync(any());
+  }
+
+  @Test
+  void failedRequestShouldFailAllLookups() {
+    CompletableFuture<Map<String, Client.StreamMetadata>> response = new CompletableFuture<>();
+    response.completeExceptionally(new StreamException("connection closed"));
+    when(locator.metadataAsync(any())).thenReturn(response);
+    StreamMetadataLookup metadataLookup = lookup();
+    List<CompletableFuture<Client.StreamMetadata>> lookups =
+        Arrays.asList(metadataLookup.lookup("stream1"), metadataLookup.lookup("stream2"));
+    lookups.forEach(
+        lookup ->
+            assertThatThrownBy(() -> lookup.get(1, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(StreamException.class));
+    assertThatThrownBy(() -> metadataLookup.metadata("stream1"))
+        .isInstanceOf(StreamException.class);
+  }
+
+  @Test
+  void lookupsShouldNotCompleteOnTheThreadOfTheResponse() throws Exception {
+    CompletableFuture<Map<String, Client.StreamMetadata>> response = new CompletableFuture<>();
+    when(locator.metadataAsync(any())).thenReturn(response);
+    StreamMetadataLookup metadataLookup = lookup();
+    CountDownLatch callbackLatch = new CountDownLatch(1);
+    CompletableFuture<Thread> callbackThread =
+        metadataLookup
+            .lookup("stream")
+            .thenApply(
+                metadata -> {
+                  try {
+                    // e.g. recovery opening a new connection
+                    callbackLatch.await(10, TimeUnit.SECONDS);
+                  } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                  }
+                  return Thread.currentThread();
+                });
+    verify(locator, timeout(1000).times(1)).metadataAsync(any());
+
+    // completes on the test thread, like the response would on the connection thread
+    response.complete(metadata("stream"));
+    callbackLatch.countDown();
+    assertThat(callbackThread.get(1, TimeUnit.SECONDS)).isNotSameAs(Thread.currentThread());
+  }
+
+  @Test
+  void noTickShouldLookUpRightAway() {
+    when(locator.metadata("stream")).thenReturn(metadata("stream"));
+    StreamMetadataLookup metadataLookup = new StreamMetadataLookup(() -> locator);
+    assertThat(metadataLookup.metadata("stream").getLeader().getHost()).isEqualTo("leader");
+    assertThat(metadataLookup.metadata("stream").getLeader().getHost()).isEqualTo("leader");
+    verify(locator, times(2)).metadata("stream");
+    verify(locator, never()).metadataAsync(any());
+  }
+}
@@ -18,6 +18,7 @@ import static com.rabbitmq.stream.impl.TestUtils.waitAtMost;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import com.rabbitmq.stream.*;
+import com.rabbitmq.stream.compression.Compression;
 import io.netty.channel.EventLoopGroup;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
@@ -33,6 +34,8 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 
 @ExtendWith(TestUtils.StreamTestInfrastructureExtension.class)
 public class StreamProducerTest {
@@ -103,6 +106,44 @@ public class StreamProducerTest {
     assertThat(completed).isTrue();
   }
 
+  @ParameterizedTest
+  @EnumSource(Compression.class)
+  void sendWithCompressedSubEntriesShouldBeConsumed(Compression compression) throws Exception {
+    int messageCount = 1_000 * 10 + 1; // don't want a multiple of the sub-entry size
+    CountDownLatch publishLatch = new CountDownLatch(messageCount);
+    Producer producer =
+        environment.producerBuilder().stream(stream)
+            .subEntrySize(10)
+            .compression(compression)
+            .build();
+    IntStream.range(0, messageCount)
+        .forEach(
+            i ->
+                producer.send(
+                    producer
+                        .messageBuilder()
+                        .addData(String.valueOf(i).getBytes(StandardCharsets.UTF_8))
+                        .build(),
+                    confirmationStatus -> publishLatch.countDown()));
+    assertThat(publishLatch.await(10, TimeUnit.SECONDS)).isTrue();
+
+    CountDownLatch consumeLatch = new CountDownLatch(messageCount);
+    AtomicLong expected = new AtomicLong(0);
+    AtomicBoolean inOrder = new AtomicBoolean(true);
+    environment.consumerBuilder().stream(stream)
+        .messageHandler(
+            (offset, message) -> {
+              String body = new String(message.getBodyAsBinary(), StandardCharsets.UTF_8);
+              if (!body.equals(String.valueOf(expected.getAndIncrement()))) {
+                inOrder.set(false);
+              }
+              consumeLatch.countDown();
+            })
+        .build();
+    assertThat(consumeLatch.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(inOrder).isTrue();
+  }
+
   @Test
   void sendToNonExistingStreamShouldReturnUnconfirmedStatus() throws Exception {
     Client client = cf.get();
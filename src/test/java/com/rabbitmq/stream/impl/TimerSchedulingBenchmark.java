@@ -0,0 +1,115 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.impl;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Scheduling overhead of producer flushes: each operation schedules the flush of a producer and
+ * cancels the oldest pending one, keeping the number of pending flushes equal to the number of
+ * producers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(1)
+public class TimerSchedulingBenchmark {
+
+  static final Runnable TASK = () -> {};
+  static final TimerTask TIMER_TASK = timeout -> {};
+  // the tasks must not run during the benchmark
+  static final long DELAY_IN_MS = TimeUnit.HOURS.toMillis(1);
+
+  @Param({"10000"})
+  int producers;
+
+  ScheduledThreadPoolExecutor executor;
+
+  HashedWheelTimer timer;
+
+  ScheduledFuture<?>[] futures;
+
+  Timeout[] timeouts;
+
+  int index;
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt =
+        new OptionsBuilder()
+            .include(TimerSchedulingBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+    new Runner(opt).run();
+  }
+
+  @Setup
+  public void setUp() {
+    executor = new ScheduledThreadPoolExecutor(Runtime.getRuntime().availableProcessors());
+    executor.setRemoveOnCancelPolicy(true);
+    timer =
+        new HashedWheelTimer(
+            StreamEnvironment.TIMER_TICK_IN_MS,
+            TimeUnit.MILLISECONDS,
+            StreamEnvironment.TIMER_TICKS_PER_WHEEL);
+    futures = new ScheduledFuture<?>[producers];
+    timeouts = new Timeout[producers];
+    for (int i = 0; i < producers; i++) {
+      futures[i] = executor.schedule(TASK, DELAY_IN_MS, TimeUnit.MILLISECONDS);
+      timeouts[i] = timer.newTimeout(TIMER_TASK, DELAY_IN_MS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    executor.shutdownNow();
+    timer.stop();
+  }
+
+  int next() {
+    int i = index;
+    index = i + 1 == producers ? 0 : i + 1;
+    return i;
+  }
+
+  @Benchmark
+  public Object scheduledExecutorService() {
+    int i = next();
+    futures[i].cancel(false);
+    futures[i] = executor.schedule(TASK, DELAY_IN_MS, TimeUnit.MILLISECONDS);
+    return futures[i];
+  }
+
+  @Benchmark
+  public Object hashedWheelTimer() {
+    int i = next();
+    timeouts[i].cancel();
+    timeouts[i] = timer.newTimeout(TIMER_TASK, DELAY_IN_MS, TimeUnit.MILLISECONDS);
+    return timeouts[i];
+  }
+}
@@ -0,0 +1,76 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.junit.jupiter.api.Test;
+
+public class TransportsTest {
+
+  @Test
+  void socketChannelClassShouldMatchNioEventLoopGroup() throws Exception {
+    EventLoopGroup eventLoopGroup = new NioEventLoopGroup(1);
+    try {
+      assertThat(Transports.socketChannelClass(eventLoopGroup)).isEqualTo(NioSocketChannel.class);
+    } finally {
+      eventLoopGroup.shutdownGracefully().sync();
+    }
+  }
+
+  @Test
+  void socketChannelClassShouldMatchEpollEventLoopGroup() throws Exception {
+    assumeTrue(Epoll.isAvailable());
+    EventLoopGroup eventLoopGroup = new EpollEventLoopGroup(1);
+    try {
+      assertThat(Transports.socketChannelClass(eventLoopGroup))
+          .isEqualTo(EpollSocketChannel.class);
+    } finally {
+      eventLoopGroup.shutdownGracefully().sync();
+    }
+  }
+
+  @Test
+  void defaultEventLoopGroupShouldBeEpollWhenAvailable() throws Exception {
+    EventLoopGroup eventLoopGroup = Transports.eventLoopGroup();
+    try {
+      if (Epoll.isAvailable()) {
+        assertThat(eventLoopGroup).isInstanceOf(EpollEventLoopGroup.class);
+      } else {
+        assertThat(eventLoopGroup).isInstanceOf(NioEventLoopGroup.class);
+      }
+    } finally {
+      eventLoopGroup.shutdownGracefully().sync();
+    }
+  }
+
+  @Test
+  void socketChannelClassShouldFallBackToNioForUnknownEventLoopGroup() throws Exception {
+    EventLoopGroup eventLoopGroup = new DefaultEventLoopGroup(1);
+    try {
+      assertThat(Transports.socketChannelClass(eventLoopGroup)).isEqualTo(NioSocketChannel.class);
+    } finally {
+      eventLoopGroup.shutdownGracefully().sync();
+    }
+  }
+}
@@ -0,0 +1,83 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Tracking of unconfirmed publishing IDs: each operation registers a new publishing ID and
+ * confirms the oldest one, keeping the number of outstanding confirms constant.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(1)
+public class UnconfirmedMessagesBenchmark {
+
+  static final StreamProducer.ConfirmationCallback CALLBACK = (confirmed, code) -> 1;
+
+  @Param({"10000", "100000"})
+  int outstanding;
+
+  ConcurrentMap<Long, StreamProducer.ConfirmationCallback> concurrentHashMap;
+
+  UnconfirmedMessages unconfirmedMessages;
+
+  long sequence;
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt =
+        new OptionsBuilder()
+            .include(UnconfirmedMessagesBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+    new Runner(opt).run();
+  }
+
+  @Setup
+  public void setUp() {
+    concurrentHashMap = new ConcurrentHashMap<>(outstanding, 0.75f, 2);
+    unconfirmedMessages = new UnconfirmedMessages(outstanding);
+    for (sequence = 0; sequence < outstanding; sequence++) {
+      concurrentHashMap.put(sequence, CALLBACK);
+      unconfirmedMessages.put(sequence, CALLBACK);
+    }
+  }
+
+  @Benchmark
+  public Object concurrentHashMap() {
+    long publishingId = sequence++;
+    concurrentHashMap.put(publishingId, CALLBACK);
+    return concurrentHashMap.remove(publishingId - outstanding);
+  }
+
+  @Benchmark
+  public Object unconfirmedMessages() {
+    long publishingId = sequence++;
+    unconfirmedMessages.put(publishingId, CALLBACK);
+    return unconfirmedMessages.remove(publishingId - outstanding);
+  }
+}
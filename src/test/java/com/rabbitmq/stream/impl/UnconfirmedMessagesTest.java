@@ -0,0 +1,72 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+public class UnconfirmedMessagesTest {
+
+  static StreamProducer.ConfirmationCallback callback() {
+    return (confirmed, code) -> 1;
+  }
+
+  @Test
+  void putRemoveInSequence() {
+    UnconfirmedMessages unconfirmedMessages = new UnconfirmedMessages(10);
+    for (long publishingId = 0; publishingId < 1000; publishingId++) {
+      StreamProducer.ConfirmationCallback callback = callback();
+      unconfirmedMessages.put(publishingId, callback);
+      assertThat(unconfirmedMessages.size()).isEqualTo(1);
+      assertThat(unconfirmedMessages.remove(publishingId)).isSameAs(callback);
+      assertThat(unconfirmedMessages.remove(publishingId)).isNull();
+      assertThat(unconfirmedMessages.size()).isZero();
+    }
+  }
+
+  @Test
+  void collidingPublishingIdsShouldGoToOverflow() {
+    UnconfirmedMessages unconfirmedMessages = new UnconfirmedMessages(10);
+    // 16 slots, all these publishing IDs use the same slot
+    StreamProducer.ConfirmationCallback callback0 = callback();
+    StreamProducer.ConfirmationCallback callback16 = callback();
+    StreamProducer.ConfirmationCallback callback32 = callback();
+    unconfirmedMessages.put(0, callback0);
+    unconfirmedMessages.put(16, callback16);
+    unconfirmedMessages.put(32, callback32);
+    assertThat(unconfirmedMessages.size()).isEqualTo(3);
+    assertThat(unconfirmedMessages.remove(48)).isNull();
+    assertThat(unconfirmedMessages.remove(16)).isSameAs(callback16);
+    assertThat(unconfirmedMessages.remove(0)).isSameAs(callback0);
+    assertThat(unconfirmedMessages.remove(32)).isSameAs(callback32);
+    assertThat(unconfirmedMessages.size()).isZero();
+  }
+
+  @Test
+  void clearShouldReturnAllCallbacksAndEmptyStructure() {
+    UnconfirmedMessages unconfirmedMessages = new UnconfirmedMessages(10);
+    for (long publishingId = 0; publishingId < 20; publishingId++) {
+      unconfirmedMessages.put(publishingId * 3, callback());
+    }
+    assertThat(unconfirmedMessages.size()).isEqualTo(20);
+    assertThat(unconfirmedMessages.clear()).hasSize(20);
+    assertThat(unconfirmedMessages.size()).isZero();
+    assertThat(unconfirmedMessages.clear()).isEmpty();
+    for (long publishingId = 0; publishingId < 20; publishingId++) {
+      assertThat(unconfirmedMessages.remove(publishingId * 3)).isNull();
+    }
+  }
+}
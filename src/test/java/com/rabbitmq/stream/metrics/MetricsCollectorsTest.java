@@ -18,6 +18,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import com.codahale.metrics.MetricRegistry;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Test;
 
 public class MetricsCollectorsTest {
@@ -43,6 +44,23 @@ public class MetricsCollectorsTest {
     collector.chunk(100);
     assertThat(registry.get("rabbitmq.stream.chunk").counter().count()).isEqualTo(1);
     assertThat(registry.get("rabbitmq.stream.chunk_size").summary().totalAmount()).isEqualTo(100.0);
+
+    collector.offsetCommitRequest(10);
+    assertThat(registry.get("rabbitmq.stream.offset_commit_requested").counter().count())
+        .isEqualTo(10.0);
+    collector.offsetCommit(2);
+    assertThat(registry.get("rabbitmq.stream.offset_committed").counter().count()).isEqualTo(2.0);
+
+    collector.deliveryQueued(100);
+    collector.deliveryQueued(50);
+    collector.deliveryDispatched(100);
+    assertThat(registry.get("rabbitmq.stream.delivery_queue_chunks").gauge().value()).isEqualTo(1);
+    assertThat(registry.get("rabbitmq.stream.delivery_queue_bytes").gauge().value())
+        .isEqualTo(50);
+    collector.readPaused(TimeUnit.MILLISECONDS.toNanos(10));
+    assertThat(registry.get("rabbitmq.stream.read_paused").timer().count()).isEqualTo(1);
+    assertThat(registry.get("rabbitmq.stream.read_paused").timer().totalTime(TimeUnit.MILLISECONDS))
+        .isEqualTo(10.0);
   }
 
   @Test
@@ -67,5 +85,18 @@ public class MetricsCollectorsTest {
     assertThat(registry.meter("rabbitmq.stream.chunk").getCount()).isEqualTo(1);
     assertThat(registry.histogram("rabbitmq.stream.chunk_size").getSnapshot().getMax())
         .isEqualTo(100);
+
+    collector.offsetCommitRequest(10);
+    assertThat(registry.meter("rabbitmq.stream.offset_commit_requested").getCount()).isEqualTo(10);
+    collector.offsetCommit(2);
+    assertThat(registry.meter("rabbitmq.stream.offset_committed").getCount()).isEqualTo(2);
+
+    collector.deliveryQueued(100);
+    collector.deliveryQueued(50);
+    collector.deliveryDispatched(100);
+    assertThat(registry.counter("rabbitmq.stream.delivery_queue_chunks").getCount()).isEqualTo(1);
+    assertThat(registry.counter("rabbitmq.stream.delivery_queue_bytes").getCount()).isEqualTo(50);
+    collector.readPaused(TimeUnit.MILLISECONDS.toNanos(10));
+    assertThat(registry.timer("rabbitmq.stream.read_paused").getCount()).isEqualTo(1);
   }
 }
@@ -0,0 +1,215 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.rabbitmq.stream.Consumer;
+import com.rabbitmq.stream.ConsumerBuilder;
+import com.rabbitmq.stream.ConsumerClosedHandler;
+import com.rabbitmq.stream.CreditStrategy;
+import com.rabbitmq.stream.Message;
+import com.rabbitmq.stream.MessageHandler;
+import com.rabbitmq.stream.StreamDoesNotExistException;
+import com.rabbitmq.stream.codec.WrapperMessageBuilder;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+public class ConsumerPublisherTest {
+
+  ConsumerBuilder consumerBuilder;
+  Consumer consumer;
+  ArgumentCaptor<MessageHandler> messageHandlerCaptor;
+  ArgumentCaptor<CreditStrategy> creditStrategyCaptor;
+  ArgumentCaptor<ConsumerClosedHandler> closedHandlerCaptor;
+  AtomicInteger credits;
+  RecordingSubscriber subscriber;
+
+  static Message message() {
+    return new WrapperMessageBuilder().build();
+  }
+
+  @BeforeEach
+  void init() {
+    consumerBuilder = mock(ConsumerBuilder.class, RETURNS_SELF);
+    consumer = mock(Consumer.class);
+    when(consumerBuilder.build()).thenReturn(consumer);
+    messageHandlerCaptor = ArgumentCaptor.forClass(MessageHandler.class);
+    creditStrategyCaptor = ArgumentCaptor.forClass(CreditStrategy.class);
+    closedHandlerCaptor = ArgumentCaptor.forClass(ConsumerClosedHandler.class);
+    credits = new AtomicInteger(0);
+    subscriber = new RecordingSubscriber();
+  }
+
+  CreditStrategy.Controller subscribe() {
+    new ConsumerPublisher(consumerBuilder).subscribe(subscriber);
+    verify(consumerBuilder).messageHandler(messageHandlerCaptor.capture());
+    verify(consumerBuilder).creditStrategy(creditStrategyCaptor.capture());
+    verify(consumerBuilder).closedHandler(closedHandlerCaptor.capture());
+    assertThat(creditStrategyCaptor.getValue().initialCredits()).isEqualTo(1);
+    return creditStrategyCaptor.getValue().controller(c -> credits.addAndGet(c));
+  }
+
+  void chunk(CreditStrategy.Controller controller, int messageCount) {
+    controller.chunkReceived(messageCount);
+    for (int i = 0; i < messageCount; i++) {
+      messageHandlerCaptor.getValue().handle(null, message());
+    }
+    controller.chunkProcessed(messageCount, 0);
+  }
+
+  @Test
+  void messagesShouldBeEmittedOnlyWhenRequested() {
+    CreditStrategy.Controller controller = subscribe();
+    chunk(controller, 3);
+    assertThat(subscriber.messages).isEmpty();
+    assertThat(credits).hasValue(0);
+
+    subscriber.subscription.request(2);
+    assertThat(subscriber.messages).hasSize(2);
+    assertThat(credits).as("messages still buffered").hasValue(0);
+
+    subscriber.subscription.request(2);
+    assertThat(subscriber.messages).hasSize(3);
+    assertThat(credits).as("buffer empty and demand left").hasValue(1);
+
+    chunk(controller, 1);
+    assertThat(subscriber.messages).hasSize(4);
+    assertThat(credits).as("no demand left").hasValue(1);
+  }
+
+  @Test
+  void creditShouldBeGrantedOnlyOnceChunkIsProcessed() {
+    CreditStrategy.Controller controller = subscribe();
+    subscriber.subscription.request(10);
+    assertThat(credits).as("initial credit outstanding").hasValue(0);
+    chunk(controller, 2);
+    assertThat(subscriber.messages).hasSize(2);
+    assertThat(credits).hasValue(1);
+    subscriber.subscription.request(10);
+    assertThat(credits).as("credit outstanding").hasValue(1);
+  }
+
+  @Test
+  void cancelShouldCloseConsumer() throws Exception {
+    CreditStrategy.Controller controller = subscribe();
+    subscriber.subscription.cancel();
+    verify(consumer).close();
+    subscriber.subscription.request(10);
+    chunk(controller, 2);
+    assertThat(subscriber.messages).isEmpty();
+    assertThat(credits).hasValue(0);
+  }
+
+  @Test
+  void nonPositiveRequestShouldSignalError() throws Exception {
+    subscribe();
+    subscriber.subscription.request(0);
+    assertThat(subscriber.error).isInstanceOf(IllegalArgumentException.class);
+    verify(consumer).close();
+  }
+
+  @Test
+  void nonPositiveRequestFromOnNextShouldSignalErrorAfterOnNextReturns() throws Exception {
+    subscriber =
+        new RecordingSubscriber() {
+          @Override
+          public void onNext(Message message) {
+            super.onNext(message);
+            subscription.request(-1);
+            events.add("onNext returned");
+          }
+        };
+    CreditStrategy.Controller controller = subscribe();
+    subscriber.subscription.request(10);
+    chunk(controller, 2);
+    assertThat(subscriber.events).containsExactly("onNext", "onNext returned", "onError");
+    assertThat(subscriber.error).isInstanceOf(IllegalArgumentException.class);
+    verify(consumer).close();
+  }
+
+  @Test
+  void environmentClosingShouldCompleteOnceBufferedMessagesAreEmitted() {
+    CreditStrategy.Controller controller = subscribe();
+    subscriber.subscription.request(1);
+    chunk(controller, 3);
+    closedHandlerCaptor.getValue().closed(null);
+    assertThat(subscriber.messages).hasSize(1);
+    assertThat(subscriber.events).doesNotContain("onComplete");
+
+    subscriber.subscription.request(10);
+    assertThat(subscriber.events).containsExactly("onNext", "onNext", "onNext", "onComplete");
+    assertThat(credits).as("no credit for a closed consumer").hasValue(0);
+  }
+
+  @Test
+  void consumerClosedOnFailureShouldSignalError() {
+    CreditStrategy.Controller controller = subscribe();
+    chunk(controller, 2);
+    closedHandlerCaptor.getValue().closed(new StreamDoesNotExistException("stream"));
+    assertThat(subscriber.messages).isEmpty();
+    assertThat(subscriber.error).isInstanceOf(StreamDoesNotExistException.class);
+    subscriber.subscription.request(10);
+    assertThat(subscriber.events).containsExactly("onError");
+  }
+
+  @Test
+  void consumerCreationFailureShouldSignalError() {
+    when(consumerBuilder.build()).thenThrow(new IllegalStateException());
+    new ConsumerPublisher(consumerBuilder).subscribe(subscriber);
+    assertThat(subscriber.subscription).isNotNull();
+    assertThat(subscriber.error).isInstanceOf(IllegalStateException.class);
+  }
+
+  static class RecordingSubscriber implements Subscriber<Message> {
+
+    final List<Message> messages = new CopyOnWriteArrayList<>();
+    final List<String> events = new CopyOnWriteArrayList<>();
+    volatile Subscription subscription;
+    volatile Throwable error;
+
+    @Override
+    public void onSubscribe(Subscription s) {
+      this.subscription = s;
+    }
+
+    @Override
+    public void onNext(Message message) {
+      messages.add(message);
+      events.add("onNext");
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      this.error = t;
+      events.add("onError");
+    }
+
+    @Override
+    public void onComplete() {
+      events.add("onComplete");
+    }
+  }
+}
@@ -0,0 +1,133 @@
+// Copyright (c) 2020 VMware, Inc. or its affiliates.  All rights reserved.
+//
+// This software, the RabbitMQ Stream Java client library, is dual-licensed under the
+// Mozilla Public License 2.0 ("MPL"), and the Apache License version 2 ("ASL").
+// For the MPL, please see LICENSE-MPL-RabbitMQ. For the ASL,
+// please see LICENSE-APACHE2.
+//
+// This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY KIND,
+// either express or implied. See the LICENSE file for specific language governing
+// rights and limitations of this software.
+//
+// If you have any questions regarding licensing, please contact us at
+// info@rabbitmq.com.
+
+package com.rabbitmq.stream.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.rabbitmq.stream.ConfirmationHandler;
+import com.rabbitmq.stream.ConfirmationStatus;
+import com.rabbitmq.stream.Constants;
+import com.rabbitmq.stream.Message;
+import com.rabbitmq.stream.Producer;
+import com.rabbitmq.stream.codec.WrapperMessageBuilder;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+
+public class ProducerSubscriberTest {
+
+  Producer producer;
+  Subscription subscription;
+  List<ConfirmationHandler> handlers;
+  List<ConfirmationStatus> statuses;
+
+  static Message message() {
+    return new WrapperMessageBuilder().build();
+  }
+
+  @BeforeEach
+  void init() {
+    producer = mock(Producer.class);
+    subscription = mock(Subscription.class);
+    handlers = new CopyOnWriteArrayList<>();
+    statuses = new CopyOnWriteArrayList<>();
+    when(producer.trySend(any(Message.class), any(ConfirmationHandler.class)))
+        .thenAnswer(
+            invocation -> {
+              handlers.add(invocation.getArgument(1));
+              return true;
+            });
+  }
+
+  void confirm(int index) {
+    handlers
+        .get(index)
+        .handle(new ConfirmationStatus(message(), true, Constants.RESPONSE_CODE_OK));
+  }
+
+  @Test
+  void shouldRequestMoreOnlyWhenMessagesAreConfirmed() {
+    ProducerSubscriber subscriber = new ProducerSubscriber(producer, 2, statuses::add);
+    subscriber.onSubscribe(subscription);
+    verify(subscription).request(2);
+    subscriber.onNext(message());
+    subscriber.onNext(message());
+    assertThat(handlers).hasSize(2);
+    verify(subscription, times(0)).request(1);
+    confirm(0);
+    verify(subscription, times(1)).request(1);
+    assertThat(statuses).hasSize(1);
+  }
+
+  @Test
+  void shouldWaitForCapacityWhenProducerRejectsMessage() {
+    CompletableFuture<Void> capacity = new CompletableFuture<>();
+    when(producer.capacityAvailable()).thenReturn(capacity);
+    doReturn(false)
+        .doAnswer(
+            invocation -> {
+              handlers.add(invocation.getArgument(1));
+              return true;
+            })
+        .when(producer)
+        .trySend(any(Message.class), any(ConfirmationHandler.class));
+    ProducerSubscriber subscriber = new ProducerSubscriber(producer, 10, statuses::add);
+    subscriber.onSubscribe(subscription);
+    subscriber.onNext(message());
+    assertThat(handlers).isEmpty();
+    capacity.complete(null);
+    assertThat(handlers).hasSize(1);
+  }
+
+  @Test
+  void completionShouldCompleteWhenAllMessagesAreConfirmed() {
+    ProducerSubscriber subscriber = new ProducerSubscriber(producer, 10, statuses::add);
+    subscriber.onSubscribe(subscription);
+    subscriber.onNext(message());
+    subscriber.onNext(message());
+    subscriber.onComplete();
+    assertThat(subscriber.completion().toCompletableFuture()).isNotDone();
+    confirm(0);
+    confirm(1);
+    assertThat(subscriber.completion().toCompletableFuture()).isCompleted();
+    verify(subscription, times(0)).request(1);
+  }
+
+  @Test
+  void completionShouldFailOnUpstreamError() {
+    ProducerSubscriber subscriber = new ProducerSubscriber(producer, 10, statuses::add);
+    subscriber.onSubscribe(subscription);
+    subscriber.onError(new IllegalStateException());
+    assertThat(subscriber.completion().toCompletableFuture()).isCompletedExceptionally();
+  }
+
+  @Test
+  void secondSubscriptionShouldBeCancelled() {
+    ProducerSubscriber subscriber = new ProducerSubscriber(producer, 10, statuses::add);
+    subscriber.onSubscribe(subscription);
+    Subscription otherSubscription = mock(Subscription.class);
+    subscriber.onSubscribe(otherSubscription);
+    verify(otherSubscription).cancel();
+  }
+}